@@ -0,0 +1,163 @@
+package com.example.beaconoffice;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Picture;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented benchmark for the draw cost of the map in Home page, which will execute on an Android device.
+ * It compares drawing the floor plan element by element, as every frame used to do,
+ * with copying the cached FloorPlanLayer. The median time per frame of both is written to logcat;
+ * the timings depend on the load of the device, so only what the cached layer draws is checked.
+ *
+ * @see FloorPlanLayer
+ */
+@RunWith(AndroidJUnit4.class)
+public class FloorPlanLayerBenchmark {
+
+    private static final String TAG = "FloorPlanLayerBenchmark";
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1950;
+    private static final int WARMUP_FRAMES = 50;
+    private static final int FRAMES = 300;
+
+    private FloorPlanLayer layer;
+    private Bitmap target;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        layer = new FloorPlanLayer(appContext.getResources());
+        layer.setBounds(0, 0, WIDTH, HEIGHT, WIDTH / 21f, HEIGHT / 38f);
+        target = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(target);
+    }
+
+    @After
+    public void tearDown() {
+        layer.release();
+        target.recycle();
+    }
+
+    @Test
+    public void cachedLayer_drawsTheFloorPlan() {
+        long fullNanos = medianFrameNanos(new Runnable() {
+            @Override
+            public void run() {
+                layer.drawStatic(canvas);
+            }
+        });
+        long cachedNanos = medianFrameNanos(new Runnable() {
+            @Override
+            public void run() {
+                layer.draw(canvas);
+            }
+        });
+
+        Log.i(TAG, "floor plan: " + fullNanos / 1000 + " us/frame, cached layer: " + cachedNanos / 1000 + " us/frame");
+
+        Bitmap expected = render(new Runnable() {
+            @Override
+            public void run() {
+                layer.drawStatic(canvas);
+            }
+        });
+        Bitmap actual = render(new Runnable() {
+            @Override
+            public void run() {
+                layer.draw(canvas);
+            }
+        });
+        try {
+            assertTrue(expected.sameAs(actual));
+        } finally {
+            expected.recycle();
+            actual.recycle();
+        }
+    }
+
+    @Test
+    public void cachedLayer_recordingReplaysTheFloorPlan() {
+        // Recording into a Picture shows the work that the RenderThread has to replay every frame
+        Picture full = new Picture();
+        long fullNanos = medianFrameNanos(new Runnable() {
+            @Override
+            public void run() {
+                layer.drawStatic(full.beginRecording(WIDTH, HEIGHT));
+                full.endRecording();
+            }
+        });
+        Picture cached = new Picture();
+        layer.draw(canvas);
+        long cachedNanos = medianFrameNanos(new Runnable() {
+            @Override
+            public void run() {
+                layer.draw(cached.beginRecording(WIDTH, HEIGHT));
+                cached.endRecording();
+            }
+        });
+
+        Log.i(TAG, "recording floor plan: " + fullNanos / 1000 + " us/frame, cached layer: " + cachedNanos / 1000 + " us/frame");
+
+        Bitmap expected = render(new Runnable() {
+            @Override
+            public void run() {
+                canvas.drawPicture(full);
+            }
+        });
+        Bitmap actual = render(new Runnable() {
+            @Override
+            public void run() {
+                canvas.drawPicture(cached);
+            }
+        });
+        try {
+            assertTrue(expected.sameAs(actual));
+        } finally {
+            expected.recycle();
+            actual.recycle();
+        }
+    }
+
+    /**
+     * Clears the target, runs a frame on it and returns a copy of what it drew.
+     */
+    private Bitmap render(Runnable frame) {
+        target.eraseColor(Color.TRANSPARENT);
+        frame.run();
+        return target.copy(Bitmap.Config.ARGB_8888, false);
+    }
+
+    /**
+     * Runs a frame many times and returns the median duration, which ignores the occasional garbage collection.
+     */
+    private static long medianFrameNanos(Runnable frame) {
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            frame.run();
+        }
+        long[] durations = new long[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            long start = System.nanoTime();
+            frame.run();
+            durations[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(durations);
+        return durations[FRAMES / 2];
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.beaconoffice;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RecordingCanvas;
+import android.graphics.RectF;
+import android.graphics.RenderNode;
+import android.graphics.drawable.BitmapDrawable;
+import android.os.Build;
+
+/**
+ * FloorPlanLayer class draws the part of the map in Home page that never changes while tracking:
+ * the cubicles, the closed offices and the prohibition signs on them.
+ * The layer is rendered once for every layout of the map and then every frame only copies it,
+ * so that a new position costs as much as drawing the AltBeacons on top of it.
+ * On Android 10 and newer the layer is kept as a RenderNode, i.e. a display list that the GPU replays;
+ * on older devices, or when the canvas is not hardware accelerated, it is kept in a Bitmap.
+ *
+ * @version 1.0
+ * @see HomeFragment.MapView
+ */
+public class FloorPlanLayer {
+
+    // The y coordinates of the desk rows at the left wall, in meters
+    private static final double[] DESK_ROWS = {4, 10.8, 19, 26.9};
+    // The (x, y) coordinates of the single desks at the right side, in meters
+    private static final double[][] SINGLE_DESKS = {{11, 19.8}, {10.6, 32.6}};
+
+    private final Paint officePaint = new Paint();
+    private final Paint officeLinesPaint = new Paint();
+    private final Bitmap workspace;
+    private final BitmapDrawable prohibition;
+    private final RectF office1 = new RectF();
+    private final RectF office2 = new RectF();
+    private final RectF office3 = new RectF();
+
+    private int left, top, right, bottom;
+    private float xPixelsPerMeter, yPixelsPerMeter;
+    private RenderNode renderNode;
+    private Bitmap bitmap;
+
+    /**
+     * Class constructor.
+     * Loads the bitmap pictures for the cubicles and the prohibited place sign and sets the
+     * border and the internal color of the closed offices, that will be grayish.
+     *
+     * @param resources the resources of the application
+     */
+    public FloorPlanLayer(Resources resources) {
+        officePaint.setColor(Color.parseColor("#dbdbdb"));
+        officePaint.setStyle(Paint.Style.FILL);
+
+        officeLinesPaint.setColor(Color.parseColor("#b5b5b5"));
+        officeLinesPaint.setStyle(Paint.Style.STROKE);
+        officeLinesPaint.setStrokeWidth(5);
+
+        workspace = BitmapFactory.decodeResource(resources, R.drawable.workspace);
+        prohibition = new BitmapDrawable(resources, BitmapFactory.decodeResource(resources, R.drawable.prohibition));
+        prohibition.setAlpha(20);
+    }
+
+    /**
+     * Sets the position of the map in its parent and its scale. If any of them changed,
+     * the cached layer gets rendered again the next time it is drawn.
+     *
+     * @param left the left position of the map, relative to its parent
+     * @param top the top position of the map, relative to its parent
+     * @param right the right position of the map, relative to its parent
+     * @param bottom the bottom position of the map, relative to its parent
+     * @param xPixelsPerMeter the horizontal scale
+     * @param yPixelsPerMeter the vertical scale
+     */
+    public void setBounds(int left, int top, int right, int bottom, float xPixelsPerMeter, float yPixelsPerMeter) {
+        if (left == this.left && top == this.top && right == this.right && bottom == this.bottom
+                && xPixelsPerMeter == this.xPixelsPerMeter && yPixelsPerMeter == this.yPixelsPerMeter) {
+            return;
+        }
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.xPixelsPerMeter = xPixelsPerMeter;
+        this.yPixelsPerMeter = yPixelsPerMeter;
+        release();
+    }
+
+    /**
+     * Draws the cached layer, rendering it first if the bounds have changed since the last time.
+     *
+     * @param canvas the canvas of the map
+     */
+    public void draw(Canvas canvas) {
+        int width = right - left;
+        int height = bottom - top;
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && canvas.isHardwareAccelerated()) {
+            if (renderNode == null) {
+                renderNode = new RenderNode("floorPlan");
+                renderNode.setPosition(0, 0, width, height);
+                RecordingCanvas recordingCanvas = renderNode.beginRecording(width, height);
+                try {
+                    drawStatic(recordingCanvas);
+                } finally {
+                    renderNode.endRecording();
+                }
+            }
+            canvas.drawRenderNode(renderNode);
+        } else {
+            if (bitmap == null) {
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                drawStatic(new Canvas(bitmap));
+            }
+            canvas.drawBitmap(bitmap, 0, 0, null);
+        }
+    }
+
+    /**
+     * Draws the floor plan element by element, the way the map used to do on every frame.
+     * First, it places the cubicle icons, then the closed offices and the prohibition icons.
+     *
+     * @param canvas the canvas that receives the floor plan
+     */
+    public void drawStatic(Canvas canvas) {
+        //----------------------------Desks----------------------------
+        //Desk 1
+        for (int x = 20; x <= 800; x += 130) {
+            canvas.drawBitmap(workspace, x, 10, null);
+        }
+
+        //Desks 2 - 5
+        for (double row : DESK_ROWS) {
+            canvas.drawBitmap(workspace, 20, (float) (row * yPixelsPerMeter - 40), null);
+            canvas.drawBitmap(workspace, 150, (float) (row * yPixelsPerMeter - 40), null);
+        }
+
+        //Desks 6 - 7
+        for (double[] desk : SINGLE_DESKS) {
+            canvas.drawBitmap(workspace, (float) (desk[0] * xPixelsPerMeter), (float) (desk[1] * yPixelsPerMeter - 40), null);
+        }
+
+        //----------------------------Offices----------------------------
+
+        office1.set(10 * xPixelsPerMeter, (float) (4.3 * yPixelsPerMeter), right - 10, (float) (4.3 + 10.8) * yPixelsPerMeter);
+        canvas.drawRect(office1, officePaint);
+        canvas.drawRect(office1, officeLinesPaint);
+
+        prohibition.setBounds((int) (right - 10 - 11 * xPixelsPerMeter + 90), (int) ((4.3 + 5.4) * yPixelsPerMeter - 200), (int) (right - 10 - 11 * xPixelsPerMeter + 400 + 90), (int) ((4.3 + 5.4) * yPixelsPerMeter) - 200 + 400);
+        prohibition.draw(canvas);
+
+        office2.set((float) (12.35 * xPixelsPerMeter), (float) (15.1 * yPixelsPerMeter), right - 10, (float) (38 * yPixelsPerMeter) - 10);
+        canvas.drawRect(office2, officePaint);
+        canvas.drawRect(office2, officeLinesPaint);
+
+        prohibition.setBounds((int) ((12.35 + 4.325) * xPixelsPerMeter - 200), (int)((15.1 + 11.45) * yPixelsPerMeter - 200), (int) ((12.35 + 4.325) * xPixelsPerMeter - 200 + 400), (int)((15.1 + 11.45) * yPixelsPerMeter - 200 + 400));
+        prohibition.draw(canvas);
+
+        office3.set((float) (left + 10), 30 * yPixelsPerMeter, (float) (left + 10 + 7.6 * xPixelsPerMeter), (float) (bottom - 10));
+        canvas.drawRect(office3, officePaint);
+        canvas.drawRect(office3, officeLinesPaint);
+
+        prohibition.setBounds((int)(left + 10 + 3.8 * xPixelsPerMeter - 100), (int)(34 * yPixelsPerMeter - 100), (int) (left + 10 + 3.8 * xPixelsPerMeter + 100), (int)(34 * yPixelsPerMeter + 100));
+        prohibition.draw(canvas);
+    }
+
+    /**
+     * Frees the cached layer. It gets rendered again the next time it is drawn.
+     */
+    public void release() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && renderNode != null) {
+            renderNode.discardDisplayList();
+        }
+        renderNode = null;
+        if (bitmap != null) {
+            bitmap.recycle();
+            bitmap = null;
+        }
+    }
+}
@@ -1,18 +1,14 @@
 package com.example.beaconoffice;
 
-import android.app.Activity;
+import android.content.ComponentName;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.content.ServiceConnection;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.RectF;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.GradientDrawable;
 import android.os.Bundle;
 import android.os.Handler;
-import android.util.DisplayMetrics;
+import android.os.IBinder;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -29,14 +25,7 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
 
-import com.google.android.gms.maps.GoogleMap;
-
-import org.altbeacon.beacon.Beacon;
 import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Date;
 import java.util.Objects;
 
 /**
@@ -48,25 +37,22 @@ import java.util.Objects;
  * extracts the Beacon's position inside the company's office.
  * The small circles inside the building canvas are the fixed positions of some AltBeacons that the
  * initiator uses in order to construct its advertisement packet.
+ * The tracking itself runs in the TrackingService; while the page is started, it is bound to the service
+ * and follows the position of the initiator through the PositionStream.
  *
  * @author Aikaterini - Maria Panteleaki
  * @version 1.0
+ * @see TrackingService
+ * @see PositionStream
  * @since 31/8/2022
  */
-public class HomeFragment extends Fragment {
-
-    private final double[][] ALTBEACONS =  {
-        {0, 0}, {6, 0}, {5, 4}, {13.8, 0}, {17.9, 4.3}, {5, 10.8}, {5, 19}, {0.6, 14.5}, {11, 19.8}, {0, 21.9}, {5, 26.9}, {10.6, 32.6}
-    };
-    private final double[] fixedCoordinates = {38.260258, 21.748722};
-    public static Double[] currentCoordinates = {null, null};
+public class HomeFragment extends Fragment implements PositionStream.Observer {
 
     private final float xTotalMeters = (float) 21;
     private final float yTotalMeters = (float) 38;
     private static float xCoordMax, yCoordMax;
     private static float xPixelsPerMeter, yPixelsPerMeter;
     private static float xMetersPerPixel, yMetersPerPixel;
-    private String wholeBody;
 
     private final int delay = 3000;
 
@@ -74,6 +60,7 @@ public class HomeFragment extends Fragment {
 
     private DecimalFormat decimalFormat = new DecimalFormat();
     private MainActivity mainActivity;
+    private AnchorRegistry anchorRegistry;
     private View popupView;
     private PopupWindow popupWindow;
     private TextView popupTextView;
@@ -82,19 +69,32 @@ public class HomeFragment extends Fragment {
     private RelativeLayout relativeLayout;
     private ImageView person;
     private ImageView invalidPerson;
-    private SimpleDateFormat simpleDateFormat;
-    private String currentDateAndTime;
-    private LogResult newLog;
     private MapView mapView;
-    private RectF office1 = new RectF();
-    private RectF office2 = new RectF();
-    private RectF office3 = new RectF();
-    private Double tmpX, tmpY;
     private Double xMeterCoord, yMeterCoord;
     private String reset;
     private Bundle logsBundle = new Bundle();
-    public static boolean[] active = new boolean[12];
-    private static String emailBody;
+    private final AnchorMask activeAnchors = new AnchorMask();
+
+    /**
+     * Gets the positions of the AltBeacons from the tracking service, draws them,
+     * and starts following the position of the initiator, beginning with the latest one.
+     */
+    private final ServiceConnection trackingConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            anchorRegistry = ((TrackingService.LocalBinder) binder).getService().getAnchorRegistry();
+            mapView.setBeacons();
+            mapView.updateCanvas();
+            PositionStream positionStream = PositionStream.getInstance();
+            positionStream.addObserver(HomeFragment.this);
+            onPositionChanged(positionStream);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            PositionStream.getInstance().removeObserver(HomeFragment.this);
+        }
+    };
 
     private Runnable runnable = new Runnable() {
         @Override
@@ -167,6 +167,17 @@ public class HomeFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
     }
 
+    /**
+     * Binds to the tracking service, which gets the page following the initiator.
+     *
+     * @see #trackingConnection
+     */
+    @Override
+    public void onStart() {
+        super.onStart();
+        TrackingService.bind(requireContext(), trackingConnection);
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -174,63 +185,50 @@ public class HomeFragment extends Fragment {
     }
 
     /**
-     * Checks if the physical coordinates (in meters) of the initiator are valid, which means that
-     * they are inside the depicted part of the building and they are not inside the closed offices (in grey color).
-     * Then, computes the pixel coordinates of the initiator based on its physical coordinates in meters.
+     * Stops following the initiator while the page is not visible; the tracking goes on in the service.
+     */
+    @Override
+    public void onStop() {
+        PositionStream.getInstance().removeObserver(this);
+        requireContext().unbindService(trackingConnection);
+        super.onStop();
+    }
+
+    /**
+     * Shows the latest position of the initiator. The tracking service has already checked if the physical
+     * coordinates (in meters) of the initiator are valid, which means that they are inside the depicted
+     * part of the building and they are not inside the closed offices (in grey color), and has moved
+     * invalid ones to the edge of the building.
+     * This function computes the pixel coordinates of the initiator based on its physical coordinates in meters.
      * If the coordinates are invalid, then the initiator's icon is a black one with an exclamation mark in it,
      * showing that the calculated position is practically wrong.
-     * Then, another function is called to calculate the GPS coordinates of the WiRa device,
-     * based on these relative cartesian ones.
-     * This function also adds the newly generated data to the string of the potential e-mail message and
-     * also to the list that holds the data of the "Measurement Results" table in Logs page.
-     * After all this, the canvas that represents the building gets updated.
+     * The AltBeacons that were recognised in the packet get highlighted on the map.
+     * After all this, only the AltBeacons of the canvas whose state changed get redrawn. The icon of the initiator
+     * is a view of its own, so moving it only redraws its old and new area.
+     *
+     * It runs on the main thread, at most once per frame, while the page is started.
      *
-     * @param coordinates the coordinates of the initiator in meters, calculated by the mathematical algorithm
-     * @param distances the distances of the initiator from the three AltBeacons
-     *                  which it used in order to compute the coordinates
+     * @param stream the stream with the latest position of the initiator
      *
      * @see MapView
-     * @see ScanBeacons#addBeaconValues(Beacon)
-     * @see MapView#updateCanvas()
-     * @see #calculateGpsCoordinates(double, double)
+     * @see TrackingService#showPosition(PositionSnapshot)
+     * @see MapView#setActiveAnchors(AnchorMask)
      */
-    public void receiveCoords(double[] coordinates, ArrayList<String> distances) {
+    @Override
+    public void onPositionChanged(PositionStream stream) {
+        if (!stream.hasPosition() || mapView == null) {
+            return;
+        }
 
         float xPixelCoord, yPixelCoord;
 
-        tmpX = coordinates[0];
-        tmpY = coordinates[1];
-
-        xMeterCoord = tmpX;
-        yMeterCoord = tmpY;
+        xMeterCoord = stream.getX();
+        yMeterCoord = stream.getY();
 
         xPixelCoord = xMeterCoord.floatValue() * xPixelsPerMeter - 20;
         yPixelCoord = yMeterCoord.floatValue() * yPixelsPerMeter - 20;
 
-        boolean invalidCoords = (yMeterCoord < 0) || (xMeterCoord < 0) || (yMeterCoord > yTotalMeters) || (xMeterCoord > xTotalMeters) ||
-                ((yMeterCoord >= 4.3) && (yMeterCoord <= (4.3 + 10.8)) && (xMeterCoord >= 10)) || // Meeting rooms
-                ((yMeterCoord >= (4.3 + 10.8)) && (xMeterCoord >= (10 + 2.35))) || // Kitchen
-                ((yMeterCoord >= 30) && (xMeterCoord <= 7.6)); // Hardware Lab
-
-        if (invalidCoords) {
-            if ((yMeterCoord >= (4.3 + 10.8)) && (xMeterCoord >= (10 + 2.35))) {
-                xMeterCoord = 10 + 2.35;
-            }
-            if (yMeterCoord < 0) {
-                yMeterCoord = 0.0;
-            }
-            else if (yMeterCoord > yTotalMeters) {
-                yMeterCoord = (double) yTotalMeters ;
-            }
-            if (xMeterCoord < 0) {
-                xMeterCoord = 0.0;
-            }
-            else if (xMeterCoord > xTotalMeters) {
-                xMeterCoord = (double) xTotalMeters;
-            }
-
-            xPixelCoord = xMeterCoord.floatValue() * xPixelsPerMeter - 20;
-            yPixelCoord = yMeterCoord.floatValue() * yPixelsPerMeter - 20;
+        if (!stream.isWalkable()) {
             person.setVisibility(View.GONE);
             invalidPerson.setVisibility(View.VISIBLE);
             invalidPerson.setX(xPixelCoord);
@@ -242,101 +240,10 @@ public class HomeFragment extends Fragment {
             invalidPerson.setVisibility(View.GONE);
         }
 
-        calculateGpsCoordinates(xMeterCoord, yMeterCoord);
-
-        simpleDateFormat = new SimpleDateFormat("yyyy.MM.dd G 'at' HH:mm:ss z");
-        currentDateAndTime = simpleDateFormat.format(new Date());
-        if (emailBody != null) {
-            emailBody = emailBody.concat(currentDateAndTime + "    " + "x: " + decimalFormat.format(xMeterCoord) + "m    " + "y: " + decimalFormat.format(yMeterCoord) + "m\n");
-        }
-        else {
-            emailBody = currentDateAndTime + "    " + "x: " + decimalFormat.format(xMeterCoord) + "m    " + "y: " + decimalFormat.format(yMeterCoord) + "m\n";
-        }
-
-        if (distances.size() == 3) {
-            String distance1 = distances.get(0) + " m";
-            String distance2 = distances.get(1) + " m";
-            String distance3 = distances.get(2) + " m";
-            newLog = new LogResult(currentDateAndTime, decimalFormat.format(xMeterCoord)+" m", decimalFormat.format(yMeterCoord)+" m", distance1, distance2, distance3);
-            mainActivity.addLogList(newLog);
-            emailBody = emailBody.concat(distance1 + "m   ").concat(distance2 + "m   ").concat(distance3 + "m\n\n");
-            getParentFragmentManager().setFragmentResult("logResult", logsBundle);
-            Log.i("Pixel - Coordinate X of person", "   " + decimalFormat.format(xPixelCoord));
-            Log.i("Pixel - Coordinate Y of person", "   " + decimalFormat.format(yPixelCoord));
-            mapView.updateCanvas();
-        }
-    }
-
-    /**
-     * According to the WiRa initiator's cartesian coordinates inside the office,
-     * the function applies an algorithm to calculate the corresponding
-     * GPS coordinates of the current position.
-     * 
-     * @param x the x-coordinate of the WiRa initiator inside the office
-     * @param y the y-coordinate of the WiRa initiator inside the office
-     *
-     * @see #receiveCoords(double[], ArrayList) 
-     * @see MapsActivity#onMapReady(GoogleMap)
-     */
-    public void calculateGpsCoordinates (double x, double y) {
-        final double earthRadius = 6371010;
-        final double epsilon = 0.000001;
-
-        double distance = Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2));
-        Log.i("Distance between (0, 0) and current point ", "   " + distance);
-
-        double theta = Math.atan2(y, x);
-        theta = theta + Math.PI/2;
-        Log.i("Bearing between (0, 0) and current point ", "   " + radToDeg(theta) + " degrees");
-
-        double radLatitude = degToRad(fixedCoordinates[0]);
-        double radLongitude = degToRad(fixedCoordinates[1]);
-        double radDistance = distance/earthRadius;
-
-        double latitude = Math.asin(Math.sin(radLatitude) * Math.cos(radDistance) + Math.cos(radLatitude) * Math.sin(radDistance) * Math.cos(theta));
-        double longitude;
-
-        if ( Math.cos(radLatitude) == 0 || Math.abs( Math.cos(radLatitude) ) < epsilon ) {
-            longitude = radLongitude;
-        } else {
-            longitude = ( (radLongitude - Math.asin( Math.sin(theta) * Math.sin(radDistance) / Math.cos(latitude)) + Math.PI ) % (2 * Math.PI) - Math.PI );
-        }
-
-        latitude = radToDeg(latitude);
-        longitude = radToDeg(longitude);
-
-        currentCoordinates[0] = latitude;
-        currentCoordinates[1] = longitude;
-
-        Log.i("GPS latitude of new point ", "   " + latitude + " degrees");
-        Log.i("GPS longitude of new point ", "   " + longitude + " degrees");
-    }
-
-    public double radToDeg(double angle) {
-        return angle * 180 / Math.PI;
-    }
-
-    public double degToRad(double angle) {
-        return angle * Math.PI / 180;
-    }
-
-    /**
-     * Creates the complete text of the e-mail body by combining a salutation to the user,
-     * the tracked data as shown in "Measurement Results" table and a greeting from the BeacOnOffice team.
-     * If there is no data to show, the email informs the user about that.
-     *
-     * @return the complete string of the email body
-     * @see LogsFragment#sendEmail()
-     */
-    public String getEmailBody() {
-        wholeBody = "Dear user,\n\n";
-        if (emailBody != null )
-            wholeBody = wholeBody.concat("The Log results of BeacOnOffice measurements are:\n").concat(emailBody);
-        else
-            wholeBody = wholeBody.concat("There are no Log results to show");
-
-        wholeBody = wholeBody.concat("\n\nRegards, \nthe BeacOnOffice Team");
-        return wholeBody;
+        getParentFragmentManager().setFragmentResult("logResult", logsBundle);
+        Log.i("Pixel - Coordinate X of person", "   " + decimalFormat.format(xPixelCoord));
+        Log.i("Pixel - Coordinate Y of person", "   " + decimalFormat.format(yPixelCoord));
+        mapView.setActiveAnchors(stream.getActiveAnchors());
     }
 
     /**
@@ -357,14 +264,15 @@ public class HomeFragment extends Fragment {
      * The main objects that constitute the canvas are the closed offices, the AltBeacons that have fixed
      * positions inside the building and some bitmap pictures that depict the cubicles or
      * show that an area is prohibited, like the closed offices.
+     * Everything except the AltBeacons is drawn once per layout in a FloorPlanLayer.
+     *
+     * @see FloorPlanLayer
      */
     public class MapView extends View {
 
-        private Paint officePaint = new Paint();
-        private Paint officeLinesPaint = new Paint();
-        private Bitmap workspace, prohibitionBitmap;
-        private BitmapDrawable prohibition;
-        private GradientDrawable[] beacon = new GradientDrawable[12];
+        private FloorPlanLayer floorPlanLayer;
+        private GradientDrawable[] beacon;
+        private final AnchorMask drawnAnchors = new AnchorMask();
         private int[] orangeColors = {Color.parseColor("#ffd700"), Color.parseColor("#da9100")};
         private int[] greenColors = {Color.parseColor("#AEF359"), Color.parseColor("#028A0F")};
 
@@ -376,65 +284,61 @@ public class HomeFragment extends Fragment {
         }
 
         /**
-         * Sets the border and the internal color of the closed offices, that will be grayish.
+         * Highlights the AltBeacons that were recognised in the latest packet.
+         * Only the AltBeacons whose state changed since the previous packet get new colors,
+         * and only their area of the canvas is invalidated.
+         *
+         * @param activeAnchors the AltBeacons that contribute to the latest position
          */
-        public void setOffices() {
-            officePaint.setColor(Color.parseColor("#dbdbdb"));
-            officePaint.setStyle(Paint.Style.FILL);
-
-            officeLinesPaint.setColor(Color.parseColor("#b5b5b5"));
-            officeLinesPaint.setStyle(Paint.Style.STROKE);
-            officeLinesPaint.setStrokeWidth(5);
+        public void setActiveAnchors(AnchorMask activeAnchors) {
+            for (int k = activeAnchors.nextDifference(drawnAnchors, 0); k >= 0; k = activeAnchors.nextDifference(drawnAnchors, k + 1)) {
+                if (k < beacon.length) {
+                    beacon[k].setColors(activeAnchors.get(k) ? greenColors : orangeColors);
+                    invalidate(beacon[k].getBounds());
+                }
+            }
+            drawnAnchors.copyFrom(activeAnchors);
         }
 
         /**
          * Updates the scale that it will use. Then, it declares the AltBeacon icons as
          * small circles with gradient color style. Each of these circles will have fixed position
-         * according to the corresponding AltBeacon's coordinates.
+         * according to the corresponding AltBeacon's coordinates in the anchor registry.
+         * The floor plan layer gets the new scale too, so it is rendered again with the next frame.
+         *
+         * @see AnchorRegistry
+         * @see FloorPlanLayer#setBounds(int, int, int, int, float, float)
          */
         public void setBeacons() {
 
             updateScale();
+            floorPlanLayer.setBounds(getLeft(), getTop(), getRight(), getBottom(), xPixelsPerMeter, yPixelsPerMeter);
 
-            for (int i = 0; i < 12; i++) {
+            // The AltBeacons are only known once the tracking service is bound
+            beacon = new GradientDrawable[anchorRegistry == null ? 0 : anchorRegistry.size()];
+            for (int i = 0; i < beacon.length; i++) {
                 beacon[i] = (GradientDrawable) getResources().getDrawable(R.drawable.circle, null);
                 beacon[i].setShape(GradientDrawable.OVAL);
                 beacon[i].setGradientType(GradientDrawable.LINEAR_GRADIENT);
-            }
-
-            beacon[0].setBounds(getLeft() + 10, getTop() + 10, getLeft() + 10 + 40, getTop() + 10 + 40);
-            beacon[1].setBounds((int) (ALTBEACONS[1][0] * xPixelsPerMeter) - 20, getTop() + 10, (int) (ALTBEACONS[1][0] * xPixelsPerMeter) - 20 + 40, getTop() + 10 + 40);
-            beacon[2].setBounds((int) (ALTBEACONS[2][0] * xPixelsPerMeter) - 20, (int) (ALTBEACONS[2][1] * yPixelsPerMeter) - 20, (int) (ALTBEACONS[2][0] * xPixelsPerMeter) - 20 + 40, (int) (ALTBEACONS[2][1] * yPixelsPerMeter) - 20 + 40);
-            beacon[3].setBounds((int) (ALTBEACONS[3][0] * xPixelsPerMeter) - 20, getTop() + 10, (int) (ALTBEACONS[3][0] * xPixelsPerMeter) - 20 + 40, getTop() + 10 + 40);
-            beacon[4].setBounds((int) (ALTBEACONS[4][0] * xPixelsPerMeter) - 20, (int) (ALTBEACONS[4][1] * yPixelsPerMeter) - 20, (int) (ALTBEACONS[4][0] * xPixelsPerMeter) - 20 + 40, (int) (ALTBEACONS[4][1] * yPixelsPerMeter) - 20 + 40);
-            beacon[5].setBounds((int) (ALTBEACONS[5][0] * xPixelsPerMeter) - 20, (int) (ALTBEACONS[5][1] * yPixelsPerMeter) - 20, (int) (ALTBEACONS[5][0] * xPixelsPerMeter) - 20 + 40, (int) (ALTBEACONS[5][1] * yPixelsPerMeter) - 20 + 40);
-            beacon[6].setBounds((int) (ALTBEACONS[6][0] * xPixelsPerMeter) - 20, (int) (ALTBEACONS[6][1] * yPixelsPerMeter) - 20, (int) (ALTBEACONS[6][0] * xPixelsPerMeter) - 20 + 40, (int) (ALTBEACONS[6][1] * yPixelsPerMeter) - 20 + 40);
-            beacon[7].setBounds((int) (ALTBEACONS[7][0] * xPixelsPerMeter) - 20, (int) (ALTBEACONS[7][1] * yPixelsPerMeter) - 20, (int) (ALTBEACONS[7][0] * xPixelsPerMeter) - 20 + 40, (int) (ALTBEACONS[7][1] * yPixelsPerMeter) - 20 + 40);
-            beacon[8].setBounds((int) (ALTBEACONS[8][0] * xPixelsPerMeter) - 20, (int) (ALTBEACONS[8][1] * yPixelsPerMeter) - 20, (int) (ALTBEACONS[8][0] * xPixelsPerMeter) - 20 + 40, (int) (ALTBEACONS[8][1] * yPixelsPerMeter) - 20 + 40);
-            beacon[9].setBounds(getLeft() + 10, (int) (ALTBEACONS[9][1] * yPixelsPerMeter) - 20, getLeft() + 10 + 40, (int) (ALTBEACONS[9][1] * yPixelsPerMeter) - 20 + 40);
-            beacon[10].setBounds((int) (ALTBEACONS[10][0] * xPixelsPerMeter) - 20, (int) (ALTBEACONS[10][1] * yPixelsPerMeter) - 20, (int) (ALTBEACONS[10][0] * xPixelsPerMeter) - 20 + 40, (int) (ALTBEACONS[10][1] * yPixelsPerMeter) - 20 + 40);
-            beacon[11].setBounds((int) (ALTBEACONS[11][0] * xPixelsPerMeter) - 20, (int) (ALTBEACONS[11][1] * yPixelsPerMeter) - 20, (int) (ALTBEACONS[11][0] * xPixelsPerMeter) - 20 + 40, (int) (ALTBEACONS[11][1] * yPixelsPerMeter) - 20 + 40);
+                beacon[i].setColors(drawnAnchors.get(i) ? greenColors : orangeColors);
 
+                // Beacons on the walls are kept 10 pixels inside the canvas
+                int left = Math.max(getLeft() + 10, (int) (anchorRegistry.getX(i) * xPixelsPerMeter) - 20);
+                int top = Math.max(getTop() + 10, (int) (anchorRegistry.getY(i) * yPixelsPerMeter) - 20);
+                beacon[i].setBounds(left, top, left + 40, top + 40);
+            }
         }
 
         /**
          * Class constructor.
-         * Initiates the process to set the form of the AltBeacons and the closed offices.
-         * It also declares the bitmap pictures for the cubicles and the prohibited place sign.
+         * Initiates the process to set the form of the AltBeacons and declares the layer with
+         * the cubicles, the closed offices and the prohibited place signs.
          */
         public MapView(Context context) {
             super(context);
 
-            DisplayMetrics displayMetrics = new DisplayMetrics();
-            ((Activity) getContext()).getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
-
+            floorPlanLayer = new FloorPlanLayer(getResources());
             setBeacons();
-            setOffices();
-
-            workspace = BitmapFactory.decodeResource(getResources(), R.drawable.workspace);
-            prohibitionBitmap = BitmapFactory.decodeResource(getResources(), R.drawable.prohibition);
-            prohibition = new BitmapDrawable(getResources(), prohibitionBitmap);
-            prohibition.setAlpha(20);
         }
 
         /**
@@ -450,14 +354,14 @@ public class HomeFragment extends Fragment {
             popupWindow.setElevation(20);
 
             if (event.getAction() == MotionEvent.ACTION_DOWN) {
-                for (int i = 0; i < 12; i++) {
+                for (int i = 0; i < beacon.length; i++) {
                     if (beacon[i].getBounds().contains((int) touchX, (int) touchY)) {
                         //Log.i("Beacon touched!!!", " beacon " + i + " was touched");
                         handler.removeCallbacks(runnable);
                         popupWindow.showAtLocation(this, Gravity.NO_GRAVITY, getLeft() + 50, getBottom() + 200 );
                         int beaconNumber = i + 1;
-                        double beaconX = ALTBEACONS[i][0];
-                        double beaconY = ALTBEACONS[i][1];
+                        double beaconX = anchorRegistry.getX(i);
+                        double beaconY = anchorRegistry.getY(i);
                         popupTextView.setText("Beacon " + beaconNumber + "\n" + "(" + beaconX + ", " + beaconY + ")");
                         handler.postDelayed(runnable, delay);
                         break;
@@ -469,81 +373,23 @@ public class HomeFragment extends Fragment {
 
         /**
          * Draws the visual representation of the building.
-         * First, it places the cubicle icons, then the closed offices and the prohibition icons.
-         * Finally, it checks every fixed AltBeacon and if one contributes to the application's
-         * calculation, then it gets drawn in green color. Otherwise, it will be yellowish.
+         * First, it copies the floor plan layer, with the cubicles, the closed offices and the prohibition icons.
+         * Then, it draws every fixed AltBeacon: if one contributes to the application's
+         * calculation, then it is in green color. Otherwise, it will be yellowish.
          *
          * @see #setBeacons()
-         * @see #setOffices()
+         * @see #setActiveAnchors(AnchorMask)
+         * @see FloorPlanLayer#draw(Canvas)
          */
         @Override
         protected void onDraw(Canvas canvas) {
             super.onDraw(canvas);
 
-            //----------------------------Desks----------------------------
-            //Desk 1
-            canvas.drawBitmap(workspace, 20, 10, null);
-            canvas.drawBitmap(workspace, 150, 10, null);
-            canvas.drawBitmap(workspace, 280, 10, null);
-            canvas.drawBitmap(workspace, 410, 10, null);
-            canvas.drawBitmap(workspace, 540, 10, null);
-            canvas.drawBitmap(workspace, 670, 10, null);
-            canvas.drawBitmap(workspace, 800, 10, null);
-            //canvas.drawBitmap(workspace, 900, 10, null);
-
-            //Desk 2
-            canvas.drawBitmap(workspace, 20, (float) (ALTBEACONS[2][1] * yPixelsPerMeter - 40), null);
-            canvas.drawBitmap(workspace, 150, (float) (ALTBEACONS[2][1] * yPixelsPerMeter - 40), null);
-
-            //Desk 3
-            canvas.drawBitmap(workspace, 20, (float) (ALTBEACONS[5][1] * yPixelsPerMeter - 40), null);
-            canvas.drawBitmap(workspace, 150, (float) (ALTBEACONS[5][1] * yPixelsPerMeter - 40), null);
-
-            //Desk 4
-            canvas.drawBitmap(workspace, 20, (float) (ALTBEACONS[6][1] * yPixelsPerMeter - 40), null);
-            canvas.drawBitmap(workspace, 150, (float) (ALTBEACONS[6][1] * yPixelsPerMeter - 40), null);
-
-            //Desk 5
-            canvas.drawBitmap(workspace, 20, (float) (ALTBEACONS[10][1] * yPixelsPerMeter - 40), null);
-            canvas.drawBitmap(workspace, 150, (float) (ALTBEACONS[10][1] * yPixelsPerMeter - 40), null);
-
-            //Desk 6
-            canvas.drawBitmap(workspace, (float) (ALTBEACONS[8][0] * xPixelsPerMeter), (float) (ALTBEACONS[8][1] * yPixelsPerMeter - 40), null);
-
-            //Desk 7
-            canvas.drawBitmap(workspace, (float) (ALTBEACONS[11][0] * xPixelsPerMeter), (float) (ALTBEACONS[11][1] * yPixelsPerMeter - 40), null);
-
-            //----------------------------Offices----------------------------
-
-            office1.set(10 * xPixelsPerMeter, (float) (4.3 * yPixelsPerMeter), getRight() - 10, (float) (4.3 + 10.8) * yPixelsPerMeter);
-            canvas.drawRect(office1, officePaint);
-            canvas.drawRect(office1, officeLinesPaint);
-
-            prohibition.setBounds((int) (getRight() - 10 - 11 * xPixelsPerMeter + 90), (int) ((4.3 + 5.4) * yPixelsPerMeter - 200), (int) (getRight() - 10 - 11 * xPixelsPerMeter + 400 + 90), (int) ((4.3 + 5.4) * yPixelsPerMeter) - 200 + 400);
-            prohibition.draw(canvas);
-
-            office2.set((float) (12.35 * xPixelsPerMeter), (float) (15.1 * yPixelsPerMeter), getRight() - 10, (float) (38 * yPixelsPerMeter) - 10);
-            canvas.drawRect(office2, officePaint);
-            canvas.drawRect(office2, officeLinesPaint);
-
-            prohibition.setBounds((int) ((12.35 + 4.325) * xPixelsPerMeter - 200), (int)((15.1 + 11.45) * yPixelsPerMeter - 200), (int) ((12.35 + 4.325) * xPixelsPerMeter - 200 + 400), (int)((15.1 + 11.45) * yPixelsPerMeter - 200 + 400));
-            prohibition.draw(canvas);
-
-            office3.set((float) (getLeft() + 10), 30 * yPixelsPerMeter, (float) (getLeft() + 10 + 7.6 * xPixelsPerMeter), (float) (getBottom() - 10));
-            canvas.drawRect(office3, officePaint);
-            canvas.drawRect(office3, officeLinesPaint);
-
-            prohibition.setBounds((int)(getLeft() + 10 + 3.8 * xPixelsPerMeter - 100), (int)(34 * yPixelsPerMeter - 100), (int) (getLeft() + 10 + 3.8 * xPixelsPerMeter + 100), (int)(34 * yPixelsPerMeter + 100));
-            prohibition.draw(canvas);
+            floorPlanLayer.draw(canvas);
 
             //----------------------------Beacons----------------------------
-            for (int k = 0; k < active.length; k++) {
-                if (active[k]) {
-                    beacon[k].setColors(greenColors);
-                } else {
-                    beacon[k].setColors(orangeColors);
-                }
-                beacon[k].draw(canvas);
+            for (GradientDrawable drawable : beacon) {
+                drawable.draw(canvas);
             }
         }
 
@@ -551,6 +397,7 @@ public class HomeFragment extends Fragment {
          * As soon as the layout parameters get acknowledged, set the maximum values
          * of pixels in both width and height. Then, the application is ready to
          * define the AltBeacons' positions and draw the building.
+         * Nothing is recomputed when the map is laid out again with the same bounds.
          *
          * @see #setBeacons()
          * @see #updateCanvas()
@@ -559,22 +406,34 @@ public class HomeFragment extends Fragment {
         protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
             super.onLayout(changed, left, top, right, bottom);
 
+            if (!changed) {
+                return;
+            }
             xCoordMax = this.getWidth();
             yCoordMax = this.getHeight();
             setBeacons();
             updateCanvas();
         }
+
+        /**
+         * Frees the floor plan layer when the map leaves the screen.
+         */
+        @Override
+        protected void onDetachedFromWindow() {
+            super.onDetachedFromWindow();
+            floorPlanLayer.release();
+        }
     }
 
     /**
      * Gets executed when the user has clicked the "reset" option in the main toolbar.
      * Then, the icon of the initiator gets back to its initial position with its default bitmap picture
      * and the "Measurement Results" table gets cleared. Moreover, the AltBeacons become
-     * all yellow (inactive), as in the beginning.
+     * all yellow (inactive), as in the beginning. The tracking service clears the positions and the trail on the map.
      *
      * @see MainActivity#resetMeasurements()
      * @see MainActivity#clearLogsAdapter()
-     * @see MapView#updateCanvas()
+     * @see MapView#setActiveAnchors(AnchorMask)
      */
     public void resetApplication() {
         reset = getArguments().getString("reset");
@@ -582,7 +441,6 @@ public class HomeFragment extends Fragment {
             if (person == null)
                 Log.i(TAG, "Person object is null");
             else {
-                wholeBody = null;
                 if (person.getVisibility() == View.GONE) {
                     invalidPerson.setVisibility(View.GONE);
                     person.setVisibility(View.VISIBLE);
@@ -591,9 +449,8 @@ public class HomeFragment extends Fragment {
                 person.setY(250);
             }
             mainActivity.clearLogsAdapter();
-            Arrays.fill(active, false);
-            mapView.updateCanvas();
-            currentCoordinates = new Double[]{null, null};
+            activeAnchors.clear();
+            mapView.setActiveAnchors(activeAnchors);
         }
     }
 }
\ No newline at end of file
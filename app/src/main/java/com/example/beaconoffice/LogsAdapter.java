@@ -1,31 +1,150 @@
 package com.example.beaconoffice;
 
 import android.content.Context;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
-import java.util.ArrayList;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 
 /**
  * LogsAdapter class holds the data that will be shown in "Measurement Results" table in Logs page.
- * This class is responsible for matching every LogResult object with the "Measurement Results" table.
+ * This class is responsible for matching every fix of the measurement history with the "Measurement Results" table.
+ * The newest fix is always the first row, and every row shows the tag of its fix, since the history
+ * holds the fixes of all the allowed tags. The fixes are loaded from the MeasurementStore in pages,
+ * only when their rows get shown, and they are formatted only when they are bound to a row,
+ * so the table can show days of history with constant memory.
+ * New fixes are inserted at the top at most once per frame; the table is only told about the rows
+ * that were inserted at the top and the oldest ones that fell off the bottom.
  *
  * @author Aikaterini - Maria Panteleaki
  * @version 1.0
- * @see LogResult
+ * @see MeasurementPager
  * @since 31/8/2022
  */
-public class LogsAdapter extends RecyclerView.Adapter<LogsAdapter.ViewHolder> {
+public class LogsAdapter extends RecyclerView.Adapter<LogsAdapter.ViewHolder> implements Choreographer.FrameCallback {
 
-    private ArrayList<LogResult> logResultsList;
-    private Context context;
+    private MeasurementPager pager;
+    private boolean isFrameScheduled = false;
+    private RecyclerView recyclerView;
 
-    public LogsAdapter (ArrayList<LogResult> logResultsList, Context context) {
-        this.logResultsList = logResultsList;
-        this.context = context;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd G 'at' HH:mm:ss z");
+    private final DecimalFormat coordinateFormat = new DecimalFormat();
+    private final DecimalFormat distanceFormat = new DecimalFormat();
+    private final Date date = new Date();
+
+    /**
+     * Class constructor
+     *
+     * @param pager the newest first view of the measurement history, or null if there is no history
+     */
+    public LogsAdapter (MeasurementPager pager) {
+        this.pager = pager;
+        distanceFormat.setMaximumFractionDigits(4);
+    }
+
+    /**
+     * Makes the table show another measurement history, e.g. the one of the tracking service once it is bound.
+     * It must be called on the main thread.
+     *
+     * @param pager the newest first view of the measurement history, or null if there is no history
+     */
+    public void setPager(MeasurementPager pager) {
+        if (this.pager == pager) {
+            return;
+        }
+        this.pager = pager;
+        if (pager != null) {
+            pager.refresh();
+        }
+        notifyDataSetChanged();
+        if (recyclerView != null) {
+            recyclerView.scrollToPosition(0);
+        }
+    }
+
+    /**
+     * Makes the table show the fixes that were recorded since the last refresh, with the next frame.
+     * It must be called on the main thread.
+     *
+     * @see #doFrame(long)
+     */
+    public void refresh() {
+        if (pager != null && !isFrameScheduled) {
+            isFrameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Inserts the fixes that were recorded since the last frame, with one notification for the inserted rows
+     * and one for the dropped ones. If the table was scrolled to the top, it stays there,
+     * so that the newest fix is visible.
+     *
+     * @param frameTimeNanos the time the frame started rendering
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        isFrameScheduled = false;
+        int oldSize = pager.size();
+        pager.refresh();
+        int inserted = pager.getInsertedCount();
+        int removed = pager.getRemovedCount();
+        if (inserted == 0 && removed == 0) {
+            return;
+        }
+
+        boolean wasAtTop = recyclerView != null && !recyclerView.canScrollVertically(-1);
+        if (removed > 0) {
+            notifyItemRangeRemoved(oldSize - removed, removed);
+        }
+        notifyItemRangeInserted(0, inserted);
+        if (wasAtTop) {
+            recyclerView.scrollToPosition(0);
+        }
+    }
+
+    /**
+     * Removes all fixes from the table. They are kept in the measurement history.
+     *
+     * @see MeasurementPager#clear()
+     */
+    public void clear() {
+        if (pager == null) {
+            return;
+        }
+        int size = pager.size();
+        pager.clear();
+        notifyItemRangeRemoved(0, size);
+        if (pager.size() > 0) {
+            notifyItemRangeInserted(0, pager.size());
+        }
+    }
+
+    /**
+     * Getter for the newest first view of the measurement history that the table shows
+     *
+     * @return the pager, or null if there is no history
+     */
+    public MeasurementPager getPager() {
+        return pager;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        this.recyclerView = null;
     }
 
     @NonNull
@@ -41,56 +160,66 @@ public class LogsAdapter extends RecyclerView.Adapter<LogsAdapter.ViewHolder> {
 
     @Override
     public void onBindViewHolder(@NonNull LogsAdapter.ViewHolder holder, int position) {
-        String timestamp = logResultsList.get(position).getTimestamp();
-        String xCoord = String.valueOf(logResultsList.get(position).getxCoord());
-        String yCoord = String.valueOf(logResultsList.get(position).getyCoord());
-        String distance1 = String.valueOf(logResultsList.get(position).getDistance1());
-        String distance2 = String.valueOf(logResultsList.get(position).getDistance2());
-        String distance3 = String.valueOf(logResultsList.get(position).getDistance3());
-        holder.setData(timestamp, xCoord, yCoord, distance1, distance2, distance3);
-        holder.bind(logResultsList.get(position));
+        MeasurementRecord record = pager.get(position);
+        if (record == null) {
+            holder.clear();
+        } else {
+            holder.bind(record);
+        }
     }
 
     @Override
     public int getItemCount() {
-        return logResultsList.size();
+        return pager == null ? 0 : pager.size();
     }
 
     public class ViewHolder extends RecyclerView.ViewHolder {
 
+        private TextView tag;
         private TextView timestamp;
         private TextView xCoord;
         private TextView yCoord;
-        private TextView distance1;
-        private TextView distance2;
-        private TextView distance3;
+        private TextView[] distances = new TextView[WiraPacket.PEER_COUNT];
 
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
+            tag = itemView.findViewById(R.id.tag);
             timestamp = itemView.findViewById(R.id.timestamp);
             xCoord = itemView.findViewById(R.id.x);
             yCoord = itemView.findViewById(R.id.y);
-            distance1 = itemView.findViewById(R.id.distance1);
-            distance2 = itemView.findViewById(R.id.distance2);
-            distance3 = itemView.findViewById(R.id.distance3);
+            distances[0] = itemView.findViewById(R.id.distance1);
+            distances[1] = itemView.findViewById(R.id.distance2);
+            distances[2] = itemView.findViewById(R.id.distance3);
         }
 
-        public void setData(String timestamp, String x, String y, String distance1, String distance2, String distance3) {
-            this.timestamp.setText(timestamp);
-            xCoord.setText("x: " + x);
-            yCoord.setText("y: " + y);
-            this.distance1.setText(distance1);
-            this.distance2.setText(distance2);
-            this.distance3.setText(distance3);
+        /**
+         * Formats a fix into the row.
+         *
+         * @param record the fix, which is only read during this call
+         */
+        public void bind(MeasurementRecord record) {
+            tag.setText("Tag " + MacAddress.format(record.getAddress()));
+            date.setTime(record.getTimeMillis());
+            timestamp.setText(dateFormat.format(date));
+            xCoord.setText("x: " + coordinateFormat.format(record.getX()) + " m");
+            yCoord.setText("y: " + coordinateFormat.format(record.getY()) + " m");
+            WiraPacket packet = record.getPacket();
+            for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+                distances[i].setText(WiraPayloadDecoder.formatPeerId(packet.getPeerId(i)) + ":  " + distanceFormat.format(packet.getDistance(i)) + " m");
+            }
         }
 
-        public void bind(LogResult item) {
-            timestamp.setText(item.getTimestamp());
-            xCoord.setText("x: " + item.getxCoord());
-            yCoord.setText("y: " + item.getyCoord());
-            distance1.setText(item.getDistance1());
-            distance2.setText(item.getDistance2());
-            distance3.setText(item.getDistance3());
+        /**
+         * Empties the row of a fix that is no longer in the measurement history.
+         */
+        public void clear() {
+            tag.setText("");
+            timestamp.setText("");
+            xCoord.setText("");
+            yCoord.setText("");
+            for (TextView distance : distances) {
+                distance.setText("");
+            }
         }
     }
 }
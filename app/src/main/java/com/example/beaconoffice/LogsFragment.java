@@ -2,6 +2,7 @@ package com.example.beaconoffice;
 
 import android.content.Context;
 import android.os.Bundle;
+import android.util.Log;
 import android.util.Patterns;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -15,7 +16,7 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
 
@@ -25,22 +26,19 @@ import java.util.Date;
  * and provides the user with the ability to send the table's data to an e-mail address of their choice.
  * @author Aikaterini - Maria Panteleaki
  * @version 1.0
- * @see SendMailAPI
+ * @see MailDispatcher
  * @see LogsAdapter
- * @see LogResult
+ * @see MeasurementPager
  * @since 31/8/2022
  */
 public class LogsFragment extends Fragment {
 
     private MainActivity mainActivity;
-    private HomeFragment home = new HomeFragment();
     private RecyclerView recyclerView;
     private LinearLayoutManager layoutManager;
-    private ArrayList<LogResult> logResultsList = new ArrayList<LogResult>();
     private EditText emailAddress;
     private TextView title;
     private Button sendButton;
-    private SendMailAPI sender;
     private Context context;
 
     /**
@@ -77,6 +75,7 @@ public class LogsFragment extends Fragment {
         layoutManager = new LinearLayoutManager(getContext());
         layoutManager.setOrientation(RecyclerView.VERTICAL);
         recyclerView.setLayoutManager(layoutManager);
+        setAdapter(((MainActivity) requireActivity()).logsAdapter);
         sendButton = view.findViewById(R.id.send_button);
         emailAddress = view.findViewById(R.id.textEmailAddress);
 
@@ -89,8 +88,9 @@ public class LogsFragment extends Fragment {
                 } else {
                     if (isValidEmail(emailAddress.getText().toString())) {
                         emailAddress.onEditorAction(EditorInfo.IME_ACTION_DONE);
-                        sendEmail();
-                        mainActivity.showSnackBar("Sending email...");
+                        if (sendEmail()) {
+                            mainActivity.showSnackBar("Sending email...");
+                        }
                     } else {
                         mainActivity.showSnackBar("Please give a valid e-mail address");
                     }
@@ -109,22 +109,58 @@ public class LogsFragment extends Fragment {
     /**
      * Sets up the e-mail message content and sends it to the given e-mail address.
      * The title will consist of the phrase "BeacOnOffice Log Results at: " and the timestamp
-     * of the time that the message was sent. The recipient is given by the user as text input
-     * and the body is created in HomeFragment class.
+     * of the time that the message was sent. The recipient is given by the user as text input.
+     * The fixes of the "Measurement Results" table are attached as a compressed CSV file,
+     * which is streamed from the measurement history while the message is sent.
+     * The message is queued in the outbox and sent in the background, so it is not lost if
+     * the device is offline or the application gets closed.
+     * The user gets informed if it cannot be queued, e.g. before the tracking service is bound.
      *
+     * @return true if the message has been queued
      * @author Aikaterini - Maria Panteleaki
-     * @see HomeFragment#getEmailBody()
-     * @see SendMailAPI
+     * @see MailDispatcher#enqueue(MailJob)
+     * @see MeasurementAttachment
      * @since 5/8/2022
      */
-    public void sendEmail() {
+    public boolean sendEmail() {
+        MailDispatcher mailDispatcher = mainActivity.getMailDispatcher();
+        if (mailDispatcher == null) {
+            mainActivity.showSnackBar("The e-mail cannot be queued yet, please try again");
+            return false;
+        }
         Date currentTime = Calendar.getInstance().getTime();
         String subject = "BeacOnOffice Log Results at: "+ currentTime;
-        String message = home.getEmailBody();
+        MeasurementPager pager = mainActivity.logsAdapter.getPager();
+        long fromIndex = pager == null ? 0 : pager.getFirstIndex();
+        long toIndex = pager == null ? 0 : pager.getEndIndex();
+        String message = getEmailBody(toIndex - fromIndex);
         String to = emailAddress.getText().toString();
 
-        sender = new SendMailAPI(context, to, subject, message);
-        sender.execute();
+        try {
+            mailDispatcher.enqueue(new MailJob(to, subject, message, fromIndex, toIndex));
+        } catch (IOException e) {
+            Log.e("E-mail", "Cannot queue the e-mail", e);
+            mainActivity.showSnackBar("The e-mail cannot be queued: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates the text of the e-mail message.
+     * @param recordCount the number of fixes in the attachment
+     * @return the text of the e-mail message
+     */
+    private String getEmailBody(long recordCount) {
+        StringBuilder body = new StringBuilder("Dear user,\n\n");
+        if (recordCount > 0) {
+            body.append("The Log results of BeacOnOffice measurements (").append(recordCount)
+                    .append(" positions) are attached as a compressed CSV file.");
+        } else {
+            body.append("There are no Log results to show");
+        }
+        body.append("\n\nRegards, \nthe BeacOnOffice Team");
+        return body.toString();
     }
 
     /**
@@ -139,13 +175,14 @@ public class LogsFragment extends Fragment {
 
     /**
      * Fills the content of "Measurement Results" table with the adapter data.
+     * It is called once, when the page gets created; the adapter then notifies the table about every change.
      * @param adapter LogsAdapter object that holds the data which need to be
      *                shown to the user.
-     * @see MainActivity#addLogList(LogResult)
+     * @see MainActivity#refreshLogs()
      * @see MainActivity#clearLogsAdapter()
      */
     public void setAdapter(LogsAdapter adapter) {
         recyclerView.setAdapter(adapter);
-        recyclerView.scrollToPosition(layoutManager.findLastVisibleItemPosition());
+        recyclerView.scrollToPosition(0);
     }
 }
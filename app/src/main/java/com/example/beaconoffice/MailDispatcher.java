@@ -0,0 +1,363 @@
+package com.example.beaconoffice;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+
+/**
+ * MailDispatcher class sends the e-mails of the application in the background, from a persistent outbox.
+ * <p>
+ * Every e-mail becomes a MailJob file in the outbox directory before it is sent, so e-mails that
+ * could not be sent yet survive the restart of the application. A single worker thread drains the outbox:
+ * it connects to the SMTP server once and sends all due e-mails over the same connection.
+ * An e-mail that fails is retried later, with an exponential backoff, until it has failed maxAttempts times.
+ * The mail Session is created once, with the dispatcher.
+ *
+ * @version 1.0
+ * @see MailJob
+ * @see SmtpSettings
+ * @see MeasurementAttachment
+ */
+public class MailDispatcher {
+
+    private static final String JOB_PREFIX = "mail-";
+    private static final String JOB_SUFFIX = ".job";
+
+    /**
+     * MailDispatcher.Listener interface is notified on the worker thread about the result of every attempt.
+     */
+    public interface Listener {
+
+        /**
+         * Called when an e-mail has been sent.
+         *
+         * @param job the e-mail
+         */
+        void onSent(MailJob job);
+
+        /**
+         * Called when an attempt to send an e-mail has failed.
+         *
+         * @param job the e-mail
+         * @param cause the reason of the failure
+         * @param willRetry true if the e-mail stays in the outbox for another attempt,
+         *                  false if it has been dropped
+         */
+        void onFailed(MailJob job, Exception cause, boolean willRetry);
+    }
+
+    private final SmtpSettings settings;
+    private final File outbox;
+    private final MeasurementStore measurementStore;
+    private final Session session;
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private long initialBackoffMillis = 30_000;
+    private long maxBackoffMillis = 30 * 60_000;
+    private int maxAttempts = 8;
+    private volatile Listener listener;
+
+    // Accessed only by the worker thread
+    private ScheduledFuture<?> scheduledDrain;
+    private long scheduledDrainMillis = Long.MAX_VALUE;
+    private volatile long connectionCount = 0;
+
+    /**
+     * Class constructor
+     *
+     * @param settings the SMTP server and account
+     * @param outbox the directory of the e-mails waiting to be sent; it gets created if it does not exist
+     * @param measurementStore the measurement history that attachments are read from, or null if there is none
+     */
+    public MailDispatcher(SmtpSettings settings, File outbox, MeasurementStore measurementStore) {
+        this.settings = settings;
+        this.outbox = outbox;
+        this.measurementStore = measurementStore;
+        this.session = Session.getInstance(settings.toProperties());
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mail-dispatcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // The retries that wait for their backoff are found in the outbox at the next start
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Sets the retry policy. The delay before the n-th retry is initialBackoff * 2^(n-1), up to maxBackoff.
+     *
+     * @param initialBackoffMillis the delay before the first retry, in milliseconds
+     * @param maxBackoffMillis the longest delay between two attempts, in milliseconds
+     * @param maxAttempts the number of attempts after which an e-mail is dropped
+     */
+    public void setRetryPolicy(long initialBackoffMillis, long maxBackoffMillis, int maxAttempts) {
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts sending the e-mails that were left in the outbox.
+     */
+    public void start() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!outbox.isDirectory() && !outbox.mkdirs()) {
+                    notifyFailed(null, new IOException("Cannot create the outbox " + outbox), false);
+                    return;
+                }
+                drain();
+            }
+        });
+    }
+
+    /**
+     * Queues an e-mail. It is written to the outbox on the calling thread, so it is kept even if
+     * the dispatcher stops right after, and it is sent on the worker thread.
+     * The job file is small, so writing it does not hold the caller noticeably.
+     *
+     * @param job the e-mail to send
+     * @throws IOException if the SMTP account has no credentials, or if the e-mail cannot be written to the outbox
+     * @see SmtpSettings#hasCredentials()
+     */
+    public void enqueue(MailJob job) throws IOException {
+        if (!settings.hasCredentials()) {
+            throw new IOException("The SMTP account is not set: add SMTP_USERNAME and SMTP_PASSWORD to local.properties");
+        }
+        File file = new File(outbox, String.format(Locale.ROOT, "%s%013d-%04d%s",
+                JOB_PREFIX, System.currentTimeMillis(), sequence.getAndIncrement() % 10000, JOB_SUFFIX));
+        if (!outbox.isDirectory() && !outbox.mkdirs()) {
+            throw new IOException("Cannot create the outbox " + outbox);
+        }
+        job.write(file);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The dispatcher has stopped; the e-mail gets sent after the next start
+        }
+    }
+
+    /**
+     * Stops the worker thread once the queued drains have finished. The e-mails that were not sent
+     * stay in the outbox for the next start.
+     *
+     * @param timeoutMillis how long to wait for the e-mails that are being sent, after which they are interrupted
+     */
+    public void shutdown(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Computes the count of the e-mails in the outbox
+     *
+     * @return the requested count
+     */
+    public int getPendingCount() {
+        return listJobs().length;
+    }
+
+    /**
+     * Getter for the number of connections opened to the SMTP server
+     *
+     * @return the requested count
+     */
+    long getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Sends all the due e-mails of the outbox over one connection, then schedules the next drain
+     * for the earliest e-mail that has to wait.
+     */
+    private void drain() {
+        long now = System.currentTimeMillis();
+        long nextDue = Long.MAX_VALUE;
+        Transport transport = null;
+
+        try {
+            for (File file : listJobs()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                MailJob job;
+                try {
+                    job = MailJob.read(file);
+                } catch (IOException e) {
+                    file.delete();
+                    notifyFailed(null, e, false);
+                    continue;
+                }
+                if (job.getNextAttemptMillis() > now) {
+                    nextDue = Math.min(nextDue, job.getNextAttemptMillis());
+                    continue;
+                }
+
+                boolean connected = false;
+                try {
+                    if (transport == null || !transport.isConnected()) {
+                        transport = session.getTransport("smtp");
+                        transport.connect(settings.getHost(), settings.getPort(), settings.getUsername(), settings.getPassword());
+                        connectionCount++;
+                    }
+                    connected = true;
+                    MimeMessage message = createMessage(job);
+                    transport.sendMessage(message, message.getAllRecipients());
+                    file.delete();
+                    Listener current = listener;
+                    if (current != null) {
+                        current.onSent(job);
+                    }
+                } catch (MessagingException | RuntimeException e) {
+                    close(transport);
+                    transport = null;
+                    long retryMillis = retry(file, job, now, e);
+                    nextDue = Math.min(nextDue, retryMillis == Long.MAX_VALUE ? now + initialBackoffMillis : retryMillis);
+                    if (!connected) {
+                        // The server cannot be reached, so the other e-mails wait for the same attempt
+                        break;
+                    }
+                }
+            }
+        } finally {
+            close(transport);
+        }
+        schedule(nextDue, now);
+    }
+
+    /**
+     * Records a failed attempt of a job, or drops the job if it has failed too many times.
+     *
+     * @return the time of the next attempt, or Long.MAX_VALUE if the job was dropped
+     */
+    private long retry(File file, MailJob job, long now, Exception cause) {
+        long backoff = initialBackoffMillis << Math.min(job.getAttempts(), 30);
+        long nextAttempt = now + Math.min(maxBackoffMillis, backoff < 0 ? maxBackoffMillis : backoff);
+        job.failed(nextAttempt);
+        if (job.getAttempts() >= maxAttempts) {
+            file.delete();
+            notifyFailed(job, cause, false);
+            return Long.MAX_VALUE;
+        }
+        try {
+            job.write(file);
+        } catch (IOException e) {
+            file.delete();
+            notifyFailed(job, e, false);
+            return Long.MAX_VALUE;
+        }
+        notifyFailed(job, cause, true);
+        return nextAttempt;
+    }
+
+    private void schedule(long dueMillis, long now) {
+        if (dueMillis == Long.MAX_VALUE || executor.isShutdown()) {
+            return;
+        }
+        if (scheduledDrain != null && !scheduledDrain.isDone()) {
+            if (scheduledDrainMillis <= dueMillis) {
+                return;
+            }
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrainMillis = dueMillis;
+        scheduledDrain = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                scheduledDrainMillis = Long.MAX_VALUE;
+                drain();
+            }
+        }, Math.max(0, dueMillis - now), TimeUnit.MILLISECONDS);
+    }
+
+    private MimeMessage createMessage(MailJob job) throws MessagingException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(settings.getFromAddress()));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(job.getTo()));
+        message.setSubject(job.getSubject());
+        if (job.hasAttachment() && measurementStore != null) {
+            MimeBodyPart text = new MimeBodyPart();
+            text.setText(job.getBody());
+            MimeMultipart multipart = new MimeMultipart();
+            multipart.addBodyPart(text);
+            multipart.addBodyPart(new MeasurementAttachment(measurementStore,
+                    job.getExportFromIndex(), job.getExportToIndex(), MeasurementAttachment.FILE_NAME).toBodyPart());
+            message.setContent(multipart);
+        } else {
+            message.setText(job.getBody());
+        }
+        message.saveChanges();
+        return message;
+    }
+
+    private File[] listJobs() {
+        File[] files = outbox.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(JOB_PREFIX) && name.endsWith(JOB_SUFFIX)) {
+                files[count++] = file;
+            }
+        }
+        File[] jobs = Arrays.copyOf(files, count);
+        // The names start with the time of the job, so this is the order the e-mails were queued
+        Arrays.sort(jobs);
+        return jobs;
+    }
+
+    private void notifyFailed(MailJob job, Exception cause, boolean willRetry) {
+        Listener current = listener;
+        if (current != null) {
+            current.onFailed(job, cause, willRetry);
+        }
+    }
+
+    private static void close(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException ignored) {
+                // The connection is dropped anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.beaconoffice;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * MailJob class is one e-mail waiting in the outbox of the MailDispatcher: the recipient, the subject,
+ * the text and, optionally, the range of the measurement history to attach.
+ * The attachment is only described by its range, so a job stays small however long the history is,
+ * and the attachment gets streamed from the MeasurementStore when the job is sent.
+ * Every job is kept in its own file, so that it survives the restart of the application.
+ *
+ * @version 1.0
+ * @see MailDispatcher
+ */
+public class MailJob {
+
+    private static final String TO = "to";
+    private static final String SUBJECT = "subject";
+    private static final String BODY = "body";
+    private static final String EXPORT_FROM = "export.from";
+    private static final String EXPORT_TO = "export.to";
+    private static final String ATTEMPTS = "attempts";
+    private static final String NEXT_ATTEMPT = "next.attempt";
+
+    private final String to;
+    private final String subject;
+    private final String body;
+    private final long exportFromIndex, exportToIndex;
+    private int attempts = 0;
+    private long nextAttemptMillis = 0;
+
+    /**
+     * Class constructor
+     *
+     * @param to the e-mail address of the recipient
+     * @param subject the subject of the e-mail
+     * @param body the text of the e-mail
+     * @param exportFromIndex the index of the first fix to attach
+     * @param exportToIndex the index after the last fix to attach; equal to exportFromIndex for no attachment
+     */
+    public MailJob(String to, String subject, String body, long exportFromIndex, long exportToIndex) {
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+        this.exportFromIndex = exportFromIndex;
+        this.exportToIndex = exportToIndex;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public long getExportFromIndex() {
+        return exportFromIndex;
+    }
+
+    public long getExportToIndex() {
+        return exportToIndex;
+    }
+
+    public boolean hasAttachment() {
+        return exportToIndex > exportFromIndex;
+    }
+
+    /**
+     * Getter for the number of failed attempts to send this job
+     *
+     * @return the requested count
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Getter for the earliest time of the next attempt
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getNextAttemptMillis() {
+        return nextAttemptMillis;
+    }
+
+    /**
+     * Records a failed attempt.
+     *
+     * @param nextAttemptMillis the earliest time of the next attempt, in milliseconds since the epoch
+     */
+    public void failed(long nextAttemptMillis) {
+        attempts++;
+        this.nextAttemptMillis = nextAttemptMillis;
+    }
+
+    /**
+     * Writes the job to a file. The file is first written under a temporary name and then renamed,
+     * so a job file is never left half written.
+     *
+     * @param file the file of the job
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(TO, to);
+        properties.setProperty(SUBJECT, subject);
+        properties.setProperty(BODY, body);
+        properties.setProperty(EXPORT_FROM, String.valueOf(exportFromIndex));
+        properties.setProperty(EXPORT_TO, String.valueOf(exportToIndex));
+        properties.setProperty(ATTEMPTS, String.valueOf(attempts));
+        properties.setProperty(NEXT_ATTEMPT, String.valueOf(nextAttemptMillis));
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            properties.store(out, "BeacOnOffice outgoing e-mail");
+            out.getFD().sync();
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Cannot write " + file);
+        }
+    }
+
+    /**
+     * Reads a job from a file.
+     *
+     * @param file the file of the job
+     * @return the job
+     * @throws IOException if the file cannot be read or is not a job
+     */
+    public static MailJob read(File file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        String to = properties.getProperty(TO);
+        String subject = properties.getProperty(SUBJECT);
+        String body = properties.getProperty(BODY);
+        if (to == null || subject == null || body == null) {
+            throw new IOException(file + " is not an e-mail job");
+        }
+        try {
+            MailJob job = new MailJob(to, subject, body,
+                    Long.parseLong(properties.getProperty(EXPORT_FROM, "0")),
+                    Long.parseLong(properties.getProperty(EXPORT_TO, "0")));
+            job.attempts = Integer.parseInt(properties.getProperty(ATTEMPTS, "0"));
+            job.nextAttemptMillis = Long.parseLong(properties.getProperty(NEXT_ATTEMPT, "0"));
+            return job;
+        } catch (NumberFormatException e) {
+            throw new IOException(file + " is not an e-mail job", e);
+        }
+    }
+}
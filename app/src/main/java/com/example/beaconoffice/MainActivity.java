@@ -5,6 +5,7 @@ import androidx.activity.result.ActivityResultCallback;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.view.menu.MenuBuilder;
 import androidx.appcompat.widget.Toolbar;
@@ -16,49 +17,62 @@ import android.app.Activity;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothManager;
 import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.Bundle;
-import android.os.StrictMode;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.widget.EditText;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.tabs.TabLayout;
-import org.altbeacon.bluetooth.BluetoothMedic;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
 
 /**
  * BeacOnOffice is an application implemented during Aikaterini-Maria's internship in Dialog Semiconductor.
  * In a few words, BeacOnOffice reads all the data advertised by a specific AltBeacon device (WiRa initiator).
  * Using this data, it tries to specify the initiator's position inside the building of the company.
+ * The tracking runs in the TrackingService, to which this activity is bound for as long as it exists,
+ * so it goes on when the activity gets recreated or closed.
  *
  * @author Aikaterini - Maria Panteleaki
  * @version 1.0
  * @see HomeFragment
  * @see LogsFragment
  * @see InfoFragment
- * @see LogResult
+ * @see MeasurementStore
  * @see LogsAdapter
- * @see ScanBeacons
+ * @see TrackingService
  * @since 31/8/2022
  */
 
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity implements PositionStream.Observer {
 
     public static final int REQUEST_ENABLE_BLUETOOTH_CONNECT = 1;
     public static final int REQUEST_ENABLE_BLUETOOTH_SCAN = 2;
     public static final int REQUEST_COARSE_LOC_ENABLE = 3;
 
-    private ArrayList<LogResult> logResultsList = new ArrayList<>();
-    public LogsAdapter logsAdapter = new LogsAdapter(logResultsList, this);
+    public LogsAdapter logsAdapter;
 
-    private ScanBeacons scanBeacons;
+    private static final String RECORDINGS_DIRECTORY = "recordings";
+    private static final long SURVEY_DURATION = 10_000; // ms
+
+    private TrackingService trackingService;
     private LogsFragment logs;
     private HomeFragment home = new HomeFragment();
     private InfoFragment info = new InfoFragment();
@@ -71,15 +85,53 @@ public class MainActivity extends AppCompatActivity {
 
     private BluetoothManager bluetoothManager;
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothMedic bluetoothMedic;
     private Context context;
 
     private Bundle bundle = new Bundle();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Informs the user about the result of every e-mail, while the activity is bound to the tracking service.
+     */
+    private final MailDispatcher.Listener mailListener = new MailDispatcher.Listener() {
+        @Override
+        public void onSent(MailJob job) {
+            Log.i("E-mail", "Sent to " + job.getTo());
+            showSnackBarOnUiThread("E-mail sent to " + job.getTo());
+        }
+
+        @Override
+        public void onFailed(MailJob job, Exception cause, boolean willRetry) {
+            Log.w("E-mail", "Sending failed" + (willRetry ? ", it will be retried" : ""), cause);
+            if (job != null && !willRetry) {
+                showSnackBarOnUiThread("The e-mail to " + job.getTo() + " could not be sent");
+            }
+        }
+    };
 
-    private boolean hasStarted = false;
-    private boolean hasPaused = false;
     private boolean hasAskedToStart = false;
 
+    /**
+     * Gets the tracking service, whose measurement history gets shown in the Logs page and sent by e-mail.
+     * The toolbar menu is rebuilt, since the measurements may have been running already.
+     *
+     * @see #mailListener
+     */
+    private final ServiceConnection trackingConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            trackingService = ((TrackingService.LocalBinder) binder).getService();
+            logsAdapter.setPager(trackingService.getMeasurementPager());
+            trackingService.getMailDispatcher().setListener(mailListener);
+            invalidateOptionsMenu();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            trackingService = null;
+        }
+    };
+
     /**
      * Informs the user that the device's Bluetooth has been turned OFF.
      */
@@ -119,19 +171,20 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Sets up the visual layout of the application as well as some initial configuration parameters.
-     * Makes sure that device's Bluetooth Stack works properly
-     * Then, it sets up the Bluetooth environment and the e-mail sending feature.
+     * Then, it sets up the Bluetooth environment and binds to the tracking service,
+     * which also sends the e-mails.
      *
      * @see ViewPagerAdapter
-     * @see ScanBeacons
-     * @see #robustBleStack()
+     * @see TrackingService
      * @see #initialiseBle()
-     * @see #setUpEmail()
+     * @see #trackingConnection
      */
     @SuppressLint("UseCompatLoadingForDrawables")
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        // The measurement history is shown once the tracking service is bound
+        logsAdapter = new LogsAdapter(null);
         setContentView(R.layout.activity_main);
         context = getApplicationContext();
         logs = new LogsFragment(context);
@@ -153,15 +206,13 @@ public class MainActivity extends AppCompatActivity {
 
         info.setContext(context);
 
-        scanBeacons = new ScanBeacons(this, context);
-
-        robustBleStack();
         initialiseBle();
-        setUpEmail();
+        TrackingService.bind(this, trackingConnection);
     }
 
     /**
      * Make the options from the toolbar menu appear with their icons apart from their text titles.
+     * The titles follow the state of the tracking service.
      */
     @SuppressLint("RestrictedApi")
     @Override
@@ -171,18 +222,47 @@ public class MainActivity extends AppCompatActivity {
             ((MenuBuilder) menu).setOptionalIconsVisible(true);
         }
         overflowMenu = menu;
+        if (trackingService != null) {
+            menu.findItem(R.id.pause).setTitle(trackingService.isPaused() ? "Unpause tracking" : "Pause tracking");
+            if (trackingService.getScanBeacons().isRecording()) {
+                menu.findItem(R.id.record).setTitle("Stop recording");
+            }
+            menu.findItem(R.id.fingerprinting).setChecked(trackingService.isFingerprinting());
+        }
         return true;
     }
 
     /**
-     * Makes sure that the Bluetooth stack will work properly.
-     * The continuous use of Beacon scanning may cause problems in Bluetooth stack,
-     * but now the application will recover automatically by setting the Bluetooth power cycled.
+     * Follows the positions of the initiator while the activity is visible, to show the new fixes
+     * in the Logs page, including the ones that were recorded while it was not.
+     *
+     * @see #onPositionChanged(PositionStream)
      */
-    public void robustBleStack() {
-        bluetoothMedic = BluetoothMedic.getInstance();
-        bluetoothMedic.enablePowerCycleOnFailures(this);
-        bluetoothMedic.enablePeriodicTests(this, BluetoothMedic.SCAN_TEST);
+    @Override
+    protected void onStart() {
+        super.onStart();
+        PositionStream.getInstance().addObserver(this);
+        refreshLogs();
+    }
+
+    @Override
+    protected void onStop() {
+        PositionStream.getInstance().removeObserver(this);
+        super.onStop();
+    }
+
+    /**
+     * Shows the new fixes of the measurement history, which the tracking service has already recorded,
+     * in the Logs page.
+     *
+     * @param stream the stream with the latest position of the initiator
+     * @see #refreshLogs()
+     */
+    @Override
+    public void onPositionChanged(PositionStream stream) {
+        if (stream.hasPosition()) {
+            refreshLogs();
+        }
     }
 
     /**
@@ -197,13 +277,23 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Makes the application's main thread irresponsible for any network access, such as the e-mail sending.
-     * This means that e-mail sending will be executed in background.
+     * Getter for the e-mail sending, which is executed in background by the tracking service,
+     * so that it is not interrupted when the activity gets recreated.
+     *
+     * @return the dispatcher, or null while the tracking service is not bound yet
+     * @see TrackingService#getMailDispatcher()
      */
-    public void setUpEmail() {
-        StrictMode.ThreadPolicy policy = new StrictMode.ThreadPolicy.
-                Builder().permitAll().build();
-        StrictMode.setThreadPolicy(policy);
+    public MailDispatcher getMailDispatcher() {
+        return trackingService == null ? null : trackingService.getMailDispatcher();
+    }
+
+    private void showSnackBarOnUiThread(final String message) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                showSnackBar(message);
+            }
+        });
     }
 
     /**
@@ -227,47 +317,188 @@ public class MainActivity extends AppCompatActivity {
                 resetMeasurements();
                 return true;
             case R.id.pause:
-                if (hasStarted) {
-                    if (hasPaused) {
-                        hasPaused = false;
-                        item.setTitle("Pause tracking");
+                if (trackingService != null && trackingService.isTracking()) {
+                    if (pauseMeasurements()) {
+                        item.setTitle("Unpause tracking");
                     }
                     else {
-                        hasPaused = true;
-                        item.setTitle("Unpause tracking");
+                        item.setTitle("Pause tracking");
                     }
-                    pauseMeasurements();
                 } else
                     showSnackBar("Measurements have not started yet.");
                 return true;
             case R.id.map:
                 startActivity(new Intent(MainActivity.this, MapsActivity.class));
                 return true;
+            case R.id.record:
+                toggleRecording(item);
+                return true;
+            case R.id.survey:
+                askSurveyPoint();
+                return true;
+            case R.id.fingerprinting:
+                toggleFingerprinting(item);
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
-    public HomeFragment getHomeFragment() {
-        return home;
+    /**
+     * Unbinds from the tracking service when the activity gets closed or recreated.
+     * Running measurements go on in the foreground service; otherwise the service stops,
+     * together with the scanning, and commits the measurement history.
+     *
+     * @see TrackingService#onDestroy()
+     */
+    @Override
+    protected void onDestroy() {
+        handler.removeCallbacksAndMessages(null);
+        if (trackingService != null) {
+            trackingService.getMailDispatcher().setListener(null);
+            trackingService.cancelSurvey();
+        }
+        unbindService(trackingConnection);
+        trackingService = null;
+        super.onDestroy();
+    }
+
+    /**
+     * Starts or stops recording the received advertisements to a new file in the "recordings" directory
+     * of the application's external files, from where it can be copied to a computer and replayed.
+     *
+     * @param item the menu option, whose title follows the state of the recording
+     * @see ScanBeacons#startRecording(File)
+     * @see ReplayDriver
+     */
+    private void toggleRecording(MenuItem item) {
+        if (trackingService == null) {
+            return;
+        }
+        ScanBeacons scanBeacons = trackingService.getScanBeacons();
+        if (scanBeacons.isRecording()) {
+            long count = scanBeacons.stopRecording();
+            item.setTitle(R.string.record);
+            showSnackBar("Recorded " + count + " packets");
+            return;
+        }
+
+        File directory = getExternalFilesDir(RECORDINGS_DIRECTORY);
+        if (directory == null) {
+            directory = new File(getFilesDir(), RECORDINGS_DIRECTORY);
+        }
+        String name = "packets-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date()) + ".wpr";
+        try {
+            scanBeacons.startRecording(new File(directory, name));
+            item.setTitle("Stop recording");
+            showSnackBar("Recording packets to " + name);
+        } catch (IOException e) {
+            Log.e("Packet recording", "Cannot start the packet recording", e);
+            showSnackBar("Cannot record packets");
+        }
+    }
+
+    /**
+     * Asks the user for the coordinates of the spot where they hold the initiator, then captures
+     * its fingerprint for a few seconds and adds it to the radio map of the floor.
+     * The measurements have to run meanwhile.
+     *
+     * @see #surveyPoint(double, double)
+     */
+    private void askSurveyPoint() {
+        if (trackingService == null || !trackingService.isTracking()) {
+            showSnackBar("Measurements have not started yet.");
+            return;
+        }
+        if (trackingService.isSurveying()) {
+            showSnackBar("A point is already being surveyed");
+            return;
+        }
+        final View view = getLayoutInflater().inflate(R.layout.survey_dialog, null);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.survey)
+                .setView(view)
+                .setNegativeButton(android.R.string.cancel, null)
+                .setPositiveButton(R.string.ok, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        try {
+                            double x = Double.parseDouble(((EditText) view.findViewById(R.id.survey_x)).getText().toString());
+                            double y = Double.parseDouble(((EditText) view.findViewById(R.id.survey_y)).getText().toString());
+                            surveyPoint(x, y);
+                        } catch (NumberFormatException e) {
+                            showSnackBar("The coordinates are not valid");
+                        }
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Captures the fingerprint of a spot while the user holds the initiator still there.
+     *
+     * @param x the x coordinate of the spot, in meters
+     * @param y the y coordinate of the spot, in meters
+     * @see TrackingService#startSurvey()
+     * @see TrackingService#finishSurvey(double, double)
+     */
+    private void surveyPoint(final double x, final double y) {
+        trackingService.startSurvey();
+        showSnackBar("Hold the initiator still for " + SURVEY_DURATION / 1000 + " seconds");
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (trackingService == null) {
+                    return;
+                }
+                try {
+                    int count = trackingService.finishSurvey(x, y);
+                    showSnackBar("Point surveyed, the radio map has " + count + " points");
+                } catch (IllegalStateException e) {
+                    showSnackBar("Too few packets were received, the point was not surveyed");
+                } catch (IOException e) {
+                    Log.e("Survey", "Cannot save the radio map", e);
+                    showSnackBar("Cannot save the radio map");
+                }
+            }
+        }, SURVEY_DURATION);
+    }
+
+    /**
+     * Switches between estimating the positions from the surveyed fingerprints and from the distances.
+     *
+     * @param item the menu option, whose check mark follows the mode
+     * @see TrackingService#setFingerprinting(boolean)
+     */
+    private void toggleFingerprinting(MenuItem item) {
+        if (trackingService == null) {
+            return;
+        }
+        boolean fingerprinting = !item.isChecked();
+        if (!trackingService.setFingerprinting(fingerprinting)) {
+            showSnackBar("Survey some points first");
+            return;
+        }
+        item.setChecked(fingerprinting);
+        showSnackBar(fingerprinting ? "Positioning from the radio map" : "Positioning from the distances");
     }
 
     /**
      * Starts the measurements by reading data from the AltBeacon initiator.
      * Before that, it makes sure that the device has all the required permissions granted.
+     * The measurements run in the tracking service, which goes on when the application is not visible.
      * @see #checkPermissions()
      * @see #getPermissions()
-     * @see ScanBeacons#scanAltBeacons()
+     * @see TrackingService#startTracking()
      */
     public void startMeasurements() {
         if (!checkPermissions()) {
             getPermissions();
+        } else if (trackingService == null) {
+            showSnackBar("The tracking service is not ready yet");
         } else {
-            hasPaused = false;
-            overflowMenu.getItem(1).setTitle("Pause tracking");
-            scanBeacons.scanAltBeacons();
+            overflowMenu.findItem(R.id.pause).setTitle("Pause tracking");
+            trackingService.startTracking();
             showSnackBar("Measurements have started");
-            hasStarted = true;
-            Log.i("Measurements State", "----------------Measurements started----------------");
         }
     }
 
@@ -360,29 +591,33 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Pauses or unpauses the measurements.
-     * @see ScanBeacons#pauseAltBeacons()
+     * The user gets informed in both cases.
+     * @return true if the measurements are paused now
+     * @see TrackingService#pauseTracking()
      */
-    public void pauseMeasurements() {
+    public boolean pauseMeasurements() {
         bundle.putString("pause", "do");
         home.setArguments(bundle);
-        scanBeacons.pauseAltBeacons();
+        boolean paused = trackingService.pauseTracking();
+        showSnackBar(paused ? "Measurements paused" : "Measurements unpaused");
+        return paused;
     }
 
     /**
      * Resets the measurements' parameters in all program's classes.
-     * @see ScanBeacons#resetAltBeacons()
+     * @see TrackingService#resetTracking()
      */
     public void resetMeasurements() {
         bundle.putString("reset", "do");
         home.setArguments(bundle);
         home.resetApplication();
-        scanBeacons.resetAltBeacons();
+        if (trackingService != null) {
+            trackingService.resetTracking();
+        }
         showSnackBar("BeacOnOffice has been reset");
         Log.i("Measurements State", "----------------Reset----------------");
-        hasStarted = false;
-        hasPaused = false;
         hasAskedToStart = false;
-        overflowMenu.getItem(1).setTitle("Pause tracking");
+        overflowMenu.findItem(R.id.pause).setTitle("Pause tracking");
     }
 
     /**
@@ -390,20 +625,16 @@ public class MainActivity extends AppCompatActivity {
      * @see HomeFragment#resetApplication()
      */
     public void clearLogsAdapter() {
-        logResultsList.clear();
-        logsAdapter.notifyDataSetChanged();
-        logs.setAdapter(logsAdapter);
+        logsAdapter.clear();
     }
 
     /**
-     * Refreshes the table of Measurement Results' when a new position gets calculated.
-     * @param logResult information about a single position estimation, that is shown to the user
+     * Shows the new fixes of the measurement history at the top of the table of Measurement Results,
+     * when a new position gets calculated.
+     * @see LogsAdapter#refresh()
      */
-    public void addLogList(LogResult logResult) {
-        logResultsList.add(logResult);
-        Collections.reverse(logResultsList);
-        logsAdapter.notifyDataSetChanged();
-        logs.setAdapter(logsAdapter);
+    public void refreshLogs() {
+        logsAdapter.refresh();
     }
 
     /**
@@ -8,6 +8,9 @@ import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.Menu;
@@ -27,8 +30,11 @@ import com.google.android.gms.maps.SupportMapFragment;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.Marker;
 import com.google.android.gms.maps.model.MarkerOptions;
+import com.google.android.gms.maps.model.Polyline;
+import com.google.android.gms.maps.model.PolylineOptions;
 
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An activity that displays a Google map with a marker (pin) to indicate a particular location.
@@ -36,14 +42,21 @@ import java.util.Objects;
  * After that, a Google map appears with the WiRa initiator device's location, provided that the location
  * tracking has started. The GPS coordinates get calculated only by using the relative position of the
  * initiator inside the office and not by taking into consideration the GPS location of the Android device.
+ * While the map is shown, the marker follows the initiator and a line shows the trail of its recent positions.
  *
  * @author Aikaterini - Maria Panteleaki
  * @version 1.0
  * @see MainActivity
+ * @see PositionStream
  * @since 31/8/2022
  */
 
-public class MapsActivity extends AppCompatActivity implements OnMapReadyCallback {
+public class MapsActivity extends AppCompatActivity implements OnMapReadyCallback, PositionStream.Observer {
+
+    // The map is updated at most this often, however fast the fixes arrive
+    private static final long UPDATE_INTERVAL_MILLIS = 250;
+    // Trail points closer than this to the simplified line are not drawn
+    private static final double TRAIL_TOLERANCE_METERS = 0.3;
 
     private Toolbar toolbar;
     private View popupViewCoords;
@@ -54,6 +67,26 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
     private double latitude;
     private double longitude;
 
+    private final PositionStream positionStream = PositionStream.getInstance();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final int[] trailIndices = new int[PositionStream.TRAIL_CAPACITY];
+    private final List<LatLng> trailPoints = new ArrayList<>();
+    private GoogleMap googleMap;
+    private Marker marker;
+    private Polyline trail;
+    private boolean isStarted = false;
+    private boolean isUpdateScheduled = false;
+    private long lastUpdateMillis;
+
+    private final Runnable updateMap = new Runnable() {
+        @Override
+        public void run() {
+            isUpdateScheduled = false;
+            lastUpdateMillis = SystemClock.uptimeMillis();
+            updateMap();
+        }
+    };
+
     /**
      * Sets up the visual layout of the map display.
      */
@@ -118,6 +151,28 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Follows the position of the initiator while the map is visible.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        isStarted = true;
+        if (googleMap != null) {
+            positionStream.addObserver(this);
+            updateMap();
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        isStarted = false;
+        positionStream.removeObserver(this);
+        handler.removeCallbacks(updateMap);
+        isUpdateScheduled = false;
+    }
+
     /**
      * Manipulates the map when it's available. The API invokes this callback when the map is ready to be used.
      *
@@ -128,15 +183,31 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
      * If there is an available location point though, the function retrieves the GPS coordinates
      * of the WiRa initiator and creates a marker. When the user clicks on that marker,
      * a popup window shows containing the location's GPS coordinates.
+     * From then on, the map follows every new position of the initiator.
      *
-     * @see HomeFragment#calculateGpsCoordinates(double, double)
+     * @see TrackingService#showPosition(PositionSnapshot)
+     * @see #onPositionChanged(PositionStream)
      * @see #setPopUp(String)
      */
     @Override
     public void onMapReady(GoogleMap googleMap) {
+        this.googleMap = googleMap;
+        googleMap.getUiSettings().setMapToolbarEnabled(false);
+        trail = googleMap.addPolyline(new PolylineOptions().color(getResources().getColor(R.color.purple_500, null)).width(8));
 
+        googleMap.setOnMarkerClickListener(new GoogleMap.OnMarkerClickListener() {
+            @Override
+            public boolean onMarkerClick(@NonNull Marker marker) {
+                String marketText = "Latitude: " + latitude + "\nLongitude: " + longitude;
+                popupWindowCoords.update();
+                popupWindowCoords.setElevation(20);
+                popupWindowCoords.showAtLocation(findViewById(R.id.map_frame), Gravity.NO_GRAVITY, findViewById(R.id.map_frame).getLeft() + 50, findViewById(R.id.map_frame).getBottom() - 150);
+                popupCoordsTextView.setText(marketText);
+                return false;
+            }
+        });
 
-        if (HomeFragment.currentCoordinates[0] == null && HomeFragment.currentCoordinates[1] == null) {
+        if (!positionStream.hasPosition()) {
             latitude = 5.558562;
             longitude = -0.200923;
             LatLng accra = new LatLng(latitude, longitude);
@@ -145,29 +216,67 @@ public class MapsActivity extends AppCompatActivity implements OnMapReadyCallbac
 
             String message = "There is not any\navailable location yet";
             setPopUp(message);
+        }
+
+        if (isStarted) {
+            positionStream.addObserver(this);
+            updateMap();
+        }
+    }
 
-            return ;
+    /**
+     * Gets called for every new position of the initiator. The map is redrawn at most once every
+     * UPDATE_INTERVAL_MILLIS, with the latest position; the positions in between only extend the trail.
+     *
+     * @param stream the stream of the initiator's positions
+     * @see #updateMap()
+     */
+    @Override
+    public void onPositionChanged(PositionStream stream) {
+        if (isUpdateScheduled) {
+            return;
+        }
+        isUpdateScheduled = true;
+        handler.postAtTime(updateMap, Math.max(SystemClock.uptimeMillis(), lastUpdateMillis + UPDATE_INTERVAL_MILLIS));
+    }
+
+    /**
+     * Moves the marker to the latest position of the initiator and redraws its trail.
+     * The marker is created once, the first time there is a position, and then only moved.
+     * The trail is simplified before it is drawn, and it never has more than
+     * PositionStream.TRAIL_CAPACITY points, however long the session is.
+     *
+     * @see GeoTrail#simplify(double, int[])
+     */
+    private void updateMap() {
+        if (!positionStream.hasPosition()) {
+            if (marker != null) {
+                marker.setVisible(false);
+            }
+            trailPoints.clear();
+            trail.setPoints(trailPoints);
+            return;
         }
 
-        latitude = HomeFragment.currentCoordinates[0];
-        longitude = HomeFragment.currentCoordinates[1];
+        latitude = positionStream.getLatitude();
+        longitude = positionStream.getLongitude();
         LatLng currentPosition = new LatLng(latitude, longitude);
-        String marketText = "Latitude: " + latitude + "\nLongitude: " + longitude;
-        googleMap.addMarker(new MarkerOptions().position(currentPosition));
-        googleMap.moveCamera(CameraUpdateFactory.newLatLng(currentPosition));
-        googleMap.moveCamera(CameraUpdateFactory.zoomTo(18));
-        googleMap.getUiSettings().setMapToolbarEnabled(false);
+        if (marker == null) {
+            marker = googleMap.addMarker(new MarkerOptions().position(currentPosition));
+            googleMap.moveCamera(CameraUpdateFactory.newLatLng(currentPosition));
+            googleMap.moveCamera(CameraUpdateFactory.zoomTo(18));
+        } else {
+            marker.setPosition(currentPosition);
+            marker.setVisible(true);
+        }
 
-        googleMap.setOnMarkerClickListener(new GoogleMap.OnMarkerClickListener() {
-            @Override
-            public boolean onMarkerClick(@NonNull Marker marker) {
-                popupWindowCoords.update();
-                popupWindowCoords.setElevation(20);
-                popupWindowCoords.showAtLocation(findViewById(R.id.map_frame), Gravity.NO_GRAVITY, findViewById(R.id.map_frame).getLeft() + 50, findViewById(R.id.map_frame).getBottom() - 150);
-                popupCoordsTextView.setText(marketText);
-                return false;
-            }
-        });
+        GeoTrail geoTrail = positionStream.getTrail();
+        int count = geoTrail.simplify(TRAIL_TOLERANCE_METERS, trailIndices);
+        trailPoints.clear();
+        for (int i = 0; i < count; i++) {
+            trailPoints.add(new LatLng(geoTrail.getLatitude(trailIndices[i]), geoTrail.getLongitude(trailIndices[i])));
+        }
+        trail.setPoints(trailPoints);
     }
 
     /**
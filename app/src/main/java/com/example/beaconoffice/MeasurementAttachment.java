@@ -0,0 +1,112 @@
+package com.example.beaconoffice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeBodyPart;
+
+/**
+ * MeasurementAttachment class is the e-mail attachment with a range of the measurement history,
+ * as a gzip-compressed CSV file.
+ * The attachment is never built in memory: when the message gets written to the SMTP connection,
+ * the records are read from the MeasurementStore, compressed and base64-encoded on the fly.
+ * Every fix has its GPS coordinates in the office as well.
+ *
+ * @version 1.0
+ * @see MeasurementCsvWriter
+ * @see MailDispatcher
+ */
+public class MeasurementAttachment extends DataHandler {
+
+    public static final String CONTENT_TYPE = "application/gzip";
+    public static final String FILE_NAME = "beaconoffice-measurements.csv.gz";
+
+    private final MeasurementStore store;
+    private final long fromIndex, toIndex;
+
+    /**
+     * Class constructor
+     *
+     * @param store the measurement history
+     * @param fromIndex the index of the first record
+     * @param toIndex the index after the last record
+     * @param fileName the name of the attached file, e.g. {@value #FILE_NAME}
+     */
+    public MeasurementAttachment(MeasurementStore store, long fromIndex, long toIndex, String fileName) {
+        super(new StreamedDataSource(fileName));
+        this.store = store;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+    }
+
+    /**
+     * Computes the count of the fixes of the attachment
+     *
+     * @return the requested count
+     */
+    public long getRecordCount() {
+        return Math.max(0, toIndex - Math.max(fromIndex, store.getFirstIndex()));
+    }
+
+    /**
+     * Streams the compressed CSV into the MIME part that is being written.
+     *
+     * @param out the stream of the MIME part, which encodes it in base64
+     * @throws IOException if the history cannot be read or the stream cannot be written
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        new MeasurementCsvWriter(LocalTangentPlane.office()).writeGzip(store, fromIndex, toIndex, out);
+    }
+
+    /**
+     * Creates the MIME part of the attachment. Its encoding is set from the beginning,
+     * so that JavaMail does not read the data once more to choose one.
+     *
+     * @return the MIME part, ready to be added to a multipart message
+     * @throws MessagingException if the headers cannot be set
+     */
+    public MimeBodyPart toBodyPart() throws MessagingException {
+        MimeBodyPart part = new MimeBodyPart();
+        part.setDataHandler(this);
+        part.setFileName(getName());
+        part.setHeader("Content-Type", CONTENT_TYPE + "; name=\"" + getName() + "\"");
+        part.setHeader("Content-Transfer-Encoding", "base64");
+        return part;
+    }
+
+    /**
+     * Describes the attachment to JavaMail; the data itself is only written through writeTo.
+     */
+    private static final class StreamedDataSource implements DataSource {
+
+        private final String name;
+
+        StreamedDataSource(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            throw new IOException("The measurement export can only be streamed with writeTo");
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("The measurement export is read only");
+        }
+
+        @Override
+        public String getContentType() {
+            return CONTENT_TYPE;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
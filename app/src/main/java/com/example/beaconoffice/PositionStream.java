@@ -0,0 +1,191 @@
+package com.example.beaconoffice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PositionStream class is the place where the position of the initiator is published,
+ * every time the tracking service gets a new fix, and where any screen can subscribe to it.
+ * The position is kept both in meters on the floor, with the AltBeacons it was computed from,
+ * and in GPS coordinates. Besides the latest position, it keeps the recent trail of the initiator
+ * in a bounded GeoTrail.
+ * There is one stream for the whole application and it must only be used from the main thread.
+ *
+ * @version 1.0
+ * @see TrackingService#showPosition(PositionSnapshot)
+ * @see HomeFragment
+ * @see MapsActivity
+ */
+public class PositionStream {
+
+    /**
+     * The number of recent positions that are kept in the trail.
+     */
+    public static final int TRAIL_CAPACITY = 1024;
+
+    private static final PositionStream INSTANCE = new PositionStream(TRAIL_CAPACITY);
+
+    /**
+     * Observer interface is implemented by the screens that follow the position of the initiator.
+     * It is called on the main thread for every published position, so it should only
+     * schedule its work and return.
+     */
+    public interface Observer {
+
+        /**
+         * Called when a new position has been published or the positions have been cleared.
+         *
+         * @param stream the stream, whose latest position and trail can be read during this call
+         */
+        void onPositionChanged(PositionStream stream);
+    }
+
+    private final GeoTrail trail;
+    private final List<Observer> observers = new ArrayList<>();
+    private final AnchorMask activeAnchors = new AnchorMask();
+    private boolean hasPosition;
+    private double x, y;
+    private boolean walkable;
+    private double latitude;
+    private double longitude;
+
+    /**
+     * Class constructor
+     *
+     * @param trailCapacity the number of recent positions that are kept in the trail
+     */
+    PositionStream(int trailCapacity) {
+        trail = new GeoTrail(trailCapacity);
+    }
+
+    /**
+     * Getter for the stream of the application
+     *
+     * @return the single PositionStream instance
+     */
+    public static PositionStream getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publishes a new position of the initiator on the floor and on the earth,
+     * appends it to the trail and notifies the observers.
+     *
+     * @param x the x coordinate in meters
+     * @param y the y coordinate in meters
+     * @param walkable false if the solved position was outside the floor or inside a closed office
+     * @param activeAnchors the AltBeacons that contribute to the position, which get copied
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     */
+    public void publish(double x, double y, boolean walkable, AnchorMask activeAnchors, double latitude, double longitude) {
+        this.x = x;
+        this.y = y;
+        this.walkable = walkable;
+        this.activeAnchors.copyFrom(activeAnchors);
+        publish(latitude, longitude);
+    }
+
+    /**
+     * Publishes a new GPS position of the initiator, appends it to the trail and notifies the observers.
+     *
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     */
+    public void publish(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        hasPosition = true;
+        trail.add(latitude, longitude);
+        notifyObservers();
+    }
+
+    /**
+     * Forgets the latest position and the trail, e.g. when the measurements get reset,
+     * and notifies the observers.
+     */
+    public void clear() {
+        hasPosition = false;
+        activeAnchors.clear();
+        trail.clear();
+        notifyObservers();
+    }
+
+    /**
+     * Checks if any position has been published since the application started or the last clear.
+     *
+     * @return true if there is a latest position
+     */
+    public boolean hasPosition() {
+        return hasPosition;
+    }
+
+    /**
+     * Getter for the x coordinate of the latest position, kept inside the floor
+     *
+     * @return the x coordinate in meters
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Getter for the y coordinate of the latest position, kept inside the floor
+     *
+     * @return the y coordinate in meters
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Checks if the latest position was on the walkable part of the floor as it was solved.
+     *
+     * @return false if it was outside the floor or inside a closed office
+     */
+    public boolean isWalkable() {
+        return walkable;
+    }
+
+    /**
+     * Getter for the AltBeacons that contribute to the latest position
+     *
+     * @return the mask of the AltBeacons, which must not be changed
+     */
+    public AnchorMask getActiveAnchors() {
+        return activeAnchors;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Getter for the recent positions of the initiator
+     *
+     * @return the trail, which must only be read on the main thread
+     */
+    public GeoTrail getTrail() {
+        return trail;
+    }
+
+    public void addObserver(Observer observer) {
+        if (!observers.contains(observer)) {
+            observers.add(observer);
+        }
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    private void notifyObservers() {
+        for (int i = observers.size() - 1; i >= 0; i--) {
+            observers.get(i).onPositionChanged(this);
+        }
+    }
+}
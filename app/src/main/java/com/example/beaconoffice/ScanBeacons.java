@@ -1,50 +1,84 @@
 package com.example.beaconoffice;
 
 import android.content.Context;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.RemoteException;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
 import org.altbeacon.beacon.Beacon;
 import org.altbeacon.beacon.BeaconManager;
 import org.altbeacon.beacon.BeaconParser;
 import org.altbeacon.beacon.MonitorNotifier;
 import org.altbeacon.beacon.RangeNotifier;
 import org.altbeacon.beacon.Region;
-import java.text.DecimalFormat;
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
-import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
  * ScanBeacons class is responsible for reading the advertised data from a specific WiRa initiator.
- * When the application notices a packet with fresh content, it retrieves this data and applies
- * the mathematical algorithm to compute the initiator's position inside the building.
+ * When the application notices a packet, it hands this data to the TrackingPipeline, which applies
+ * the mathematical algorithm to compute the initiator's position inside the building on its own thread.
+ * The latest position is delivered back to the TrackingService on the main thread, at most once per frame.
+ * The timing of the scanner follows what the shown tag is doing, as decided by a ScanPolicy.
  *
  * @author Aikaterini - Maria Panteleaki
  * @version 1.0
- * @see MainActivity
- * @see HomeFragment
+ * @see TrackingService
+ * @see TrackingPipeline
+ * @see ScanScheduler
  * @since 31/8/2022
  */
-public class ScanBeacons {
-
-    private final double[][] ALTBEACONS = {
-            {0, 0}, {6, 0}, {5, 4}, {13.8, 0}, {17.9, 4.3}, {5, 10.8}, {5, 19}, {0.6, 14.5}, {11, 19.8}, {0, 21.9}, {5, 26.9}, {10.6, 32.6}
+public class ScanBeacons implements PositionListener, Choreographer.FrameCallback {
+
+    public static final double PROCESS_NOISE = 0.5; // m^2/s^3, a walking person
+    public static final double MEASUREMENT_NOISE = 1.0; // m^2
+    private static final double MIN_MOVEMENT = 0.3; // m
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int LOW_BATTERY = 15; // %
+    private final TrackingService trackingService;
+    private final TagTracker tagTracker;
+    private final TrackingPipeline pipeline;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final ScanScheduler scanScheduler = new ScanScheduler(new AdaptiveScanPolicy());
+    private final BatteryManager batteryManager;
+    private final PowerManager powerManager;
+    private final Runnable scheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(ScanBeacons.this);
+        }
     };
-    private final MainActivity mainActivity;
-    private double[] result;
-    private Long oldCounter;
     private BeaconManager beaconManager;
-    private DataList dataList = new DataList();
     private Region region;
     private boolean isPaused = false;
+    private volatile PacketRecorder recorder;
 
     /**
      * Class constructor that sets up the Beacon scanner by defining the region that will be scanned
      * and by stating that the scanner will look only for ALtBeacons.
+     *
+     * @param trackingService the service that owns the scanner, with the floor configuration and the history
      */
-    public ScanBeacons(MainActivity mainActivity, Context context) {
-        this.mainActivity = mainActivity;
+    public ScanBeacons(TrackingService trackingService) {
+        this.trackingService = trackingService;
+        this.tagTracker = trackingService.getTagTracker();
+        pipeline = new TrackingPipeline(trackingService.getAnchorRegistry(), tagTracker, FloorPlan.office(),
+                QUEUE_CAPACITY, MEASUREMENT_NOISE, MIN_MOVEMENT);
+        pipeline.setListener(this);
+        pipeline.setMeasurementStore(trackingService.getMeasurementStore());
+        pipeline.setRangingModel(trackingService.getRangingModel());
+        Context context = trackingService.getApplicationContext();
         beaconManager = BeaconManager.getInstanceForApplication(context);
+        batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
         beaconManager.getBeaconParsers().add(new BeaconParser("AltBeacon").
                 setBeaconLayout("m:2-3=beac,i:4-19,i:20-21,i:22-23,p:24-24,d:25-25"));
         //This was the Beacon layout for AltBeacons
@@ -52,12 +86,14 @@ public class ScanBeacons {
     }
 
     /**
-     * Starts scanning for AltBeacons with period 500ms.
+     * Starts scanning for AltBeacons, with the schedule of the scan policy.
      * When the scanner notices one or more Beacons, the application gets notified and
-     * tries to collect data from those beacons.
+     * tries to collect data from those beacons. At the end of every scan cycle the scan policy
+     * may change the schedule of the next cycles.
      * 
-     * @see MainActivity#startMeasurements() 
+     * @see TrackingService#startTracking()
      * @see #addData(Collection)
+     * @see #setScanPolicy(ScanPolicy)
      */
     public void scanAltBeacons() {
 
@@ -84,265 +120,330 @@ public class ScanBeacons {
             @Override
             public void didRangeBeaconsInRegion(Collection<Beacon> beacons, Region region) {
                 if (beacons.size() > 0) {
+                    recordData(beacons);
                     addData(beacons);
                 }
+                // The notifier is called at the end of every scan cycle, even when nothing was seen
+                scheduleScans();
             }
         });
 
+        scanScheduler.reset();
+        applySchedule();
+        pipeline.start();
         beaconManager.startMonitoring(region);
         beaconManager.startRangingBeacons(region);
-
-        beaconManager.setBackgroundScanPeriod(500l); // 500 ms
-        beaconManager.setForegroundBetweenScanPeriod(500l);
     }
 
     /**
-     * Checks every AltBeacon from the beaconCollection and keeps only the advertised
-     * data from the specific WiRa initiator that the application is associated with.
+     * Checks every AltBeacon from the beaconCollection and hands the advertised data from the
+     * WiRa initiators (tags) that the application is allowed to track to the tracking pipeline.
+     * The packets are only copied here; decoding and solving happen on the tracking thread,
+     * so the beacon callback never waits for them.
      *
      * @param beaconCollection a collection of one or more AltBeacons,
      *                         that have just been scanned from the Beacon scanner.
      * @see #scanAltBeacons()
-     * @see #addBeaconValues(Beacon)
+     * @see TrackingPipeline#offer(long, long, byte[], byte[], long)
      */
     public void addData(Collection<Beacon> beaconCollection) {
+        long now = SystemClock.elapsedRealtime();
         for (Beacon currentBeacon : beaconCollection) {
-            String currentInitiatorAddress = currentBeacon.getBluetoothAddress();
-            if (currentInitiatorAddress.equals("48:23:35:00:00:AA")) {
-                addBeaconValues(currentBeacon);
+            long address = MacAddress.parse(currentBeacon.getBluetoothAddress());
+            if (tagTracker.get(address) == null || currentBeacon.getDataFields().isEmpty()) {
+                continue;
+            }
+            long counter = currentBeacon.getDataFields().get(0);
+            if (!pipeline.offer(address, counter,
+                    currentBeacon.getId1().toByteArray(), currentBeacon.getId2().toByteArray(), now)) {
+                Log.w("Beacon DEBUG", "Tracking queue full, packet dropped (" + pipeline.getDroppedCount() + " so far)");
+            }
+            if (address == pipeline.getShownAddress()) {
+                scanScheduler.onPacket(counter, now);
             }
         }
     }
 
     /**
-     * Parses the initiator's advertised packet and retrieves three blocks of values:
-     * First, the IDs of the three auxiliary Beacons that the initiator measures its distance from.
-     * Then, the RSSI values of each auxiliary Beacon.
-     * Finally, the distances of each Beacon from the initiator, in meters.
-     * These values are used to calculate the (x, y) coordinates of the initiator and then send
-     * the complete information to other classes in order to update the visual representation of
-     * the newly tracked position as well as add data to "Measurement Results" in Logs page.
+     * Asks the scan policy for the schedule of the next scan cycles, at the end of a cycle,
+     * and reconfigures the scanner if the schedule changed.
      *
-     * @param beacon the object of the WiRa initiator Beacon that the application is associated with
-     * @see #addData(Collection)
-     * @see DataList#addDataElement(ArrayList, ArrayList, ArrayList) 
-     * @see BeaconPoint
-     * @see HomeFragment#receiveCoords(double[], ArrayList) 
-     * @see #getPoint(ArrayList)
+     * @see ScanScheduler#onCycle(long, TagState, boolean)
      */
-    public void addBeaconValues(Beacon beacon) {
-
-        String data = byteArrayToHexString(beacon.getId1().toByteArray()) + byteArrayToHexString(beacon.getId2().toByteArray());
-        Log.i("Counter ", "  " + beacon.getDataFields());
-
-        ArrayList<String> peerID = new ArrayList<>();
-        ArrayList<Integer> rssi = new ArrayList<>();
-        ArrayList<Float> distance = new ArrayList<>();
-        ArrayList<String> distances = new ArrayList<>();
-        ArrayList<BeaconPoint> beaconPoint = new ArrayList<>();
-        ArrayList<Integer> indices = new ArrayList<>();
-
-        double[] init = {0, 0};
-        BeaconPoint newBeaconPoint = new BeaconPoint(init, 0);
-
-        Long newCounter = beacon.getDataFields().get(0);
-        if (!newCounter.equals(oldCounter)) {
-            oldCounter = newCounter;
+    private void scheduleScans() {
+        TagState shownTag = tagTracker.get(pipeline.getShownAddress());
+        if (scanScheduler.onCycle(SystemClock.elapsedRealtime(), shownTag, isBatteryLow())) {
+            applySchedule();
+            updateScanPeriods();
+        }
+    }
 
-            if (dataList.getSize() >= 9) {
-                dataList.clear();
-            }
+    /**
+     * Hands the schedule of the scan policy to the Beacon scanner, for the foreground and the background.
+     * A scanner that is already running only uses it after updateScanPeriods().
+     */
+    private void applySchedule() {
+        ScanSchedule schedule = scanScheduler.getSchedule();
+        beaconManager.setForegroundScanPeriod(schedule.getScanPeriodMillis());
+        beaconManager.setForegroundBetweenScanPeriod(schedule.getBetweenScanPeriodMillis());
+        beaconManager.setBackgroundScanPeriod(schedule.getScanPeriodMillis());
+        beaconManager.setBackgroundBetweenScanPeriod(schedule.getBetweenScanPeriodMillis());
+        Log.d("Beacon DEBUG", "Scan schedule " + schedule);
+    }
 
-            for (int i = 0; i < 6; i += 2) {
-                String hexnum = "" + data.charAt(i) + "" + data.charAt(i + 1);
-                peerID.add(hexnum);
-                Log.i("Peer ID ", "  " + hexnum);
-            }
+    private void updateScanPeriods() {
+        try {
+            beaconManager.updateScanPeriods();
+        } catch (RemoteException e) {
+            Log.e("Beacon DEBUG", "Cannot change the scan periods", e);
+        }
+    }
 
-            for (int i = 6; i < 12; i += 2) {
-                String hexnum = "" + data.charAt(i) + "" + data.charAt(i + 1);
-                // First convert the Hex-number into a binary number:
-                String bin = Integer.toString(Integer.parseInt(hexnum, 16), 2);
+    /**
+     * Checks if the battery of the handset is low or in power saving mode,
+     * in which case the scan policy saves even more.
+     *
+     * @return true if the battery should be spared
+     */
+    private boolean isBatteryLow() {
+        if (powerManager != null && powerManager.isPowerSaveMode()) {
+            return true;
+        }
+        if (batteryManager == null || batteryManager.isCharging()) {
+            return false;
+        }
+        int capacity = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+        return capacity > 0 && capacity <= LOW_BATTERY;
+    }
 
-                // Now create the complement (make 1's to 0's and vice versa)
-                String binCompl = bin.replace('0', 'X').replace('1', '0').replace('X', '1');
+    /**
+     * Changes the strategy that decides how often the scanner listens, e.g. to FixedScanPolicy.legacy()
+     * to keep the radio on as before, or to a policy with other settings.
+     *
+     * @param scanPolicy the policy that will decide the next scan cycles
+     * @see ScanScheduler#setPolicy(ScanPolicy)
+     */
+    public void setScanPolicy(ScanPolicy scanPolicy) {
+        if (scanScheduler.setPolicy(scanPolicy)) {
+            applySchedule();
+            updateScanPeriods();
+        }
+    }
 
-                // Now parse it back to an integer, add 1 and make it negative:
-                int result = (Integer.parseInt(binCompl, 2) + 1) * -1;
-                Log.i("RSSI value ", "  " + result + " db");
-                rssi.add(result);
-            }
+    /**
+     * Starts writing every advertisement that the scanner receives to a recording file,
+     * so that the session can be replayed later without the WiRa hardware.
+     * A recording that is already running gets finished first.
+     *
+     * @param file the recording file, which gets replaced if it exists
+     * @throws IOException if the file cannot be created
+     * @see PacketRecorder
+     * @see ReplayDriver
+     */
+    public void startRecording(File file) throws IOException {
+        stopRecording();
+        recorder = PacketRecorder.open(file);
+        Log.i("Beacon DEBUG", "Recording packets to " + file);
+    }
 
-            for (int i = 12; i < 35; i += 8) {
-                String hexnum = "";
-                for (int j = 7; j > 0; j -= 2)
-                    hexnum = hexnum + "" + data.charAt(i + j - 1) + "" + data.charAt(i + j);
+    /**
+     * Finishes the running recording, if any.
+     *
+     * @return the number of recorded advertisements
+     */
+    public long stopRecording() {
+        PacketRecorder current = recorder;
+        recorder = null;
+        if (current == null) {
+            return 0;
+        }
+        try {
+            current.close();
+        } catch (IOException e) {
+            Log.e("Beacon DEBUG", "Cannot finish the packet recording", e);
+        }
+        return current.getRecordedCount();
+    }
 
-                Long l = Long.parseUnsignedLong(hexnum, 16);
-                Float f = Float.intBitsToFloat(l.intValue());
+    public boolean isRecording() {
+        return recorder != null;
+    }
 
-                distance.add(f);
-                Log.i("Distance ", "  " + f + " m");
+    /**
+     * Writes the advertisements of all AltBeacons, as the scanner reported them, to the running recording.
+     * If the recording cannot be written, e.g. because the storage is full, it gets stopped.
+     *
+     * @param beaconCollection a collection of one or more AltBeacons,
+     *                         that have just been scanned from the Beacon scanner.
+     * @see #startRecording(File)
+     */
+    private void recordData(Collection<Beacon> beaconCollection) {
+        PacketRecorder current = recorder;
+        if (current == null) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        try {
+            for (Beacon currentBeacon : beaconCollection) {
+                current.record(now, MacAddress.parse(currentBeacon.getBluetoothAddress()),
+                        currentBeacon.getId1().toByteArray(), currentBeacon.getId2().toByteArray(),
+                        currentBeacon.getDataFields());
             }
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e("Beacon DEBUG", "Packet recording stopped", e);
+            stopRecording();
+        }
+    }
 
-            dataList.addDataElement(peerID, rssi, distance);
-
-            for (int i = 0; i < peerID.size(); i++) {
-                if (peerID.get(i).equals("F1")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[0], distance.get(i));
-                    indices.add(0);
-                } else if (peerID.get(i).equals("F2")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[1], distance.get(i));
-                    indices.add(1);
-                } else if (peerID.get(i).equals("F3")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[2], distance.get(i));
-                    indices.add(2);
-                } else if (peerID.get(i).equals("F4")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[3], distance.get(i));
-                    indices.add(3);
-                } else if (peerID.get(i).equals("F5")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[4], distance.get(i));
-                    indices.add(4);
-                } else if (peerID.get(i).equals("F6")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[5], distance.get(i));
-                    indices.add(5);
-                } else if (peerID.get(i).equals("F7")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[6], distance.get(i));
-                    indices.add(6);
-                } else if (peerID.get(i).equals("F8")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[7], distance.get(i));
-                    indices.add(7);
-                } else if (peerID.get(i).equals("F9")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[8], distance.get(i));
-                    indices.add(8);
-                } else if (peerID.get(i).equals("FA")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[9], distance.get(i));
-                    indices.add(9);
-                } else if (peerID.get(i).equals("FB")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[10], distance.get(i));
-                    indices.add(10);
-                } else if (peerID.get(i).equals("FC")) {
-                    newBeaconPoint = new BeaconPoint(ALTBEACONS[11], distance.get(i));
-                    indices.add(11);
-                }
-                beaconPoint.add(newBeaconPoint);
-                DecimalFormat decimalFormat = new DecimalFormat();
-                decimalFormat.setMaximumFractionDigits(4);
-                String currentDistance = peerID.get(i) + ":  " + decimalFormat.format(distance.get(i));
-                distances.add(currentDistance);
-            }
+    /**
+     * Called on the tracking thread when a new position of the shown tag is ready.
+     * It only schedules a frame callback on the main thread, once for all the positions
+     * that are published until that frame.
+     *
+     * @see #doFrame(long)
+     */
+    @Override
+    public void onPositionAvailable() {
+        if (frameScheduled.compareAndSet(false, true)) {
+            mainHandler.post(scheduleFrame);
+        }
+    }
 
-            for (int j = 0; j < 12; j++) {
-                HomeFragment.active[j] = indices.contains(j);
-            }
+    /**
+     * Delivers the latest position to the tracking service, at most once per frame.
+     *
+     * @param frameTimeNanos the time the frame started rendering
+     * @see TrackingService#showPosition(PositionSnapshot)
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled.set(false);
+        PositionSnapshot snapshot = pipeline.takeLatest();
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            trackingService.showPosition(snapshot);
+        } finally {
+            pipeline.recycle(snapshot);
+        }
+    }
 
-            result = getPoint(beaconPoint);
-            Log.i("Coordinates of point are", "(x, y) =   (" + result[0] + ", " + result[1] + ")");
+    /**
+     * Makes the application estimate the initiators' positions with particle filters that respect
+     * the floor plan, instead of the position solver. Every tag gets its own particle filter.
+     *
+     * @param particleCount the number of particles of every filter, or 0 to go back to the position solver
+     * @see TrackingPipeline#setParticleCount(int)
+     * @see #setPositionSolver(PositionSolver)
+     */
+    public void setParticleCount(int particleCount) {
+        pipeline.setParticleCount(particleCount);
+    }
 
-            mainActivity.getHomeFragment().receiveCoords(result, distances);
-        }
+    /**
+     * Changes the algorithm that computes the initiator's position from the measured distances.
+     *
+     * @param positionSolver the solver that will be used for the next packets
+     * @see TrackingPipeline#setPositionSolver(PositionSolver)
+     */
+    public void setPositionSolver(PositionSolver positionSolver) {
+        pipeline.setPositionSolver(positionSolver);
     }
 
     /**
-     * Implements the mathematical algorithm that calculates the position of the initiator,
-     * given the distances from three fixed positioned AltBeacons.
-     * This algorithm was designed by the intern student, George Giachnakis.
+     * Makes the application estimate the initiators' positions from the fingerprints of a surveyed
+     * radio map, which works behind the walls where the measured distances do not.
      *
-     * @param beaconPoint contains a list of three triplets (Beacon ID, RSSI, Distance) according to
-     *                    which the current initiator's position will be computed
-     * @return the (x, y) coordinates of the initiator
-     * @see #addBeaconValues(Beacon)
-     * @author George Giachnakis
+     * @param radioMap the fingerprint database of the floor, or null to go back to the distances
+     * @see TrackingPipeline#setRadioMap(RadioMap)
      */
-    public double[] getPoint(ArrayList<BeaconPoint> beaconPoint) {
-        double x1 = beaconPoint.get(0).getCoordinates()[0];
-        double y1 = beaconPoint.get(0).getCoordinates()[1];
-        double r1 = beaconPoint.get(0).getDistance();
-
-
-        double x2 = beaconPoint.get(1).getCoordinates()[0];
-        double y2 = beaconPoint.get(1).getCoordinates()[1];
-        double r2 = beaconPoint.get(1).getDistance();
-
-        double x3 = beaconPoint.get(2).getCoordinates()[0];
-        double y3 = beaconPoint.get(2).getCoordinates()[1];
-        double r3 = beaconPoint.get(2).getDistance();
-
-        double x = 0;
-        double y = 0;
-
-        double A = x1 - x2;
-        double B = y1 - y2;
-        double D = x1 - x3;
-        double E = y1 - y3;
-
-        double T = (r1 * r1 - x1 * x1 - y1 * y1);
-        double C = (r2 * r2 - x2 * x2 - y2 * y2) - T;
-        double F = (r3 * r3 - x3 * x3 - y3 * y3) - T;
-
-        double Mx = (C * E - B * F) / 2;
-        double My = (A * F - D * C) / 2;
-        double M = A * E - D * B;
-
-        if (M != 0) {
-            x = Mx / M;
-            y = My / M;
-            if (x < 0)
-                x = 0;
-            if (y < 0)
-                y = 0;
-        }
+    public void setRadioMap(RadioMap radioMap) {
+        pipeline.setRadioMap(radioMap);
+    }
 
-        double[] coordinates = {x, y};
-        return coordinates;
+    /**
+     * Hands the packets of the surveyed initiator to a survey capture while a point of the radio map
+     * is being surveyed.
+     *
+     * @param surveyCapture the running capture, or null to stop handing the packets
+     * @see TrackingPipeline#setSurveyCapture(SurveyCapture)
+     */
+    public void setSurveyCapture(SurveyCapture surveyCapture) {
+        pipeline.setSurveyCapture(surveyCapture);
     }
 
     /**
-     * Converts an array of bytes to an hexadecimal string,
-     * where every byte consists of two hex digits
-     * @param bytes the array of bytes
-     * @return the string that contains the hexadecimal representation of bytes array
+     * Getter for the tag that is shown in Home page
      *
-     * @see #addBeaconValues(Beacon)
+     * @return the packed 48-bit Bluetooth address of the tag
      */
-    public String byteArrayToHexString(final byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b & 0xff).toUpperCase(Locale.ROOT));
-        }
-        return sb.toString();
+    public long getShownAddress() {
+        return pipeline.getShownAddress();
     }
 
     /**
      * Pauses or unpauses the scanning of Beacons, according to the current state of the application.
-     * The user gets informed in both cases.
      *
-     * @see MainActivity#pauseMeasurements()
+     * @return true if the scanning is paused now
+     * @see TrackingService#pauseTracking()
      */
-    public void pauseAltBeacons() {
+    public boolean pauseAltBeacons() {
         if (!isPaused) {
             beaconManager.stopMonitoring(region);
             beaconManager.stopRangingBeacons(region);
-            mainActivity.showSnackBar("Measurements paused");
             isPaused = true;
             Log.i("Measurements State", "----------------Paused----------------");
         } else {
+            // The tag may have moved while the scanner was off
+            scanScheduler.reset();
+            applySchedule();
             beaconManager.startMonitoring(region);
             beaconManager.startRangingBeacons(region);
-            mainActivity.showSnackBar("Measurements unpaused");
+            updateScanPeriods();
             isPaused = false;
             Log.i("Measurements State", "----------------Unpaused----------------");
         }
+        return isPaused;
+    }
+
+    public boolean isPaused() {
+        return isPaused;
     }
 
     /**
-     * Resets the configuration of the Beacon scanner.
+     * Stops the scanning of Beacons. The tracking thread keeps the state of every tag,
+     * so the tracking goes on from there when the scanning starts again.
      *
-     * @see MainActivity#resetMeasurements()
+     * @see TrackingService#stopTracking()
      */
-    public void resetAltBeacons() {
-        oldCounter = null;
+    public void stopAltBeacons() {
         beaconManager.removeAllMonitorNotifiers();
         beaconManager.removeAllRangeNotifiers();
+        beaconManager.stopMonitoring(region);
+        beaconManager.stopRangingBeacons(region);
+        isPaused = false;
+    }
+
+    /**
+     * Stops the scanning of Beacons and resets the configuration of the Beacon scanner.
+     *
+     * @see TrackingService#resetTracking()
+     */
+    public void resetAltBeacons() {
+        stopAltBeacons();
+        pipeline.reset();
+    }
+
+    /**
+     * Stops the Beacon scanner, the tracking thread and any packet recording, when the service gets destroyed.
+     *
+     * @see TrackingService#onDestroy()
+     */
+    public void shutdown() {
+        stopAltBeacons();
+        pipeline.setListener(null);
+        pipeline.stop();
+        stopRecording();
     }
 }
@@ -0,0 +1,99 @@
+package com.example.beaconoffice;
+
+import java.util.Properties;
+
+/**
+ * SmtpSettings class holds the SMTP server and the account that the application sends its e-mails from.
+ *
+ * @version 1.0
+ * @see MailDispatcher
+ */
+public class SmtpSettings {
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final boolean startTls;
+    private final String fromAddress;
+
+    /**
+     * Class constructor
+     *
+     * @param host the host name of the SMTP server
+     * @param port the port of the SMTP server
+     * @param username the user name of the account, or null if the server needs no authentication
+     * @param password the password of the account
+     * @param startTls true if the connection has to be upgraded to TLS before logging in
+     * @param fromAddress the e-mail address of the sender
+     */
+    public SmtpSettings(String host, int port, String username, String password, boolean startTls, String fromAddress) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.startTls = startTls;
+        this.fromAddress = fromAddress;
+    }
+
+    /**
+     * The Gmail account of BeacOnOffice. Its address and app password are the SMTP_USERNAME and SMTP_PASSWORD
+     * entries of local.properties, which is not committed; they are empty if local.properties does not set them.
+     *
+     * @return the settings of the account
+     * @see #hasCredentials()
+     */
+    public static SmtpSettings beaconOffice() {
+        return new SmtpSettings("smtp.gmail.com", 587, BuildConfig.SMTP_USERNAME, BuildConfig.SMTP_PASSWORD,
+                true, BuildConfig.SMTP_USERNAME);
+    }
+
+    /**
+     * Checks that the account can log in: either the server needs no authentication,
+     * or both the user name and the password are set.
+     *
+     * @return true if the credentials are complete
+     */
+    public boolean hasCredentials() {
+        return username == null || (!username.isEmpty() && password != null && !password.isEmpty());
+    }
+
+    /**
+     * Creates the JavaMail properties of these settings.
+     *
+     * @return the properties of a new mail Session
+     */
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", host);
+        properties.put("mail.smtp.port", String.valueOf(port));
+        properties.put("mail.smtp.starttls.enable", String.valueOf(startTls));
+        properties.put("mail.smtp.auth", String.valueOf(username != null));
+        properties.put("mail.smtp.connectiontimeout", "20000");
+        properties.put("mail.smtp.timeout", "60000");
+        if (username != null) {
+            properties.put("mail.smtp.user", username);
+        }
+        return properties;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getFromAddress() {
+        return fromAddress;
+    }
+}
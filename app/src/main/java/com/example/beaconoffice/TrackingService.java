@@ -0,0 +1,576 @@
+package com.example.beaconoffice;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.util.Log;
+import androidx.core.app.NotificationCompat;
+import org.altbeacon.bluetooth.BluetoothMedic;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TrackingService class owns everything that tracks the WiRa initiators: the floor configuration,
+ * the Beacon scanner with its tracking pipeline and the measurement history, together with the MailDispatcher
+ * that sends the history by e-mail.
+ * It outlives the screens, so rotating the device or leaving the application neither stops the tracking
+ * nor makes it load the floor configuration and open the history again.
+ * While the measurements run, it is a foreground service with a notification, from which the tracking
+ * can also be stopped; otherwise it stops itself a few seconds after the last screen unbinds,
+ * which is long enough for a screen to be recreated, e.g. when the device gets rotated.
+ * <p>
+ * The screens bind to it with {@link #bind(Context, ServiceConnection)} and follow the latest position
+ * of the shown tag through the PositionStream, which the service feeds on the main thread, at most once per frame.
+ *
+ * @version 1.0
+ * @see ScanBeacons
+ * @see PositionStream
+ * @see MainActivity
+ */
+public class TrackingService extends Service {
+
+    /**
+     * The action of the notification that stops the tracking.
+     */
+    public static final String ACTION_STOP = "com.example.beaconoffice.action.STOP_TRACKING";
+
+    private static final String CHANNEL_ID = "tracking";
+    private static final int NOTIFICATION_ID = 1;
+    private static final long IDLE_STOP_DELAY = 10_000; // ms
+    private static final int LOGS_CACHED_PAGES = 16;
+
+    private static final String ANCHORS_FILE = "anchors.csv";
+    private static final String INITIATORS_FILE = "initiators.csv";
+    private static final String RANGING_FILE = "ranging.csv";
+    private static final String RADIO_MAP_FILE = "radiomap.bin";
+    private static final String HISTORY_DIRECTORY = "history";
+    private static final String OUTBOX_DIRECTORY = "outbox";
+
+    /**
+     * LocalBinder class is what the screens receive when they bind to the service,
+     * since they run in the same process.
+     */
+    public class LocalBinder extends Binder {
+
+        public TrackingService getService() {
+            return TrackingService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final LocalTangentPlane localTangentPlane = LocalTangentPlane.office();
+    private final FloorPlan floorPlan = FloorPlan.office();
+    private final double[] shownPoint = new double[2];
+    private final AnchorMask activeAnchors = new AnchorMask();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable stopWhenIdle = new Runnable() {
+        @Override
+        public void run() {
+            if (!isTracking && !isBound) {
+                stopSelf();
+            }
+        }
+    };
+
+    private AnchorRegistry anchorRegistry;
+    private TagTracker tagTracker;
+    private RangingModel rangingModel;
+    private RadioMap radioMap;
+    private SurveyCapture surveyCapture;
+    private boolean isFingerprinting = false;
+    private MeasurementStore measurementStore;
+    private MeasurementPager measurementPager;
+    private MailDispatcher mailDispatcher;
+    private ScanBeacons scanBeacons;
+    private boolean isTracking = false;
+    private boolean isBound = false;
+
+    /**
+     * Binds a screen to the service, which gets created if it is not running yet.
+     * The service is started too, so that it outlives the screen for a while.
+     *
+     * @param context the activity or the context of the fragment that binds
+     * @param connection receives the service, on the main thread
+     * @return true if the service is being bound
+     */
+    public static boolean bind(Context context, ServiceConnection connection) {
+        Intent intent = new Intent(context, TrackingService.class);
+        context.startService(intent);
+        return context.bindService(intent, connection, Context.BIND_AUTO_CREATE);
+    }
+
+    /**
+     * Loads the floor configuration, opens the measurement history and sets up the Beacon scanner,
+     * once for the whole life of the service.
+     *
+     * @see #loadAnchorRegistry()
+     * @see #loadTagTracker()
+     * @see #loadRangingModel()
+     * @see #loadRadioMap()
+     * @see #openMeasurementStore()
+     * @see #robustBleStack()
+     * @see MailDispatcher#start()
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        loadAnchorRegistry();
+        loadTagTracker();
+        loadRangingModel();
+        loadRadioMap();
+        openMeasurementStore();
+        measurementPager = measurementStore == null ? null : new MeasurementPager(measurementStore, LOGS_CACHED_PAGES);
+        // The e-mails that were left in the outbox the last time get sent as soon as possible
+        mailDispatcher = new MailDispatcher(SmtpSettings.beaconOffice(), new File(getFilesDir(), OUTBOX_DIRECTORY),
+                measurementStore);
+        mailDispatcher.start();
+        robustBleStack();
+        scanBeacons = new ScanBeacons(this);
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        isBound = true;
+        handler.removeCallbacks(stopWhenIdle);
+        return binder;
+    }
+
+    @Override
+    public void onRebind(Intent intent) {
+        isBound = true;
+        handler.removeCallbacks(stopWhenIdle);
+    }
+
+    /**
+     * Stops the service a while after the last screen unbinds, unless the measurements run
+     * or another screen binds meanwhile.
+     *
+     * @return true, so that onRebind() gets called when a screen binds again
+     */
+    @Override
+    public boolean onUnbind(Intent intent) {
+        isBound = false;
+        handler.postDelayed(stopWhenIdle, IDLE_STOP_DELAY);
+        return true;
+    }
+
+    /**
+     * Handles the action of the notification. The service is not restarted if the system kills it,
+     * since the measurements are only started by the user.
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            stopTracking();
+        }
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Stops scanning and tracking, lets the e-mail that is being sent finish, then commits the measurement history.
+     *
+     * @see ScanBeacons#shutdown()
+     * @see MailDispatcher#shutdown(long)
+     * @see MeasurementStore#close()
+     */
+    @Override
+    public void onDestroy() {
+        handler.removeCallbacks(stopWhenIdle);
+        scanBeacons.shutdown();
+        mailDispatcher.shutdown(1000);
+        if (measurementStore != null) {
+            measurementStore.close();
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Loads the positions of the fixed AltBeacons of the floor.
+     *
+     * @see AnchorRegistry#fromCsv(Reader)
+     * @see #openFloorConfig(String)
+     */
+    private void loadAnchorRegistry() {
+        try (Reader reader = openFloorConfig(ANCHORS_FILE)) {
+            anchorRegistry = AnchorRegistry.fromCsv(reader);
+            Log.i("Floor configuration", anchorRegistry.size() + " AltBeacons loaded");
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the floor configuration " + ANCHORS_FILE, e);
+        }
+    }
+
+    /**
+     * Loads the allow-list of the WiRa initiators (tags) that the application tracks.
+     * The first tag of the list is the one shown in Home page.
+     *
+     * @see TagTracker#allowFromCsv(Reader)
+     * @see #openFloorConfig(String)
+     */
+    private void loadTagTracker() {
+        tagTracker = new TagTracker(ScanBeacons.PROCESS_NOISE, ScanBeacons.MEASUREMENT_NOISE);
+        try (Reader reader = openFloorConfig(INITIATORS_FILE)) {
+            tagTracker.allowFromCsv(reader);
+            Log.i("Floor configuration", tagTracker.size() + " WiRa initiators allowed");
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the floor configuration " + INITIATORS_FILE, e);
+        }
+        if (tagTracker.size() == 0) {
+            throw new IllegalStateException("The floor configuration " + INITIATORS_FILE + " has no WiRa initiator");
+        }
+    }
+
+    /**
+     * Loads the calibration of the distances from the RSSI, if the floor has one. It is fitted offline
+     * from recorded sessions and only exists in the application's external files directory, since the
+     * bundled configuration of the company's office has none. Without it, or if it cannot be read,
+     * the positions are solved from the distances the initiators report.
+     *
+     * @see RangingModel#fromCsv(Reader, AnchorRegistry)
+     */
+    private void loadRangingModel() {
+        if (!new File(getExternalFilesDir(null), RANGING_FILE).isFile()) {
+            rangingModel = null;
+            return;
+        }
+        try (Reader reader = openFloorConfig(RANGING_FILE)) {
+            rangingModel = RangingModel.fromCsv(reader, anchorRegistry);
+            Log.i("Floor configuration", "Ranging calibration loaded");
+        } catch (IOException e) {
+            Log.e("Floor configuration", "Cannot read the ranging calibration " + RANGING_FILE, e);
+            rangingModel = null;
+        }
+    }
+
+    /**
+     * Loads the fingerprints of the floor that were surveyed with the application. They are kept in
+     * the application's external files directory, from where they can be copied to another device.
+     * Without a survey, or if it cannot be read, the survey starts from an empty radio map.
+     *
+     * @see RadioMap#load(File, AnchorRegistry)
+     */
+    private void loadRadioMap() {
+        File file = new File(getExternalFilesDir(null), RADIO_MAP_FILE);
+        radioMap = new RadioMap(anchorRegistry);
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            radioMap = RadioMap.load(file, anchorRegistry);
+            Log.i("Floor configuration", radioMap.size() + " surveyed points loaded");
+        } catch (IOException e) {
+            Log.e("Floor configuration", "Cannot read the radio map " + RADIO_MAP_FILE, e);
+        }
+    }
+
+    /**
+     * Opens the measurement history in the application's private files directory.
+     * If it cannot be opened, the application keeps tracking without recording the fixes.
+     *
+     * @see MeasurementStore#open(File)
+     */
+    private void openMeasurementStore() {
+        try {
+            measurementStore = MeasurementStore.open(new File(getFilesDir(), HISTORY_DIRECTORY));
+            Log.i("Measurement history", measurementStore.size() + " fixes recorded");
+        } catch (IOException e) {
+            Log.e("Measurement history", "Cannot open the measurement history", e);
+            measurementStore = null;
+        }
+    }
+
+    /**
+     * Opens a file of the floor configuration.
+     * A file with the same name in the application's external files directory takes precedence,
+     * so that the application can be used on another floor without a new build.
+     * Otherwise, the configuration of the company's office, bundled in the application's assets, is used.
+     *
+     * @param name the name of the configuration file
+     * @return a reader of the file's text
+     * @throws IOException if the file cannot be opened
+     */
+    private Reader openFloorConfig(String name) throws IOException {
+        File floorConfig = new File(getExternalFilesDir(null), name);
+        if (floorConfig.isFile()) {
+            return new InputStreamReader(new FileInputStream(floorConfig), StandardCharsets.UTF_8);
+        }
+        return new InputStreamReader(getAssets().open(name), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes sure that the Bluetooth stack will work properly.
+     * The continuous use of Beacon scanning may cause problems in Bluetooth stack,
+     * but now the application will recover automatically by setting the Bluetooth power cycled.
+     */
+    private void robustBleStack() {
+        BluetoothMedic bluetoothMedic = BluetoothMedic.getInstance();
+        bluetoothMedic.enablePowerCycleOnFailures(this);
+        bluetoothMedic.enablePeriodicTests(this, BluetoothMedic.SCAN_TEST);
+    }
+
+    public AnchorRegistry getAnchorRegistry() {
+        return anchorRegistry;
+    }
+
+    public TagTracker getTagTracker() {
+        return tagTracker;
+    }
+
+    /**
+     * Getter for the calibration of the distances from the RSSI
+     *
+     * @return the model, or null if the floor has no calibration
+     */
+    public RangingModel getRangingModel() {
+        return rangingModel;
+    }
+
+    /**
+     * Getter for the surveyed fingerprints of the floor
+     *
+     * @return the radio map, which is empty before the first survey
+     */
+    public RadioMap getRadioMap() {
+        return radioMap;
+    }
+
+    /**
+     * Switches between estimating the positions from the fingerprints of the radio map
+     * and from the distances.
+     *
+     * @param fingerprinting true to use the radio map
+     * @return true if the mode was changed, false if the radio map has no surveyed point yet
+     * @see ScanBeacons#setRadioMap(RadioMap)
+     */
+    public boolean setFingerprinting(boolean fingerprinting) {
+        if (fingerprinting && radioMap.size() == 0) {
+            return false;
+        }
+        isFingerprinting = fingerprinting;
+        scanBeacons.setRadioMap(fingerprinting ? radioMap : null);
+        return true;
+    }
+
+    public boolean isFingerprinting() {
+        return isFingerprinting;
+    }
+
+    /**
+     * Starts capturing the fingerprint of the spot where the shown tag is held. A capture that is
+     * already running gets discarded. The measurements have to run meanwhile.
+     *
+     * @see #finishSurvey(double, double)
+     */
+    public void startSurvey() {
+        surveyCapture = new SurveyCapture(anchorRegistry, scanBeacons.getShownAddress());
+        scanBeacons.setSurveyCapture(surveyCapture);
+    }
+
+    /**
+     * Finishes the running capture and adds its fingerprint to the radio map, which gets saved
+     * at once, so that a long survey can be interrupted at any point.
+     *
+     * @param x the x coordinate of the surveyed spot, in meters
+     * @param y the y coordinate of the surveyed spot, in meters
+     * @return the number of surveyed points
+     * @throws IllegalStateException if no capture runs or too few packets were captured
+     * @throws IOException if the radio map cannot be saved; the point is kept until the next save
+     * @see SurveyCapture#addTo(RadioMap, double, double)
+     */
+    public int finishSurvey(double x, double y) throws IOException {
+        SurveyCapture capture = surveyCapture;
+        surveyCapture = null;
+        scanBeacons.setSurveyCapture(null);
+        if (capture == null) {
+            throw new IllegalStateException("No point is being surveyed");
+        }
+        radioMap = capture.addTo(radioMap, x, y);
+        if (isFingerprinting) {
+            scanBeacons.setRadioMap(radioMap);
+        }
+        radioMap.save(new File(getExternalFilesDir(null), RADIO_MAP_FILE));
+        return radioMap.size();
+    }
+
+    /**
+     * Discards the running capture, if any.
+     */
+    public void cancelSurvey() {
+        surveyCapture = null;
+        scanBeacons.setSurveyCapture(null);
+    }
+
+    public boolean isSurveying() {
+        return surveyCapture != null;
+    }
+
+    /**
+     * Getter for the measurement history
+     *
+     * @return the store, or null if it could not be opened
+     */
+    public MeasurementStore getMeasurementStore() {
+        return measurementStore;
+    }
+
+    /**
+     * Getter for the newest first view of the measurement history, which keeps its cached pages
+     * for as long as the service lives
+     *
+     * @return the pager, or null if there is no history
+     */
+    public MeasurementPager getMeasurementPager() {
+        return measurementPager;
+    }
+
+    /**
+     * Getter for the e-mail sending, which runs in the background for as long as the service lives
+     *
+     * @return the dispatcher
+     */
+    public MailDispatcher getMailDispatcher() {
+        return mailDispatcher;
+    }
+
+    /**
+     * Getter for the Beacon scanner, e.g. to record the packets or to change the scan policy
+     *
+     * @return the scanner
+     */
+    public ScanBeacons getScanBeacons() {
+        return scanBeacons;
+    }
+
+    /**
+     * Starts the measurements and makes the service a foreground one, so that they go on
+     * when no screen is shown. Calling it while the measurements run has no effect.
+     *
+     * @see ScanBeacons#scanAltBeacons()
+     */
+    public void startTracking() {
+        if (isTracking) {
+            return;
+        }
+        startForeground(NOTIFICATION_ID, buildNotification());
+        scanBeacons.scanAltBeacons();
+        isTracking = true;
+        Log.i("Measurements State", "----------------Measurements started----------------");
+    }
+
+    /**
+     * Pauses or unpauses the measurements. The service stays in the foreground meanwhile.
+     *
+     * @return true if the measurements are paused now
+     * @see ScanBeacons#pauseAltBeacons()
+     */
+    public boolean pauseTracking() {
+        return scanBeacons.pauseAltBeacons();
+    }
+
+    /**
+     * Stops the measurements and lets the service stop once no screen is bound to it,
+     * e.g. when they get stopped from the notification. The positions and the history are kept.
+     *
+     * @see ScanBeacons#stopAltBeacons()
+     */
+    public void stopTracking() {
+        if (!isTracking) {
+            return;
+        }
+        scanBeacons.stopAltBeacons();
+        isTracking = false;
+        stopForeground(true);
+        if (!isBound) {
+            stopSelf();
+        }
+        Log.i("Measurements State", "----------------Measurements stopped----------------");
+    }
+
+    /**
+     * Stops the measurements and forgets the state of every tag and the latest positions.
+     *
+     * @see ScanBeacons#resetAltBeacons()
+     * @see PositionStream#clear()
+     */
+    public void resetTracking() {
+        stopTracking();
+        scanBeacons.resetAltBeacons();
+        PositionStream.getInstance().clear();
+    }
+
+    public boolean isTracking() {
+        return isTracking;
+    }
+
+    public boolean isPaused() {
+        return scanBeacons.isPaused();
+    }
+
+    /**
+     * Publishes the latest position of the shown tag to the PositionStream, on the main thread.
+     * A position outside the floor, or inside a closed office, is moved to the nearest wall it can be seen from,
+     * and it is marked as invalid. The GPS coordinates are computed on the plane that touches the earth
+     * at the top left corner of the office.
+     *
+     * @param snapshot the smoothed coordinates of the initiator in meters, together with the packet
+     *                 they were computed from; it must not be kept after this call
+     * @see ScanBeacons#doFrame(long)
+     * @see FloorPlan#isWalkable(double, double)
+     * @see FloorPlan#moveToWalls(double, double, double[])
+     * @see LocalTangentPlane
+     */
+    void showPosition(PositionSnapshot snapshot) {
+        double x = snapshot.getX();
+        double y = snapshot.getY();
+        boolean walkable = floorPlan.isWalkable(x, y);
+        if (!walkable) {
+            floorPlan.moveToWalls(x, y, shownPoint);
+            x = shownPoint[0];
+            y = shownPoint[1];
+        }
+
+        activeAnchors.clear();
+        for (int i = 0; i < snapshot.getAnchorCount(); i++) {
+            activeAnchors.set(snapshot.getAnchorIndex(i));
+        }
+        PositionStream.getInstance().publish(x, y, walkable, activeAnchors,
+                localTangentPlane.getLatitude(x, y), localTangentPlane.getLongitude(x, y));
+    }
+
+    /**
+     * Builds the notification of the foreground service, which opens the application when it gets touched
+     * and has an action that stops the tracking.
+     */
+    private Notification buildNotification() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    getString(R.string.tracking_channel), NotificationManager.IMPORTANCE_LOW));
+        }
+        Intent open = new Intent(this, MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        Intent stop = new Intent(this, TrackingService.class).setAction(ACTION_STOP);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.logo)
+                .setContentTitle(getString(R.string.app_name))
+                .setContentText(getString(R.string.tracking_notification))
+                .setContentIntent(PendingIntent.getActivity(this, 0, open, PendingIntent.FLAG_IMMUTABLE))
+                .addAction(0, getString(R.string.stop_tracking),
+                        PendingIntent.getService(this, 0, stop, PendingIntent.FLAG_IMMUTABLE))
+                .setOngoing(true)
+                .build();
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.beaconoffice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MailDispatcher, against an in-process SMTP server.
+ */
+public class MailDispatcherTest {
+
+    private File outbox;
+    private SmtpStub smtp;
+    private MailDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws IOException {
+        outbox = Files.createTempDirectory("outbox").toFile();
+        smtp = new SmtpStub();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (dispatcher != null) {
+            dispatcher.shutdown(1000);
+        }
+        smtp.close();
+        deleteDirectory(outbox);
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Listener that counts the results and releases a latch for every sent e-mail.
+     */
+    private static final class Results implements MailDispatcher.Listener {
+        final CountDownLatch sent;
+        final AtomicInteger retries = new AtomicInteger();
+        final AtomicInteger dropped = new AtomicInteger();
+
+        Results(int expected) {
+            sent = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onSent(MailJob job) {
+            sent.countDown();
+        }
+
+        @Override
+        public void onFailed(MailJob job, Exception cause, boolean willRetry) {
+            (willRetry ? retries : dropped).incrementAndGet();
+        }
+    }
+
+    @Test
+    public void queuedMessages_shareOneConnection() throws Exception {
+        dispatcher = new MailDispatcher(smtp.settings(), outbox, null);
+        Results results = new Results(5);
+        dispatcher.setListener(results);
+
+        // The messages are queued before the worker starts, so a single drain sends them all
+        for (int i = 0; i < 5; i++) {
+            new MailJob("shift" + i + "@example.com", "Log " + i, "Dear user", 0, 0)
+                    .write(new File(outbox, "mail-000000000000" + i + "-0000.job"));
+        }
+        dispatcher.start();
+
+        assertTrue(results.sent.await(10, TimeUnit.SECONDS));
+        assertEquals(5, smtp.messages.size());
+        assertEquals(1, smtp.connections.get());
+        assertTrue(smtp.messages.get(0).contains("Subject: Log 0"));
+        assertTrue(smtp.messages.get(4).contains("Subject: Log 4"));
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    @Test
+    public void failedMessages_areRetriedWithBackoff() throws Exception {
+        dispatcher = new MailDispatcher(smtp.settings(), outbox, null);
+        dispatcher.setRetryPolicy(50, 200, 5);
+        Results results = new Results(1);
+        dispatcher.setListener(results);
+        smtp.rejectNext.set(2);
+
+        dispatcher.start();
+        dispatcher.enqueue(new MailJob("shift@example.com", "Log", "Dear user", 0, 0));
+
+        assertTrue(results.sent.await(10, TimeUnit.SECONDS));
+        assertEquals(2, results.retries.get());
+        assertEquals(0, results.dropped.get());
+        assertEquals(1, smtp.messages.size());
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    @Test
+    public void messages_areDroppedAfterTheLastAttempt() throws Exception {
+        dispatcher = new MailDispatcher(smtp.settings(), outbox, null);
+        dispatcher.setRetryPolicy(10, 20, 3);
+        final CountDownLatch dropped = new CountDownLatch(1);
+        dispatcher.setListener(new MailDispatcher.Listener() {
+            @Override
+            public void onSent(MailJob job) { }
+
+            @Override
+            public void onFailed(MailJob job, Exception cause, boolean willRetry) {
+                if (!willRetry) {
+                    assertEquals(3, job.getAttempts());
+                    dropped.countDown();
+                }
+            }
+        });
+        smtp.rejectNext.set(100);
+
+        dispatcher.start();
+        dispatcher.enqueue(new MailJob("shift@example.com", "Log", "Dear user", 0, 0));
+
+        assertTrue(dropped.await(10, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    @Test
+    public void outbox_survivesARestart() throws Exception {
+        smtp.close();
+        dispatcher = new MailDispatcher(smtp.settings(), outbox, null);
+        dispatcher.setRetryPolicy(60_000, 60_000, 5);
+        Results offline = new Results(1);
+        dispatcher.setListener(offline);
+        dispatcher.start();
+        dispatcher.enqueue(new MailJob("shift@example.com", "Log", "Dear user", 0, 0));
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (offline.retries.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        dispatcher.shutdown(1000);
+        assertEquals(1, dispatcher.getPendingCount());
+
+        // The job waits for its backoff, so it is made due at once before restarting
+        File job = outbox.listFiles()[0];
+        MailJob pending = MailJob.read(job);
+        assertEquals(1, pending.getAttempts());
+        new MailJob(pending.getTo(), pending.getSubject(), pending.getBody(), 0, 0).write(job);
+
+        smtp = new SmtpStub();
+        dispatcher = new MailDispatcher(smtp.settings(), outbox, null);
+        Results online = new Results(1);
+        dispatcher.setListener(online);
+        dispatcher.start();
+
+        assertTrue(online.sent.await(10, TimeUnit.SECONDS));
+        assertEquals(1, smtp.messages.size());
+    }
+
+    @Test
+    public void queuedMessage_isKeptWhenTheDispatcherStopsAtOnce() throws Exception {
+        smtp.close();
+        dispatcher = new MailDispatcher(smtp.settings(), outbox, null);
+        dispatcher.setRetryPolicy(60_000, 60_000, 5);
+        dispatcher.start();
+        dispatcher.enqueue(new MailJob("shift@example.com", "Log", "Dear user", 0, 0));
+        dispatcher.shutdown(1000);
+        assertEquals(1, dispatcher.getPendingCount());
+
+        // Queued after the stop, it waits in the outbox for the next start
+        dispatcher.enqueue(new MailJob("shift@example.com", "Log 2", "Dear user", 0, 0));
+        assertEquals(2, dispatcher.getPendingCount());
+    }
+
+    @Test
+    public void accountWithoutPassword_isRefused() throws Exception {
+        dispatcher = new MailDispatcher(new SmtpSettings("127.0.0.1", smtp.getPort(), "beaconoffice@example.com", "",
+                false, "beaconoffice@example.com"), outbox, null);
+        dispatcher.start();
+        try {
+            dispatcher.enqueue(new MailJob("shift@example.com", "Log", "Dear user", 0, 0));
+            fail("An e-mail was queued without a password");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("SMTP_PASSWORD"));
+        }
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    @Test
+    public void attachment_isReadFromTheHistoryWhenSent() throws Exception {
+        File history = Files.createTempDirectory("history").toFile();
+        MeasurementStore store = new MeasurementStore(history, 100, 2);
+        try {
+            MeasurementRecord record = new MeasurementRecord();
+            for (int i = 0; i < 30; i++) {
+                record.set(1_660_000_000_000L + i, 0x4823350000AAL, i, i, new WiraPacket());
+                store.append(record);
+            }
+            store.flush();
+
+            dispatcher = new MailDispatcher(smtp.settings(), outbox, store);
+            Results results = new Results(1);
+            dispatcher.setListener(results);
+            dispatcher.start();
+            dispatcher.enqueue(new MailJob("shift@example.com", "Log", "Dear user", 10, 30));
+            assertTrue(results.sent.await(10, TimeUnit.SECONDS));
+
+            MimeMessage received = new MimeMessage(Session.getInstance(new Properties()),
+                    new ByteArrayInputStream(smtp.messages.get(0).getBytes(StandardCharsets.US_ASCII)));
+            MimeMultipart parts = (MimeMultipart) received.getContent();
+            assertEquals(2, parts.getCount());
+            assertEquals(MeasurementAttachment.FILE_NAME, parts.getBodyPart(1).getFileName());
+        } finally {
+            store.close();
+            deleteDirectory(history);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.beaconoffice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeBodyPart;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MeasurementAttachment.
+ */
+public class MeasurementAttachmentTest {
+
+    private File directory;
+    private MeasurementStore store;
+
+    @Before
+    public void openStore() throws IOException {
+        directory = Files.createTempDirectory("history").toFile();
+        store = new MeasurementStore(directory, 500, 4);
+        MeasurementRecord record = new MeasurementRecord();
+        WiraPacket packet = new WiraPacket();
+        packet.peerIds[0] = 0xF1;
+        packet.peerIds[1] = 0xF5;
+        packet.peerIds[2] = 0xFC;
+        for (int i = 0; i < 1200; i++) {
+            packet.distances[1] = i * 0.5f;
+            record.set(1_660_000_000_000L + i, 0x4823350000AAL, i * 0.01, 2.5, packet);
+            store.append(record);
+        }
+        store.flush();
+    }
+
+    @After
+    public void deleteStore() {
+        store.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void attachment_isStreamedIntoTheMessage() throws Exception {
+        Session session = Session.getInstance(new Properties());
+        MeasurementAttachment attachment = new MeasurementAttachment(store, 0, store.getEndIndex(), "measurements.csv.gz");
+        assertEquals(1200, attachment.getRecordCount());
+
+        MimeBodyPart text = new MimeBodyPart();
+        text.setText("Dear user");
+        MimeMultipart multipart = new MimeMultipart();
+        multipart.addBodyPart(text);
+        multipart.addBodyPart(attachment.toBodyPart());
+        MimeMessage message = new MimeMessage(session);
+        message.setSubject("BeacOnOffice Log Results");
+        message.setContent(multipart);
+        message.saveChanges();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+
+        MimeMessage received = new MimeMessage(session, new ByteArrayInputStream(out.toByteArray()));
+        MimeMultipart parts = (MimeMultipart) received.getContent();
+        assertEquals(2, parts.getCount());
+        MimeBodyPart part = (MimeBodyPart) parts.getBodyPart(1);
+        assertEquals("measurements.csv.gz", part.getFileName());
+        assertTrue(part.getContentType().startsWith(MeasurementAttachment.CONTENT_TYPE));
+        assertEquals("base64", part.getEncoding());
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(part.getInputStream()), StandardCharsets.UTF_8));
+        int lines = 0;
+        while (reader.readLine() != null) {
+            lines++;
+        }
+        assertEquals(1201, lines);
+    }
+}
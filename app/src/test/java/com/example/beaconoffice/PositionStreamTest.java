@@ -0,0 +1,68 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for PositionStream.
+ */
+public class PositionStreamTest {
+
+    @Test
+    public void stream_notifiesObserversUntilRemoved() {
+        PositionStream stream = new PositionStream(16);
+        final int[] calls = {0};
+        PositionStream.Observer observer = new PositionStream.Observer() {
+            @Override
+            public void onPositionChanged(PositionStream changed) {
+                calls[0]++;
+            }
+        };
+        stream.addObserver(observer);
+        stream.addObserver(observer);
+        assertFalse(stream.hasPosition());
+
+        stream.publish(38.26, 21.74);
+        stream.publish(38.27, 21.75);
+
+        assertEquals(2, calls[0]);
+        assertTrue(stream.hasPosition());
+        assertEquals(38.27, stream.getLatitude(), 0);
+        assertEquals(21.75, stream.getLongitude(), 0);
+        assertEquals(2, stream.getTrail().size());
+
+        stream.clear();
+        assertEquals(3, calls[0]);
+        assertFalse(stream.hasPosition());
+        assertEquals(0, stream.getTrail().size());
+
+        stream.removeObserver(observer);
+        stream.publish(38.26, 21.74);
+        assertEquals(3, calls[0]);
+    }
+
+    @Test
+    public void stream_keepsTheFloorPositionAndItsAnchors() {
+        PositionStream stream = new PositionStream(16);
+        AnchorMask anchors = new AnchorMask();
+        anchors.set(2);
+        anchors.set(5);
+
+        stream.publish(12.35, 38, false, anchors, 38.26, 21.74);
+        anchors.clear();
+
+        assertTrue(stream.hasPosition());
+        assertEquals(12.35, stream.getX(), 0);
+        assertEquals(38, stream.getY(), 0);
+        assertFalse(stream.isWalkable());
+        assertTrue(stream.getActiveAnchors().get(2));
+        assertTrue(stream.getActiveAnchors().get(5));
+        assertFalse(stream.getActiveAnchors().get(3));
+        assertEquals(38.26, stream.getLatitude(), 0);
+        assertEquals(1, stream.getTrail().size());
+
+        stream.clear();
+        assertTrue(stream.getActiveAnchors().isEmpty());
+    }
+}
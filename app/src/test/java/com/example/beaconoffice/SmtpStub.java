@@ -0,0 +1,100 @@
+package com.example.beaconoffice;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process SMTP server for the tests: it accepts every message without authentication
+ * and keeps the raw messages. It can be told to reject a number of messages, to test retries.
+ */
+class SmtpStub implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final Thread thread;
+    final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger rejectNext = new AtomicInteger();
+
+    SmtpStub() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try (Socket socket = serverSocket.accept()) {
+                        connections.incrementAndGet();
+                        serve(socket);
+                    } catch (IOException e) {
+                        // Closed by the test, or the client went away
+                    }
+                }
+            }
+        }, "smtp-stub");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    SmtpSettings settings() {
+        return new SmtpSettings("127.0.0.1", getPort(), null, null, false, "beaconoffice@example.com");
+    }
+
+    private void serve(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        OutputStream out = socket.getOutputStream();
+        reply(out, "220 stub ready");
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+            switch (command) {
+                case "EHLO":
+                case "HELO":
+                    reply(out, "250 stub");
+                    break;
+                case "DATA":
+                    reply(out, "354 end with <CRLF>.<CRLF>");
+                    StringBuilder message = new StringBuilder();
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        message.append(line.startsWith("..") ? line.substring(1) : line).append("\r\n");
+                    }
+                    if (rejectNext.get() > 0) {
+                        rejectNext.decrementAndGet();
+                        reply(out, "451 try again later");
+                    } else {
+                        messages.add(message.toString());
+                        reply(out, "250 queued");
+                    }
+                    break;
+                case "QUIT":
+                    reply(out, "221 bye");
+                    return;
+                default:
+                    reply(out, "250 ok");
+            }
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.beaconoffice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark that compares the great-circle formula of HomeFragment#calculateGpsCoordinates, as it was
+ * before LocalTangentPlane, with the tangent plane, for single points and for a whole trail at once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalTangentPlaneBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private final LocalTangentPlane plane = LocalTangentPlane.office();
+    private final double[] x = new double[POINTS];
+    private final double[] y = new double[POINTS];
+    private final double[] latitudes = new double[POINTS];
+    private final double[] longitudes = new double[POINTS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        for (int i = 0; i < POINTS; i++) {
+            x[i] = 20 * random.nextDouble();
+            y[i] = 12 * random.nextDouble();
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = (i + 1) & (POINTS - 1);
+        return i;
+    }
+
+    @Benchmark
+    public double[] legacyGreatCircle() {
+        int i = nextIndex();
+        return LegacyGreatCircle.calculateGpsCoordinates(x[i], y[i]);
+    }
+
+    @Benchmark
+    public double tangentPlane() {
+        int i = nextIndex();
+        return plane.getLatitude(x[i], y[i]) + plane.getLongitude(x[i], y[i]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] tangentPlaneTrail() {
+        plane.toGeodetic(x, y, POINTS, latitudes, longitudes);
+        return latitudes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LocalTangentPlaneBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.beaconoffice;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * PacketSet holds the advertisements that the benchmarks work on, so that every hot path
+ * is measured on the same packets. By default they are the SyntheticPackets; when the recording
+ * parameter names a recording of the app, its packets are replayed instead, with the anchors
+ * of the floor configuration that the anchors parameter names.
+ * <p>
+ * The whole recording is kept in memory, so that reading it does not add disk time to the replay,
+ * and the WiRa payloads are also kept one by one, for the benchmarks that cycle through them.
+ *
+ * @see PacketRecorder
+ * @see ReplayBenchmark
+ */
+@State(Scope.Benchmark)
+public class PacketSet {
+
+    /**
+     * The path of a recording of the app, or empty for the synthetic packets.
+     */
+    @Param("")
+    public String recording;
+
+    /**
+     * The path of the floor configuration of the recording, or empty for the synthetic anchors.
+     */
+    @Param("")
+    public String anchors;
+
+    byte[] recordingBytes;
+    AnchorRegistry registry;
+    long[] addresses;
+
+    int count;
+    byte[][] id1;
+    byte[][] id2;
+
+    // The anchors and the measured distances of the packets whose three peers are all known anchors
+    int solvableCount;
+    double[][] anchorX;
+    double[][] anchorY;
+    double[][] ranges;
+
+    @Setup
+    public void load() throws IOException {
+        if (recording.isEmpty()) {
+            recordingBytes = SyntheticPackets.recording();
+        } else {
+            recordingBytes = readFully(new File(recording));
+        }
+        try (Reader reader = anchors.isEmpty() ? new StringReader(SyntheticPackets.ANCHORS) : new FileReader(anchors)) {
+            registry = AnchorRegistry.fromCsv(reader);
+        }
+
+        int capacity = 1024;
+        id1 = new byte[capacity][];
+        id2 = new byte[capacity][];
+        anchorX = new double[capacity][];
+        anchorY = new double[capacity][];
+        ranges = new double[capacity][];
+        addresses = new long[16];
+        int addressCount = 0;
+        CapturedPacket captured = new CapturedPacket();
+        WiraPacket packet = new WiraPacket();
+
+        try (PacketReader reader = new PacketReader(new ByteArrayInputStream(recordingBytes))) {
+            while (reader.next(captured)) {
+                if (captured.getDataFieldCount() == 0
+                        || captured.getId1Length() + captured.getId2Length() < WiraPayloadDecoder.PAYLOAD_LENGTH) {
+                    continue;
+                }
+                if (count == capacity) {
+                    capacity *= 2;
+                    id1 = Arrays.copyOf(id1, capacity);
+                    id2 = Arrays.copyOf(id2, capacity);
+                    anchorX = Arrays.copyOf(anchorX, capacity);
+                    anchorY = Arrays.copyOf(anchorY, capacity);
+                    ranges = Arrays.copyOf(ranges, capacity);
+                }
+                id1[count] = captured.copyId1();
+                id2[count] = captured.copyId2();
+                WiraPayloadDecoder.decode(id1[count], id2[count], packet);
+                count++;
+
+                if (indexOf(addresses, addressCount, captured.getAddress()) < 0) {
+                    if (addressCount == addresses.length) {
+                        addresses = Arrays.copyOf(addresses, 2 * addressCount);
+                    }
+                    addresses[addressCount++] = captured.getAddress();
+                }
+
+                double[] x = new double[WiraPacket.PEER_COUNT];
+                double[] y = new double[WiraPacket.PEER_COUNT];
+                double[] r = new double[WiraPacket.PEER_COUNT];
+                boolean solvable = true;
+                for (int i = 0; i < WiraPacket.PEER_COUNT && solvable; i++) {
+                    int index = registry.indexOf(packet.getPeerId(i));
+                    if (index < 0) {
+                        solvable = false;
+                    } else {
+                        x[i] = registry.getX(index);
+                        y[i] = registry.getY(index);
+                        r[i] = packet.getDistance(i);
+                    }
+                }
+                if (solvable) {
+                    anchorX[solvableCount] = x;
+                    anchorY[solvableCount] = y;
+                    ranges[solvableCount] = r;
+                    solvableCount++;
+                }
+            }
+        }
+        addresses = Arrays.copyOf(addresses, addressCount);
+
+        if (count == 0) {
+            throw new IOException("The recording has no WiRa advertisement");
+        }
+        if (solvableCount == 0) {
+            throw new IOException("No advertisement of the recording comes from three known anchors");
+        }
+    }
+
+    private static int indexOf(long[] values, int count, long value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (InputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) > 0) {
+                offset += read;
+            }
+            return offset == bytes.length ? bytes : Arrays.copyOf(bytes, offset);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.beaconoffice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the cost of one ParticleFilterLocalizer update, for different particle counts,
+ * with the weighting running sequentially and in parallel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticleFilterLocalizerBenchmark {
+
+    @Param({"500", "2000", "10000"})
+    public int particleCount;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private final double[] anchorX = {0, 5, 5};
+    private final double[] anchorY = {0, 4, 10.8};
+    private final double[] ranges = {12.6, 8.1, 1.4};
+    private ParticleFilterLocalizer localizer;
+    private long time;
+
+    @Setup
+    public void setUp() {
+        localizer = new ParticleFilterLocalizer(FloorPlan.office(), particleCount, 1);
+        localizer.setParallelThreshold(parallel ? 1 : Integer.MAX_VALUE);
+        time = 0;
+    }
+
+    @Benchmark
+    public double update() {
+        time += 500;
+        localizer.update(anchorX, anchorY, ranges, 3, time);
+        return localizer.getX();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ParticleFilterLocalizerBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
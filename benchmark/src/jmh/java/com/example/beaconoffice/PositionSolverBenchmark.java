@@ -0,0 +1,62 @@
+package com.example.beaconoffice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of one position fix, cycling through the packets of a PacketSet that come from
+ * three known anchors. ThreeCircleSolver is the algorithm of ScanBeacons#getPoint, as it was moved
+ * out of the scanner; LeastSquaresSolver is the solver that the tracking pipeline uses by default.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionSolverBenchmark {
+
+    private final ThreeCircleSolver threeCircleSolver = new ThreeCircleSolver();
+    private final LeastSquaresSolver leastSquaresSolver = new LeastSquaresSolver();
+    private final PositionFix fix = new PositionFix();
+    private int next;
+
+    private int nextIndex(PacketSet packets) {
+        int i = next;
+        next = i + 1 == packets.solvableCount ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public double threeCircle(PacketSet packets) {
+        int i = nextIndex(packets);
+        threeCircleSolver.solve(packets.anchorX[i], packets.anchorY[i], packets.ranges[i], null, 3, fix);
+        return fix.getX();
+    }
+
+    @Benchmark
+    public double leastSquares(PacketSet packets) {
+        int i = nextIndex(packets);
+        leastSquaresSolver.solve(packets.anchorX[i], packets.anchorY[i], packets.ranges[i], null, 3, fix);
+        return fix.getX();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PositionSolverBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.beaconoffice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the k-NN search of a RadioMap over the 12 anchors of the office, for different map sizes,
+ * compared with scanning every point. The queries are surveyed fingerprints with a few dB of noise,
+ * like the ones FingerprintLocalizer searches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RadioMapBenchmark {
+
+    private static final String ANCHORS = "F1,0,0\nF2,6,0\nF3,5,4\nF4,13.8,0\nF5,17.9,4.3\nF6,5,10.8\n"
+            + "F7,5,19\nF8,0.6,14.5\nF9,11,19.8\nFA,0,21.9\nFB,5,26.9\nFC,10.6,32.6\n";
+    private static final int QUERIES = 1024;
+
+    @Param({"1000", "5000", "20000"})
+    public int pointCount;
+
+    private RadioMap map;
+    private float[][] queries;
+    private final NeighborSet neighbors = new NeighborSet(FingerprintLocalizer.NEAREST_COUNT);
+    private final int[] nearestPoints = new int[FingerprintLocalizer.NEAREST_COUNT];
+    private final double[] nearestDistances = new double[FingerprintLocalizer.NEAREST_COUNT];
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        AnchorRegistry registry = AnchorRegistry.fromCsv(new StringReader(ANCHORS));
+        Random random = new Random(25);
+
+        // The map is read from its file format, since adding the points one by one rebuilds the tree every time
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(RadioMap.MAGIC);
+        out.writeShort(RadioMap.VERSION);
+        out.writeShort(registry.size());
+        for (int i = 0; i < registry.size(); i++) {
+            out.writeByte(registry.getPeerId(i));
+        }
+        out.writeInt(pointCount);
+        for (int point = 0; point < pointCount; point++) {
+            out.writeFloat(21 * random.nextFloat());
+            out.writeFloat(38 * random.nextFloat());
+            for (int i = 0; i < registry.size(); i++) {
+                out.writeFloat(random.nextInt(8) == 0 ? RadioMap.MISSING_RSSI : -40 - random.nextInt(50));
+            }
+        }
+        map = RadioMap.read(new ByteArrayInputStream(bytes.toByteArray()), registry);
+
+        queries = new float[QUERIES][registry.size()];
+        for (float[] query : queries) {
+            int point = random.nextInt(pointCount);
+            for (int i = 0; i < query.length; i++) {
+                query[i] = map.getRssi(point, i) + 2 * (float) random.nextGaussian();
+            }
+        }
+        next = 0;
+    }
+
+    private float[] nextQuery() {
+        float[] query = queries[next];
+        next = (next + 1) & (QUERIES - 1);
+        return query;
+    }
+
+    @Benchmark
+    public int vpTree() {
+        map.findNearest(nextQuery(), neighbors);
+        return neighbors.getPoint(0);
+    }
+
+    @Benchmark
+    public int fullScan() {
+        float[] query = nextQuery();
+        int k = nearestPoints.length;
+        int found = 0;
+        for (int point = 0; point < map.size(); point++) {
+            double sum = 0;
+            for (int i = 0; i < query.length; i++) {
+                double d = query[i] - map.getRssi(point, i);
+                sum += d * d;
+            }
+            double distance = Math.sqrt(sum);
+            if (found == k && distance >= nearestDistances[k - 1]) {
+                continue;
+            }
+            // Insertion into the sorted k nearest so far
+            int j = found < k ? found++ : k - 1;
+            while (j > 0 && nearestDistances[j - 1] > distance) {
+                nearestDistances[j] = nearestDistances[j - 1];
+                nearestPoints[j] = nearestPoints[j - 1];
+                j--;
+            }
+            nearestDistances[j] = distance;
+            nearestPoints[j] = point;
+        }
+        return nearestPoints[0];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RadioMapBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.beaconoffice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the whole tracking pipeline, decode, solve and filter, replaying the recording
+ * of a PacketSet as fast as possible, on the caller's thread and through the tracking thread.
+ * Every operation is a replay of the whole recording, so the time and the allocated bytes per packet
+ * are the reported figures divided by the number of packets; the synthetic recording has
+ * {@value SyntheticPackets#PACKET_COUNT} of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+
+    @Param({"false", "true"})
+    public boolean threaded;
+
+    @Param({"0", "2000"})
+    public int particleCount;
+
+    private TrackingPipeline pipeline;
+    private ReplayDriver driver;
+
+    @Setup
+    public void setUp(PacketSet packets) {
+        TagTracker tracker = new TagTracker(0.5, 1.0);
+        for (long address : packets.addresses) {
+            tracker.allow(address);
+        }
+        pipeline = new TrackingPipeline(packets.registry, tracker, FloorPlan.office(), 256, 1.0, 0.3);
+        pipeline.setParticleCount(particleCount);
+        driver = new ReplayDriver(pipeline);
+        driver.setSpeed(ReplayDriver.AS_FAST_AS_POSSIBLE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.stop();
+    }
+
+    @Benchmark
+    public long replay(PacketSet packets) throws IOException {
+        // Every replay starts from fresh tags; the tracking thread is restarted, so that the reset cannot race the packets
+        pipeline.stop();
+        pipeline.reset();
+        if (threaded) {
+            pipeline.start();
+        }
+        try (PacketReader reader = new PacketReader(new ByteArrayInputStream(packets.recordingBytes))) {
+            driver.replay(reader);
+        }
+        return pipeline.getPublishedCount();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReplayBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.beaconoffice;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Collections;
+
+/**
+ * Synthetic WiRa advertisements for the benchmarks: one tag that walks slowly among three anchors,
+ * with the distances that a perfect ranging would measure.
+ */
+final class SyntheticPackets {
+
+    static final long TAG = 0x4823350000AAL;
+    static final String ANCHORS = "F1,0,0\nF2,20,0\nF3,0,20\n";
+    static final int PACKET_COUNT = 10_000;
+
+    private static final int[] PEER_IDS = {0xF1, 0xF2, 0xF3};
+    private static final int[] RSSI = {-60, -65, -70};
+
+    private SyntheticPackets() { }
+
+    /**
+     * Builds the two AltBeacon identifiers of a WiRa advertisement.
+     */
+    static byte[][] payload(int[] peerIds, int[] rssi, float[] distances) {
+        ByteBuffer buffer = ByteBuffer.allocate(WiraPayloadDecoder.PAYLOAD_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        for (int peerId : peerIds)
+            buffer.put((byte) peerId);
+        for (int value : rssi)
+            buffer.put((byte) value);
+        for (float distance : distances)
+            buffer.putFloat(distance);
+
+        byte[] id1 = new byte[16];
+        byte[] id2 = new byte[2];
+        buffer.flip();
+        buffer.get(id1);
+        buffer.get(id2);
+        return new byte[][]{id1, id2};
+    }
+
+    /**
+     * Records the walk of the tag, one advertisement every 100 ms.
+     *
+     * @return the recording, in the format of PacketRecorder
+     */
+    static byte[] recording() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PacketRecorder recorder = new PacketRecorder(out)) {
+            for (int i = 0; i < PACKET_COUNT; i++) {
+                double x = 3 + 2 * Math.sin(i * 0.01);
+                double y = 2 + 0.002 * i;
+                float[] distances = {
+                        (float) Math.hypot(x, y),
+                        (float) Math.hypot(x - 20, y),
+                        (float) Math.hypot(x, y - 20)};
+                byte[][] ids = payload(PEER_IDS, RSSI, distances);
+                recorder.record(100L * i, TAG, ids[0], ids[1], Collections.singletonList((long) (i & 0xff)));
+            }
+        }
+        return out.toByteArray();
+    }
+}
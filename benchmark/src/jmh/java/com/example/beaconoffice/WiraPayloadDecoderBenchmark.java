@@ -0,0 +1,78 @@
+package com.example.beaconoffice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark that compares the string-based decoding of the WiRa payload with WiraPayloadDecoder,
+ * cycling through the packets of a PacketSet: the hex conversion of the identifiers on its own,
+ * as the app used to do it and as LegacyPayloadDecoding still does, the formatting of the peer IDs that replaced it,
+ * and the whole decoding of the peer IDs, the RSSI values and the distances.
+ * Run it from the IDE through {@link #main(String[])} or with the jmh task of Gradle; the GC profiler
+ * is enabled so the report also shows the bytes allocated per decoded packet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WiraPayloadDecoderBenchmark {
+
+    private final WiraPacket packet = new WiraPacket();
+    private int next;
+
+    private int nextIndex(PacketSet packets) {
+        int i = next;
+        next = i + 1 == packets.count ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public String legacyHexString(PacketSet packets) {
+        int i = nextIndex(packets);
+        return LegacyPayloadDecoding.byteArrayToHexString(packets.id1[i])
+                + LegacyPayloadDecoding.byteArrayToHexString(packets.id2[i]);
+    }
+
+    @Benchmark
+    public void peerIdFormatting(PacketSet packets, Blackhole blackhole) {
+        byte[] id1 = packets.id1[nextIndex(packets)];
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            blackhole.consume(WiraPayloadDecoder.formatPeerId(id1[i] & 0xff));
+        }
+    }
+
+    @Benchmark
+    public Object legacyStringDecoding(PacketSet packets) {
+        int i = nextIndex(packets);
+        return LegacyPayloadDecoding.decode(packets.id1[i], packets.id2[i]);
+    }
+
+    @Benchmark
+    public Object binaryDecoding(PacketSet packets) {
+        int i = nextIndex(packets);
+        WiraPayloadDecoder.decode(packets.id1[i], packets.id2[i], packet);
+        return packet;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WiraPayloadDecoderBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
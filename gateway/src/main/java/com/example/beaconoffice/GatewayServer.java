@@ -0,0 +1,271 @@
+package com.example.beaconoffice;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * GatewayServer class runs the positioning engine of BeacOnOffice on a plain JVM, e.g. on a Linux box
+ * next to fixed BLE receivers, for many tags at once. The receivers stream their advertisements to the
+ * PacketIngestor over TCP or UDP, the SolverShards solve and smooth the positions of every tag on all cores,
+ * and the latest positions are served over HTTP:
+ * <ul>
+ *     <li>GET /positions returns a JSON array with the latest fix of every tag that has one,
+ *     in meters and in GPS coordinates, and its age in milliseconds;</li>
+ *     <li>GET /stats returns the counters of the ingestion and of the pipelines.</li>
+ * </ul>
+ * Run it with:
+ * <pre>
+ * java -jar gateway.jar --anchors anchors.csv --tags initiators.csv [--tcp 7000] [--udp 7000] [--http 8080]
+ *                       [--workers N] [--queue 4096] [--particles 0] [--ranging ranging.csv]
+ *                       [--radiomap radiomap.bin]
+ * </pre>
+ * The anchors and the tags are read from the same CSV files as the ones of the app. The optional ranging
+ * calibration is the one that RangingCalibrationTool fits from recorded sessions, and the optional radio map
+ * is the one that the app surveys; with a radio map, the positions are estimated from the fingerprints.
+ *
+ * @version 1.0
+ * @see PacketIngestor
+ * @see SolverShards
+ */
+public class GatewayServer {
+
+    public static final double PROCESS_NOISE = 0.5; // m^2/s^3, a walking person
+    public static final double MEASUREMENT_NOISE = 1.0; // m^2
+    public static final int DEFAULT_PORT = 7000;
+    public static final int DEFAULT_HTTP_PORT = 8080;
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+    private static final String USAGE = "Usage: GatewayServer --anchors <csv> --tags <csv> [--tcp <port>] [--udp <port>]"
+            + " [--http <port>] [--workers <count>] [--queue <capacity>] [--particles <count>] [--ranging <csv>]"
+            + " [--radiomap <file>]";
+
+    private final SolverShards shards;
+    private final PacketIngestor ingestor;
+    private final HttpServer httpServer;
+    private final LocalTangentPlane plane;
+    private Thread ingestorThread;
+
+    /**
+     * Class constructor, that opens the sockets. Nothing is received or served until start() gets called.
+     *
+     * @param shards the pipelines of the tags
+     * @param plane the plane that converts the positions to GPS coordinates
+     * @param tcpAddress the address of the TCP socket of the receivers, or null for no TCP
+     * @param udpAddress the address of the UDP socket of the receivers, or null for no UDP
+     * @param httpAddress the address of the HTTP server
+     * @throws IOException if a socket cannot be opened
+     */
+    public GatewayServer(SolverShards shards, LocalTangentPlane plane, InetSocketAddress tcpAddress,
+                         InetSocketAddress udpAddress, InetSocketAddress httpAddress) throws IOException {
+        this.shards = shards;
+        this.plane = plane;
+        ingestor = new PacketIngestor(shards, tcpAddress, udpAddress);
+        try {
+            httpServer = HttpServer.create(httpAddress, 0);
+        } catch (IOException e) {
+            ingestor.close();
+            throw e;
+        }
+        httpServer.createContext("/positions", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, positionsJson());
+            }
+        });
+        httpServer.createContext("/stats", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, statsJson());
+            }
+        });
+    }
+
+    /**
+     * Starts the tracking threads, the ingestion thread and the HTTP server.
+     */
+    public synchronized void start() {
+        shards.start();
+        ingestorThread = new Thread(ingestor, "packet-ingestor");
+        ingestorThread.start();
+        httpServer.start();
+    }
+
+    /**
+     * Stops serving, closes the sockets and stops the tracking threads.
+     */
+    public synchronized void stop() {
+        httpServer.stop(0);
+        ingestor.stop();
+        if (ingestorThread != null) {
+            try {
+                ingestorThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ingestorThread = null;
+        }
+        shards.stop();
+    }
+
+    public SolverShards getShards() {
+        return shards;
+    }
+
+    public PacketIngestor getIngestor() {
+        return ingestor;
+    }
+
+    /**
+     * Getter for the port of the HTTP server, e.g. when it was bound to port 0
+     *
+     * @return the port
+     */
+    public int getHttpPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * Builds the body of GET /positions.
+     *
+     * @return a JSON array with one object per tag that has a fix
+     */
+    String positionsJson() {
+        long now = System.nanoTime() / 1_000_000;
+        double[] xy = new double[2];
+        StringBuilder json = new StringBuilder(128 * shards.getTagCount() + 2);
+        json.append('[');
+        for (int i = 0; i < shards.getTagCount(); i++) {
+            TagState tag = shards.getTag(i);
+            long timeMillis = tag.copyLatestFix(xy);
+            if (timeMillis < 0) {
+                continue;
+            }
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(String.format(Locale.ROOT,
+                    "{\"tag\":\"%s\",\"x\":%.3f,\"y\":%.3f,\"latitude\":%.7f,\"longitude\":%.7f,\"ageMillis\":%d}",
+                    MacAddress.format(tag.getAddress()), xy[0], xy[1],
+                    plane.getLatitude(xy[0], xy[1]), plane.getLongitude(xy[0], xy[1]), now - timeMillis));
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Builds the body of GET /stats.
+     *
+     * @return a JSON object with the counters
+     */
+    String statsJson() {
+        return String.format(Locale.ROOT,
+                "{\"connections\":%d,\"received\":%d,\"malformed\":%d,\"ignored\":%d,\"dropped\":%d,"
+                        + "\"duplicate\":%d,\"stale\":%d,\"incomplete\":%d,\"unsolved\":%d,\"tags\":%d,\"workers\":%d}",
+                ingestor.getConnectionCount(), ingestor.getReceivedCount(), ingestor.getMalformedCount(),
+                shards.getIgnoredCount(), shards.getDroppedCount(), shards.getDuplicateCount(),
+                shards.getStaleCount(), shards.getIncompleteCount(),
+                shards.getUnsolvedCount(), shards.getTagCount(), shards.getShardCount());
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String anchors = null;
+        String tags = null;
+        String ranging = null;
+        String radioMap = null;
+        int tcpPort = DEFAULT_PORT;
+        int udpPort = DEFAULT_PORT;
+        int httpPort = DEFAULT_HTTP_PORT;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        int particles = 0;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value of " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--anchors": anchors = value; break;
+                    case "--tags": tags = value; break;
+                    case "--tcp": tcpPort = Integer.parseInt(value); break;
+                    case "--udp": udpPort = Integer.parseInt(value); break;
+                    case "--http": httpPort = Integer.parseInt(value); break;
+                    case "--workers": workers = Integer.parseInt(value); break;
+                    case "--queue": queueCapacity = Integer.parseInt(value); break;
+                    case "--particles": particles = Integer.parseInt(value); break;
+                    case "--ranging": ranging = value; break;
+                    case "--radiomap": radioMap = value; break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (anchors == null || tags == null) {
+                throw new IllegalArgumentException("The anchors and the tags are required");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        AnchorRegistry anchorRegistry;
+        try (Reader reader = new FileReader(anchors)) {
+            anchorRegistry = AnchorRegistry.fromCsv(reader);
+        }
+        TagTracker allowList = new TagTracker(PROCESS_NOISE, MEASUREMENT_NOISE);
+        try (Reader reader = new FileReader(tags)) {
+            allowList.allowFromCsv(reader);
+        }
+        long[] addresses = new long[allowList.size()];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = allowList.getTag(i).getAddress();
+        }
+
+        SolverShards shards = new SolverShards(anchorRegistry, addresses, FloorPlan.office(), workers,
+                queueCapacity, PROCESS_NOISE, MEASUREMENT_NOISE);
+        shards.setParticleCount(particles);
+        if (ranging != null) {
+            try (Reader reader = new FileReader(ranging)) {
+                shards.setRangingModel(RangingModel.fromCsv(reader, anchorRegistry));
+            }
+        }
+        if (radioMap != null) {
+            shards.setRadioMap(RadioMap.load(new File(radioMap), anchorRegistry));
+        }
+        final GatewayServer gateway = new GatewayServer(shards, LocalTangentPlane.office(),
+                new InetSocketAddress(tcpPort), new InetSocketAddress(udpPort), new InetSocketAddress(httpPort));
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                gateway.stop();
+            }
+        }, "gateway-shutdown"));
+        gateway.start();
+        System.out.println("Tracking " + addresses.length + " tags on " + workers + " workers; receiving on TCP "
+                + gateway.getIngestor().getTcpPort() + " and UDP " + gateway.getIngestor().getUdpPort()
+                + ", positions on http://localhost:" + gateway.getHttpPort() + "/positions");
+    }
+}
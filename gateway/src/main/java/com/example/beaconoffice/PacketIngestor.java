@@ -0,0 +1,285 @@
+package com.example.beaconoffice;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * PacketIngestor class receives the advertisements of the BLE receivers of a gateway and hands them
+ * to the SolverShards. A single thread serves every socket with one non-blocking Selector:
+ * <ul>
+ *     <li>over TCP, every connection is a packet recording that never ends: the header of
+ *     PacketRecorder, then one record per advertisement. A receiver can simply write to the socket
+ *     with a PacketRecorder, and a recording file can be sent as it is;</li>
+ *     <li>over UDP, every datagram is a whole recording, a header and one or more records.</li>
+ * </ul>
+ * Every read fills a large buffer with as many records as the socket has, and all of them get decoded
+ * before the next read, so the cost of the system calls is shared by many packets.
+ * The packets get the time of the gateway when they are read, since the clocks of the receivers differ.
+ * A connection that sends anything else gets closed; a datagram that is not a recording gets ignored.
+ *
+ * @version 1.0
+ * @see PacketFrameDecoder
+ * @see SolverShards
+ */
+public class PacketIngestor implements Runnable {
+
+    /**
+     * The size of the receive buffer of every connection, in bytes.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_DATAGRAM = 65507;
+
+    private final SolverShards shards;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final DatagramChannel datagrams;
+    private final ByteBuffer datagramBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+    private final CapturedPacket packet = new CapturedPacket();
+
+    private volatile boolean running = true;
+    private volatile int connectionCount;
+    private volatile long receivedCount;
+    private volatile long malformedCount;
+
+    /**
+     * Class constructor, that opens the sockets. The advertisements are only read once run() gets called.
+     *
+     * @param shards the pipelines that process the advertisements
+     * @param tcpAddress the address of the TCP socket, or null for no TCP
+     * @param udpAddress the address of the UDP socket, or null for no UDP
+     * @throws IOException if a socket cannot be opened
+     */
+    public PacketIngestor(SolverShards shards, InetSocketAddress tcpAddress, InetSocketAddress udpAddress) throws IOException {
+        this.shards = shards;
+        selector = Selector.open();
+        ServerSocketChannel tcp = null;
+        DatagramChannel udp = null;
+        try {
+            if (tcpAddress != null) {
+                tcp = ServerSocketChannel.open();
+                tcp.bind(tcpAddress);
+                tcp.configureBlocking(false);
+                tcp.register(selector, SelectionKey.OP_ACCEPT);
+            }
+            if (udpAddress != null) {
+                udp = DatagramChannel.open();
+                udp.bind(udpAddress);
+                udp.configureBlocking(false);
+                udp.register(selector, SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            if (tcp != null) {
+                tcp.close();
+            }
+            if (udp != null) {
+                udp.close();
+            }
+            selector.close();
+            throw e;
+        }
+        server = tcp;
+        datagrams = udp;
+    }
+
+    /**
+     * Getter for the port the TCP socket listens to, e.g. when it was bound to port 0
+     *
+     * @return the port, or -1 if there is no TCP socket
+     */
+    public int getTcpPort() {
+        return server == null ? -1 : server.socket().getLocalPort();
+    }
+
+    /**
+     * Getter for the port the UDP socket listens to, e.g. when it was bound to port 0
+     *
+     * @return the port, or -1 if there is no UDP socket
+     */
+    public int getUdpPort() {
+        return datagrams == null ? -1 : datagrams.socket().getLocalPort();
+    }
+
+    /**
+     * Serves the sockets until stop() gets called, then closes them.
+     */
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                long now = System.nanoTime() / 1_000_000;
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.channel() == datagrams) {
+                        receiveDatagrams(now);
+                    } else {
+                        readConnection(key, now);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The selector itself failed, nothing more can be received
+            System.err.println("Packet ingestion stopped: " + e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Makes run() return and close the sockets.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+            connectionCount++;
+        }
+    }
+
+    private void readConnection(SelectionKey key, long now) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = connection.buffer;
+        try {
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (!connection.headerRead) {
+                connection.headerRead = PacketFrameDecoder.readHeader(buffer);
+            }
+            if (connection.headerRead) {
+                while (PacketFrameDecoder.readRecord(buffer, packet)) {
+                    receivedCount++;
+                    shards.offer(packet, now);
+                }
+            }
+            buffer.compact();
+            if (read < 0) {
+                close(key);
+            } else if (!buffer.hasRemaining()) {
+                // Even a record of the largest identifiers and data fields is smaller than the buffer
+                throw new IOException("Record larger than " + BUFFER_SIZE + " bytes");
+            }
+        } catch (IOException e) {
+            malformedCount++;
+            close(key);
+        }
+    }
+
+    private void receiveDatagrams(long now) throws IOException {
+        ByteBuffer buffer = datagramBuffer;
+        while (true) {
+            buffer.clear();
+            if (datagrams.receive(buffer) == null) {
+                return;
+            }
+            buffer.flip();
+            try {
+                if (!PacketFrameDecoder.readHeader(buffer)) {
+                    malformedCount++;
+                    continue;
+                }
+                while (PacketFrameDecoder.readRecord(buffer, packet)) {
+                    receivedCount++;
+                    shards.offer(packet, now);
+                }
+                if (buffer.hasRemaining()) {
+                    malformedCount++;
+                }
+            } catch (IOException e) {
+                malformedCount++;
+            }
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Nothing more to do with this connection
+        }
+        connectionCount--;
+    }
+
+    /**
+     * Closes the sockets of an ingestor that was never run; run() closes them itself when it returns.
+     */
+    public void close() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // Keep closing the others
+            }
+        }
+        try {
+            if (server != null) {
+                server.close();
+            }
+            if (datagrams != null) {
+                datagrams.close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            // The sockets are released by the system anyway
+        }
+        connectionCount = 0;
+    }
+
+    /**
+     * Getter for the number of open TCP connections
+     *
+     * @return the requested count
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Getter for the number of advertisements that were received, from any socket
+     *
+     * @return the requested count
+     */
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * Getter for the number of connections that got closed and datagrams that got ignored,
+     * because they were not packet recordings
+     *
+     * @return the requested count
+     */
+    public long getMalformedCount() {
+        return malformedCount;
+    }
+
+    /**
+     * The state of one TCP connection: the bytes of the records that are not complete yet.
+     */
+    private static class Connection {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        boolean headerRead;
+    }
+}
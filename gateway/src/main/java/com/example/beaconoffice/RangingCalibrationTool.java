@@ -0,0 +1,104 @@
+package com.example.beaconoffice;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * RangingCalibrationTool class fits the path-loss model of every anchor from packet recordings of the app,
+ * on a plain JVM, and writes it in the CSV format that the app and the GatewayServer read.
+ * Run it with:
+ * <pre>
+ * java -cp gateway.jar com.example.beaconoffice.RangingCalibrationTool --anchors anchors.csv --out ranging.csv
+ *                       walk.bin desk.bin@4.5,3.0 ...
+ * </pre>
+ * A recording whose name is followed by @x,y was made with the tag lying at that spot of the floor,
+ * so its true distances from the anchors are known; the others were made while the tag moved freely.
+ *
+ * @version 1.0
+ * @see RangingCalibrator
+ * @see RangingModel
+ */
+public class RangingCalibrationTool {
+
+    private static final String USAGE = "Usage: RangingCalibrationTool --anchors <csv> --out <csv>"
+            + " <recording>[@<x>,<y>] ...";
+
+    private RangingCalibrationTool() { }
+
+    public static void main(String[] args) throws IOException {
+        String anchors = null;
+        String out = null;
+        int first = 0;
+        try {
+            while (first < args.length && args[first].startsWith("--")) {
+                if (first + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value of " + args[first]);
+                }
+                switch (args[first]) {
+                    case "--anchors": anchors = args[first + 1]; break;
+                    case "--out": out = args[first + 1]; break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[first]);
+                }
+                first += 2;
+            }
+            if (anchors == null || out == null || first == args.length) {
+                throw new IllegalArgumentException("The anchors, the output and at least one recording are required");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        AnchorRegistry anchorRegistry;
+        try (Reader reader = new FileReader(anchors)) {
+            anchorRegistry = AnchorRegistry.fromCsv(reader);
+        }
+        RangingCalibrator calibrator = new RangingCalibrator(anchorRegistry);
+        for (int i = first; i < args.length; i++) {
+            String recording = args[i];
+            int at = recording.lastIndexOf('@');
+            int added;
+            if (at < 0) {
+                try (PacketReader reader = PacketReader.open(new File(recording))) {
+                    added = calibrator.addRecording(reader);
+                }
+            } else {
+                String[] spot = recording.substring(at + 1).split(",");
+                if (spot.length != 2) {
+                    throw new IOException("Invalid spot of " + recording + ", expected @x,y");
+                }
+                double x, y;
+                try {
+                    x = Double.parseDouble(spot[0].trim());
+                    y = Double.parseDouble(spot[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid spot of " + recording, e);
+                }
+                try (PacketReader reader = PacketReader.open(new File(recording.substring(0, at)))) {
+                    added = calibrator.addRecording(reader, x, y);
+                }
+            }
+            System.out.println(recording + ": " + added + " samples");
+        }
+
+        RangingModel model = calibrator.fit();
+        try (Writer writer = new FileWriter(out)) {
+            model.writeCsv(writer);
+        }
+        for (int i = 0; i < anchorRegistry.size(); i++) {
+            String peerId = WiraPayloadDecoder.formatPeerId(anchorRegistry.getPeerId(i));
+            if (calibrator.getSampleCount(i) < RangingCalibrator.MIN_SAMPLES) {
+                System.out.println(peerId + ": too few samples, default calibration");
+            } else {
+                System.out.printf("%s: RSSI at 1 m %.1f dBm, exponent %.2f, deviation %.1f dB%n", peerId,
+                        model.getRssiAtOneMeter(i), model.getPathLossExponent(i), model.getRssiDeviation(i));
+            }
+        }
+    }
+}
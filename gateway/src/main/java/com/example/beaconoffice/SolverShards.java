@@ -0,0 +1,224 @@
+package com.example.beaconoffice;
+
+/**
+ * SolverShards class spreads the tags of a gateway over a number of TrackingPipelines, each with its
+ * own tracking thread, so that the decoding, solving and filtering of hundreds of tags runs on all cores.
+ * Every tag always goes to the same pipeline, chosen from its Bluetooth address, so its packets
+ * are processed in order and its state is only ever touched by one thread.
+ * <p>
+ * The packets must be offered by a single thread, since every pipeline has a single-producer queue.
+ *
+ * @version 1.0
+ * @see TrackingPipeline
+ * @see PacketIngestor
+ */
+public class SolverShards {
+
+    private final TrackingPipeline[] pipelines;
+    private final TagState[] tags;
+    private volatile long ignoredCount;
+
+    /**
+     * Class constructor
+     *
+     * @param anchorRegistry the positions of the AltBeacons
+     * @param addresses the packed 48-bit Bluetooth addresses of the tags that are allowed to be tracked
+     * @param floorPlan the floor plan used by the particle filters
+     * @param shardCount the number of pipelines, usually one per core
+     * @param queueCapacity the number of packets that can wait for every tracking thread
+     * @param processNoise the process noise of the Kalman filter of every tag, in m^2/s^3
+     * @param measurementNoise the measurement noise of the Kalman filter of every tag, in m^2
+     */
+    public SolverShards(AnchorRegistry anchorRegistry, long[] addresses, FloorPlan floorPlan, int shardCount,
+                        int queueCapacity, double processNoise, double measurementNoise) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        TagTracker[] trackers = new TagTracker[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            trackers[i] = new TagTracker(processNoise, measurementNoise);
+        }
+        tags = new TagState[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            tags[i] = trackers[shardOf(addresses[i], shardCount)].allow(addresses[i]);
+        }
+
+        pipelines = new TrackingPipeline[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            // A gateway publishes no snapshots: the positions are read from the states of the tags
+            pipelines[i] = new TrackingPipeline(anchorRegistry, trackers[i], floorPlan, queueCapacity, measurementNoise, 0);
+            pipelines[i].setShownAddress(-1);
+        }
+    }
+
+    /**
+     * Finds the pipeline of a tag.
+     *
+     * @param address the packed 48-bit Bluetooth address of the tag
+     * @param shardCount the number of pipelines
+     * @return the index of the pipeline
+     */
+    static int shardOf(long address, int shardCount) {
+        long h = address * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % shardCount);
+    }
+
+    /**
+     * Makes every pipeline use particle filters instead of the position solver.
+     *
+     * @param particleCount the number of particles of every filter, or 0 for the position solver
+     * @see TrackingPipeline#setParticleCount(int)
+     */
+    public void setParticleCount(int particleCount) {
+        for (TrackingPipeline pipeline : pipelines) {
+            pipeline.setParticleCount(particleCount);
+        }
+    }
+
+    /**
+     * Makes every pipeline fuse the reported distances with the distances from the RSSI.
+     *
+     * @param rangingModel the calibrated model, or null to use the reported distances alone
+     * @see TrackingPipeline#setRangingModel(RangingModel)
+     */
+    public void setRangingModel(RangingModel rangingModel) {
+        for (TrackingPipeline pipeline : pipelines) {
+            pipeline.setRangingModel(rangingModel);
+        }
+    }
+
+    /**
+     * Makes every pipeline estimate the positions from the fingerprints of a surveyed radio map.
+     *
+     * @param radioMap the fingerprint database of the floor, or null to go back to the distances
+     * @see TrackingPipeline#setRadioMap(RadioMap)
+     */
+    public void setRadioMap(RadioMap radioMap) {
+        for (TrackingPipeline pipeline : pipelines) {
+            pipeline.setRadioMap(radioMap);
+        }
+    }
+
+    public void start() {
+        for (TrackingPipeline pipeline : pipelines) {
+            pipeline.start();
+        }
+    }
+
+    public void stop() {
+        for (TrackingPipeline pipeline : pipelines) {
+            pipeline.stop();
+        }
+    }
+
+    /**
+     * Hands an advertisement to the pipeline of its tag. It must only be called from one thread.
+     *
+     * @param packet the advertisement
+     * @param timeMillis the time of reception in milliseconds, from the monotonic clock of the gateway
+     * @return true if the packet got queued, false if it is not from an allowed tag, has no counter,
+     *         or the queue of its pipeline was full
+     */
+    public boolean offer(CapturedPacket packet, long timeMillis) {
+        TrackingPipeline pipeline = pipelines[shardOf(packet.address, pipelines.length)];
+        if (packet.dataFieldCount == 0 || pipeline.getTagTracker().get(packet.address) == null) {
+            ignoredCount++;
+            return false;
+        }
+        return pipeline.offer(packet.address, packet.dataFields[0], packet.id1, packet.id1Length,
+                packet.id2, packet.id2Length, timeMillis);
+    }
+
+    public int getShardCount() {
+        return pipelines.length;
+    }
+
+    public int getTagCount() {
+        return tags.length;
+    }
+
+    /**
+     * Getter for a tracked tag, in the order of the addresses of the constructor.
+     * Its latest fix can be read from any thread with {@link TagState#copyLatestFix(double[])}.
+     *
+     * @param index the position of the tag, from 0 to getTagCount() - 1
+     * @return the state of the tag
+     */
+    public TagState getTag(int index) {
+        return tags[index];
+    }
+
+    /**
+     * Getter for the number of packets that were not from an allowed tag or had no counter
+     *
+     * @return the requested count
+     */
+    public long getIgnoredCount() {
+        return ignoredCount;
+    }
+
+    /**
+     * Getter for the number of packets that found the queue of their pipeline full and got dropped
+     *
+     * @return the requested count
+     */
+    public long getDroppedCount() {
+        long count = 0;
+        for (TrackingPipeline pipeline : pipelines) {
+            count += pipeline.getDroppedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Getter for the number of packets that repeated the counter of a packet that was already processed
+     *
+     * @return the requested count
+     */
+    public long getDuplicateCount() {
+        long count = 0;
+        for (TrackingPipeline pipeline : pipelines) {
+            count += pipeline.getDuplicateCount();
+        }
+        return count;
+    }
+
+    /**
+     * Getter for the number of packets that arrived after a packet of the same tag with a newer counter
+     *
+     * @return the requested count
+     */
+    public long getStaleCount() {
+        long count = 0;
+        for (TrackingPipeline pipeline : pipelines) {
+            count += pipeline.getStaleCount();
+        }
+        return count;
+    }
+
+    /**
+     * Getter for the number of packets whose payload was too short to be decoded
+     *
+     * @return the requested count
+     */
+    public long getIncompleteCount() {
+        long count = 0;
+        for (TrackingPipeline pipeline : pipelines) {
+            count += pipeline.getIncompleteCount();
+        }
+        return count;
+    }
+
+    /**
+     * Getter for the number of packets from which no position could be estimated
+     *
+     * @return the requested count
+     */
+    public long getUnsolvedCount() {
+        long count = 0;
+        for (TrackingPipeline pipeline : pipelines) {
+            count += pipeline.getUnsolvedCount();
+        }
+        return count;
+    }
+}
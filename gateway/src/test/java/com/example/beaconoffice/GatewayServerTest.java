@@ -0,0 +1,217 @@
+package com.example.beaconoffice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GatewayServer, PacketIngestor and SolverShards, over the loopback interface.
+ */
+public class GatewayServerTest {
+
+    private static final int TAGS = 200;
+    private static final int PACKETS_PER_TAG = 20;
+    private static final long FIRST_TAG = 0x482335000100L;
+    private static final int[] PEERS = {0xF1, 0xF2, 0xF3};
+    private static final int[] RSSI = {-60, -65, -70};
+
+    private GatewayServer gateway;
+
+    @Before
+    public void startGateway() throws IOException {
+        AnchorRegistry registry = AnchorRegistry.fromCsv(new StringReader("F1,0,0\nF2,20,0\nF3,0,20\n"));
+        long[] addresses = new long[TAGS];
+        for (int i = 0; i < TAGS; i++) {
+            addresses[i] = FIRST_TAG + i;
+        }
+        SolverShards shards = new SolverShards(registry, addresses, FloorPlan.office(), 4, 1024, 0.5, 1.0);
+        InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        gateway = new GatewayServer(shards, LocalTangentPlane.office(), loopback, loopback, loopback);
+        gateway.start();
+    }
+
+    @After
+    public void stopGateway() {
+        gateway.stop();
+    }
+
+    /**
+     * Builds the two AltBeacon identifiers of a WiRa advertisement of a tag at (x, y).
+     */
+    private static byte[][] payload(double x, double y) {
+        ByteBuffer buffer = ByteBuffer.allocate(WiraPayloadDecoder.PAYLOAD_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        for (int peerId : PEERS)
+            buffer.put((byte) peerId);
+        for (int value : RSSI)
+            buffer.put((byte) value);
+        buffer.putFloat((float) Math.hypot(x, y));
+        buffer.putFloat((float) Math.hypot(x - 20, y));
+        buffer.putFloat((float) Math.hypot(x, y - 20));
+
+        byte[] id1 = new byte[16];
+        byte[] id2 = new byte[2];
+        buffer.flip();
+        buffer.get(id1);
+        buffer.get(id2);
+        return new byte[][]{id1, id2};
+    }
+
+    private static double tagX(int tag) {
+        return 1 + tag % 10;
+    }
+
+    private static double tagY(int tag) {
+        return 1 + tag / 10 * 0.5;
+    }
+
+    private void awaitReceived(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (gateway.getIngestor().getReceivedCount() + gateway.getIngestor().getMalformedCount() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitFixes(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        double[] xy = new double[2];
+        while (System.currentTimeMillis() < deadline) {
+            int fixes = 0;
+            for (int i = 0; i < gateway.getShards().getTagCount(); i++) {
+                if (gateway.getShards().getTag(i).copyLatestFix(xy) >= 0) {
+                    fixes++;
+                }
+            }
+            if (fixes >= count) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private String get(String path) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + gateway.getHttpPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try (InputStream in = connection.getInputStream()) {
+            assertEquals(200, connection.getResponseCode());
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                body.write(chunk, 0, read);
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void tcp_solvesEveryTagOnItsShard() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), gateway.getIngestor().getTcpPort());
+             PacketRecorder recorder = new PacketRecorder(socket.getOutputStream())) {
+            // The tags take turns, like the advertisements of many tags reaching one receiver
+            for (int packet = 0; packet < PACKETS_PER_TAG; packet++) {
+                for (int tag = 0; tag < TAGS; tag++) {
+                    byte[][] ids = payload(tagX(tag), tagY(tag));
+                    recorder.record(0, FIRST_TAG + tag, ids[0], ids[1], Collections.singletonList((long) packet));
+                }
+            }
+            recorder.flush();
+            awaitReceived(TAGS * PACKETS_PER_TAG);
+        }
+        awaitFixes(TAGS);
+
+        assertEquals(TAGS * PACKETS_PER_TAG, gateway.getIngestor().getReceivedCount());
+        assertEquals(0, gateway.getIngestor().getMalformedCount());
+        assertEquals(0, gateway.getShards().getDroppedCount());
+        double[] xy = new double[2];
+        for (int tag = 0; tag < TAGS; tag++) {
+            TagState state = gateway.getShards().getTag(tag);
+            assertEquals(FIRST_TAG + tag, state.getAddress());
+            assertTrue(state.copyLatestFix(xy) >= 0);
+            assertEquals(tagX(tag), xy[0], 0.01);
+            assertEquals(tagY(tag), xy[1], 0.01);
+        }
+
+        String positions = get("/positions");
+        assertTrue(positions.startsWith("[{\"tag\":\"48:23:35:00:01:00\",\"x\":1.000,\"y\":1.000,"));
+        assertEquals(TAGS, positions.split("\"tag\"").length - 1);
+        assertTrue(get("/stats").contains("\"received\":" + TAGS * PACKETS_PER_TAG + ","));
+    }
+
+    @Test
+    public void udp_readsEveryRecordOfADatagram() throws Exception {
+        ByteArrayOutputStream datagram = new ByteArrayOutputStream();
+        try (PacketRecorder recorder = new PacketRecorder(datagram)) {
+            for (int packet = 0; packet < 5; packet++) {
+                byte[][] ids = payload(3, 4);
+                recorder.record(0, FIRST_TAG, ids[0], ids[1], Collections.singletonList((long) packet));
+            }
+            // A tag that is not tracked and an advertisement without a counter
+            byte[][] ids = payload(3, 4);
+            recorder.record(0, FIRST_TAG + TAGS, ids[0], ids[1], Collections.singletonList(0L));
+            recorder.record(0, FIRST_TAG + 1, ids[0], ids[1], Collections.<Long>emptyList());
+        }
+        byte[] bytes = datagram.toByteArray();
+        byte[] garbage = "not a recording".getBytes(StandardCharsets.US_ASCII);
+
+        try (DatagramSocket socket = new DatagramSocket()) {
+            InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), gateway.getIngestor().getUdpPort());
+            socket.send(new DatagramPacket(bytes, bytes.length, target));
+            socket.send(new DatagramPacket(garbage, garbage.length, target));
+        }
+        awaitReceived(8);
+        awaitFixes(1);
+
+        assertEquals(7, gateway.getIngestor().getReceivedCount());
+        assertEquals(1, gateway.getIngestor().getMalformedCount());
+        assertEquals(2, gateway.getShards().getIgnoredCount());
+        double[] xy = new double[2];
+        assertTrue(gateway.getShards().getTag(0).copyLatestFix(xy) >= 0);
+        assertEquals(3, xy[0], 0.01);
+        assertEquals(4, xy[1], 0.01);
+    }
+
+    @Test
+    public void tcp_closesConnectionsThatAreNotRecordings() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), gateway.getIngestor().getTcpPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /positions HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        assertEquals(1, gateway.getIngestor().getMalformedCount());
+        assertEquals(0, gateway.getIngestor().getReceivedCount());
+    }
+
+    @Test
+    public void shards_spreadTheTagsEvenly() {
+        int[] counts = new int[8];
+        for (int i = 0; i < 8000; i++) {
+            counts[SolverShards.shardOf(FIRST_TAG + i, counts.length)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 800 && count < 1200);
+        }
+    }
+}
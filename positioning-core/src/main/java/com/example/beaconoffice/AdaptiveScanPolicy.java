@@ -0,0 +1,137 @@
+package com.example.beaconoffice;
+
+/**
+ * AdaptiveScanPolicy class follows what the tracked tag is doing, since most of the time it sits at a desk:
+ * <ul>
+ *     <li>while the tag is active, i.e. its smoothed position left the spot where it rested
+ *     or its counter advances fast, the radio listens all the time;</li>
+ *     <li>once the tag stays still for a few cycles, the pause between the cycles doubles with every
+ *     quiet cycle, up to a maximum, so a tag that starts moving is still noticed within a few seconds;</li>
+ *     <li>when no fresh packet arrived for a while, the tag is considered gone and the scanner only
+ *     looks for it again every half a minute or so.</li>
+ * </ul>
+ * When the battery of the handset is low, even an active tag gets a pause between the cycles
+ * and every other pause gets doubled.
+ *
+ * @version 1.0
+ * @see ScanPolicy
+ * @see ScanScheduler
+ */
+public class AdaptiveScanPolicy implements ScanPolicy {
+
+    public static final long SCAN_PERIOD = FixedScanPolicy.DEFAULT_SCAN_PERIOD; // ms
+    public static final double ACTIVE_COUNTER_RATE = 3.0; // fresh packets per second
+    public static final double REST_RADIUS = 1.0; // m
+    public static final int SETTLE_CYCLES = 5;
+    public static final long MIN_BACKOFF = 1000; // ms
+    public static final long MAX_BACKOFF = 8000; // ms
+    public static final long ABSENT_AFTER = 20_000; // ms
+    public static final long ABSENT_BETWEEN_SCAN_PERIOD = 30_000; // ms
+
+    private final long scanPeriodMillis;
+    private final double activeCounterRate;
+    private final double restRadius;
+    private final int settleCycles;
+    private final long minBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long absentAfterMillis;
+    private final long absentBetweenMillis;
+
+    private boolean resting = false;
+    private double restX, restY;
+    private int quietCycles;
+    private long backoffMillis;
+    private long startMillis = -1;
+
+    /**
+     * Default constructor, with the settings that suit a person carrying the tag around an office.
+     */
+    public AdaptiveScanPolicy() {
+        this(SCAN_PERIOD, ACTIVE_COUNTER_RATE, REST_RADIUS, SETTLE_CYCLES, MIN_BACKOFF, MAX_BACKOFF,
+                ABSENT_AFTER, ABSENT_BETWEEN_SCAN_PERIOD);
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param scanPeriodMillis the time the radio listens in every cycle, in milliseconds
+     * @param activeCounterRate the rate of fresh packets per second from which the tag counts as active
+     * @param restRadius how far the smoothed position may wander from the spot where the tag rests, in meters
+     * @param settleCycles the number of quiet cycles before the scanner starts backing off
+     * @param minBackoffMillis the first pause between the cycles of a still tag, in milliseconds
+     * @param maxBackoffMillis the longest pause between the cycles of a still tag, in milliseconds
+     * @param absentAfterMillis the time without a fresh packet after which the tag counts as gone, in milliseconds
+     * @param absentBetweenMillis the pause between the cycles while the tag is gone, in milliseconds
+     */
+    public AdaptiveScanPolicy(long scanPeriodMillis, double activeCounterRate, double restRadius, int settleCycles,
+                              long minBackoffMillis, long maxBackoffMillis, long absentAfterMillis,
+                              long absentBetweenMillis) {
+        if (minBackoffMillis <= 0 || maxBackoffMillis < minBackoffMillis) {
+            throw new IllegalArgumentException("Invalid back-off " + minBackoffMillis + "-" + maxBackoffMillis);
+        }
+        this.scanPeriodMillis = scanPeriodMillis;
+        this.activeCounterRate = activeCounterRate;
+        this.restRadius = restRadius;
+        this.settleCycles = settleCycles;
+        this.minBackoffMillis = minBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.absentAfterMillis = absentAfterMillis;
+        this.absentBetweenMillis = absentBetweenMillis;
+    }
+
+    /**
+     * Starts with the radio always on, until the tag has been seen resting.
+     */
+    @Override
+    public void reset(ScanSchedule schedule) {
+        resting = false;
+        quietCycles = 0;
+        backoffMillis = 0;
+        startMillis = -1;
+        schedule.set(scanPeriodMillis, 0);
+    }
+
+    @Override
+    public void schedule(ScanObservation observation, ScanSchedule schedule) {
+        long now = observation.getTimeMillis();
+        if (startMillis < 0) {
+            startMillis = now;
+        }
+        int lowBattery = observation.isBatteryLow() ? 1 : 0;
+
+        long lastSeen = observation.getLastFreshPacketMillis() >= 0 ? observation.getLastFreshPacketMillis() : startMillis;
+        if (now - lastSeen > absentAfterMillis) {
+            // The tag is gone; when it comes back it has to settle again
+            resting = false;
+            quietCycles = 0;
+            backoffMillis = 0;
+            schedule.set(scanPeriodMillis, absentBetweenMillis << lowBattery);
+            return;
+        }
+
+        boolean moved = false;
+        if (observation.hasFix()) {
+            double dx = observation.getX() - restX;
+            double dy = observation.getY() - restY;
+            if (!resting || dx * dx + dy * dy > restRadius * restRadius) {
+                moved = true;
+                resting = true;
+                restX = observation.getX();
+                restY = observation.getY();
+            }
+        }
+
+        if (moved || observation.getCounterRate() >= activeCounterRate) {
+            quietCycles = 0;
+            backoffMillis = 0;
+        } else if (++quietCycles >= settleCycles) {
+            backoffMillis = backoffMillis == 0 ? minBackoffMillis : Math.min(2 * backoffMillis, maxBackoffMillis);
+        }
+
+        long between = backoffMillis;
+        if (lowBattery == 1) {
+            between = between == 0 ? minBackoffMillis : 2 * between;
+        }
+        schedule.set(scanPeriodMillis, between);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.beaconoffice;
+
+/**
+ * AnchorMask class is a set of AltBeacons of the AnchorRegistry, kept as one bit per registry index.
+ * It is used to remember which AltBeacons were recognised in the latest packet, so that the map
+ * can find the few AltBeacons whose state changed between two packets, without checking
+ * every one of them and without any allocation.
+ *
+ * @version 1.0
+ */
+public class AnchorMask {
+
+    private final long[] words = new long[(AnchorRegistry.MAX_ANCHORS + 63) / 64];
+
+    /**
+     * Default constructor, for an empty set
+     */
+    public AnchorMask() { }
+
+    /**
+     * Adds an AltBeacon to the set.
+     *
+     * @param index the index of the AltBeacon in the AnchorRegistry
+     */
+    public void set(int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Checks if an AltBeacon is in the set.
+     *
+     * @param index the index of the AltBeacon in the AnchorRegistry
+     * @return true if the AltBeacon is in the set
+     */
+    public boolean get(int index) {
+        return (words[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Removes all AltBeacons from the set.
+     */
+    public void clear() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = 0;
+        }
+    }
+
+    /**
+     * Checks if the set has no AltBeacons.
+     *
+     * @return true if the set is empty
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes this set equal to another one.
+     *
+     * @param other the set whose AltBeacons will be copied
+     */
+    public void copyFrom(AnchorMask other) {
+        System.arraycopy(other.words, 0, words, 0, words.length);
+    }
+
+    /**
+     * Finds the next AltBeacon that is in only one of the two sets, i.e. whose state has changed.
+     * All the changes are visited with:
+     * <pre>
+     * for (int i = mask.nextDifference(previous, 0); i >= 0; i = mask.nextDifference(previous, i + 1))
+     * </pre>
+     *
+     * @param other the set to compare with
+     * @param from the first index to check
+     * @return the index of the next AltBeacon that differs, or -1 if there is none
+     */
+    public int nextDifference(AnchorMask other, int from) {
+        int w = from >>> 6;
+        if (from < 0 || w >= words.length) {
+            return -1;
+        }
+        long word = (words[w] ^ other.words[w]) & (-1L << from);
+        while (word == 0) {
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w] ^ other.words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+}
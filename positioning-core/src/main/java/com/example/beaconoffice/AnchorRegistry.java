@@ -0,0 +1,137 @@
+package com.example.beaconoffice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * AnchorRegistry class holds the fixed positioned AltBeacons (anchors) of a floor and their
+ * coordinates in meters. It is loaded from a small CSV floor configuration, with one line per anchor:
+ * <pre>
+ * # peer ID (hex), x (m), y (m)
+ * F1,0,0
+ * F2,6,0
+ * </pre>
+ * Every anchor gets an index, in the order of the file. Since a peer ID is a single byte,
+ * a table of 256 entries maps every possible peer ID to its index, so looking up an anchor
+ * costs one array access and no allocation.
+ *
+ * @version 1.0
+ * @see TrackingPipeline#process(RawPacket)
+ */
+public class AnchorRegistry {
+
+    /**
+     * The maximum number of anchors, one for every possible peer ID.
+     */
+    public static final int MAX_ANCHORS = 256;
+
+    private final int[] indexByPeerId = new int[MAX_ANCHORS];
+    private final int[] peerIds;
+    private final double[] x;
+    private final double[] y;
+
+    private AnchorRegistry(int[] peerIds, double[] x, double[] y) {
+        this.peerIds = peerIds;
+        this.x = x;
+        this.y = y;
+        Arrays.fill(indexByPeerId, -1);
+        for (int i = 0; i < peerIds.length; i++) {
+            indexByPeerId[peerIds[i]] = i;
+        }
+    }
+
+    /**
+     * Reads a floor configuration in CSV format. Empty lines and lines starting with '#' are ignored.
+     *
+     * @param reader the source of the CSV text
+     * @return the registry of the anchors in the configuration
+     * @throws IOException if the text cannot be read or a line is not a valid anchor
+     */
+    public static AnchorRegistry fromCsv(Reader reader) throws IOException {
+        int[] peerIds = new int[MAX_ANCHORS];
+        double[] x = new double[MAX_ANCHORS];
+        double[] y = new double[MAX_ANCHORS];
+        boolean[] seen = new boolean[MAX_ANCHORS];
+        int count = 0;
+
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split(",");
+            if (fields.length != 3) {
+                throw new IOException("Line " + lineNumber + ": expected peer ID, x and y but found \"" + line + "\"");
+            }
+            int peerId;
+            try {
+                peerId = Integer.parseInt(fields[0].trim(), 16);
+                x[count] = Double.parseDouble(fields[1].trim());
+                y[count] = Double.parseDouble(fields[2].trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + lineNumber + ": invalid number in \"" + line + "\"", e);
+            }
+            if (peerId < 0 || peerId >= MAX_ANCHORS) {
+                throw new IOException("Line " + lineNumber + ": peer ID " + fields[0] + " is not a single byte");
+            }
+            if (seen[peerId]) {
+                throw new IOException("Line " + lineNumber + ": peer ID " + fields[0] + " appears twice");
+            }
+            seen[peerId] = true;
+            peerIds[count] = peerId;
+            count++;
+        }
+
+        return new AnchorRegistry(Arrays.copyOf(peerIds, count), Arrays.copyOf(x, count), Arrays.copyOf(y, count));
+    }
+
+    /**
+     * Finds the anchor that has the given peer ID.
+     *
+     * @param peerId the unsigned peer ID byte, from 0 to 255
+     * @return the index of the anchor, or -1 if there is no anchor with this peer ID
+     */
+    public int indexOf(int peerId) {
+        return indexByPeerId[peerId & 0xff];
+    }
+
+    /**
+     * Computes the count of anchors in this registry
+     *
+     * @return the requested count
+     */
+    public int size() {
+        return peerIds.length;
+    }
+
+    public int getPeerId(int index) {
+        return peerIds[index];
+    }
+
+    /**
+     * Getter for the x coordinate of an anchor
+     *
+     * @param index the index of the anchor
+     * @return the x coordinate in meters
+     */
+    public double getX(int index) {
+        return x[index];
+    }
+
+    /**
+     * Getter for the y coordinate of an anchor
+     *
+     * @param index the index of the anchor
+     * @return the y coordinate in meters
+     */
+    public double getY(int index) {
+        return y[index];
+    }
+}
@@ -1,7 +1,5 @@
 package com.example.beaconoffice;
 
-import org.altbeacon.beacon.Beacon;
-
 /**
  * BeaconPoint class contains the (x, y) coordinates of the fixed positioned AltBeacon
  * and the distance between this and the WiRa initiator.
@@ -10,7 +8,7 @@ import org.altbeacon.beacon.Beacon;
  * @version 1.0
  * @since 31/8/2022
  * 
- * @see ScanBeacons#addBeaconValues(Beacon) 
+ * @see TrackingPipeline#process(RawPacket)
  */
 public class BeaconPoint {
 
@@ -0,0 +1,134 @@
+package com.example.beaconoffice;
+
+/**
+ * CapturedPacket class is one raw AltBeacon advertisement as it is kept in a packet recording:
+ * the time of reception, the Bluetooth address of the sender, the bytes of the first and the second
+ * identifier and the data fields. Nothing is decoded, so a recording can be replayed through
+ * any version of the decoder.
+ * A single instance is meant to be reused for every packet of a recording.
+ *
+ * @version 1.0
+ * @see PacketRecorder
+ * @see PacketReader
+ */
+public class CapturedPacket {
+
+    /**
+     * The largest identifier, in bytes, that a recording can hold.
+     */
+    public static final int MAX_ID_LENGTH = 255;
+    /**
+     * The largest number of data fields that a recording can hold.
+     */
+    public static final int MAX_DATA_FIELDS = 255;
+
+    long timeMillis;
+    long address;
+    final byte[] id1 = new byte[MAX_ID_LENGTH];
+    int id1Length;
+    final byte[] id2 = new byte[MAX_ID_LENGTH];
+    int id2Length;
+    long[] dataFields = new long[4];
+    int dataFieldCount;
+
+    /**
+     * Default constructor
+     */
+    public CapturedPacket() { }
+
+    /**
+     * Fills this packet with the content of an advertisement.
+     *
+     * @param timeMillis the time of reception in milliseconds, from a monotonic clock
+     * @param address the packed 48-bit Bluetooth address of the sender
+     * @param id1 the bytes of the first identifier
+     * @param id2 the bytes of the second identifier
+     * @param dataFields the data fields of the advertisement
+     * @param dataFieldCount the number of data fields, starting from the first element of the array
+     */
+    public void set(long timeMillis, long address, byte[] id1, byte[] id2, long[] dataFields, int dataFieldCount) {
+        if (id1.length > MAX_ID_LENGTH || id2.length > MAX_ID_LENGTH || dataFieldCount > MAX_DATA_FIELDS) {
+            throw new IllegalArgumentException("Advertisement too long to be captured");
+        }
+        this.timeMillis = timeMillis;
+        this.address = address;
+        System.arraycopy(id1, 0, this.id1, 0, id1.length);
+        id1Length = id1.length;
+        System.arraycopy(id2, 0, this.id2, 0, id2.length);
+        id2Length = id2.length;
+        ensureDataFields(dataFieldCount);
+        System.arraycopy(dataFields, 0, this.dataFields, 0, dataFieldCount);
+        this.dataFieldCount = dataFieldCount;
+    }
+
+    void ensureDataFields(int count) {
+        if (dataFields.length < count) {
+            dataFields = new long[Math.max(count, 2 * dataFields.length)];
+        }
+    }
+
+    /**
+     * Getter for the time of reception
+     *
+     * @return the time in milliseconds, from a monotonic clock
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Getter for the Bluetooth address of the sender
+     *
+     * @return the packed 48-bit address
+     */
+    public long getAddress() {
+        return address;
+    }
+
+    public int getId1Length() {
+        return id1Length;
+    }
+
+    public int getId2Length() {
+        return id2Length;
+    }
+
+    /**
+     * Copies the first identifier into an array of its exact length.
+     *
+     * @return a new array with the bytes of the first identifier
+     */
+    public byte[] copyId1() {
+        byte[] copy = new byte[id1Length];
+        System.arraycopy(id1, 0, copy, 0, id1Length);
+        return copy;
+    }
+
+    /**
+     * Copies the second identifier into an array of its exact length.
+     *
+     * @return a new array with the bytes of the second identifier
+     */
+    public byte[] copyId2() {
+        byte[] copy = new byte[id2Length];
+        System.arraycopy(id2, 0, copy, 0, id2Length);
+        return copy;
+    }
+
+    public int getDataFieldCount() {
+        return dataFieldCount;
+    }
+
+    /**
+     * Getter for a data field of the advertisement; for a WiRa initiator the first one is the packet counter.
+     *
+     * @param i the position of the data field, from 0 to getDataFieldCount() - 1
+     * @return the value of the data field
+     */
+    public long getDataField(int i) {
+        if (i >= dataFieldCount) {
+            throw new IndexOutOfBoundsException("Data field " + i + " of " + dataFieldCount);
+        }
+        return dataFields[i];
+    }
+}
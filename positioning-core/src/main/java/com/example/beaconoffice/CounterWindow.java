@@ -0,0 +1,125 @@
+package com.example.beaconoffice;
+
+/**
+ * CounterWindow class tells apart the fresh packets of a tag from the ones that repeat or lag behind content
+ * that was already processed. A WiRa initiator advertises every ranging result several times, with the same
+ * counter, and the scanner may also hear the packets out of order, so comparing the counter with the one of
+ * the packet before is not enough.
+ * The window remembers the highest counter seen and, in the bits of a single long, which of the counters
+ * right behind it were seen too. The counters wrap around, so they get compared with serial number arithmetic:
+ * a counter is ahead of the highest one if it is less than half of the counter range ahead.
+ * <ul>
+ *     <li>a counter ahead of the highest one is fresh and moves the window;</li>
+ *     <li>a counter that was already seen is a duplicate;</li>
+ *     <li>a counter inside the window that was not seen yet is stale, as newer content was already processed;</li>
+ *     <li>a counter behind the window, or any counter after a long silence, means that the tag
+ *     restarted or was out of range for a while, so the window starts over from it.</li>
+ * </ul>
+ *
+ * @version 1.0
+ * @see TagState#acceptCounter(long, long)
+ */
+public class CounterWindow {
+
+    public static final int FRESH = 0;
+    public static final int DUPLICATE = 1;
+    public static final int STALE = 2;
+
+    /**
+     * The width of the counter of a WiRa packet, in bits.
+     */
+    public static final int COUNTER_BITS = 8;
+    /**
+     * The number of counters behind the highest one that are remembered.
+     */
+    public static final int WINDOW_SIZE = 32;
+    /**
+     * The silence after which any counter is accepted, in milliseconds.
+     */
+    public static final long RESYNC_AFTER = 10_000;
+
+    private final long mask;
+    private final long half;
+    private final int windowSize;
+    private final long resyncAfterMillis;
+
+    private long highest;
+    private long seen; // bit i is set if the counter highest - i was seen
+    private long lastFreshMillis;
+    private boolean hasCounter = false;
+
+    /**
+     * Default constructor, for the 8-bit counters of the WiRa initiators.
+     */
+    public CounterWindow() {
+        this(COUNTER_BITS, WINDOW_SIZE, RESYNC_AFTER);
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param counterBits the width of the counter in bits, from 2 to 63
+     * @param windowSize the number of counters behind the highest one that are remembered, from 1 to 64,
+     *                   and less than half of the counter range
+     * @param resyncAfterMillis the silence after which any counter is accepted, in milliseconds
+     */
+    public CounterWindow(int counterBits, int windowSize, long resyncAfterMillis) {
+        if (counterBits < 2 || counterBits > 63) {
+            throw new IllegalArgumentException("Invalid counter width " + counterBits);
+        }
+        if (windowSize < 1 || windowSize > Long.SIZE || windowSize >= 1L << (counterBits - 1)) {
+            throw new IllegalArgumentException("Invalid window size " + windowSize);
+        }
+        this.mask = (1L << counterBits) - 1;
+        this.half = 1L << (counterBits - 1);
+        this.windowSize = windowSize;
+        this.resyncAfterMillis = resyncAfterMillis;
+    }
+
+    /**
+     * Checks the counter of a packet and, if it is fresh, remembers it.
+     *
+     * @param counter the counter of the packet; only its lowest bits are used
+     * @param timeMillis the time of reception in milliseconds, from a monotonic clock
+     * @return FRESH, DUPLICATE or STALE
+     */
+    public int accept(long counter, long timeMillis) {
+        counter &= mask;
+        if (!hasCounter || timeMillis - lastFreshMillis > resyncAfterMillis) {
+            return restart(counter, timeMillis);
+        }
+        // The distance from the highest counter, between -half and half - 1
+        long ahead = ((counter - highest + half) & mask) - half;
+        if (ahead > 0) {
+            seen = ahead >= Long.SIZE ? 1 : (seen << ahead) | 1;
+            highest = counter;
+            lastFreshMillis = timeMillis;
+            return FRESH;
+        }
+        long behind = -ahead;
+        if (behind >= windowSize) {
+            return restart(counter, timeMillis);
+        }
+        long bit = 1L << behind;
+        if ((seen & bit) != 0) {
+            return DUPLICATE;
+        }
+        seen |= bit;
+        return STALE;
+    }
+
+    private int restart(long counter, long timeMillis) {
+        highest = counter;
+        seen = 1;
+        lastFreshMillis = timeMillis;
+        hasCounter = true;
+        return FRESH;
+    }
+
+    /**
+     * Forgets every counter, so that the next one is fresh.
+     */
+    public void reset() {
+        hasCounter = false;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.beaconoffice;
+
+/**
+ * DataList class represents a list of up to three triplets (Beacon ID, RSSI, Distance)
+ * according to which the application will compute the current initiator's position.
+ *
+ * @author Aikaterini - Maria Panteleaki
+ * @version 1.0
+ * @since 31/8/2022
+ */
+public class DataList {
+
+    private static final int CAPACITY = 9;
+
+    private int[] peerID = new int[CAPACITY];
+    private int[] rssi = new int[CAPACITY];
+    private float[] distance = new float[CAPACITY];
+    private int size = 0;
+
+    /**
+     * Default constructor
+     */
+    public DataList () { }
+
+    /**
+     * Adds the triplets (Beacon ID, RSSI, Distance) of a decoded packet to this list.
+     * If the list is full, the oldest triplets are dropped.
+     * @param packet the decoded advertisement of the WiRa Initiator
+     * @see TrackingPipeline#process(RawPacket)
+     */
+    public void addDataElement (WiraPacket packet) {
+        if (size + WiraPacket.PEER_COUNT > CAPACITY) {
+            clear();
+        }
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            peerID[size] = packet.getPeerId(i);
+            rssi[size] = packet.getRssi(i);
+            distance[size] = packet.getDistance(i);
+            size++;
+        }
+    }
+
+    /**
+     * Computes the count of triplets in this list
+     *
+     * @return the requested count
+     * @see TrackingPipeline#process(RawPacket)
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Clears all data from the list.
+     *
+     * @see TrackingPipeline#process(RawPacket)
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.beaconoffice;
+
+import java.util.Arrays;
+
+/**
+ * FingerprintLocalizer class estimates the position of one initiator by comparing the RSSI it measures
+ * with the fingerprints of a RadioMap, instead of trilaterating its distances. Where walls and furniture
+ * bend the radio waves, like in the kitchen and the meeting rooms, the distances are unreliable, but the
+ * RSSI pattern of a spot stays the same, so the spot can still be recognised.
+ * <p>
+ * Every packet only carries the RSSI of three anchors, so the localizer remembers the latest RSSI of every
+ * anchor for a few seconds, smoothed over the last packets, and compares the whole vector with the map. The estimate is the average of the
+ * k nearest surveyed points, weighted by the inverse of their distance in dB.
+ * Updating does not allocate memory.
+ *
+ * @version 1.0
+ * @see RadioMap
+ * @see TrackingPipeline#setRadioMap(RadioMap)
+ */
+public class FingerprintLocalizer {
+
+    public static final int NEAREST_COUNT = 4;
+    public static final long RSSI_MAX_AGE = 5000; // ms
+    public static final int MIN_HEARD_ANCHORS = 3;
+    // Weight of a new RSSI sample in the running average of its anchor
+    public static final float RSSI_SMOOTHING = 0.3f;
+
+    // Keeps a perfect match from taking all the weight
+    private static final double DISTANCE_OFFSET = 1.0; // dB
+
+    private final RadioMap radioMap;
+    private final float[] latestRssi;
+    private final long[] latestTimeMillis;
+    private final float[] fingerprint;
+    private final NeighborSet neighbors = new NeighborSet(NEAREST_COUNT);
+
+    private double x, y;
+    private double spread;
+
+    /**
+     * Class constructor
+     *
+     * @param radioMap the fingerprint database of the floor
+     */
+    public FingerprintLocalizer(RadioMap radioMap) {
+        this.radioMap = radioMap;
+        latestRssi = new float[radioMap.getAnchorCount()];
+        latestTimeMillis = new long[radioMap.getAnchorCount()];
+        fingerprint = new float[radioMap.getAnchorCount()];
+        reset();
+    }
+
+    public RadioMap getRadioMap() {
+        return radioMap;
+    }
+
+    /**
+     * Forgets the RSSI of every anchor.
+     */
+    public void reset() {
+        Arrays.fill(latestTimeMillis, Long.MIN_VALUE);
+    }
+
+    /**
+     * Remembers the RSSI of the anchors in a packet and updates the position estimate.
+     *
+     * @param anchorRegistry the anchors of the floor, in the order of the map
+     * @param packet the decoded packet
+     * @param timeMillis the time of the packet in milliseconds, from a monotonic clock
+     * @return true if the estimate could be updated, false if too few anchors were heard lately
+     *         or the map is empty
+     */
+    public boolean update(AnchorRegistry anchorRegistry, WiraPacket packet, long timeMillis) {
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            int index = anchorRegistry.indexOf(packet.getPeerId(i));
+            int rssi = packet.getRssi(i);
+            if (index >= 0 && index < latestRssi.length && rssi >= RangingModel.MIN_RSSI && rssi <= RangingModel.MAX_RSSI) {
+                if (isHeard(index, timeMillis)) {
+                    latestRssi[index] += RSSI_SMOOTHING * (rssi - latestRssi[index]);
+                } else {
+                    latestRssi[index] = rssi;
+                }
+                latestTimeMillis[index] = timeMillis;
+            }
+        }
+
+        int heard = 0;
+        for (int i = 0; i < fingerprint.length; i++) {
+            if (isHeard(i, timeMillis)) {
+                fingerprint[i] = latestRssi[i];
+                heard++;
+            } else {
+                fingerprint[i] = RadioMap.MISSING_RSSI;
+            }
+        }
+        if (heard < MIN_HEARD_ANCHORS || radioMap.size() == 0) {
+            return false;
+        }
+
+        radioMap.findNearest(fingerprint, neighbors);
+        double sumWeights = 0, sumX = 0, sumY = 0;
+        for (int i = 0; i < neighbors.size(); i++) {
+            int point = neighbors.getPoint(i);
+            double w = 1 / (neighbors.getDistance(i) + DISTANCE_OFFSET);
+            sumWeights += w;
+            sumX += w * radioMap.getX(point);
+            sumY += w * radioMap.getY(point);
+        }
+        x = sumX / sumWeights;
+        y = sumY / sumWeights;
+
+        double sumSquares = 0;
+        for (int i = 0; i < neighbors.size(); i++) {
+            int point = neighbors.getPoint(i);
+            double dx = radioMap.getX(point) - x;
+            double dy = radioMap.getY(point) - y;
+            sumSquares += (dx * dx + dy * dy) / (neighbors.getDistance(i) + DISTANCE_OFFSET);
+        }
+        spread = Math.sqrt(sumSquares / sumWeights);
+        return true;
+    }
+
+    private boolean isHeard(int index, long timeMillis) {
+        return latestTimeMillis[index] != Long.MIN_VALUE && timeMillis - latestTimeMillis[index] <= RSSI_MAX_AGE;
+    }
+
+    /**
+     * Getter for the x coordinate of the estimate
+     *
+     * @return the x coordinate in meters
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * Getter for the y coordinate of the estimate
+     *
+     * @return the y coordinate in meters
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Getter for how far the nearest surveyed points lie from the estimate
+     *
+     * @return the weighted RMS distance of the neighbours from the estimate, in meters
+     */
+    public double getSpread() {
+        return spread;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.beaconoffice;
+
+/**
+ * FixedScanPolicy class keeps the scanner on the same schedule, whatever the tag is doing.
+ *
+ * @version 1.0
+ * @see ScanPolicy
+ */
+public class FixedScanPolicy implements ScanPolicy {
+
+    /**
+     * The scan period that the BeaconManager uses unless it is told otherwise, in milliseconds.
+     */
+    public static final long DEFAULT_SCAN_PERIOD = 1100;
+    /**
+     * The pause between the scan cycles that the application always used, in milliseconds.
+     */
+    public static final long LEGACY_BETWEEN_SCAN_PERIOD = 500;
+
+    private final long scanPeriodMillis;
+    private final long betweenScanPeriodMillis;
+
+    /**
+     * Class constructor
+     *
+     * @param scanPeriodMillis the time the radio listens in every cycle, in milliseconds
+     * @param betweenScanPeriodMillis the time the radio stays off between two cycles, in milliseconds
+     */
+    public FixedScanPolicy(long scanPeriodMillis, long betweenScanPeriodMillis) {
+        this.scanPeriodMillis = scanPeriodMillis;
+        this.betweenScanPeriodMillis = betweenScanPeriodMillis;
+    }
+
+    /**
+     * Builds the schedule that the application used before the scan policies:
+     * the default scan period, with 500 ms between the cycles.
+     *
+     * @return the legacy policy
+     */
+    public static FixedScanPolicy legacy() {
+        return new FixedScanPolicy(DEFAULT_SCAN_PERIOD, LEGACY_BETWEEN_SCAN_PERIOD);
+    }
+
+    @Override
+    public void reset(ScanSchedule schedule) {
+        schedule.set(scanPeriodMillis, betweenScanPeriodMillis);
+    }
+
+    @Override
+    public void schedule(ScanObservation observation, ScanSchedule schedule) {
+        schedule.set(scanPeriodMillis, betweenScanPeriodMillis);
+    }
+}
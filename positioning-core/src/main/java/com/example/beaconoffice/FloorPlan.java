@@ -0,0 +1,127 @@
+package com.example.beaconoffice;
+
+/**
+ * FloorPlan class describes the part of the building in which the initiator is tracked:
+ * a rectangle of fixed width and height in meters, minus a number of rectangular areas where
+ * a person can never be, like the closed offices.
+ * The forbidden areas are kept in one flat array of (minX, minY, maxX, maxY) quadruplets,
+ * so that a point can be checked without any allocation, millions of times per second.
+ *
+ * @version 1.0
+ * @see ParticleFilterLocalizer
+ */
+public class FloorPlan {
+
+    // How far behind a wall the floor is checked when a point gets moved out of a forbidden area
+    private static final double WALL_STEP = 0.01; // m
+
+    private final double width;
+    private final double height;
+    private final double[] forbidden;
+
+    /**
+     * Class constructor
+     *
+     * @param width the width of the floor (x axis) in meters
+     * @param height the height of the floor (y axis) in meters
+     * @param forbidden the forbidden areas as (minX, minY, maxX, maxY) quadruplets, in meters
+     */
+    public FloorPlan(double width, double height, double[] forbidden) {
+        if (forbidden.length % 4 != 0) {
+            throw new IllegalArgumentException("Forbidden areas need four values each");
+        }
+        this.width = width;
+        this.height = height;
+        this.forbidden = forbidden.clone();
+    }
+
+    /**
+     * Creates the floor plan of the company's office that is drawn in Home page:
+     * 21m x 38m, with the meeting rooms, the kitchen and the hardware lab being closed areas.
+     *
+     * @return the office floor plan
+     */
+    public static FloorPlan office() {
+        return new FloorPlan(21, 38, new double[]{
+                10, 4.3, 21, 4.3 + 10.8,       // Meeting rooms
+                10 + 2.35, 4.3 + 10.8, 21, 38, // Kitchen
+                0, 30, 7.6, 38                 // Hardware Lab
+        });
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Checks if a person can be at the given point, which means that the point is inside
+     * the floor and not inside any of the forbidden areas. The borders of the areas count as forbidden.
+     *
+     * @param x the x coordinate in meters
+     * @param y the y coordinate in meters
+     * @return true if the point is valid
+     */
+    public boolean isWalkable(double x, double y) {
+        if (x < 0 || y < 0 || x > width || y > height) {
+            return false;
+        }
+        for (int i = 0; i < forbidden.length; i += 4) {
+            if (x >= forbidden[i] && y >= forbidden[i + 1] && x <= forbidden[i + 2] && y <= forbidden[i + 3]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves a point where a person cannot be to the nearest place where the map can still show it:
+     * a point outside the floor goes to the border of the floor, and a point inside a forbidden area
+     * goes to the nearest wall of that area that opens onto the walkable floor. The moved point lies
+     * on the wall, so it is still not walkable. A walkable point is not moved.
+     *
+     * @param x the x coordinate in meters
+     * @param y the y coordinate in meters
+     * @param result receives the x and the y coordinate of the moved point, in meters
+     */
+    public void moveToWalls(double x, double y, double[] result) {
+        x = Math.max(0, Math.min(x, width));
+        y = Math.max(0, Math.min(y, height));
+        for (int i = 0; i < forbidden.length; i += 4) {
+            double minX = forbidden[i], minY = forbidden[i + 1], maxX = forbidden[i + 2], maxY = forbidden[i + 3];
+            if (x < minX || y < minY || x > maxX || y > maxY) {
+                continue;
+            }
+            // The walls of the area, left, top, right and bottom, as long as the floor goes on behind them
+            double bestDistance = Double.POSITIVE_INFINITY;
+            double bestX = x, bestY = y;
+            if (x - minX < bestDistance && isWalkable(minX - WALL_STEP, y)) {
+                bestDistance = x - minX;
+                bestX = minX;
+                bestY = y;
+            }
+            if (y - minY < bestDistance && isWalkable(x, minY - WALL_STEP)) {
+                bestDistance = y - minY;
+                bestX = x;
+                bestY = minY;
+            }
+            if (maxX - x < bestDistance && isWalkable(maxX + WALL_STEP, y)) {
+                bestDistance = maxX - x;
+                bestX = maxX;
+                bestY = y;
+            }
+            if (maxY - y < bestDistance && isWalkable(x, maxY + WALL_STEP)) {
+                bestX = x;
+                bestY = maxY;
+            }
+            x = bestX;
+            y = bestY;
+            break;
+        }
+        result[0] = x;
+        result[1] = y;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.beaconoffice;
+
+/**
+ * GeoTrail class keeps the most recent GPS positions of the initiator, oldest first, in a ring buffer
+ * of fixed capacity. When the buffer is full, every new position replaces the oldest one, so a long
+ * session never needs more memory than the first minutes did.
+ * The positions are kept in primitive arrays and the trail can be simplified with the
+ * Douglas-Peucker algorithm, so that a line on the map only needs the points where the path turns.
+ *
+ * @version 1.0
+ */
+public class GeoTrail {
+
+    private static final double EARTH_RADIUS = 6371010;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private int start;
+    private int size;
+
+    // Scratch space of the simplification, allocated once
+    private final double[] x;
+    private final double[] y;
+    private final boolean[] keep;
+    private final int[] stack;
+
+    /**
+     * Class constructor
+     *
+     * @param capacity the maximum number of positions in the trail
+     */
+    public GeoTrail(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("A trail needs at least two positions");
+        }
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        keep = new boolean[capacity];
+        stack = new int[2 * capacity];
+    }
+
+    /**
+     * Appends a position to the trail, dropping the oldest one if the trail is full.
+     *
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     */
+    public void add(double latitude, double longitude) {
+        int capacity = latitudes.length;
+        int index;
+        if (size < capacity) {
+            index = (start + size) % capacity;
+            size++;
+        } else {
+            index = start;
+            start = (start + 1) % capacity;
+        }
+        latitudes[index] = latitude;
+        longitudes[index] = longitude;
+    }
+
+    /**
+     * Removes all positions from the trail.
+     */
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return latitudes.length;
+    }
+
+    /**
+     * Getter for the latitude of a position of the trail
+     *
+     * @param i the position in the trail, where 0 is the oldest one
+     * @return the latitude in degrees
+     */
+    public double getLatitude(int i) {
+        return latitudes[physical(i)];
+    }
+
+    /**
+     * Getter for the longitude of a position of the trail
+     *
+     * @param i the position in the trail, where 0 is the oldest one
+     * @return the longitude in degrees
+     */
+    public double getLongitude(int i) {
+        return longitudes[physical(i)];
+    }
+
+    /**
+     * Simplifies the trail with the Douglas-Peucker algorithm: a position is kept only if it is further
+     * than the tolerance from the line between the positions that are kept around it.
+     * The first and the last position are always kept. The trail itself is not changed.
+     *
+     * @param toleranceMeters the largest distance, in meters, of a dropped position from the simplified line
+     * @param kept receives the positions of the kept points in the trail, oldest first;
+     *             it needs room for size() values
+     * @return the number of kept points
+     */
+    public int simplify(double toleranceMeters, int[] kept) {
+        if (size <= 2) {
+            for (int i = 0; i < size; i++) {
+                kept[i] = i;
+            }
+            return size;
+        }
+
+        // The trail covers a few meters, so it is projected to a flat plane around its first position
+        double originLatitude = Math.toRadians(getLatitude(0));
+        double originLongitude = Math.toRadians(getLongitude(0));
+        double cosLatitude = Math.cos(originLatitude);
+        for (int i = 0; i < size; i++) {
+            x[i] = (Math.toRadians(getLongitude(i)) - originLongitude) * cosLatitude * EARTH_RADIUS;
+            y[i] = (Math.toRadians(getLatitude(i)) - originLatitude) * EARTH_RADIUS;
+            keep[i] = false;
+        }
+        keep[0] = true;
+        keep[size - 1] = true;
+
+        double toleranceSquared = toleranceMeters * toleranceMeters;
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            double farthestDistance = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistanceSquared(i, first, last);
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                kept[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Computes the squared distance of a projected point from the segment between two other points.
+     */
+    private double segmentDistanceSquared(int point, int first, int last) {
+        double dx = x[last] - x[first];
+        double dy = y[last] - y[first];
+        double px = x[point] - x[first];
+        double py = y[point] - y[first];
+        double lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared > 0) {
+            double t = Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared));
+            px -= t * dx;
+            py -= t * dy;
+        }
+        return px * px + py * py;
+    }
+
+    private int physical(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Position " + i + " of a trail of " + size);
+        }
+        return (start + i) % latitudes.length;
+    }
+}
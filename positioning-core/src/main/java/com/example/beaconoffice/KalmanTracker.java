@@ -0,0 +1,211 @@
+package com.example.beaconoffice;
+
+/**
+ * KalmanTracker class smooths the raw positions computed by a PositionSolver with a
+ * constant-velocity Kalman filter, before they reach the user interface.
+ * The motion of the initiator is modelled independently on the x and the y axis, with the
+ * state (position, velocity) of every axis disturbed by white-noise acceleration.
+ * Since the two axes never get correlated, the whole filter (the two states and the two 2x2
+ * covariance matrices) fits in one fixed array of doubles and an update never allocates memory.
+ * <p>
+ * Apart from the smoothed position, the tracker remembers the last position that was shown
+ * to the user, so that small movements that are inside the uncertainty of the filter,
+ * like the jitter of a tag that lies on a desk, do not cause a new redraw and a new log entry.
+ *
+ * @version 1.0
+ * @see TrackingPipeline#process(RawPacket)
+ */
+public class KalmanTracker {
+
+    // Offsets of every axis block inside the state array
+    private static final int X_AXIS = 0;
+    private static final int Y_AXIS = 5;
+    // Offsets of the values inside an axis block
+    private static final int POSITION = 0;
+    private static final int VELOCITY = 1;
+    private static final int P00 = 2;
+    private static final int P01 = 3;
+    private static final int P11 = 4;
+
+    private static final double INITIAL_VELOCITY_VARIANCE = 1; // (m/s)^2
+
+    private final double[] state = new double[10];
+    private final double processNoise;
+    private final double measurementNoise;
+    private long lastTimeMillis;
+    private boolean initialised = false;
+
+    private double publishedX, publishedY;
+    private boolean published = false;
+
+    /**
+     * Class constructor
+     *
+     * @param processNoise the spectral density of the acceleration noise, in m^2/s^3.
+     *                     Larger values let the filter follow fast movements, smaller values smooth more.
+     * @param measurementNoise the variance of a raw position fix on every axis, in m^2
+     */
+    public KalmanTracker(double processNoise, double measurementNoise) {
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    /**
+     * Feeds a new raw position fix to the filter, using the default measurement noise.
+     *
+     * @param x the raw x coordinate in meters
+     * @param y the raw y coordinate in meters
+     * @param timeMillis the time of the measurement in milliseconds, from a monotonic clock
+     */
+    public void update(double x, double y, long timeMillis) {
+        update(x, y, measurementNoise, timeMillis);
+    }
+
+    /**
+     * Feeds a new raw position fix to the filter, with a specific measurement noise for this fix.
+     *
+     * @param x the raw x coordinate in meters
+     * @param y the raw y coordinate in meters
+     * @param variance the variance of this fix on every axis, in m^2
+     * @param timeMillis the time of the measurement in milliseconds, from a monotonic clock
+     */
+    public void update(double x, double y, double variance, long timeMillis) {
+        if (!initialised) {
+            initialiseAxis(X_AXIS, x, variance);
+            initialiseAxis(Y_AXIS, y, variance);
+            lastTimeMillis = timeMillis;
+            initialised = true;
+            return;
+        }
+
+        double dt = Math.max(0, timeMillis - lastTimeMillis) / 1000.0;
+        lastTimeMillis = timeMillis;
+
+        predictAxis(X_AXIS, dt);
+        predictAxis(Y_AXIS, dt);
+        correctAxis(X_AXIS, x, variance);
+        correctAxis(Y_AXIS, y, variance);
+    }
+
+    private void initialiseAxis(int axis, double position, double variance) {
+        state[axis + POSITION] = position;
+        state[axis + VELOCITY] = 0;
+        state[axis + P00] = variance;
+        state[axis + P01] = 0;
+        state[axis + P11] = INITIAL_VELOCITY_VARIANCE;
+    }
+
+    /**
+     * Moves the state of one axis dt seconds forward, x' = F x and P' = F P F^T + Q.
+     */
+    private void predictAxis(int axis, double dt) {
+        double p00 = state[axis + P00];
+        double p01 = state[axis + P01];
+        double p11 = state[axis + P11];
+        double q = processNoise;
+
+        state[axis + POSITION] += state[axis + VELOCITY] * dt;
+        state[axis + P00] = p00 + 2 * dt * p01 + dt * dt * p11 + q * dt * dt * dt / 3;
+        state[axis + P01] = p01 + dt * p11 + q * dt * dt / 2;
+        state[axis + P11] = p11 + q * dt;
+    }
+
+    /**
+     * Corrects the state of one axis with a measured position, x' = x + K (z - H x) and P' = (I - K H) P.
+     */
+    private void correctAxis(int axis, double measured, double variance) {
+        double p00 = state[axis + P00];
+        double p01 = state[axis + P01];
+        double p11 = state[axis + P11];
+
+        double s = p00 + variance;
+        double k0 = p00 / s;
+        double k1 = p01 / s;
+        double innovation = measured - state[axis + POSITION];
+
+        state[axis + POSITION] += k0 * innovation;
+        state[axis + VELOCITY] += k1 * innovation;
+        state[axis + P00] = p00 - k0 * p00;
+        state[axis + P01] = p01 - k0 * p01;
+        state[axis + P11] = p11 - k1 * p01;
+    }
+
+    public boolean isInitialised() {
+        return initialised;
+    }
+
+    public double getX() {
+        return state[X_AXIS + POSITION];
+    }
+
+    public double getY() {
+        return state[Y_AXIS + POSITION];
+    }
+
+    public double getVelocityX() {
+        return state[X_AXIS + VELOCITY];
+    }
+
+    public double getVelocityY() {
+        return state[Y_AXIS + VELOCITY];
+    }
+
+    /**
+     * Getter for the variance of the smoothed x coordinate
+     *
+     * @return the variance in m^2
+     */
+    public double getVarianceX() {
+        return state[X_AXIS + P00];
+    }
+
+    /**
+     * Getter for the variance of the smoothed y coordinate
+     *
+     * @return the variance in m^2
+     */
+    public double getVarianceY() {
+        return state[Y_AXIS + P00];
+    }
+
+    /**
+     * Decides whether the smoothed position has moved enough since the last one that was shown to the user.
+     * A movement counts only if it is longer than the given threshold and also longer than
+     * two standard deviations of the current position estimate.
+     *
+     * @param minMovement the movement threshold in meters
+     * @return true if the position should be shown to the user
+     * @see #markPublished()
+     */
+    public boolean shouldPublish(double minMovement) {
+        if (!initialised) {
+            return false;
+        }
+        if (!published) {
+            return true;
+        }
+        double dx = getX() - publishedX;
+        double dy = getY() - publishedY;
+        double gate = Math.max(minMovement, 2 * Math.sqrt(Math.max(getVarianceX(), getVarianceY())));
+        return dx * dx + dy * dy > gate * gate;
+    }
+
+    /**
+     * Remembers the current smoothed position as the last one shown to the user.
+     *
+     * @see #shouldPublish(double)
+     */
+    public void markPublished() {
+        publishedX = getX();
+        publishedY = getY();
+        published = true;
+    }
+
+    /**
+     * Forgets the whole history of the filter.
+     */
+    public void reset() {
+        initialised = false;
+        published = false;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.beaconoffice;
+
+/**
+ * LeastSquaresSolver computes the initiator's position from three or more anchors with
+ * weighted linear least squares.
+ * Every circle (x - xi)^2 + (y - yi)^2 = ri^2 is written as the linear equation
+ * -2 xi x - 2 yi y + R = ri^2 - xi^2 - yi^2, where R = x^2 + y^2 is treated as a third unknown.
+ * The weighted normal equations of this system form a 3x3 matrix, which is accumulated and solved
+ * on primitive values only. With exactly three anchors the result is the same point that the
+ * three-circle algorithm finds, but every additional anchor improves the fix instead of being ignored.
+ *
+ * @version 1.0
+ * @see PositionSolver
+ * @see ThreeCircleSolver
+ */
+public class LeastSquaresSolver implements PositionSolver {
+
+    /**
+     * Default constructor
+     */
+    public LeastSquaresSolver() { }
+
+    @Override
+    public boolean solve(double[] anchorX, double[] anchorY, double[] ranges, double[] weights, int count, PositionFix fix) {
+        if (count < 3) {
+            return false;
+        }
+
+        // Upper triangle of the symmetric matrix A^T W A and the vector A^T W b,
+        // for the rows a = (-2 xi, -2 yi, 1)
+        double a11 = 0, a12 = 0, a13 = 0, a22 = 0, a23 = 0, a33 = 0;
+        double b1 = 0, b2 = 0, b3 = 0;
+
+        for (int i = 0; i < count; i++) {
+            double w = weights == null ? 1 : weights[i];
+            double ax = -2 * anchorX[i];
+            double ay = -2 * anchorY[i];
+            double b = ranges[i] * ranges[i] - anchorX[i] * anchorX[i] - anchorY[i] * anchorY[i];
+
+            a11 += w * ax * ax;
+            a12 += w * ax * ay;
+            a13 += w * ax;
+            a22 += w * ay * ay;
+            a23 += w * ay;
+            a33 += w;
+            b1 += w * ax * b;
+            b2 += w * ay * b;
+            b3 += w * b;
+        }
+
+        // Cramer's rule on the 3x3 system
+        double c11 = a22 * a33 - a23 * a23;
+        double c12 = a13 * a23 - a12 * a33;
+        double c13 = a12 * a23 - a13 * a22;
+        double det = a11 * c11 + a12 * c12 + a13 * c13;
+
+        if (Math.abs(det) < 1e-9 * Math.max(1, Math.abs(a11 * a22 * a33))) {
+            return false;
+        }
+
+        double c22 = a11 * a33 - a13 * a13;
+        double c23 = a12 * a13 - a11 * a23;
+
+        double x = (c11 * b1 + c12 * b2 + c13 * b3) / det;
+        double y = (c12 * b1 + c22 * b2 + c23 * b3) / det;
+
+        fix.set(x, y, anchorX, anchorY, ranges, weights, count);
+        return true;
+    }
+}
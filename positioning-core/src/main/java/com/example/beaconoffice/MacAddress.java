@@ -0,0 +1,62 @@
+package com.example.beaconoffice;
+
+/**
+ * MacAddress class converts Bluetooth device addresses between their text form ("48:23:35:00:00:AA")
+ * and a 48-bit value packed in a long, which can be compared and hashed without any allocation.
+ *
+ * @version 1.0
+ * @see TagTracker
+ */
+public final class MacAddress {
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private MacAddress() { }
+
+    /**
+     * Packs a Bluetooth address in a long, reading its text directly.
+     *
+     * @param address the address as six hexadecimal bytes separated by colons, in upper or lower case
+     * @return the 48-bit address, or -1 if the text is not a valid address
+     */
+    public static long parse(CharSequence address) {
+        if (address == null || address.length() != 17) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < 17; i++) {
+            char c = address.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':') {
+                    return -1;
+                }
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Formats a packed address in the usual text form.
+     *
+     * @param address the 48-bit address
+     * @return the address as six upper case hexadecimal bytes separated by colons
+     */
+    public static String format(long address) {
+        char[] text = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int b = (int) (address >>> (40 - 8 * i)) & 0xff;
+            text[3 * i] = HEX_DIGITS[b >>> 4];
+            text[3 * i + 1] = HEX_DIGITS[b & 0xf];
+            if (i < 5) {
+                text[3 * i + 2] = ':';
+            }
+        }
+        return new String(text);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.beaconoffice;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * MeasurementCsvWriter class exports a range of the measurement history as gzip-compressed CSV.
+ * The records are read one by one from the MeasurementStore and written straight to the output stream,
+ * so the export never holds more than one line in memory, however long the history is.
+ * Every line is one fix: time, tag, x, y and then the peer ID, RSSI and distance of the three AltBeacons.
+ * If the writer has a LocalTangentPlane, every line ends with the GPS coordinates of the fix as well;
+ * they are converted in blocks of records, while the records are read.
+ *
+ * @version 1.0
+ * @see MeasurementStore
+ * @see LocalTangentPlane
+ */
+public class MeasurementCsvWriter {
+
+    public static final String HEADER = "time,tag,x_m,y_m,"
+            + "peer1,rssi1_dbm,distance1_m,peer2,rssi2_dbm,distance2_m,peer3,rssi3_dbm,distance3_m";
+    public static final String GPS_HEADER = HEADER + ",latitude_deg,longitude_deg";
+
+    private static final int BLOCK_SIZE = 64;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS Z", Locale.ROOT);
+    private final DecimalFormat numberFormat = new DecimalFormat("0.####", DecimalFormatSymbols.getInstance(Locale.ROOT));
+    private final DecimalFormat degreeFormat = new DecimalFormat("0.########", DecimalFormatSymbols.getInstance(Locale.ROOT));
+    private final MeasurementRecord record = new MeasurementRecord();
+    private final StringBuilder line = new StringBuilder(192);
+    private final Date date = new Date();
+    private final LocalTangentPlane plane;
+
+    /**
+     * Default constructor, for a CSV without GPS coordinates
+     */
+    public MeasurementCsvWriter() {
+        this(null);
+    }
+
+    /**
+     * Class constructor, for a CSV with the GPS coordinates of every fix
+     *
+     * @param plane the plane that converts the coordinates of the floor to GPS coordinates,
+     *              or null to leave them out
+     */
+    public MeasurementCsvWriter(LocalTangentPlane plane) {
+        this.plane = plane;
+    }
+
+    /**
+     * Writes a range of the history as gzip-compressed CSV. The output stream gets flushed but not closed,
+     * so that the caller can keep writing after the compressed data, e.g. the end of a MIME part.
+     * The compressing streams are closed in any case, which frees the native memory of their Deflater.
+     *
+     * @param store the measurement history
+     * @param fromIndex the index of the first record
+     * @param toIndex the index after the last record
+     * @param out the stream that receives the compressed CSV
+     * @return the number of fixes that were written
+     * @throws IOException if the history cannot be read or the stream cannot be written
+     */
+    public long writeGzip(MeasurementStore store, long fromIndex, long toIndex, OutputStream out) throws IOException {
+        long count;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new NonClosingOutputStream(out), 8192), StandardCharsets.UTF_8), 8192)) {
+            count = write(store, fromIndex, toIndex, writer);
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Writes a range of the history as plain CSV, starting with the header line.
+     *
+     * @param store the measurement history
+     * @param fromIndex the index of the first record
+     * @param toIndex the index after the last record
+     * @param writer the writer that receives the CSV; it is neither flushed nor closed
+     * @return the number of fixes that were written
+     * @throws IOException if the history cannot be read or the writer fails
+     */
+    public long write(MeasurementStore store, long fromIndex, long toIndex, Writer writer) throws IOException {
+        if (plane != null) {
+            return writeWithGps(store, fromIndex, toIndex, writer);
+        }
+        writer.write(HEADER);
+        writer.write('\n');
+        long count = 0;
+        MeasurementStore.Cursor cursor = store.cursor(fromIndex, toIndex);
+        while (cursor.next(record)) {
+            formatLine(record);
+            line.append('\n');
+            writer.append(line);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the CSV with GPS coordinates. The records are read in blocks, so that the coordinates
+     * of a whole block are converted at once.
+     */
+    private long writeWithGps(MeasurementStore store, long fromIndex, long toIndex, Writer writer) throws IOException {
+        writer.write(GPS_HEADER);
+        writer.write('\n');
+        MeasurementRecord[] block = new MeasurementRecord[BLOCK_SIZE];
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block[i] = new MeasurementRecord();
+        }
+        double[] x = new double[BLOCK_SIZE];
+        double[] y = new double[BLOCK_SIZE];
+        double[] latitudes = new double[BLOCK_SIZE];
+        double[] longitudes = new double[BLOCK_SIZE];
+
+        long count = 0;
+        MeasurementStore.Cursor cursor = store.cursor(fromIndex, toIndex);
+        int size;
+        do {
+            size = 0;
+            while (size < BLOCK_SIZE && cursor.next(block[size])) {
+                x[size] = block[size].getX();
+                y[size] = block[size].getY();
+                size++;
+            }
+            plane.toGeodetic(x, y, size, latitudes, longitudes);
+            for (int i = 0; i < size; i++) {
+                formatLine(block[i]);
+                line.append(',').append(degreeFormat.format(latitudes[i]))
+                        .append(',').append(degreeFormat.format(longitudes[i]))
+                        .append('\n');
+                writer.append(line);
+            }
+            count += size;
+        } while (size == BLOCK_SIZE);
+        return count;
+    }
+
+    /**
+     * Formats the columns of a fix that every CSV has, without the line separator.
+     */
+    private void formatLine(MeasurementRecord record) {
+        line.setLength(0);
+        date.setTime(record.getTimeMillis());
+        line.append(dateFormat.format(date)).append(',')
+                .append(MacAddress.format(record.getAddress())).append(',')
+                .append(numberFormat.format(record.getX())).append(',')
+                .append(numberFormat.format(record.getY()));
+        WiraPacket packet = record.getPacket();
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            line.append(',').append(WiraPayloadDecoder.formatPeerId(packet.getPeerId(i)))
+                    .append(',').append(packet.getRssi(i))
+                    .append(',').append(numberFormat.format(packet.getDistance(i)));
+        }
+    }
+
+    /**
+     * Lets the compressing streams be closed without closing the stream of the caller.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.beaconoffice;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MeasurementPager class shows the MeasurementStore as a list that is read newest first:
+ * position 0 is the newest fix. The fixes are loaded from the store on demand, in pages of
+ * {@value #PAGE_SIZE} records, and only the pages that were used last are kept in memory,
+ * so the memory does not depend on the length of the history.
+ * <p>
+ * The list only changes with {@link #refresh()}, so that the positions stay the same between
+ * two refreshes, as a list view expects. It must be used from a single thread.
+ *
+ * @version 1.0
+ * @see MeasurementStore
+ */
+public class MeasurementPager {
+
+    public static final int PAGE_SIZE = 64;
+
+    private final MeasurementStore store;
+    private final int maxPages;
+    private long startIndex = 0;
+    private long firstIndex, endIndex;
+    private int insertedCount, removedCount;
+
+    /**
+     * A window of consecutive records of the store
+     */
+    private static final class Page {
+        long number;
+        int count;
+        final MeasurementRecord[] records = new MeasurementRecord[PAGE_SIZE];
+        final boolean[] valid = new boolean[PAGE_SIZE];
+
+        Page() {
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                records[i] = new MeasurementRecord();
+            }
+        }
+    }
+
+    private final ArrayList<Page> freePages = new ArrayList<>();
+    private final Map<Long, Page> pages;
+
+    /**
+     * Class constructor
+     *
+     * @param store the store of the history
+     * @param maxPages the number of pages that are kept in memory
+     */
+    public MeasurementPager(MeasurementStore store, int maxPages) {
+        if (maxPages < 1) {
+            throw new IllegalArgumentException("At least one page is needed");
+        }
+        this.store = store;
+        this.maxPages = maxPages;
+        this.pages = new LinkedHashMap<Long, Page>(maxPages, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Page> eldest) {
+                if (size() > MeasurementPager.this.maxPages) {
+                    freePages.add(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        refresh();
+    }
+
+    /**
+     * Brings the list up to date with the committed records of the store.
+     * The counts of the rows inserted at the top and removed from the bottom can then be read with
+     * {@link #getInsertedCount()} and {@link #getRemovedCount()}.
+     */
+    public void refresh() {
+        int oldSize = size();
+        long oldEnd = endIndex;
+        endIndex = store.getEndIndex();
+        firstIndex = Math.max(store.getFirstIndex(), startIndex);
+        insertedCount = (int) Math.min(endIndex - oldEnd, size());
+        removedCount = oldSize + insertedCount - size();
+    }
+
+    /**
+     * Hides all the fixes that are in the store now; the list continues with the next ones.
+     * The fixes are not deleted from the store.
+     */
+    public void clear() {
+        startIndex = store.getEndIndex();
+        refresh();
+    }
+
+    /**
+     * Getter for the store index of the oldest fix of the list
+     *
+     * @return the requested index
+     */
+    public long getFirstIndex() {
+        return firstIndex;
+    }
+
+    /**
+     * Getter for the store index after the newest fix of the list
+     *
+     * @return the requested index
+     */
+    public long getEndIndex() {
+        return endIndex;
+    }
+
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * Computes the count of fixes in the list
+     *
+     * @return the requested count
+     */
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, endIndex - firstIndex));
+    }
+
+    /**
+     * Getter for a fix. The returned record belongs to a cached page; it is valid
+     * until the page gets dropped, so it should be used right away.
+     *
+     * @param position the position of the fix, where 0 is the newest one
+     * @return the fix, or null if it has been deleted by the retention of the store or cannot be read
+     */
+    public MeasurementRecord get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + size());
+        }
+        long index = endIndex - 1 - position;
+        long number = index / PAGE_SIZE;
+        int offset = (int) (index % PAGE_SIZE);
+
+        Page page = pages.get(number);
+        if (page == null || offset >= page.count) {
+            page = load(page, number);
+        }
+        return offset < page.count && page.valid[offset] ? page.records[offset] : null;
+    }
+
+    /**
+     * Getter for the number of pages that are in memory now
+     *
+     * @return the requested count
+     */
+    public int getCachedPageCount() {
+        return pages.size();
+    }
+
+    private Page load(Page page, long number) {
+        if (page == null) {
+            page = freePages.isEmpty() ? new Page() : freePages.remove(freePages.size() - 1);
+            page.number = number;
+            pages.put(number, page);
+        }
+        long from = number * PAGE_SIZE;
+        int count = (int) (Math.min(from + PAGE_SIZE, endIndex) - from);
+        for (int i = 0; i < count; i++) {
+            try {
+                page.valid[i] = store.read(from + i, page.records[i]);
+            } catch (IOException e) {
+                page.valid[i] = false;
+            }
+        }
+        page.count = count;
+        return page;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.beaconoffice;
+
+/**
+ * MeasurementRecord class is one fix of the measurement history: the time, the tag, its smoothed
+ * (x, y) coordinates and the packet they were computed from.
+ * It is a reusable holder; the MeasurementStore copies its values into a fixed-width binary record
+ * when writing, and fills it back when reading, so the history can be scanned without allocation.
+ *
+ * @version 1.0
+ * @see MeasurementStore
+ */
+public class MeasurementRecord {
+
+    long timeMillis;
+    long address;
+    double x, y;
+    final WiraPacket packet = new WiraPacket();
+
+    /**
+     * Default constructor
+     */
+    public MeasurementRecord() { }
+
+    /**
+     * Sets all the values of this record.
+     *
+     * @param timeMillis the wall clock time of the fix, in milliseconds since the epoch
+     * @param address the packed 48-bit Bluetooth address of the tag
+     * @param x the x coordinate in meters
+     * @param y the y coordinate in meters
+     * @param packet the decoded packet that produced the fix
+     */
+    public void set(long timeMillis, long address, double x, double y, WiraPacket packet) {
+        this.timeMillis = timeMillis;
+        this.address = address;
+        this.x = x;
+        this.y = y;
+        this.packet.copyFrom(packet);
+    }
+
+    /**
+     * Getter for the time of the fix
+     *
+     * @return the wall clock time in milliseconds since the epoch
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Getter for the Bluetooth address of the tag
+     *
+     * @return the packed 48-bit address
+     * @see MacAddress#format(long)
+     */
+    public long getAddress() {
+        return address;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Getter for the peer IDs, RSSI values and distances of the fix
+     *
+     * @return the packet of the fix
+     */
+    public WiraPacket getPacket() {
+        return packet;
+    }
+}
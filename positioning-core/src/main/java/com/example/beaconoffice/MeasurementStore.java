@@ -0,0 +1,457 @@
+package com.example.beaconoffice;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * MeasurementStore class keeps the history of the fixes on disk, so that it survives the end of the
+ * process and does not grow the heap during sessions of several days.
+ * Every fix is a fixed-width binary record of {@value #RECORD_SIZE} bytes, appended to a segment file
+ * that is memory-mapped as a whole. When a segment is full, a new one is created and, if there are
+ * more than maxSegments segments, the oldest one is deleted.
+ * <p>
+ * A record is identified by its index, which keeps growing across segments and restarts.
+ * Appended records become visible to the readers (and safe from the end of the process) in batches,
+ * with {@link #flush()}, which only writes the record count of the segment header.
+ * <p>
+ * Layout of a record, little-endian:
+ * <pre>
+ *  0  long    time, milliseconds since the epoch
+ *  8  double  x, meters
+ * 16  double  y, meters
+ * 24  float[3] distances, meters
+ * 36  6 bytes Bluetooth address of the tag
+ * 42  3 bytes peer IDs
+ * 45  3 bytes RSSI values, signed
+ * </pre>
+ * One thread may append and flush; any number of threads may read at the same time.
+ *
+ * @version 1.0
+ * @see MeasurementRecord
+ * @see TrackingPipeline#setMeasurementStore(MeasurementStore)
+ */
+public class MeasurementStore implements Closeable {
+
+    public static final int RECORD_SIZE = 48;
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 65536;  // 3 MiB per segment
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+    public static final int BATCH_SIZE = 64;
+
+    static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 0x574d5331;  // "WMS1"
+    private static final short VERSION = 1;
+    private static final int COUNT_OFFSET = 12;
+    private static final int READ_CACHE_SIZE = 4;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".bin";
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+    private final long segmentBytes;
+
+    /**
+     * A mapped segment file
+     */
+    private static final class Segment {
+        final long number;
+        final MappedByteBuffer buffer;
+
+        Segment(long number, MappedByteBuffer buffer) {
+            this.number = number;
+            this.buffer = buffer;
+        }
+    }
+
+    private volatile Segment active;
+    private volatile long firstIndex;
+    private volatile long committedEnd;
+    private long writeEnd;
+    private boolean closed = false;
+
+    // Completed segments mapped for reading, the least recently used one gets dropped
+    private final Map<Long, Segment> readCache = new LinkedHashMap<Long, Segment>(READ_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Segment> eldest) {
+            return size() > READ_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Opens the store of a directory with the default segment size and retention.
+     *
+     * @param directory the directory of the segment files; it gets created if it does not exist
+     * @return the opened store
+     * @throws IOException if the directory or the last segment cannot be used
+     */
+    public static MeasurementStore open(File directory) throws IOException {
+        return new MeasurementStore(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * Class constructor that opens the store of a directory, continuing after the records
+     * that were committed the last time.
+     *
+     * @param directory the directory of the segment files; it gets created if it does not exist
+     * @param recordsPerSegment the number of records of a segment file
+     * @param maxSegments the number of segment files that are kept
+     * @throws IOException if the directory or the last segment cannot be used
+     */
+    public MeasurementStore(File directory, int recordsPerSegment, int maxSegments) throws IOException {
+        if (recordsPerSegment < 1 || maxSegments < 1) {
+            throw new IllegalArgumentException("At least one segment of one record is needed");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the directory " + directory);
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+        this.segmentBytes = HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE;
+
+        long first = -1, last = -1;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                long number = segmentNumber(file.getName());
+                if (number >= 0) {
+                    first = first < 0 ? number : Math.min(first, number);
+                    last = Math.max(last, number);
+                }
+            }
+        }
+
+        if (last < 0) {
+            active = createSegment(0);
+            firstIndex = 0;
+            committedEnd = 0;
+        } else {
+            Segment segment = new Segment(last, map(last, FileChannel.MapMode.READ_WRITE));
+            int count = readHeader(segment);
+            active = segment;
+            firstIndex = first * recordsPerSegment;
+            committedEnd = last * recordsPerSegment + count;
+        }
+        writeEnd = committedEnd;
+    }
+
+    /**
+     * Appends a fix to the store. It becomes visible to the readers with the next flush,
+     * which happens by itself every {@value #BATCH_SIZE} records.
+     *
+     * @param record the fix to append
+     * @throws IOException if a new segment is needed and cannot be created
+     */
+    public void append(MeasurementRecord record) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The store is closed");
+        }
+        Segment segment = active;
+        long slot = writeEnd - segment.number * recordsPerSegment;
+        if (slot == recordsPerSegment) {
+            flush();
+            segment = rollover(segment);
+            slot = 0;
+        }
+        write(segment.buffer, HEADER_SIZE + (int) slot * RECORD_SIZE, record);
+        writeEnd++;
+        if (writeEnd - committedEnd >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Commits the appended records, by writing their count in the header of the segment.
+     * It does not wait for the disk; the operating system writes the mapped pages back by itself.
+     */
+    public void flush() {
+        if (writeEnd == committedEnd || closed) {
+            return;
+        }
+        Segment segment = active;
+        segment.buffer.putInt(COUNT_OFFSET, (int) (writeEnd - segment.number * recordsPerSegment));
+        committedEnd = writeEnd;
+    }
+
+    /**
+     * Getter for the index of the oldest record that is still kept
+     *
+     * @return the requested index
+     */
+    public long getFirstIndex() {
+        return firstIndex;
+    }
+
+    /**
+     * Getter for the index after the newest committed record
+     *
+     * @return the requested index
+     */
+    public long getEndIndex() {
+        return committedEnd;
+    }
+
+    /**
+     * Computes the count of the records that can be read
+     *
+     * @return the requested count
+     */
+    public long size() {
+        return committedEnd - firstIndex;
+    }
+
+    /**
+     * Reads one record.
+     *
+     * @param index the index of the record
+     * @param record the reusable record that will receive the values
+     * @return true if the record was read, false if it is not committed yet or no longer kept
+     * @throws IOException if the segment file of the record cannot be mapped
+     */
+    public boolean read(long index, MeasurementRecord record) throws IOException {
+        ByteBuffer buffer = bufferOf(index);
+        if (buffer == null) {
+            return false;
+        }
+        read(buffer, offsetOf(index), record);
+        return true;
+    }
+
+    /**
+     * Finds the first record whose time is not before the given one. The records are kept in the
+     * order they were appended, which is the order of their time.
+     *
+     * @param timeMillis the time in milliseconds since the epoch
+     * @return the index of the record, or {@link #getEndIndex()} if all records are older
+     * @throws IOException if a segment file cannot be mapped
+     */
+    public long indexOfTime(long timeMillis) throws IOException {
+        long low = firstIndex, high = committedEnd;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            ByteBuffer buffer = bufferOf(middle);
+            if (buffer == null) {
+                low = Math.max(middle + 1, firstIndex);
+            } else if (buffer.getLong(offsetOf(middle)) < timeMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Creates a cursor over a range of records.
+     *
+     * @param fromIndex the index of the first record
+     * @param toIndex the index after the last record
+     * @return the cursor, positioned before the first record
+     * @see #indexOfTime(long)
+     */
+    public Cursor cursor(long fromIndex, long toIndex) {
+        return new Cursor(fromIndex, toIndex);
+    }
+
+    /**
+     * Cursor class reads a range of records in order, into a reusable MeasurementRecord.
+     * Records that get deleted by the retention while the cursor moves are skipped.
+     */
+    public final class Cursor {
+
+        private long next;
+        private final long end;
+
+        private Cursor(long fromIndex, long toIndex) {
+            this.next = fromIndex;
+            this.end = toIndex;
+        }
+
+        /**
+         * Reads the next record of the range.
+         *
+         * @param record the reusable record that will receive the values
+         * @return true if a record was read, false at the end of the range
+         * @throws IOException if a segment file cannot be mapped
+         */
+        public boolean next(MeasurementRecord record) throws IOException {
+            next = Math.max(next, firstIndex);
+            while (next < end) {
+                if (read(next++, record)) {
+                    return true;
+                }
+                if (next >= committedEnd) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Getter for the index of the record read last
+         *
+         * @return the requested index
+         */
+        public long getIndex() {
+            return next - 1;
+        }
+    }
+
+    /**
+     * Commits the appended records, makes sure they reach the disk and closes the store.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        active.buffer.force();
+        closed = true;
+        synchronized (readCache) {
+            readCache.clear();
+        }
+    }
+
+    private ByteBuffer bufferOf(long index) throws IOException {
+        if (index < firstIndex || index >= committedEnd) {
+            return null;
+        }
+        long number = index / recordsPerSegment;
+        Segment segment = active;
+        if (segment.number == number) {
+            return segment.buffer;
+        }
+        synchronized (readCache) {
+            segment = readCache.get(number);
+            if (segment == null) {
+                if (!segmentFile(number).isFile()) {
+                    return null;
+                }
+                segment = new Segment(number, map(number, FileChannel.MapMode.READ_ONLY));
+                readCache.put(number, segment);
+            }
+        }
+        return segment.buffer;
+    }
+
+    private int offsetOf(long index) {
+        return HEADER_SIZE + (int) (index % recordsPerSegment) * RECORD_SIZE;
+    }
+
+    private Segment rollover(Segment full) throws IOException {
+        full.buffer.force();
+        long number = full.number + 1;
+        Segment segment = createSegment(number);
+        active = segment;
+
+        long oldest = number - maxSegments + 1;
+        if (oldest * recordsPerSegment > firstIndex) {
+            long previousFirst = firstIndex / recordsPerSegment;
+            firstIndex = oldest * recordsPerSegment;
+            synchronized (readCache) {
+                for (long n = previousFirst; n < oldest; n++) {
+                    readCache.remove(n);
+                    segmentFile(n).delete();
+                }
+            }
+        }
+        return segment;
+    }
+
+    private Segment createSegment(long number) throws IOException {
+        MappedByteBuffer buffer = map(number, FileChannel.MapMode.READ_WRITE);
+        buffer.putInt(0, MAGIC);
+        buffer.putShort(4, VERSION);
+        buffer.putShort(6, (short) RECORD_SIZE);
+        buffer.putInt(8, recordsPerSegment);
+        buffer.putInt(COUNT_OFFSET, 0);
+        return new Segment(number, buffer);
+    }
+
+    private int readHeader(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION
+                || buffer.getShort(6) != RECORD_SIZE || buffer.getInt(8) != recordsPerSegment) {
+            throw new IOException("Segment " + segmentFile(segment.number) + " was not written with this layout");
+        }
+        int count = buffer.getInt(COUNT_OFFSET);
+        if (count < 0 || count > recordsPerSegment) {
+            throw new IOException("Segment " + segmentFile(segment.number) + " has a corrupted header");
+        }
+        return count;
+    }
+
+    private MappedByteBuffer map(long number, FileChannel.MapMode mode) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(number), mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw")) {
+            MappedByteBuffer buffer = file.getChannel().map(mode, 0, segmentBytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    private File segmentFile(long number) {
+        return new File(directory, String.format(Locale.ROOT, "%s%08d%s", PREFIX, number, SUFFIX));
+    }
+
+    /**
+     * Parses the number of a segment file name.
+     *
+     * @return the number, or -1 if the name is not the one of a segment file
+     */
+    private static long segmentNumber(String name) {
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void write(ByteBuffer buffer, int offset, MeasurementRecord record) {
+        WiraPacket packet = record.packet;
+        buffer.putLong(offset, record.timeMillis);
+        buffer.putDouble(offset + 8, record.x);
+        buffer.putDouble(offset + 16, record.y);
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            buffer.putFloat(offset + 24 + 4 * i, packet.distances[i]);
+        }
+        for (int i = 0; i < 6; i++) {
+            buffer.put(offset + 36 + i, (byte) (record.address >>> (8 * i)));
+        }
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            buffer.put(offset + 42 + i, (byte) packet.peerIds[i]);
+            buffer.put(offset + 45 + i, (byte) packet.rssi[i]);
+        }
+    }
+
+    private static void read(ByteBuffer buffer, int offset, MeasurementRecord record) {
+        WiraPacket packet = record.packet;
+        record.timeMillis = buffer.getLong(offset);
+        record.x = buffer.getDouble(offset + 8);
+        record.y = buffer.getDouble(offset + 16);
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            packet.distances[i] = buffer.getFloat(offset + 24 + 4 * i);
+        }
+        long address = 0;
+        for (int i = 0; i < 6; i++) {
+            address |= (buffer.get(offset + 36 + i) & 0xffL) << (8 * i);
+        }
+        record.address = address;
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            packet.peerIds[i] = buffer.get(offset + 42 + i) & 0xff;
+            packet.rssi[i] = buffer.get(offset + 45 + i);
+        }
+    }
+}
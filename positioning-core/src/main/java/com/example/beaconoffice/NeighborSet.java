@@ -0,0 +1,118 @@
+package com.example.beaconoffice;
+
+/**
+ * NeighborSet class collects the k nearest points of a RadioMap search. The candidates are kept in
+ * a max-heap on their distance, in primitive arrays, so the farthest one is known at once and
+ * gets replaced when a nearer point is found. A set is reused for every search of its owner.
+ *
+ * @version 1.0
+ * @see RadioMap#findNearest(float[], NeighborSet)
+ */
+public class NeighborSet {
+
+    private final int[] points;
+    private final double[] distances;
+    private int size;
+
+    /**
+     * Class constructor
+     *
+     * @param k the number of neighbours to find
+     */
+    public NeighborSet(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("At least one neighbour is needed");
+        }
+        points = new int[k];
+        distances = new double[k];
+    }
+
+    /**
+     * Empties the set before a new search.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Considers a point, which enters the set if it is nearer than the farthest neighbour so far.
+     *
+     * @param point the index of the point in the map
+     * @param distance its distance from the searched fingerprint
+     */
+    void offer(int point, double distance) {
+        if (size < points.length) {
+            // Sift the new point up from the end
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] >= distance) {
+                    break;
+                }
+                points[i] = points[parent];
+                distances[i] = distances[parent];
+                i = parent;
+            }
+            points[i] = point;
+            distances[i] = distance;
+        } else if (distance < distances[0]) {
+            // Replace the farthest neighbour and sift the new point down
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                points[i] = points[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            points[i] = point;
+            distances[i] = distance;
+        }
+    }
+
+    /**
+     * Getter for the distance below which a point can still enter the set
+     *
+     * @return the distance of the farthest neighbour, or infinity while the set is not full
+     */
+    double getWorstDistance() {
+        return size < points.length ? Double.POSITIVE_INFINITY : distances[0];
+    }
+
+    /**
+     * Computes the count of neighbours that were found
+     *
+     * @return the requested count, at most k
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter for a neighbour. The neighbours are in no particular order.
+     *
+     * @param i the position in the set, from 0 to size() - 1
+     * @return the index of the point in the map
+     */
+    public int getPoint(int i) {
+        return points[i];
+    }
+
+    /**
+     * Getter for the distance of a neighbour from the searched fingerprint
+     *
+     * @param i the position in the set, from 0 to size() - 1
+     * @return the distance in dB
+     */
+    public double getDistance(int i) {
+        return distances[i];
+    }
+}
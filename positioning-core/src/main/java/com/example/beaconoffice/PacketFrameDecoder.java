@@ -0,0 +1,95 @@
+package com.example.beaconoffice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * PacketFrameDecoder class reads the records of a packet recording out of a ByteBuffer, for the
+ * non-blocking sockets of a gateway, where a read may end anywhere inside a record.
+ * The bytes are the same as the ones of a recording file, so a receiver can stream its advertisements
+ * with a PacketRecorder on top of a socket, and a recording can be sent to a gateway as it is.
+ * A record is only consumed once all of its bytes are in the buffer; until then the buffer is left
+ * untouched, so the caller can compact it and read more bytes.
+ *
+ * @version 1.0
+ * @see PacketRecorder
+ * @see PacketReader
+ */
+public final class PacketFrameDecoder {
+
+    /**
+     * The length of the header that starts every recording, in bytes.
+     */
+    public static final int HEADER_LENGTH = 6;
+
+    // The time, the address and the length of the first identifier
+    private static final int FIXED_LENGTH = 17;
+
+    private PacketFrameDecoder() { }
+
+    /**
+     * Reads and checks the header of a recording.
+     *
+     * @param buffer the buffer, in read mode
+     * @return true if the header was read, false if the buffer does not hold all of it yet
+     * @throws IOException if the bytes are not the header of a recording of a known version
+     */
+    public static boolean readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_LENGTH) {
+            return false;
+        }
+        if (buffer.getInt() != PacketRecorder.MAGIC) {
+            throw new IOException("Not a packet recording");
+        }
+        int version = buffer.getShort() & 0xffff;
+        if (version != PacketRecorder.VERSION) {
+            throw new IOException("Unsupported recording version " + version);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next record into a reusable packet.
+     *
+     * @param buffer the buffer, in read mode and big-endian
+     * @param packet the reusable packet that receives the advertisement
+     * @return true if a record was read, false if the buffer does not hold a whole record yet
+     */
+    public static boolean readRecord(ByteBuffer buffer, CapturedPacket packet) {
+        int start = buffer.position();
+        int available = buffer.remaining();
+        if (available < FIXED_LENGTH) {
+            return false;
+        }
+        int id1Length = buffer.get(start + 16) & 0xff;
+        int id2LengthAt = FIXED_LENGTH + id1Length;
+        if (available < id2LengthAt + 1) {
+            return false;
+        }
+        int id2Length = buffer.get(start + id2LengthAt) & 0xff;
+        int countAt = id2LengthAt + 1 + id2Length;
+        if (available < countAt + 1) {
+            return false;
+        }
+        int count = buffer.get(start + countAt) & 0xff;
+        if (available < countAt + 1 + 8 * count) {
+            return false;
+        }
+
+        packet.timeMillis = buffer.getLong();
+        packet.address = buffer.getLong();
+        buffer.get();
+        buffer.get(packet.id1, 0, id1Length);
+        packet.id1Length = id1Length;
+        buffer.get();
+        buffer.get(packet.id2, 0, id2Length);
+        packet.id2Length = id2Length;
+        buffer.get();
+        packet.ensureDataFields(count);
+        for (int i = 0; i < count; i++) {
+            packet.dataFields[i] = buffer.getLong();
+        }
+        packet.dataFieldCount = count;
+        return true;
+    }
+}
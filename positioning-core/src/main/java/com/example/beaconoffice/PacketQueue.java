@@ -0,0 +1,118 @@
+package com.example.beaconoffice;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PacketQueue class is a bounded, lock-free queue that passes raw advertisements from the thread
+ * that receives them (the producer) to the tracking thread (the consumer).
+ * It is a ring of preallocated RawPacket slots: the producer claims the next free slot, fills it
+ * and publishes it, the consumer reads the oldest published slot and releases it.
+ * Only the two sequence counters are shared, so neither side ever blocks or allocates.
+ * When the queue is full, new packets are dropped and counted, since an old position is worthless anyway.
+ * <p>
+ * The queue supports exactly one producer thread and one consumer thread.
+ *
+ * @version 1.0
+ * @see TrackingPipeline
+ */
+public class PacketQueue {
+
+    private final RawPacket[] slots;
+    private final int mask;
+    // Sequence of the next slot to be read, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // Sequence of the next slot to be written, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Class constructor
+     *
+     * @param capacity the number of slots, which gets rounded up to a power of two
+     */
+    public PacketQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new RawPacket[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new RawPacket();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Called by the producer to get the slot for the next packet.
+     * The slot is not visible to the consumer until {@link #publish()} is called.
+     *
+     * @return the free slot, or null if the queue is full and the packet has to be dropped
+     */
+    public RawPacket claim() {
+        long t = tail.get();
+        if (t - head.get() >= slots.length) {
+            dropped.incrementAndGet();
+            return null;
+        }
+        return slots[(int) t & mask];
+    }
+
+    /**
+     * Called by the producer to hand the claimed slot to the consumer.
+     */
+    public void publish() {
+        // A full volatile write, so that the consumer cannot go to sleep without seeing this slot
+        tail.set(tail.get() + 1);
+    }
+
+    /**
+     * Called by the consumer to read the oldest packet.
+     * The slot stays owned by the consumer until {@link #release()} is called.
+     *
+     * @return the oldest packet, or null if the queue is empty
+     */
+    public RawPacket peek() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        return slots[(int) h & mask];
+    }
+
+    /**
+     * Called by the consumer to give the slot returned by {@link #peek()} back to the producer.
+     */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+
+    /**
+     * Called by the consumer to discard all packets that are waiting.
+     */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * Called by the producer to check if the next packet would be dropped.
+     *
+     * @return true if there is no free slot
+     */
+    public boolean isFull() {
+        return tail.get() - head.get() >= slots.length;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Getter for the number of packets that found the queue full
+     *
+     * @return the requested count
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.beaconoffice;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * PacketReader class reads the advertisements of a recording, in the order they were received.
+ * The records are read one by one into a reusable CapturedPacket, so a recording of any length
+ * can be replayed without allocation.
+ *
+ * @version 1.0
+ * @see PacketRecorder
+ * @see ReplayDriver
+ */
+public class PacketReader implements Closeable {
+
+    private final DataInputStream in;
+    private boolean truncated;
+
+    /**
+     * Class constructor, that reads and checks the header of the recording.
+     *
+     * @param in the stream of the recording; it gets closed together with the reader
+     * @throws IOException if the stream is not a recording of a known version
+     */
+    public PacketReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 16 * 1024));
+        try {
+            if (this.in.readInt() != PacketRecorder.MAGIC) {
+                throw new IOException("Not a packet recording");
+            }
+            int version = this.in.readUnsignedShort();
+            if (version != PacketRecorder.VERSION) {
+                throw new IOException("Unsupported recording version " + version);
+            }
+        } catch (IOException e) {
+            this.in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a recording file.
+     *
+     * @param file the recording file
+     * @return the reader
+     * @throws IOException if the file cannot be opened or is not a recording
+     */
+    public static PacketReader open(File file) throws IOException {
+        return new PacketReader(new FileInputStream(file));
+    }
+
+    /**
+     * Reads the next advertisement.
+     *
+     * @param packet the reusable packet that receives the advertisement
+     * @return true if an advertisement was read, false at the end of the recording
+     * @throws IOException if the recording cannot be read
+     */
+    public boolean next(CapturedPacket packet) throws IOException {
+        long timeMillis;
+        try {
+            timeMillis = in.readLong();
+        } catch (EOFException e) {
+            // Either the end of the recording or a record cut in its first bytes
+            return false;
+        }
+        try {
+            packet.timeMillis = timeMillis;
+            packet.address = in.readLong();
+            packet.id1Length = in.readUnsignedByte();
+            in.readFully(packet.id1, 0, packet.id1Length);
+            packet.id2Length = in.readUnsignedByte();
+            in.readFully(packet.id2, 0, packet.id2Length);
+            int count = in.readUnsignedByte();
+            packet.ensureDataFields(count);
+            for (int i = 0; i < count; i++) {
+                packet.dataFields[i] = in.readLong();
+            }
+            packet.dataFieldCount = count;
+            return true;
+        } catch (EOFException e) {
+            truncated = true;
+            return false;
+        }
+    }
+
+    /**
+     * Checks if the recording ended in the middle of an advertisement, which was then ignored.
+     *
+     * @return true if the last record was incomplete
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.beaconoffice;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * PacketRecorder class writes the raw AltBeacon advertisements that the scanner receives to a recording,
+ * so that a session in the field can be replayed later on any JVM, without the Beacon scanner or
+ * the WiRa hardware.
+ * <p>
+ * A recording starts with the magic number "WPR1" and a version, followed by one record per advertisement,
+ * all numbers big-endian:
+ * <ul>
+ *     <li>the time of reception in milliseconds (8 bytes) and the packed Bluetooth address (8 bytes)</li>
+ *     <li>the length of the first identifier (1 byte) and its bytes</li>
+ *     <li>the length of the second identifier (1 byte) and its bytes</li>
+ *     <li>the number of data fields (1 byte) and their values (8 bytes each)</li>
+ * </ul>
+ * A recording that was cut in the middle of a record, e.g. because the application got killed,
+ * can still be read up to the last complete record.
+ *
+ * @version 1.0
+ * @see PacketReader
+ * @see ReplayDriver
+ */
+public class PacketRecorder implements Closeable {
+
+    public static final int MAGIC = 0x57505231; // "WPR1"
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private long recordedCount;
+
+    /**
+     * Class constructor, that writes the header of the recording.
+     *
+     * @param out the stream that receives the recording; it gets closed together with the recorder
+     * @throws IOException if the header cannot be written
+     */
+    public PacketRecorder(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 16 * 1024));
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+    }
+
+    /**
+     * Creates a new recording file, replacing any previous file with the same name.
+     *
+     * @param file the recording file
+     * @return the recorder
+     * @throws IOException if the file cannot be created
+     */
+    public static PacketRecorder open(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        return new PacketRecorder(new FileOutputStream(file));
+    }
+
+    /**
+     * Appends an advertisement, as the Beacon scanner reported it.
+     *
+     * @param timeMillis the time of reception in milliseconds, from a monotonic clock
+     * @param address the packed 48-bit Bluetooth address of the sender
+     * @param id1 the bytes of the first identifier
+     * @param id2 the bytes of the second identifier
+     * @param dataFields the data fields of the advertisement
+     * @throws IOException if the recording cannot be written
+     */
+    public synchronized void record(long timeMillis, long address, byte[] id1, byte[] id2, List<Long> dataFields) throws IOException {
+        int count = dataFields.size();
+        checkLengths(id1.length, id2.length, count);
+        writeHeader(timeMillis, address, id1, id1.length, id2, id2.length);
+        out.writeByte(count);
+        for (int i = 0; i < count; i++) {
+            out.writeLong(dataFields.get(i));
+        }
+        recordedCount++;
+    }
+
+    /**
+     * Appends an advertisement that was read from another recording or generated, e.g. by a test.
+     *
+     * @param packet the advertisement
+     * @throws IOException if the recording cannot be written
+     */
+    public synchronized void record(CapturedPacket packet) throws IOException {
+        writeHeader(packet.timeMillis, packet.address, packet.id1, packet.id1Length, packet.id2, packet.id2Length);
+        out.writeByte(packet.dataFieldCount);
+        for (int i = 0; i < packet.dataFieldCount; i++) {
+            out.writeLong(packet.dataFields[i]);
+        }
+        recordedCount++;
+    }
+
+    private void writeHeader(long timeMillis, long address, byte[] id1, int id1Length, byte[] id2, int id2Length) throws IOException {
+        out.writeLong(timeMillis);
+        out.writeLong(address);
+        out.writeByte(id1Length);
+        out.write(id1, 0, id1Length);
+        out.writeByte(id2Length);
+        out.write(id2, 0, id2Length);
+    }
+
+    private static void checkLengths(int id1Length, int id2Length, int dataFieldCount) {
+        if (id1Length > CapturedPacket.MAX_ID_LENGTH || id2Length > CapturedPacket.MAX_ID_LENGTH
+                || dataFieldCount > CapturedPacket.MAX_DATA_FIELDS) {
+            throw new IllegalArgumentException("Advertisement too long to be recorded");
+        }
+    }
+
+    /**
+     * Getter for the number of advertisements recorded so far
+     *
+     * @return the requested count
+     */
+    public synchronized long getRecordedCount() {
+        return recordedCount;
+    }
+
+    /**
+     * Writes the buffered advertisements to the recording.
+     *
+     * @throws IOException if the recording cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
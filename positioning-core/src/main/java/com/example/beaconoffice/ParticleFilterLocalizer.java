@@ -0,0 +1,356 @@
+package com.example.beaconoffice;
+
+import java.util.stream.IntStream;
+
+/**
+ * ParticleFilterLocalizer class estimates the initiator's position with a particle filter that
+ * knows the floor plan of the office.
+ * Every particle is a possible position of the initiator. On every packet the particles move
+ * randomly (a person walking), then every particle gets weighted by how well its distances from the
+ * anchors match the measured distances. Particles that land outside the floor or inside a forbidden
+ * area, like a closed office, get zero weight, so the estimate can never jump through walls.
+ * <p>
+ * The particles are kept in flat primitive arrays whose size is fixed by the particle count.
+ * Resampling writes into a second set of arrays that is swapped with the first one, so an update
+ * does not allocate memory. For large particle counts the weighting, which is the most expensive
+ * step, is split in chunks that run in parallel.
+ *
+ * @version 1.0
+ * @see FloorPlan
+ * @see TrackingPipeline#setParticleCount(int)
+ */
+public class ParticleFilterLocalizer {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final FloorPlan floorPlan;
+    private final int particleCount;
+    private double[] particleX, particleY;
+    private double[] spareX, spareY;
+    private final double[] weights;
+    private final double[] chunkSums;
+
+    private double motionNoise = 0.7;    // m per square root of second
+    private double rangeNoise = 1.0;     // m
+    private int parallelThreshold = 4000;
+
+    private long randomState;
+    private double spareGaussian;
+    private boolean hasSpareGaussian = false;
+
+    private boolean initialised = false;
+    private long lastTimeMillis;
+    private double estimateX, estimateY, spread;
+
+    // The anchors of the current update, read by the parallel weighting chunks
+    private double[] currentAnchorX, currentAnchorY, currentRanges, currentAnchorWeights;
+    private double currentWeightScale;
+    private int currentCount;
+
+    /**
+     * Class constructor
+     *
+     * @param floorPlan the floor plan that constrains the particles
+     * @param particleCount the number of particles; more particles are more accurate but slower
+     * @param seed the seed of the random number generator
+     */
+    public ParticleFilterLocalizer(FloorPlan floorPlan, int particleCount, long seed) {
+        if (particleCount < 1) {
+            throw new IllegalArgumentException("At least one particle is needed");
+        }
+        this.floorPlan = floorPlan;
+        this.particleCount = particleCount;
+        particleX = new double[particleCount];
+        particleY = new double[particleCount];
+        spareX = new double[particleCount];
+        spareY = new double[particleCount];
+        weights = new double[particleCount];
+        chunkSums = new double[(particleCount + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        randomState = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+    }
+
+    /**
+     * Sets the standard deviation of the random walk of the particles.
+     *
+     * @param motionNoise the noise in meters per square root of second
+     */
+    public void setMotionNoise(double motionNoise) {
+        this.motionNoise = motionNoise;
+    }
+
+    /**
+     * Sets the standard deviation of a measured distance.
+     *
+     * @param rangeNoise the noise in meters
+     */
+    public void setRangeNoise(double rangeNoise) {
+        this.rangeNoise = rangeNoise;
+    }
+
+    /**
+     * Sets the particle count from which the weighting runs in parallel.
+     *
+     * @param parallelThreshold the minimum particle count of the parallel path
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getParticleCount() {
+        return particleCount;
+    }
+
+    /**
+     * Spreads all particles uniformly over the walkable area of the floor.
+     */
+    public void initialiseUniform() {
+        for (int i = 0; i < particleCount; i++) {
+            double x, y;
+            do {
+                x = nextDouble() * floorPlan.getWidth();
+                y = nextDouble() * floorPlan.getHeight();
+            } while (!floorPlan.isWalkable(x, y));
+            particleX[i] = x;
+            particleY[i] = y;
+            weights[i] = 1.0 / particleCount;
+        }
+        initialised = true;
+    }
+
+    /**
+     * Feeds the distances of a new packet to the filter and updates the position estimate.
+     *
+     * @param anchorX the x coordinates of the anchors, in meters
+     * @param anchorY the y coordinates of the anchors, in meters
+     * @param ranges the measured distance of the initiator from every anchor, in meters
+     * @param count the number of anchors to use from the arrays
+     * @param timeMillis the time of the measurement in milliseconds, from a monotonic clock
+     * @return true if the estimate could be updated, false if no particle agreed with the measurement
+     *         and the filter had to start again
+     */
+    public boolean update(double[] anchorX, double[] anchorY, double[] ranges, int count, long timeMillis) {
+        return update(anchorX, anchorY, ranges, null, count, timeMillis);
+    }
+
+    /**
+     * Feeds the distances of a new packet to the filter, trusting some anchors more than others,
+     * and updates the position estimate. The weights only change how much every anchor counts
+     * compared to the others: they are scaled so that their mean is 1, so a packet as a whole
+     * keeps the range noise of the filter.
+     *
+     * @param anchorX the x coordinates of the anchors, in meters
+     * @param anchorY the y coordinates of the anchors, in meters
+     * @param ranges the measured distance of the initiator from every anchor, in meters
+     * @param anchorWeights the weight of every anchor, e.g. the inverse variance of its distance,
+     *                or null if all anchors are equally trusted
+     * @param count the number of anchors to use from the arrays
+     * @param timeMillis the time of the measurement in milliseconds, from a monotonic clock
+     * @return true if the estimate could be updated, false if no particle agreed with the measurement
+     *         and the filter had to start again
+     * @see RangingModel#fuse(int, int, double, double[], double[], int)
+     */
+    public boolean update(double[] anchorX, double[] anchorY, double[] ranges, double[] anchorWeights, int count,
+                          long timeMillis) {
+        if (!initialised) {
+            initialiseUniform();
+            lastTimeMillis = timeMillis;
+        }
+        double dt = Math.max(0, timeMillis - lastTimeMillis) / 1000.0;
+        lastTimeMillis = timeMillis;
+
+        predict(dt);
+
+        currentAnchorX = anchorX;
+        currentAnchorY = anchorY;
+        currentRanges = ranges;
+        currentCount = count;
+        currentAnchorWeights = null;
+        if (anchorWeights != null) {
+            double sumWeights = 0;
+            for (int a = 0; a < count; a++) {
+                sumWeights += anchorWeights[a];
+            }
+            if (sumWeights > 0) {
+                currentAnchorWeights = anchorWeights;
+                currentWeightScale = count / sumWeights;
+            }
+        }
+
+        if (particleCount >= parallelThreshold && chunkSums.length > 1) {
+            IntStream.range(0, chunkSums.length).parallel().forEach(this::weighChunk);
+        } else {
+            for (int c = 0; c < chunkSums.length; c++) {
+                weighChunk(c);
+            }
+        }
+
+        double total = 0;
+        for (double sum : chunkSums) {
+            total += sum;
+        }
+        if (!(total > 0)) {
+            initialiseUniform();
+            return false;
+        }
+
+        double sumX = 0, sumY = 0, sumSquares = 0;
+        for (int i = 0; i < particleCount; i++) {
+            double w = weights[i] / total;
+            weights[i] = w;
+            sumX += w * particleX[i];
+            sumY += w * particleY[i];
+            sumSquares += w * w;
+        }
+        estimateX = sumX;
+        estimateY = sumY;
+
+        double sumVariance = 0;
+        for (int i = 0; i < particleCount; i++) {
+            double dx = particleX[i] - sumX;
+            double dy = particleY[i] - sumY;
+            sumVariance += weights[i] * (dx * dx + dy * dy);
+        }
+        spread = Math.sqrt(sumVariance);
+
+        // Resample only when the effective number of particles has dropped below the half
+        if (1 / sumSquares < particleCount / 2.0) {
+            resample();
+        }
+        return true;
+    }
+
+    /**
+     * Moves every particle by a random step, proportional to the square root of the elapsed time.
+     */
+    private void predict(double dt) {
+        double sigma = motionNoise * Math.sqrt(dt);
+        if (sigma == 0) {
+            return;
+        }
+        for (int i = 0; i < particleCount; i++) {
+            particleX[i] += sigma * nextGaussian();
+            particleY[i] += sigma * nextGaussian();
+        }
+    }
+
+    /**
+     * Multiplies the weights of one chunk of particles with the likelihood of the current measurement.
+     */
+    private void weighChunk(int chunk) {
+        int from = chunk * CHUNK_SIZE;
+        int to = Math.min(particleCount, from + CHUNK_SIZE);
+        double scale = -0.5 / (rangeNoise * rangeNoise);
+        double sum = 0;
+
+        for (int i = from; i < to; i++) {
+            double x = particleX[i];
+            double y = particleY[i];
+            double w = 0;
+            if (floorPlan.isWalkable(x, y)) {
+                double squares = 0;
+                for (int a = 0; a < currentCount; a++) {
+                    double dx = x - currentAnchorX[a];
+                    double dy = y - currentAnchorY[a];
+                    double e = Math.sqrt(dx * dx + dy * dy) - currentRanges[a];
+                    squares += currentAnchorWeights == null ? e * e : currentAnchorWeights[a] * currentWeightScale * e * e;
+                }
+                w = weights[i] * Math.exp(scale * squares);
+            }
+            weights[i] = w;
+            sum += w;
+        }
+        chunkSums[chunk] = sum;
+    }
+
+    /**
+     * Systematic resampling: draws particleCount particles with one random offset and equally spaced
+     * pointers over the cumulative weights, into the spare arrays which then become the current ones.
+     */
+    private void resample() {
+        double step = 1.0 / particleCount;
+        double pointer = nextDouble() * step;
+        double cumulative = weights[0];
+        int source = 0;
+
+        for (int i = 0; i < particleCount; i++) {
+            while (pointer > cumulative && source < particleCount - 1) {
+                source++;
+                cumulative += weights[source];
+            }
+            spareX[i] = particleX[source];
+            spareY[i] = particleY[source];
+            pointer += step;
+        }
+
+        double[] swap = particleX;
+        particleX = spareX;
+        spareX = swap;
+        swap = particleY;
+        particleY = spareY;
+        spareY = swap;
+
+        for (int i = 0; i < particleCount; i++) {
+            weights[i] = step;
+        }
+    }
+
+    public double getX() {
+        return estimateX;
+    }
+
+    public double getY() {
+        return estimateY;
+    }
+
+    /**
+     * Getter for the spread of the particles around the estimate
+     *
+     * @return the weighted RMS distance of the particles from the estimate, in meters
+     */
+    public double getSpread() {
+        return spread;
+    }
+
+    /**
+     * Forgets the current particles; the next update spreads them over the floor again.
+     */
+    public void reset() {
+        initialised = false;
+    }
+
+    /**
+     * xorshift64* generator, which is fast and keeps its whole state in a single long.
+     */
+    private long nextLong() {
+        long x = randomState;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        randomState = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+
+    private double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Standard normal sample with the polar Box-Muller method, keeping the second sample for the next call.
+     */
+    private double nextGaussian() {
+        if (hasSpareGaussian) {
+            hasSpareGaussian = false;
+            return spareGaussian;
+        }
+        double u, v, s;
+        do {
+            u = 2 * nextDouble() - 1;
+            v = 2 * nextDouble() - 1;
+            s = u * u + v * v;
+        } while (s >= 1 || s == 0);
+        double factor = Math.sqrt(-2 * Math.log(s) / s);
+        spareGaussian = v * factor;
+        hasSpareGaussian = true;
+        return u * factor;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.beaconoffice;
+
+/**
+ * PositionFix class holds the result of a PositionSolver: the (x, y) coordinates of the
+ * initiator in meters, together with two figures that describe how much the fix can be trusted.
+ * <ul>
+ *     <li>the residual, which is the weighted RMS difference in meters between the measured
+ *     distances and the distances of the solved point from the anchors</li>
+ *     <li>the dilution of precision, which depends only on the geometry of the anchors around the
+ *     solved point; values close to 1 mean well spread anchors, large values mean that the anchors
+ *     are almost collinear as seen from the initiator</li>
+ * </ul>
+ * A single instance is meant to be reused for every fix.
+ *
+ * @version 1.0
+ * @see PositionSolver
+ */
+public class PositionFix {
+
+    private double x, y;
+    private double residual;
+    private double dilution;
+    private int anchorCount;
+
+    /**
+     * Default constructor
+     */
+    public PositionFix() { }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Getter for the weighted RMS range residual of this fix.
+     *
+     * @return the residual in meters
+     */
+    public double getResidual() {
+        return residual;
+    }
+
+    /**
+     * Getter for the geometric dilution of precision of this fix.
+     *
+     * @return the dilution of precision, or positive infinity if the geometry is degenerate
+     */
+    public double getDilution() {
+        return dilution;
+    }
+
+    /**
+     * Getter for the number of anchors that were used for this fix.
+     *
+     * @return the count of anchors
+     */
+    public int getAnchorCount() {
+        return anchorCount;
+    }
+
+    /**
+     * Stores the solved coordinates and computes the residual and the dilution of precision
+     * of the fix against the anchors it was solved from.
+     *
+     * @param x the solved x coordinate in meters
+     * @param y the solved y coordinate in meters
+     * @param anchorX the x coordinates of the anchors
+     * @param anchorY the y coordinates of the anchors
+     * @param ranges the measured distances from the anchors
+     * @param weights the weight of each anchor, or null for equal weights
+     * @param count the number of anchors to use from the arrays
+     */
+    void set(double x, double y, double[] anchorX, double[] anchorY, double[] ranges, double[] weights, int count) {
+        this.x = x;
+        this.y = y;
+        this.anchorCount = count;
+
+        double sumSquares = 0, sumWeights = 0;
+        double gxx = 0, gxy = 0, gyy = 0;
+        for (int i = 0; i < count; i++) {
+            double w = weights == null ? 1 : weights[i];
+            double dx = x - anchorX[i];
+            double dy = y - anchorY[i];
+            double d = Math.sqrt(dx * dx + dy * dy);
+            double e = d - ranges[i];
+            sumSquares += w * e * e;
+            sumWeights += w;
+
+            if (d > 0) {
+                double ux = dx / d;
+                double uy = dy / d;
+                gxx += ux * ux;
+                gxy += ux * uy;
+                gyy += uy * uy;
+            }
+        }
+        residual = sumWeights > 0 ? Math.sqrt(sumSquares / sumWeights) : 0;
+
+        // The trace of the inverse of the 2x2 geometry matrix
+        double det = gxx * gyy - gxy * gxy;
+        dilution = det > 1e-12 ? Math.sqrt((gxx + gyy) / det) : Double.POSITIVE_INFINITY;
+    }
+}
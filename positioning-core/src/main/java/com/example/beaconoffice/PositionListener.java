@@ -0,0 +1,20 @@
+package com.example.beaconoffice;
+
+/**
+ * PositionListener interface is notified by the TrackingPipeline when a new position snapshot
+ * is waiting to be taken.
+ *
+ * @version 1.0
+ * @see TrackingPipeline#setListener(PositionListener)
+ */
+public interface PositionListener {
+
+    /**
+     * Called on the tracking thread every time a snapshot gets published.
+     * It must return quickly; the usual implementation just schedules the consumer,
+     * which then calls {@link TrackingPipeline#takeLatest()}.
+     * Several snapshots may be published before the consumer runs, in which case
+     * only the latest one is kept.
+     */
+    void onPositionAvailable();
+}
@@ -0,0 +1,79 @@
+package com.example.beaconoffice;
+
+/**
+ * PositionSnapshot class is the latest position of the tag that is shown on the map, as handed from
+ * the tracking thread to the main thread: the smoothed (x, y) coordinates together with the packet
+ * they were computed from and the AltBeacons that were recognised in it.
+ * Snapshots are recycled by the TrackingPipeline, so they must not be kept after they have been consumed.
+ *
+ * @version 1.0
+ * @see TrackingPipeline#takeLatest()
+ */
+public class PositionSnapshot {
+
+    long address;
+    long timeMillis;
+    double x, y;
+    final WiraPacket packet = new WiraPacket();
+    final int[] anchorIndices = new int[WiraPacket.PEER_COUNT];
+    int anchorCount;
+
+    /**
+     * Default constructor
+     */
+    public PositionSnapshot() { }
+
+    /**
+     * Getter for the Bluetooth address of the tag
+     *
+     * @return the packed 48-bit address
+     */
+    public long getAddress() {
+        return address;
+    }
+
+    /**
+     * Getter for the time of the packet that produced this position
+     *
+     * @return the time in milliseconds, from a monotonic clock
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * Getter for the decoded packet that produced this position
+     *
+     * @return the packet with the peer IDs, RSSI values and distances
+     */
+    public WiraPacket getPacket() {
+        return packet;
+    }
+
+    /**
+     * Getter for the number of AltBeacons of the packet that are known to the AnchorRegistry
+     *
+     * @return the requested count, from 0 to 3
+     */
+    public int getAnchorCount() {
+        return anchorCount;
+    }
+
+    /**
+     * Getter for the registry index of a recognised AltBeacon
+     *
+     * @param i the position in the list of recognised AltBeacons, from 0 to getAnchorCount() - 1
+     * @return the index of the AltBeacon in the AnchorRegistry
+     */
+    public int getAnchorIndex(int i) {
+        return anchorIndices[i];
+    }
+}
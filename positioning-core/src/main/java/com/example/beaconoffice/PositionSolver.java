@@ -0,0 +1,29 @@
+package com.example.beaconoffice;
+
+/**
+ * PositionSolver is the interface of every algorithm that computes the position of the initiator
+ * from its distances to a number of fixed positioned AltBeacons (anchors).
+ * The anchors are passed as parallel primitive arrays so that a solver can run for every packet
+ * without allocating memory.
+ *
+ * @version 1.0
+ * @see LeastSquaresSolver
+ * @see ThreeCircleSolver
+ * @see TrackingPipeline#process(RawPacket)
+ */
+public interface PositionSolver {
+
+    /**
+     * Computes the position of the initiator.
+     *
+     * @param anchorX the x coordinates of the anchors, in meters
+     * @param anchorY the y coordinates of the anchors, in meters
+     * @param ranges the measured distance of the initiator from every anchor, in meters
+     * @param weights the weight of every anchor, or null if all anchors are equally trusted
+     * @param count the number of anchors to use from the arrays
+     * @param fix the reusable object that will receive the solved position
+     * @return true if a position could be computed,
+     *         false if there are too few anchors or their geometry is degenerate
+     */
+    boolean solve(double[] anchorX, double[] anchorY, double[] ranges, double[] weights, int count, PositionFix fix);
+}
@@ -0,0 +1,380 @@
+package com.example.beaconoffice;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * RadioMap class is the fingerprint database of a floor: for every surveyed point, its position and
+ * the mean RSSI the initiator measured there from every anchor of the AnchorRegistry, in dBm.
+ * An anchor that was not heard at a point gets {@link #MISSING_RSSI}.
+ * The fingerprints are kept in one flat float matrix, one row per point, and indexed by a vantage-point tree,
+ * so finding the nearest fingerprints of a measurement takes a few dozen distance computations
+ * even for thousands of points, and no allocation.
+ * <p>
+ * A map never changes once it is built, so it can be searched by many threads at once;
+ * surveying a new point makes a new map with {@link #plus(double, double, float[])}.
+ * <p>
+ * A map file starts with the magic number "WRM1" and a version, followed by, all numbers big-endian:
+ * <ul>
+ *     <li>the number of anchors (2 bytes) and their peer IDs (1 byte each)</li>
+ *     <li>the number of points (4 bytes)</li>
+ *     <li>for every point, its x and y coordinates and its fingerprint, as floats (4 bytes each)</li>
+ * </ul>
+ *
+ * @version 1.0
+ * @see FingerprintLocalizer
+ * @see SurveyCapture
+ */
+public class RadioMap {
+
+    public static final int MAGIC = 0x57524D31; // "WRM1"
+    public static final int VERSION = 1;
+
+    /**
+     * The RSSI of an anchor that was not heard, in dBm; weaker than anything a receiver reports,
+     * so that a missing anchor counts as a very weak one.
+     */
+    public static final float MISSING_RSSI = -100;
+
+    // Below this many points, a subtree gets scanned instead of split
+    private static final int LEAF_SIZE = 8;
+
+    private final int[] peerIds;
+    private final int anchorCount;
+    private final int pointCount;
+    private final float[] pointX;
+    private final float[] pointY;
+    private final float[] fingerprints;
+
+    // The vantage-point tree: the points in tree order, and the median distance of every vantage point
+    private final int[] order;
+    private final double[] radius;
+
+    /**
+     * Class constructor, for an empty map of the anchors of a floor.
+     *
+     * @param anchorRegistry the anchors of the floor
+     */
+    public RadioMap(AnchorRegistry anchorRegistry) {
+        this(peerIdsOf(anchorRegistry), new float[0], new float[0], new float[0], 0);
+    }
+
+    private RadioMap(int[] peerIds, float[] pointX, float[] pointY, float[] fingerprints, int pointCount) {
+        this.peerIds = peerIds;
+        this.anchorCount = peerIds.length;
+        this.pointCount = pointCount;
+        this.pointX = pointX;
+        this.pointY = pointY;
+        this.fingerprints = fingerprints;
+        order = new int[pointCount];
+        radius = new double[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            order[i] = i;
+        }
+        build(0, pointCount, new double[pointCount]);
+    }
+
+    private static int[] peerIdsOf(AnchorRegistry anchorRegistry) {
+        int[] peerIds = new int[anchorRegistry.size()];
+        for (int i = 0; i < peerIds.length; i++) {
+            peerIds[i] = anchorRegistry.getPeerId(i);
+        }
+        return peerIds;
+    }
+
+    /**
+     * Makes a new map with all the points of this one and a newly surveyed point.
+     *
+     * @param x the x coordinate of the point, in meters
+     * @param y the y coordinate of the point, in meters
+     * @param fingerprint the mean RSSI of every anchor at the point, in dBm, in the order of the AnchorRegistry
+     * @return the new map
+     */
+    public RadioMap plus(double x, double y, float[] fingerprint) {
+        if (fingerprint.length != anchorCount) {
+            throw new IllegalArgumentException("Expected " + anchorCount + " RSSI values but found " + fingerprint.length);
+        }
+        float[] newX = Arrays.copyOf(pointX, pointCount + 1);
+        float[] newY = Arrays.copyOf(pointY, pointCount + 1);
+        float[] newFingerprints = Arrays.copyOf(fingerprints, (pointCount + 1) * anchorCount);
+        newX[pointCount] = (float) x;
+        newY[pointCount] = (float) y;
+        System.arraycopy(fingerprint, 0, newFingerprints, pointCount * anchorCount, anchorCount);
+        return new RadioMap(peerIds, newX, newY, newFingerprints, pointCount + 1);
+    }
+
+    /**
+     * Builds the subtree of the points order[lo] to order[hi - 1]: the first point becomes the vantage point,
+     * the nearer half of the others goes right after it and the farther half after them.
+     */
+    private void build(int lo, int hi, double[] scratch) {
+        if (hi - lo <= LEAF_SIZE) {
+            return;
+        }
+        int vantage = order[lo];
+        for (int i = lo + 1; i < hi; i++) {
+            scratch[i] = distance(vantage, order[i]);
+        }
+        int mid = (lo + 1 + hi) >>> 1;
+        select(lo + 1, hi - 1, mid, scratch);
+        radius[lo] = scratch[mid];
+        build(lo + 1, mid, scratch);
+        build(mid, hi, scratch);
+    }
+
+    /**
+     * Moves the k-th smallest distance of scratch[left..right] to position k, the smaller ones before it
+     * and the larger ones after it, together with their points (quickselect).
+     */
+    private void select(int left, int right, int k, double[] scratch) {
+        while (left < right) {
+            double pivot = scratch[(left + right) >>> 1];
+            int i = left, j = right;
+            while (i <= j) {
+                while (scratch[i] < pivot) {
+                    i++;
+                }
+                while (scratch[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double distance = scratch[i];
+                    scratch[i] = scratch[j];
+                    scratch[j] = distance;
+                    int point = order[i];
+                    order[i] = order[j];
+                    order[j] = point;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double distance(int a, int b) {
+        int rowA = a * anchorCount;
+        int rowB = b * anchorCount;
+        double sum = 0;
+        for (int i = 0; i < anchorCount; i++) {
+            double d = fingerprints[rowA + i] - fingerprints[rowB + i];
+            sum += d * d;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private double distance(float[] fingerprint, int point) {
+        int row = point * anchorCount;
+        double sum = 0;
+        for (int i = 0; i < anchorCount; i++) {
+            double d = fingerprint[i] - fingerprints[row + i];
+            sum += d * d;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Finds the surveyed points whose fingerprints are nearest to a measured one, in Euclidean distance.
+     *
+     * @param fingerprint the RSSI of every anchor in dBm, in the order of the AnchorRegistry,
+     *                    with MISSING_RSSI for the anchors that were not heard
+     * @param neighbors receives the nearest points; as many as it can hold, or all points of a smaller map
+     */
+    public void findNearest(float[] fingerprint, NeighborSet neighbors) {
+        neighbors.clear();
+        search(0, pointCount, fingerprint, neighbors);
+    }
+
+    private void search(int lo, int hi, float[] fingerprint, NeighborSet neighbors) {
+        if (hi - lo <= LEAF_SIZE) {
+            for (int i = lo; i < hi; i++) {
+                neighbors.offer(order[i], distance(fingerprint, order[i]));
+            }
+            return;
+        }
+        double d = distance(fingerprint, order[lo]);
+        neighbors.offer(order[lo], d);
+        int mid = (lo + 1 + hi) >>> 1;
+        double r = radius[lo];
+        // A subtree can only hold a nearer point if the searched ball crosses the median sphere
+        if (d < r) {
+            search(lo + 1, mid, fingerprint, neighbors);
+            if (d + neighbors.getWorstDistance() >= r) {
+                search(mid, hi, fingerprint, neighbors);
+            }
+        } else {
+            search(mid, hi, fingerprint, neighbors);
+            if (d - neighbors.getWorstDistance() <= r) {
+                search(lo + 1, mid, fingerprint, neighbors);
+            }
+        }
+    }
+
+    /**
+     * Computes the count of surveyed points
+     *
+     * @return the requested count
+     */
+    public int size() {
+        return pointCount;
+    }
+
+    public int getAnchorCount() {
+        return anchorCount;
+    }
+
+    /**
+     * Getter for the x coordinate of a surveyed point
+     *
+     * @param point the index of the point
+     * @return the x coordinate in meters
+     */
+    public double getX(int point) {
+        return pointX[point];
+    }
+
+    /**
+     * Getter for the y coordinate of a surveyed point
+     *
+     * @param point the index of the point
+     * @return the y coordinate in meters
+     */
+    public double getY(int point) {
+        return pointY[point];
+    }
+
+    /**
+     * Getter for the mean RSSI of an anchor at a surveyed point
+     *
+     * @param point the index of the point
+     * @param anchor the index of the anchor in the AnchorRegistry
+     * @return the RSSI in dBm, or MISSING_RSSI if the anchor was not heard there
+     */
+    public float getRssi(int point, int anchor) {
+        return fingerprints[point * anchorCount + anchor];
+    }
+
+    /**
+     * Writes the map in its file format.
+     *
+     * @param out the destination; it gets flushed but not closed
+     * @throws IOException if the map cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 16 * 1024));
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(anchorCount);
+        for (int peerId : peerIds) {
+            data.writeByte(peerId);
+        }
+        data.writeInt(pointCount);
+        for (int point = 0; point < pointCount; point++) {
+            data.writeFloat(pointX[point]);
+            data.writeFloat(pointY[point]);
+            for (int i = point * anchorCount; i < (point + 1) * anchorCount; i++) {
+                data.writeFloat(fingerprints[i]);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Writes the map to a file. The file is written next to the old one and then replaces it,
+     * so an interrupted survey never loses the points that were saved before.
+     *
+     * @param file the map file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            write(out);
+        }
+        if (!temporary.renameTo(file)) {
+            // On some file systems the destination has to be removed first
+            if (!file.delete() || !temporary.renameTo(file)) {
+                throw new IOException("Cannot replace " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads a map. Its anchors have to be the ones of the floor, in the same order.
+     *
+     * @param in the source; it is read to the end of the map but not closed
+     * @param anchorRegistry the anchors of the floor
+     * @return the map
+     * @throws IOException if the map cannot be read, is not a map or was surveyed with other anchors
+     */
+    public static RadioMap read(InputStream in, AnchorRegistry anchorRegistry) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 16 * 1024));
+        try {
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a radio map");
+            }
+            int version = data.readUnsignedShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported radio map version " + version);
+            }
+            int[] peerIds = new int[data.readUnsignedShort()];
+            for (int i = 0; i < peerIds.length; i++) {
+                peerIds[i] = data.readUnsignedByte();
+            }
+            if (!Arrays.equals(peerIds, peerIdsOf(anchorRegistry))) {
+                throw new IOException("The radio map was surveyed with other anchors than the ones of the floor");
+            }
+            int pointCount = data.readInt();
+            if (pointCount < 0) {
+                throw new IOException("Invalid point count " + pointCount);
+            }
+            float[] pointX = new float[pointCount];
+            float[] pointY = new float[pointCount];
+            float[] fingerprints = new float[pointCount * peerIds.length];
+            for (int point = 0; point < pointCount; point++) {
+                pointX[point] = data.readFloat();
+                pointY[point] = data.readFloat();
+                for (int i = point * peerIds.length; i < (point + 1) * peerIds.length; i++) {
+                    fingerprints[i] = data.readFloat();
+                }
+            }
+            return new RadioMap(peerIds, pointX, pointY, fingerprints, pointCount);
+        } catch (EOFException e) {
+            throw new IOException("The radio map is truncated", e);
+        }
+    }
+
+    /**
+     * Reads a map file.
+     *
+     * @param file the map file
+     * @param anchorRegistry the anchors of the floor
+     * @return the map
+     * @throws IOException if the file cannot be read, is not a map or was surveyed with other anchors
+     */
+    public static RadioMap load(File file, AnchorRegistry anchorRegistry) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in, anchorRegistry);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.beaconoffice;
+
+import java.io.IOException;
+
+/**
+ * RangingCalibrator class fits the path-loss model of every anchor offline, from recorded sessions.
+ * Every sample pairs an RSSI with a reference distance, and the RSSI at 1 m and the path-loss exponent
+ * are found by linear least squares on RSSI = A - 10 n log10(d). The spread of the RSSI around the fitted
+ * line becomes the RSSI deviation of the anchor.
+ * <ul>
+ *     <li>In a session recorded while the tag moved freely, the distances the initiator reported
+ *     are the reference, since they are far more precise than the RSSI.</li>
+ *     <li>In a session recorded with the tag lying at a surveyed spot, the true distances from the anchors
+ *     are the reference, so the variance of the reported distances gets measured as well.</li>
+ * </ul>
+ * The sums of every anchor are accumulated in primitive arrays, so sessions of any length can be added.
+ * An anchor with too few samples keeps the default calibration, and an anchor whose samples were
+ * all taken at about the same distance keeps the default path-loss exponent.
+ *
+ * @version 1.0
+ * @see RangingModel
+ * @see PacketReader
+ */
+public class RangingCalibrator {
+
+    /**
+     * The number of samples an anchor needs before its model gets fitted.
+     */
+    public static final int MIN_SAMPLES = 20;
+    /**
+     * The standard deviation of log10(d) the samples of an anchor need before its path-loss exponent
+     * gets fitted, i.e. the distances have to vary by about 25 % around their mean.
+     */
+    public static final double MIN_LOG_DISTANCE_SPREAD = 0.1;
+    /**
+     * The lowest RSSI deviation that gets fitted, in dB, so that a short session does not look too good.
+     */
+    public static final double MIN_RSSI_DEVIATION = 1.0;
+    /**
+     * The lowest variance of the reported distances that gets fitted, in square meters.
+     */
+    public static final double MIN_DISTANCE_VARIANCE = 0.0025;
+
+    private final AnchorRegistry anchorRegistry;
+    private final WiraPacket packet = new WiraPacket();
+    private final RawPacket raw = new RawPacket();
+    private final CapturedPacket captured = new CapturedPacket();
+
+    // Sums over the samples of every anchor, with u = -10 log10(d) and the RSSI
+    private final long[] count;
+    private final double[] sumU, sumRssi, sumUu, sumURssi, sumRssiRssi;
+    // Sums over the samples taken at a surveyed spot
+    private final long[] surveyedCount;
+    private final double[] sumSquaredError;
+
+    /**
+     * Class constructor
+     *
+     * @param anchorRegistry the anchors of the floor
+     */
+    public RangingCalibrator(AnchorRegistry anchorRegistry) {
+        this.anchorRegistry = anchorRegistry;
+        int size = anchorRegistry.size();
+        count = new long[size];
+        sumU = new double[size];
+        sumRssi = new double[size];
+        sumUu = new double[size];
+        sumURssi = new double[size];
+        sumRssiRssi = new double[size];
+        surveyedCount = new long[size];
+        sumSquaredError = new double[size];
+    }
+
+    /**
+     * Adds one sample of an anchor.
+     *
+     * @param index the index of the anchor in the AnchorRegistry
+     * @param rssi the RSSI the initiator measured, in dBm
+     * @param distance the reference distance from the anchor, in meters
+     * @return true if the sample was valid and got added
+     */
+    public boolean add(int index, int rssi, double distance) {
+        if (rssi < RangingModel.MIN_RSSI || rssi > RangingModel.MAX_RSSI
+                || !(distance > 0) || distance > RangingModel.MAX_DISTANCE) {
+            return false;
+        }
+        double u = -10 * Math.log10(distance);
+        count[index]++;
+        sumU[index] += u;
+        sumRssi[index] += rssi;
+        sumUu[index] += u * u;
+        sumURssi[index] += u * rssi;
+        sumRssiRssi[index] += (double) rssi * rssi;
+        return true;
+    }
+
+    /**
+     * Adds every packet of a session that was recorded while the tag moved freely.
+     * The distances the initiator reported are the reference.
+     *
+     * @param reader the recording, which is read to its end but not closed
+     * @return the number of samples that got added
+     * @throws IOException if the recording cannot be read
+     */
+    public int addRecording(PacketReader reader) throws IOException {
+        int added = 0;
+        while (reader.next(captured)) {
+            if (!decode()) {
+                continue;
+            }
+            for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+                int index = anchorRegistry.indexOf(packet.getPeerId(i));
+                if (index >= 0 && add(index, packet.getRssi(i), packet.getDistance(i))) {
+                    added++;
+                }
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds every packet of a session that was recorded with the tag lying at a surveyed spot.
+     * The true distances from the anchors are the reference, and the error of the reported distances
+     * gets measured too.
+     *
+     * @param reader the recording, which is read to its end but not closed
+     * @param x the x coordinate of the spot, in meters
+     * @param y the y coordinate of the spot, in meters
+     * @return the number of samples that got added
+     * @throws IOException if the recording cannot be read
+     */
+    public int addRecording(PacketReader reader, double x, double y) throws IOException {
+        int added = 0;
+        while (reader.next(captured)) {
+            if (!decode()) {
+                continue;
+            }
+            for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+                int index = anchorRegistry.indexOf(packet.getPeerId(i));
+                if (index < 0) {
+                    continue;
+                }
+                double distance = Math.hypot(x - anchorRegistry.getX(index), y - anchorRegistry.getY(index));
+                if (add(index, packet.getRssi(i), distance)) {
+                    added++;
+                }
+                double reported = packet.getDistance(i);
+                if (reported > 0 && reported <= RangingModel.MAX_DISTANCE) {
+                    double error = reported - distance;
+                    surveyedCount[index]++;
+                    sumSquaredError[index] += error * error;
+                }
+            }
+        }
+        return added;
+    }
+
+    private boolean decode() {
+        if (captured.dataFieldCount == 0) {
+            return false;
+        }
+        raw.set(captured.address, captured.dataFields[0], captured.id1, captured.id1Length,
+                captured.id2, captured.id2Length, captured.timeMillis);
+        return raw.decode(packet);
+    }
+
+    /**
+     * Getter for the number of samples of an anchor
+     *
+     * @param index the index of the anchor in the AnchorRegistry
+     * @return the requested count
+     */
+    public long getSampleCount(int index) {
+        return count[index];
+    }
+
+    /**
+     * Fits the model of every anchor that has enough samples.
+     *
+     * @return the fitted model; the other anchors keep the default calibration
+     */
+    public RangingModel fit() {
+        RangingModel model = new RangingModel(anchorRegistry);
+        for (int i = 0; i < count.length; i++) {
+            double variance = RangingModel.DEFAULT_DISTANCE_VARIANCE;
+            if (surveyedCount[i] >= MIN_SAMPLES) {
+                variance = Math.max(sumSquaredError[i] / surveyedCount[i], MIN_DISTANCE_VARIANCE);
+            }
+            long n = count[i];
+            if (n < MIN_SAMPLES) {
+                model.setCalibration(i, RangingModel.DEFAULT_RSSI_AT_ONE_METER, RangingModel.DEFAULT_PATH_LOSS_EXPONENT,
+                        RangingModel.DEFAULT_RSSI_DEVIATION, variance);
+                continue;
+            }
+
+            double meanU = sumU[i] / n;
+            double meanRssi = sumRssi[i] / n;
+            double suu = sumUu[i] - n * meanU * meanU;
+            double suRssi = sumURssi[i] - n * meanU * meanRssi;
+            double sRssiRssi = sumRssiRssi[i] - n * meanRssi * meanRssi;
+
+            // The spread of u is 10 times the spread of log10(d)
+            double exponent = RangingModel.DEFAULT_PATH_LOSS_EXPONENT;
+            double minSuu = n * 100 * MIN_LOG_DISTANCE_SPREAD * MIN_LOG_DISTANCE_SPREAD;
+            if (suu >= minSuu && suRssi > 0) {
+                exponent = suRssi / suu;
+            }
+            double rssiAtOneMeter = meanRssi - exponent * meanU;
+            // The residual sum of squares of the line, expanded around the means
+            double residual = sRssiRssi - 2 * exponent * suRssi + exponent * exponent * suu;
+            double deviation = Math.max(Math.sqrt(Math.max(residual, 0) / (n - 2)), MIN_RSSI_DEVIATION);
+            model.setCalibration(i, rssiAtOneMeter, exponent, deviation, variance);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.beaconoffice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * RangingModel class combines the two distances a WiRa packet carries for every anchor: the distance the
+ * initiator reported, and a distance estimated from the RSSI it measured, with a log-distance path-loss model
+ * that is calibrated for every anchor:
+ * <pre>
+ * RSSI = RSSI at 1 m - 10 n log10(d)
+ * </pre>
+ * where n is the path-loss exponent of the room. An RSSI deviation of s dB turns into a distance deviation
+ * of about d s ln(10) / (10 n), so far anchors get a noisy RSSI distance, while near anchors get a good one.
+ * The two distances are fused by inverse-variance weighting, and the inverse of the fused variance becomes
+ * the weight of the anchor for the position solver. If one of the two values is missing or invalid,
+ * the other one is used alone.
+ * <p>
+ * The model is loaded from a small CSV file, with one line per calibrated anchor, written by the RangingCalibrator:
+ * <pre>
+ * # peer ID (hex), RSSI at 1 m (dBm), path-loss exponent, RSSI deviation (dB), reported distance variance (m^2)
+ * F1,-59.0,2.1,4.5,0.09
+ * </pre>
+ * The anchors that are missing from the file get the default calibration.
+ *
+ * @version 1.0
+ * @see RangingCalibrator
+ * @see TrackingPipeline#setRangingModel(RangingModel)
+ */
+public class RangingModel {
+
+    public static final double DEFAULT_RSSI_AT_ONE_METER = -59; // dBm
+    public static final double DEFAULT_PATH_LOSS_EXPONENT = 2.0;
+    public static final double DEFAULT_RSSI_DEVIATION = 6.0; // dB
+    public static final double DEFAULT_DISTANCE_VARIANCE = 0.09; // m^2
+
+    /**
+     * The range of RSSI values a receiver can report, in dBm. Anything else means that there was no RSSI.
+     */
+    public static final int MIN_RSSI = -120;
+    public static final int MAX_RSSI = -1;
+
+    /**
+     * The longest distance that is trusted, from the initiator or from the RSSI, in meters.
+     */
+    public static final double MAX_DISTANCE = 100;
+    /**
+     * The lowest variance of a distance from the RSSI, in square meters, so that a very strong RSSI
+     * cannot outweigh everything else.
+     */
+    public static final double MIN_RSSI_DISTANCE_VARIANCE = 0.01;
+
+    private static final double LN10_BY_10 = Math.log(10) / 10;
+
+    private final AnchorRegistry anchorRegistry;
+    private final double[] rssiAtOneMeter;
+    private final double[] pathLossExponent;
+    private final double[] rssiDeviation;
+    private final double[] distanceVariance;
+
+    /**
+     * Class constructor, with the default calibration for every anchor.
+     *
+     * @param anchorRegistry the anchors of the floor
+     */
+    public RangingModel(AnchorRegistry anchorRegistry) {
+        this.anchorRegistry = anchorRegistry;
+        int size = anchorRegistry.size();
+        rssiAtOneMeter = new double[size];
+        pathLossExponent = new double[size];
+        rssiDeviation = new double[size];
+        distanceVariance = new double[size];
+        Arrays.fill(rssiAtOneMeter, DEFAULT_RSSI_AT_ONE_METER);
+        Arrays.fill(pathLossExponent, DEFAULT_PATH_LOSS_EXPONENT);
+        Arrays.fill(rssiDeviation, DEFAULT_RSSI_DEVIATION);
+        Arrays.fill(distanceVariance, DEFAULT_DISTANCE_VARIANCE);
+    }
+
+    /**
+     * Sets the calibration of an anchor.
+     *
+     * @param index the index of the anchor in the AnchorRegistry
+     * @param rssiAtOneMeter the RSSI measured at 1 m from the anchor, in dBm
+     * @param pathLossExponent the path-loss exponent around the anchor, e.g. 2 in free space
+     * @param rssiDeviation the standard deviation of the RSSI around the model, in dB
+     * @param distanceVariance the variance of the distances the initiator reports, in square meters
+     */
+    public void setCalibration(int index, double rssiAtOneMeter, double pathLossExponent, double rssiDeviation,
+                               double distanceVariance) {
+        if (!(pathLossExponent > 0) || !(rssiDeviation > 0) || !(distanceVariance > 0)) {
+            throw new IllegalArgumentException("Invalid calibration " + pathLossExponent + ", " + rssiDeviation
+                    + ", " + distanceVariance);
+        }
+        this.rssiAtOneMeter[index] = rssiAtOneMeter;
+        this.pathLossExponent[index] = pathLossExponent;
+        this.rssiDeviation[index] = rssiDeviation;
+        this.distanceVariance[index] = distanceVariance;
+    }
+
+    /**
+     * Reads a calibration in CSV format. Empty lines, lines starting with '#'
+     * and lines of peer IDs that are not in the registry are ignored.
+     *
+     * @param reader the source of the CSV text
+     * @param anchorRegistry the anchors of the floor
+     * @return the model with the calibration of the file
+     * @throws IOException if the text cannot be read or a line is not a valid calibration
+     */
+    public static RangingModel fromCsv(Reader reader, AnchorRegistry anchorRegistry) throws IOException {
+        RangingModel model = new RangingModel(anchorRegistry);
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split(",");
+            if (fields.length != 5) {
+                throw new IOException("Line " + lineNumber + ": expected peer ID, RSSI at 1 m, path-loss exponent,"
+                        + " RSSI deviation and distance variance but found \"" + line + "\"");
+            }
+            try {
+                int index = anchorRegistry.indexOf(Integer.parseInt(fields[0].trim(), 16));
+                if (index >= 0) {
+                    model.setCalibration(index, Double.parseDouble(fields[1].trim()),
+                            Double.parseDouble(fields[2].trim()), Double.parseDouble(fields[3].trim()),
+                            Double.parseDouble(fields[4].trim()));
+                }
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException included
+                throw new IOException("Line " + lineNumber + ": invalid calibration in \"" + line + "\"", e);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Writes the calibration of every anchor in the CSV format of {@link #fromCsv(Reader, AnchorRegistry)}.
+     *
+     * @param writer the destination of the CSV text
+     * @throws IOException if the text cannot be written
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("# peer ID (hex), RSSI at 1 m (dBm), path-loss exponent, RSSI deviation (dB),"
+                + " reported distance variance (m^2)\n");
+        for (int i = 0; i < rssiAtOneMeter.length; i++) {
+            writer.write(String.format(Locale.ROOT, "%s,%.2f,%.3f,%.2f,%.4f\n",
+                    WiraPayloadDecoder.formatPeerId(anchorRegistry.getPeerId(i)), rssiAtOneMeter[i],
+                    pathLossExponent[i], rssiDeviation[i], distanceVariance[i]));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Estimates the distance from an anchor from the RSSI the initiator measured.
+     *
+     * @param index the index of the anchor in the AnchorRegistry
+     * @param rssi the RSSI in dBm
+     * @return the distance in meters, or NaN if the RSSI is not valid
+     */
+    public double getRssiDistance(int index, int rssi) {
+        if (rssi < MIN_RSSI || rssi > MAX_RSSI) {
+            return Double.NaN;
+        }
+        return Math.pow(10, (rssiAtOneMeter[index] - rssi) / (10 * pathLossExponent[index]));
+    }
+
+    /**
+     * Computes the variance of a distance that was estimated from the RSSI.
+     *
+     * @param index the index of the anchor in the AnchorRegistry
+     * @param rssiDistance the distance estimated from the RSSI, in meters
+     * @return the variance in square meters
+     */
+    public double getRssiDistanceVariance(int index, double rssiDistance) {
+        double deviation = rssiDistance * rssiDeviation[index] * LN10_BY_10 / pathLossExponent[index];
+        return Math.max(deviation * deviation, MIN_RSSI_DISTANCE_VARIANCE);
+    }
+
+    /**
+     * Fuses the distance the initiator reported with the distance estimated from the RSSI.
+     *
+     * @param index the index of the anchor in the AnchorRegistry
+     * @param rssi the RSSI the initiator measured, in dBm
+     * @param reportedDistance the distance the initiator reported, in meters
+     * @param ranges receives the fused distance, in meters
+     * @param weights receives the weight of the fused distance, i.e. the inverse of its variance
+     * @param i the position in the arrays that receives the values
+     * @return false if neither of the two distances is valid, so the anchor cannot be used
+     */
+    public boolean fuse(int index, int rssi, double reportedDistance, double[] ranges, double[] weights, int i) {
+        double rssiDistance = getRssiDistance(index, rssi);
+        boolean hasRssi = rssiDistance <= MAX_DISTANCE; // false for NaN too
+        boolean hasReported = reportedDistance > 0 && reportedDistance <= MAX_DISTANCE;
+
+        if (hasReported && hasRssi) {
+            double reportedWeight = 1 / distanceVariance[index];
+            double rssiWeight = 1 / getRssiDistanceVariance(index, rssiDistance);
+            weights[i] = reportedWeight + rssiWeight;
+            ranges[i] = (reportedWeight * reportedDistance + rssiWeight * rssiDistance) / weights[i];
+        } else if (hasReported) {
+            ranges[i] = reportedDistance;
+            weights[i] = 1 / distanceVariance[index];
+        } else if (hasRssi) {
+            ranges[i] = rssiDistance;
+            weights[i] = 1 / getRssiDistanceVariance(index, rssiDistance);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    public double getRssiAtOneMeter(int index) {
+        return rssiAtOneMeter[index];
+    }
+
+    public double getPathLossExponent(int index) {
+        return pathLossExponent[index];
+    }
+
+    public double getRssiDeviation(int index) {
+        return rssiDeviation[index];
+    }
+
+    public double getDistanceVariance(int index) {
+        return distanceVariance[index];
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.beaconoffice;
+
+/**
+ * RawPacket class is one slot of the PacketQueue: the undecoded content of an advertisement,
+ * copied from the AltBeacon on the scanning thread, so that it can be decoded on the tracking thread.
+ * The slots are allocated once, together with the queue, and reused forever.
+ *
+ * @version 1.0
+ * @see PacketQueue
+ * @see TrackingPipeline
+ */
+public class RawPacket {
+
+    long address;
+    long counter;
+    long timeMillis;
+    final byte[] payload = new byte[WiraPayloadDecoder.PAYLOAD_LENGTH];
+    int payloadLength;
+
+    /**
+     * Default constructor
+     */
+    public RawPacket() { }
+
+    /**
+     * Fills this slot with the content of an advertisement.
+     *
+     * @param address the packed 48-bit Bluetooth address of the initiator
+     * @param counter the counter of the packet
+     * @param id1 the bytes of the first identifier of the AltBeacon
+     * @param id2 the bytes of the second identifier of the AltBeacon
+     * @param timeMillis the time of reception in milliseconds, from a monotonic clock
+     */
+    public void set(long address, long counter, byte[] id1, byte[] id2, long timeMillis) {
+        set(address, counter, id1, id1.length, id2, id2.length, timeMillis);
+    }
+
+    /**
+     * Fills this slot with the content of an advertisement whose identifiers are the beginning of larger arrays.
+     *
+     * @param address the packed 48-bit Bluetooth address of the initiator
+     * @param counter the counter of the packet
+     * @param id1 the array with the bytes of the first identifier
+     * @param id1Length the length of the first identifier
+     * @param id2 the array with the bytes of the second identifier
+     * @param id2Length the length of the second identifier
+     * @param timeMillis the time of reception in milliseconds, from a monotonic clock
+     */
+    public void set(long address, long counter, byte[] id1, int id1Length, byte[] id2, int id2Length, long timeMillis) {
+        this.address = address;
+        this.counter = counter;
+        this.timeMillis = timeMillis;
+        int first = Math.min(id1Length, payload.length);
+        int second = Math.min(id2Length, payload.length - first);
+        System.arraycopy(id1, 0, payload, 0, first);
+        System.arraycopy(id2, 0, payload, first, second);
+        payloadLength = first + second;
+    }
+
+    public long getAddress() {
+        return address;
+    }
+
+    public long getCounter() {
+        return counter;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Decodes the payload of this slot.
+     *
+     * @param packet the reusable packet that will receive the decoded values
+     * @return true if the payload was complete and got decoded
+     * @see WiraPayloadDecoder#decode(byte[], WiraPacket)
+     */
+    public boolean decode(WiraPacket packet) {
+        return payloadLength == payload.length && WiraPayloadDecoder.decode(payload, packet);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.beaconoffice;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ReplayDriver class feeds a packet recording through a TrackingPipeline on a plain JVM, so that
+ * a session in the field can be reproduced and the throughput of the decode, solve and filter stages
+ * can be measured without the Beacon scanner or the WiRa hardware.
+ * <p>
+ * The packets keep their recorded timestamps, so the Kalman filters see the same time steps at any speed.
+ * They can be replayed in real time, faster by a given factor, or as fast as the pipeline accepts them.
+ * If the pipeline is not started, every packet is processed on the caller's thread before the next one
+ * is offered, which makes the replay fully deterministic, e.g. for regression tests.
+ * Otherwise the packets go through the queue and the tracking thread, like on the device; by default the driver
+ * waits when the queue is full, so that no packet is lost, but it can also drop packets like the scanner does.
+ *
+ * @version 1.0
+ * @see PacketReader
+ * @see PacketRecorder
+ * @see TrackingPipeline
+ */
+public class ReplayDriver {
+
+    /**
+     * The speed for replaying without any pause between the packets.
+     */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private final TrackingPipeline pipeline;
+    private final CapturedPacket packet = new CapturedPacket();
+    private double speed = 1;
+    private boolean lossless = true;
+
+    private long offeredCount;
+    private long ignoredCount;
+    private long droppedCount;
+    private long stallCount;
+
+    /**
+     * Class constructor
+     *
+     * @param pipeline the pipeline that processes the replayed packets
+     */
+    public ReplayDriver(TrackingPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Sets how fast the recording is replayed, compared to the time it took to record it.
+     *
+     * @param speed e.g. 1 for real time, 1000 for a thousand times faster, or {@link #AS_FAST_AS_POSSIBLE}
+     */
+    public void setSpeed(double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("The speed must be positive");
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * Chooses what happens when the queue of a started pipeline is full.
+     *
+     * @param lossless true to wait until the tracking thread makes room (the default),
+     *                 false to drop the packet, as the scanner would
+     */
+    public void setLossless(boolean lossless) {
+        this.lossless = lossless;
+    }
+
+    /**
+     * Replays a whole recording and waits until the pipeline has processed every packet.
+     * The counters are reset at the start of every replay.
+     *
+     * @param reader the recording, which is read to its end but not closed
+     * @return the time the replay took, in nanoseconds
+     * @throws IOException if the recording cannot be read
+     */
+    public long replay(PacketReader reader) throws IOException {
+        offeredCount = 0;
+        ignoredCount = 0;
+        droppedCount = 0;
+        stallCount = 0;
+        boolean threaded = pipeline.isStarted();
+        long startNanos = System.nanoTime();
+        long firstTimeMillis = 0;
+        boolean first = true;
+
+        while (reader.next(packet)) {
+            if (first) {
+                firstTimeMillis = packet.timeMillis;
+                first = false;
+            }
+            if (speed != AS_FAST_AS_POSSIBLE) {
+                long dueNanos = startNanos + (long) ((packet.timeMillis - firstTimeMillis) * 1e6 / speed);
+                long waitNanos;
+                while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+            }
+            if (packet.dataFieldCount == 0 || pipeline.getTagTracker().get(packet.address) == null) {
+                ignoredCount++;
+                continue;
+            }
+            if (threaded && lossless) {
+                while (pipeline.isQueueFull()) {
+                    stallCount++;
+                    Thread.yield();
+                }
+            }
+
+            if (pipeline.offer(packet.address, packet.dataFields[0], packet.id1, packet.id1Length,
+                    packet.id2, packet.id2Length, packet.timeMillis)) {
+                offeredCount++;
+            } else {
+                droppedCount++;
+            }
+            if (!threaded) {
+                pipeline.processPending();
+            }
+        }
+
+        while (threaded && !pipeline.isQueueEmpty()) {
+            Thread.yield();
+        }
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Getter for the number of packets of the last replay that were handed to the pipeline
+     *
+     * @return the requested count
+     */
+    public long getOfferedCount() {
+        return offeredCount;
+    }
+
+    /**
+     * Getter for the number of packets of the last replay that were not from an allowed tag or had no counter
+     *
+     * @return the requested count
+     */
+    public long getIgnoredCount() {
+        return ignoredCount;
+    }
+
+    /**
+     * Getter for the number of packets of the last replay that found the queue full and got dropped
+     *
+     * @return the requested count
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Getter for the number of times the last replay had to wait for room in the queue
+     *
+     * @return the requested count
+     */
+    public long getStallCount() {
+        return stallCount;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.beaconoffice;
+
+/**
+ * ScanObservation class is what the scanner saw of the tracked tag during one scan cycle:
+ * how many packets with a fresh counter arrived while the radio was on, when the last one arrived,
+ * the latest smoothed position of the tag and whether the battery of the handset is low.
+ * A single instance is filled by the ScanScheduler for every cycle.
+ *
+ * @version 1.0
+ * @see ScanScheduler
+ * @see ScanPolicy
+ */
+public class ScanObservation {
+
+    long timeMillis;
+    long scanMillis;
+    int freshPacketCount;
+    long lastFreshPacketMillis = -1;
+    long fixTimeMillis = -1;
+    double x, y;
+    boolean batteryLow;
+
+    /**
+     * Getter for the time the cycle ended
+     *
+     * @return the time in milliseconds, from a monotonic clock
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Getter for the time the radio listened during the cycle
+     *
+     * @return the time in milliseconds
+     */
+    public long getScanMillis() {
+        return scanMillis;
+    }
+
+    /**
+     * Getter for the number of packets of the tag with a counter different from the one of the packet before
+     *
+     * @return the requested count
+     */
+    public int getFreshPacketCount() {
+        return freshPacketCount;
+    }
+
+    /**
+     * Getter for the rate at which the counter of the tag advanced while the radio was on
+     *
+     * @return the fresh packets per second
+     */
+    public double getCounterRate() {
+        return scanMillis > 0 ? freshPacketCount * 1000.0 / scanMillis : 0;
+    }
+
+    /**
+     * Getter for the time of the last fresh packet of the tag, in this cycle or an earlier one
+     *
+     * @return the time in milliseconds, from a monotonic clock, or -1 if the tag was never seen
+     */
+    public long getLastFreshPacketMillis() {
+        return lastFreshPacketMillis;
+    }
+
+    /**
+     * Getter for the time of the latest smoothed position of the tag
+     *
+     * @return the time in milliseconds, from a monotonic clock, or -1 if the tag has no position
+     */
+    public long getFixTimeMillis() {
+        return fixTimeMillis;
+    }
+
+    public boolean hasFix() {
+        return fixTimeMillis >= 0;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public boolean isBatteryLow() {
+        return batteryLow;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.beaconoffice;
+
+/**
+ * ScanPolicy is the interface of every strategy that decides how often the BLE scanner listens
+ * for the advertisements of the tracked tag. The radio is the largest battery cost of a tracking
+ * handset, so a policy trades the delay until a change of the tag is noticed for the time the radio is on.
+ * A policy is asked once per scan cycle, by the ScanScheduler, and only ever from one thread at a time.
+ *
+ * @version 1.0
+ * @see ScanScheduler
+ * @see FixedScanPolicy
+ * @see AdaptiveScanPolicy
+ */
+public interface ScanPolicy {
+
+    /**
+     * Chooses the schedule of the first scan cycles, when the scanning starts or the policy gets plugged in.
+     * Any state of the policy from an earlier scanning gets forgotten.
+     *
+     * @param schedule the reusable object that receives the schedule
+     */
+    void reset(ScanSchedule schedule);
+
+    /**
+     * Chooses the schedule of the next scan cycles, from what happened in the cycle that just ended.
+     *
+     * @param observation what the scanner saw of the tracked tag
+     * @param schedule the schedule that was in effect, which receives the next one
+     */
+    void schedule(ScanObservation observation, ScanSchedule schedule);
+}
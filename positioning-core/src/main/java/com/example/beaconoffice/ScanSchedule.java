@@ -0,0 +1,61 @@
+package com.example.beaconoffice;
+
+/**
+ * ScanSchedule class is the timing of the BLE scanner: for how long the radio listens in every
+ * scan cycle and for how long it stays off between two cycles, as the BeaconManager takes them.
+ *
+ * @version 1.0
+ * @see ScanPolicy
+ * @see ScanScheduler
+ */
+public class ScanSchedule {
+
+    private long scanPeriodMillis;
+    private long betweenScanPeriodMillis;
+
+    /**
+     * Class constructor
+     *
+     * @param scanPeriodMillis the time the radio listens in every cycle, in milliseconds
+     * @param betweenScanPeriodMillis the time the radio stays off between two cycles, in milliseconds
+     */
+    public ScanSchedule(long scanPeriodMillis, long betweenScanPeriodMillis) {
+        set(scanPeriodMillis, betweenScanPeriodMillis);
+    }
+
+    /**
+     * Changes the timing of the scanner.
+     *
+     * @param scanPeriodMillis the time the radio listens in every cycle, in milliseconds
+     * @param betweenScanPeriodMillis the time the radio stays off between two cycles, in milliseconds
+     */
+    public void set(long scanPeriodMillis, long betweenScanPeriodMillis) {
+        if (scanPeriodMillis <= 0 || betweenScanPeriodMillis < 0) {
+            throw new IllegalArgumentException("Invalid scan periods " + scanPeriodMillis + "/" + betweenScanPeriodMillis);
+        }
+        this.scanPeriodMillis = scanPeriodMillis;
+        this.betweenScanPeriodMillis = betweenScanPeriodMillis;
+    }
+
+    public long getScanPeriodMillis() {
+        return scanPeriodMillis;
+    }
+
+    public long getBetweenScanPeriodMillis() {
+        return betweenScanPeriodMillis;
+    }
+
+    /**
+     * Getter for the share of the time the radio is on
+     *
+     * @return the duty cycle, from 0 to 1
+     */
+    public double getDutyCycle() {
+        return (double) scanPeriodMillis / (scanPeriodMillis + betweenScanPeriodMillis);
+    }
+
+    @Override
+    public String toString() {
+        return scanPeriodMillis + "/" + betweenScanPeriodMillis + " ms";
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.beaconoffice;
+
+/**
+ * ScanScheduler class tunes the timing of the BLE scanner to what the tracked tag is doing.
+ * The scanner tells it about every packet of the tag and about the end of every scan cycle;
+ * at the end of a cycle the ScanPolicy gets asked for the schedule of the next ones, and the caller
+ * only has to reconfigure the scanner when the schedule changed.
+ * The policy can be replaced at any time, e.g. from the settings, and takes over at the next cycle.
+ *
+ * @version 1.0
+ * @see ScanPolicy
+ * @see ScanObservation
+ */
+public class ScanScheduler {
+
+    private final ScanSchedule schedule;
+    private final ScanObservation observation = new ScanObservation();
+    private final double[] xy = new double[2];
+    private final CounterWindow counterWindow = new CounterWindow();
+    private ScanPolicy policy;
+
+    private int freshPacketCount;
+    private long lastFreshPacketMillis = -1;
+
+    /**
+     * Class constructor
+     *
+     * @param policy the policy that decides the schedule
+     */
+    public ScanScheduler(ScanPolicy policy) {
+        this.policy = policy;
+        schedule = new ScanSchedule(FixedScanPolicy.DEFAULT_SCAN_PERIOD, 0);
+        policy.reset(schedule);
+    }
+
+    /**
+     * Replaces the policy that decides the schedule.
+     *
+     * @param policy the new policy
+     * @return true if the schedule changed, so the scanner has to be reconfigured
+     */
+    public synchronized boolean setPolicy(ScanPolicy policy) {
+        long scan = schedule.getScanPeriodMillis();
+        long between = schedule.getBetweenScanPeriodMillis();
+        this.policy = policy;
+        policy.reset(schedule);
+        return scan != schedule.getScanPeriodMillis() || between != schedule.getBetweenScanPeriodMillis();
+    }
+
+    public synchronized ScanPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Forgets everything that was seen of the tag and starts over with the first schedule of the policy,
+     * e.g. when the scanning restarts or another tag gets shown.
+     */
+    public synchronized void reset() {
+        counterWindow.reset();
+        freshPacketCount = 0;
+        lastFreshPacketMillis = -1;
+        policy.reset(schedule);
+    }
+
+    /**
+     * Counts a packet of the tracked tag, if its counter is newer than the ones of the packets before.
+     *
+     * @param counter the counter of the packet
+     * @param timeMillis the time of reception in milliseconds, from a monotonic clock
+     * @see CounterWindow
+     */
+    public synchronized void onPacket(long counter, long timeMillis) {
+        if (counterWindow.accept(counter, timeMillis) != CounterWindow.FRESH) {
+            return;
+        }
+        freshPacketCount++;
+        lastFreshPacketMillis = timeMillis;
+    }
+
+    /**
+     * Asks the policy for the schedule of the next cycles, at the end of a scan cycle.
+     *
+     * @param timeMillis the time the cycle ended in milliseconds, from a monotonic clock
+     * @param tag the tracked tag, whose latest position gets read, or null if there is none
+     * @param batteryLow true if the battery of the handset is low or in power saving mode
+     * @return true if the schedule changed, so the scanner has to be reconfigured
+     */
+    public synchronized boolean onCycle(long timeMillis, TagState tag, boolean batteryLow) {
+        long scan = schedule.getScanPeriodMillis();
+        long between = schedule.getBetweenScanPeriodMillis();
+
+        observation.timeMillis = timeMillis;
+        observation.scanMillis = scan;
+        observation.freshPacketCount = freshPacketCount;
+        observation.lastFreshPacketMillis = lastFreshPacketMillis;
+        observation.fixTimeMillis = tag == null ? -1 : tag.copyLatestFix(xy);
+        observation.x = xy[0];
+        observation.y = xy[1];
+        observation.batteryLow = batteryLow;
+        freshPacketCount = 0;
+
+        policy.schedule(observation, schedule);
+        return scan != schedule.getScanPeriodMillis() || between != schedule.getBetweenScanPeriodMillis();
+    }
+
+    /**
+     * Getter for the current schedule. It must not be changed by the caller.
+     *
+     * @return the schedule
+     */
+    public synchronized ScanSchedule getSchedule() {
+        return schedule;
+    }
+}
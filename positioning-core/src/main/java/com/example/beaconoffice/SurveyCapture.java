@@ -0,0 +1,99 @@
+package com.example.beaconoffice;
+
+/**
+ * SurveyCapture class collects the fingerprint of a surveyed point: while the person doing the survey
+ * stands at a known spot with the initiator, the RSSI of every anchor gets averaged over all the packets
+ * of that initiator, and the mean vector becomes a new point of the RadioMap.
+ * The packets are added on the tracking thread while the survey runs, and the capture gets finished
+ * from another thread, so its methods are synchronized; at a few packets per second this costs nothing.
+ *
+ * @version 1.0
+ * @see RadioMap#plus(double, double, float[])
+ * @see TrackingPipeline#setSurveyCapture(SurveyCapture)
+ */
+public class SurveyCapture {
+
+    /**
+     * The number of packets a point needs before it can be saved.
+     */
+    public static final int MIN_PACKETS = 10;
+
+    private final AnchorRegistry anchorRegistry;
+    private final long address;
+    private final double[] sumRssi;
+    private final int[] counts;
+    private int packetCount;
+
+    /**
+     * Class constructor
+     *
+     * @param anchorRegistry the anchors of the floor
+     * @param address the packed 48-bit Bluetooth address of the initiator that is carried around
+     */
+    public SurveyCapture(AnchorRegistry anchorRegistry, long address) {
+        this.anchorRegistry = anchorRegistry;
+        this.address = address;
+        sumRssi = new double[anchorRegistry.size()];
+        counts = new int[anchorRegistry.size()];
+    }
+
+    public long getAddress() {
+        return address;
+    }
+
+    /**
+     * Adds the RSSI values of a packet of the surveyed initiator.
+     *
+     * @param packet the decoded packet
+     */
+    public synchronized void add(WiraPacket packet) {
+        packetCount++;
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            int index = anchorRegistry.indexOf(packet.getPeerId(i));
+            int rssi = packet.getRssi(i);
+            if (index >= 0 && rssi >= RangingModel.MIN_RSSI && rssi <= RangingModel.MAX_RSSI) {
+                sumRssi[index] += rssi;
+                counts[index]++;
+            }
+        }
+    }
+
+    /**
+     * Computes the count of packets that were added
+     *
+     * @return the requested count
+     */
+    public synchronized int getPacketCount() {
+        return packetCount;
+    }
+
+    /**
+     * Computes the mean RSSI of every anchor.
+     *
+     * @return the fingerprint, in the order of the AnchorRegistry, with MISSING_RSSI for the anchors
+     *         that were never heard
+     */
+    public synchronized float[] getFingerprint() {
+        float[] fingerprint = new float[sumRssi.length];
+        for (int i = 0; i < fingerprint.length; i++) {
+            fingerprint[i] = counts[i] == 0 ? RadioMap.MISSING_RSSI : (float) (sumRssi[i] / counts[i]);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Adds the captured point to a map.
+     *
+     * @param radioMap the map surveyed so far
+     * @param x the x coordinate of the spot, in meters
+     * @param y the y coordinate of the spot, in meters
+     * @return the new map with the point
+     * @throws IllegalStateException if fewer than MIN_PACKETS packets were captured
+     */
+    public RadioMap addTo(RadioMap radioMap, double x, double y) {
+        if (getPacketCount() < MIN_PACKETS) {
+            throw new IllegalStateException("Only " + getPacketCount() + " packets were captured");
+        }
+        return radioMap.plus(x, y, getFingerprint());
+    }
+}
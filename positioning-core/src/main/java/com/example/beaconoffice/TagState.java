@@ -0,0 +1,174 @@
+package com.example.beaconoffice;
+
+/**
+ * TagState class holds everything the application knows about one WiRa initiator (tag):
+ * the counters of its latest packets, its own filters and its latest position.
+ * Every tag is processed independently, so a noisy or silent tag never affects the others.
+ *
+ * @version 1.0
+ * @see TagTracker
+ * @see TrackingPipeline#process(RawPacket)
+ */
+public class TagState {
+
+    private final long address;
+    private final KalmanTracker tracker;
+    private final DataList dataList = new DataList();
+    private ParticleFilterLocalizer particleFilter;
+    private FingerprintLocalizer fingerprintLocalizer;
+
+    private final CounterWindow counterWindow = new CounterWindow();
+
+    // Written by the tracking thread only; fixVersion is odd while a fix is being written,
+    // so that another thread can read a consistent fix without locking
+    private volatile int fixVersion;
+    private volatile double latestX, latestY;
+    private volatile long latestTimeMillis;
+    private volatile boolean hasFix = false;
+
+    /**
+     * Class constructor
+     *
+     * @param address the packed 48-bit Bluetooth address of the tag
+     * @param tracker the Kalman filter that smooths the positions of this tag
+     */
+    public TagState(long address, KalmanTracker tracker) {
+        this.address = address;
+        this.tracker = tracker;
+    }
+
+    /**
+     * Getter for the Bluetooth address of the tag
+     *
+     * @return the packed 48-bit address
+     * @see MacAddress#format(long)
+     */
+    public long getAddress() {
+        return address;
+    }
+
+    public KalmanTracker getTracker() {
+        return tracker;
+    }
+
+    public DataList getDataList() {
+        return dataList;
+    }
+
+    /**
+     * Getter for the particle filter of this tag
+     *
+     * @return the particle filter, or null if the tag has not used one yet
+     */
+    public ParticleFilterLocalizer getParticleFilter() {
+        return particleFilter;
+    }
+
+    public void setParticleFilter(ParticleFilterLocalizer particleFilter) {
+        this.particleFilter = particleFilter;
+    }
+
+    /**
+     * Getter for the fingerprint localizer of this tag
+     *
+     * @return the localizer, or null if the tag has not used one yet
+     */
+    public FingerprintLocalizer getFingerprintLocalizer() {
+        return fingerprintLocalizer;
+    }
+
+    public void setFingerprintLocalizer(FingerprintLocalizer fingerprintLocalizer) {
+        this.fingerprintLocalizer = fingerprintLocalizer;
+    }
+
+    /**
+     * Checks if a packet carries fresh content, by comparing its counter with the ones of the latest packets.
+     * If it does, the counter gets remembered.
+     *
+     * @param counter the counter of the advertised packet
+     * @param timeMillis the time of reception in milliseconds, from a monotonic clock
+     * @return CounterWindow.FRESH, CounterWindow.DUPLICATE or CounterWindow.STALE
+     * @see CounterWindow#accept(long, long)
+     */
+    public int acceptCounter(long counter, long timeMillis) {
+        return counterWindow.accept(counter, timeMillis);
+    }
+
+    /**
+     * Remembers the latest smoothed position of this tag.
+     *
+     * @param x the x coordinate in meters
+     * @param y the y coordinate in meters
+     * @param timeMillis the time of the fix in milliseconds, from a monotonic clock
+     */
+    public void setLatestFix(double x, double y, long timeMillis) {
+        fixVersion++;
+        latestX = x;
+        latestY = y;
+        latestTimeMillis = timeMillis;
+        hasFix = true;
+        fixVersion++;
+    }
+
+    /**
+     * Copies the latest smoothed position of this tag from any thread, e.g. to report it,
+     * while the tracking thread may be updating it.
+     *
+     * @param xy receives the x and the y coordinate in meters
+     * @return the time of the fix in milliseconds, from a monotonic clock, or -1 if the tag has no fix
+     */
+    public long copyLatestFix(double[] xy) {
+        while (true) {
+            int version = fixVersion;
+            if ((version & 1) == 0) {
+                boolean fix = hasFix;
+                double x = latestX;
+                double y = latestY;
+                long timeMillis = latestTimeMillis;
+                if (fixVersion == version) {
+                    if (!fix) {
+                        return -1;
+                    }
+                    xy[0] = x;
+                    xy[1] = y;
+                    return timeMillis;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    public boolean hasFix() {
+        return hasFix;
+    }
+
+    public double getLatestX() {
+        return latestX;
+    }
+
+    public double getLatestY() {
+        return latestY;
+    }
+
+    public long getLatestTimeMillis() {
+        return latestTimeMillis;
+    }
+
+    /**
+     * Forgets the counters, the filters and the position of this tag.
+     */
+    public void reset() {
+        counterWindow.reset();
+        fixVersion++;
+        hasFix = false;
+        fixVersion++;
+        tracker.reset();
+        dataList.clear();
+        if (particleFilter != null) {
+            particleFilter.reset();
+        }
+        if (fingerprintLocalizer != null) {
+            fingerprintLocalizer.reset();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.beaconoffice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * TagTracker class keeps the state of every WiRa initiator (tag) that the application is allowed to track.
+ * The states live in an open-addressing hash table keyed by the packed 48-bit Bluetooth address,
+ * so finding the tag of a packet costs a few array accesses, without comparing Strings
+ * and without boxing the address. A tag that is not in the allow-list has no state and its packets are ignored.
+ *
+ * @version 1.0
+ * @see TagState
+ * @see MacAddress
+ */
+public class TagTracker {
+
+    private static final long EMPTY = -1;
+
+    private final double processNoise;
+    private final double measurementNoise;
+    private long[] keys;
+    private TagState[] values;
+    private TagState[] tags = new TagState[8];
+    private int size = 0;
+
+    /**
+     * Class constructor
+     *
+     * @param processNoise the process noise of the Kalman filter of every tag, in m^2/s^3
+     * @param measurementNoise the measurement noise of the Kalman filter of every tag, in m^2
+     * @see KalmanTracker
+     */
+    public TagTracker(double processNoise, double measurementNoise) {
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+        keys = new long[16];
+        values = new TagState[16];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Reads an allow-list of tags, with one Bluetooth address per line.
+     * Empty lines and lines starting with '#' are ignored.
+     *
+     * @param reader the source of the allow-list
+     * @throws IOException if the text cannot be read or a line is not a valid address
+     */
+    public void allowFromCsv(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            long address = MacAddress.parse(line);
+            if (address < 0) {
+                throw new IOException("Line " + lineNumber + ": \"" + line + "\" is not a Bluetooth address");
+            }
+            allow(address);
+        }
+    }
+
+    /**
+     * Adds a tag to the allow-list. Adding a tag twice has no effect.
+     *
+     * @param address the packed 48-bit Bluetooth address of the tag
+     * @return the state of the tag
+     */
+    public TagState allow(long address) {
+        TagState existing = get(address);
+        if (existing != null) {
+            return existing;
+        }
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+
+        TagState state = new TagState(address, new KalmanTracker(processNoise, measurementNoise));
+        insert(address, state);
+        if (size == tags.length) {
+            tags = Arrays.copyOf(tags, 2 * size);
+        }
+        tags[size++] = state;
+        return state;
+    }
+
+    /**
+     * Finds the state of a tag.
+     *
+     * @param address the packed 48-bit Bluetooth address of the tag
+     * @return the state of the tag, or null if the tag is not in the allow-list
+     */
+    public TagState get(long address) {
+        int mask = keys.length - 1;
+        for (int slot = hash(address) & mask; ; slot = (slot + 1) & mask) {
+            long key = keys[slot];
+            if (key == address) {
+                return values[slot];
+            }
+            if (key == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Computes the count of tags in the allow-list
+     *
+     * @return the requested count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Getter for a tag, in the order the tags were allowed.
+     *
+     * @param index the position of the tag, from 0 to size() - 1
+     * @return the state of the tag
+     */
+    public TagState getTag(int index) {
+        return tags[index];
+    }
+
+    /**
+     * Forgets the counters, the filters and the positions of all tags, but keeps the allow-list.
+     */
+    public void resetAll() {
+        for (int i = 0; i < size; i++) {
+            tags[i].reset();
+        }
+    }
+
+    private void insert(long address, TagState state) {
+        int mask = keys.length - 1;
+        int slot = hash(address) & mask;
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = address;
+        values[slot] = state;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        TagState[] oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        values = new TagState[2 * oldValues.length];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of an address, since consecutive addresses differ only in their last bits.
+     */
+    private static int hash(long address) {
+        long h = address * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
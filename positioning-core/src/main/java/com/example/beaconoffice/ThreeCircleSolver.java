@@ -0,0 +1,67 @@
+package com.example.beaconoffice;
+
+/**
+ * ThreeCircleSolver implements the mathematical algorithm that calculates the position of the initiator,
+ * given the distances from three fixed positioned AltBeacons.
+ * This algorithm was designed by the intern student, George Giachnakis.
+ * Only the first three anchors are used and negative coordinates are clamped to zero,
+ * exactly as the application has always done.
+ *
+ * @author George Giachnakis
+ * @version 1.0
+ * @see PositionSolver
+ * @see LeastSquaresSolver
+ */
+public class ThreeCircleSolver implements PositionSolver {
+
+    /**
+     * Default constructor
+     */
+    public ThreeCircleSolver() { }
+
+    @Override
+    public boolean solve(double[] anchorX, double[] anchorY, double[] ranges, double[] weights, int count, PositionFix fix) {
+        if (count < 3) {
+            return false;
+        }
+
+        double x1 = anchorX[0];
+        double y1 = anchorY[0];
+        double r1 = ranges[0];
+
+        double x2 = anchorX[1];
+        double y2 = anchorY[1];
+        double r2 = ranges[1];
+
+        double x3 = anchorX[2];
+        double y3 = anchorY[2];
+        double r3 = ranges[2];
+
+        double A = x1 - x2;
+        double B = y1 - y2;
+        double D = x1 - x3;
+        double E = y1 - y3;
+
+        double T = (r1 * r1 - x1 * x1 - y1 * y1);
+        double C = (r2 * r2 - x2 * x2 - y2 * y2) - T;
+        double F = (r3 * r3 - x3 * x3 - y3 * y3) - T;
+
+        double Mx = (C * E - B * F) / 2;
+        double My = (A * F - D * C) / 2;
+        double M = A * E - D * B;
+
+        if (M == 0) {
+            return false;
+        }
+
+        double x = Mx / M;
+        double y = My / M;
+        if (x < 0)
+            x = 0;
+        if (y < 0)
+            y = 0;
+
+        fix.set(x, y, anchorX, anchorY, ranges, null, 3);
+        return true;
+    }
+}
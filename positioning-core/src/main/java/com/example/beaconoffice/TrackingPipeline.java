@@ -0,0 +1,603 @@
+package com.example.beaconoffice;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TrackingPipeline class moves the processing of the WiRa packets away from the thread that
+ * receives them. It is made of three stages:
+ * <ol>
+ *     <li>the scanning thread copies the raw advertisement into a bounded lock-free PacketQueue
+ *     ({@link #offer(long, long, byte[], byte[], long)}), which never blocks;</li>
+ *     <li>a dedicated tracking thread decodes every packet, solves the position and smooths it,
+ *     with the state of the tag that sent it;</li>
+ *     <li>only the latest position of the shown tag is published as a PositionSnapshot. If the
+ *     consumer is slower than the packets, older snapshots get overwritten instead of queued.</li>
+ * </ol>
+ * Every published fix of every tag can also be appended to a MeasurementStore, on the tracking thread.
+ * Three snapshots are passed around with atomic swaps (one being written, one waiting, one being read),
+ * so publishing does not allocate memory nor lock.
+ *
+ * @version 1.0
+ * @see PacketQueue
+ * @see PositionListener
+ */
+public class TrackingPipeline {
+
+    private final AnchorRegistry anchorRegistry;
+    private final TagTracker tagTracker;
+    private final FloorPlan floorPlan;
+    private final PacketQueue queue;
+    private final double measurementNoise;
+    private final double minMovement;
+
+    // Owned by the tracking thread
+    private final WiraPacket packet = new WiraPacket();
+    private final double[] anchorX = new double[WiraPacket.PEER_COUNT];
+    private final double[] anchorY = new double[WiraPacket.PEER_COUNT];
+    private final double[] ranges = new double[WiraPacket.PEER_COUNT];
+    private final double[] weights = new double[WiraPacket.PEER_COUNT];
+    private final int[] anchorIndices = new int[WiraPacket.PEER_COUNT];
+    private final PositionFix fix = new PositionFix();
+    private final MeasurementRecord record = new MeasurementRecord();
+    private PositionSnapshot back = new PositionSnapshot();
+
+    private final AtomicReference<PositionSnapshot> latest = new AtomicReference<>();
+    private final AtomicReference<PositionSnapshot> spare = new AtomicReference<>();
+    private final AtomicBoolean resetRequested = new AtomicBoolean();
+
+    private volatile PositionSolver positionSolver = new LeastSquaresSolver();
+    private volatile RangingModel rangingModel;
+    private volatile RadioMap radioMap;
+    private volatile SurveyCapture surveyCapture;
+    private volatile int particleCount = 0;
+    private volatile long shownAddress;
+    private volatile PositionListener listener;
+    private volatile MeasurementStore measurementStore;
+
+    private volatile Thread worker;
+    private volatile boolean running = false;
+    private volatile boolean waiting = false;
+
+    private volatile long duplicateCount = 0;
+    private volatile long staleCount = 0;
+    private volatile long incompleteCount = 0;
+    private volatile long unsolvedCount = 0;
+    private volatile long publishedCount = 0;
+    private volatile long storeErrorCount = 0;
+
+    /**
+     * Class constructor. The first tag of the allow-list becomes the shown tag.
+     *
+     * @param anchorRegistry the positions of the AltBeacons
+     * @param tagTracker the tags that are allowed to be tracked; it must not change once the pipeline runs
+     * @param floorPlan the floor plan used by the particle filters
+     * @param queueCapacity the number of packets that can wait for the tracking thread
+     * @param measurementNoise the variance of a solved position, in square meters
+     * @param minMovement the distance in meters the smoothed position has to move before it gets published
+     */
+    public TrackingPipeline(AnchorRegistry anchorRegistry, TagTracker tagTracker, FloorPlan floorPlan,
+                            int queueCapacity, double measurementNoise, double minMovement) {
+        this.anchorRegistry = anchorRegistry;
+        this.tagTracker = tagTracker;
+        this.floorPlan = floorPlan;
+        this.queue = new PacketQueue(queueCapacity);
+        this.measurementNoise = measurementNoise;
+        this.minMovement = minMovement;
+        this.shownAddress = tagTracker.size() > 0 ? tagTracker.getTag(0).getAddress() : -1;
+    }
+
+    /**
+     * Sets the object that gets notified when a new snapshot is published.
+     *
+     * @param listener the listener, or null to stop the notifications
+     */
+    public void setListener(PositionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the store that receives every published fix of every tag. The records are appended on the
+     * tracking thread and committed in batches, when the queue gets empty.
+     *
+     * @param measurementStore the store, or null to stop recording the fixes
+     */
+    public void setMeasurementStore(MeasurementStore measurementStore) {
+        this.measurementStore = measurementStore;
+    }
+
+    /**
+     * Changes the algorithm that computes the initiator's position from the measured distances.
+     *
+     * @param positionSolver the solver that will be used for the next packets
+     * @see LeastSquaresSolver
+     * @see ThreeCircleSolver
+     */
+    public void setPositionSolver(PositionSolver positionSolver) {
+        this.positionSolver = positionSolver;
+    }
+
+    /**
+     * Makes the pipeline fuse the distances the initiators report with the distances from the RSSI,
+     * and weight every anchor by the inverse variance of its fused distance, in the position solver
+     * and in the particle filters alike. If a reported distance
+     * is invalid, the one from the RSSI is used alone.
+     *
+     * @param rangingModel the calibrated model, or null to use the reported distances with equal weights
+     * @see RangingCalibrator
+     */
+    public void setRangingModel(RangingModel rangingModel) {
+        this.rangingModel = rangingModel;
+    }
+
+    /**
+     * Makes the pipeline estimate the initiators' positions by comparing their RSSI with the fingerprints
+     * of a surveyed radio map, instead of the distances. It takes precedence over the particle filters
+     * and the position solver. Every tag gets its own fingerprint localizer.
+     *
+     * @param radioMap the fingerprint database of the floor, or null to go back to the distances
+     * @see FingerprintLocalizer
+     */
+    public void setRadioMap(RadioMap radioMap) {
+        this.radioMap = radioMap;
+    }
+
+    /**
+     * Makes the pipeline hand every decoded packet of the surveyed initiator to a survey capture,
+     * on the tracking thread.
+     *
+     * @param surveyCapture the running capture, or null when no point is being surveyed
+     */
+    public void setSurveyCapture(SurveyCapture surveyCapture) {
+        this.surveyCapture = surveyCapture;
+    }
+
+    /**
+     * Makes the pipeline estimate the initiators' positions with particle filters that respect
+     * the floor plan, instead of the position solver. Every tag gets its own particle filter.
+     *
+     * @param particleCount the number of particles of every filter, or 0 to go back to the position solver
+     * @see ParticleFilterLocalizer
+     */
+    public void setParticleCount(int particleCount) {
+        this.particleCount = particleCount;
+    }
+
+    /**
+     * Chooses the tag whose positions get published.
+     *
+     * @param address the packed 48-bit Bluetooth address of the tag
+     */
+    public void setShownAddress(long address) {
+        this.shownAddress = address;
+    }
+
+    public long getShownAddress() {
+        return shownAddress;
+    }
+
+    public TagTracker getTagTracker() {
+        return tagTracker;
+    }
+
+    /**
+     * Starts the tracking thread. Calling it while the thread runs has no effect.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWorker();
+            }
+        }, "tracking-pipeline");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the tracking thread and waits for it to finish the packet it is processing.
+     * The packets that are still queued stay there until the next start.
+     * The fixes appended to the MeasurementStore get committed.
+     */
+    public synchronized void stop() {
+        Thread thread = worker;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker = null;
+        flushStore();
+    }
+
+    /**
+     * Called on the scanning thread for every received advertisement. Packets from tags that are not
+     * in the allow-list are ignored here, so they never occupy the queue.
+     *
+     * @param address the packed 48-bit Bluetooth address of the sender
+     * @param counter the counter of the packet
+     * @param id1 the bytes of the first identifier of the AltBeacon
+     * @param id2 the bytes of the second identifier of the AltBeacon
+     * @param timeMillis the time of reception in milliseconds, from a monotonic clock
+     * @return true if the packet got queued, false if it was ignored or the queue was full
+     */
+    public boolean offer(long address, long counter, byte[] id1, byte[] id2, long timeMillis) {
+        return offer(address, counter, id1, id1.length, id2, id2.length, timeMillis);
+    }
+
+    /**
+     * Same as {@link #offer(long, long, byte[], byte[], long)}, for identifiers that are the beginning
+     * of larger arrays, e.g. the reusable buffers of a recording.
+     *
+     * @param address the packed 48-bit Bluetooth address of the sender
+     * @param counter the counter of the packet
+     * @param id1 the array with the bytes of the first identifier
+     * @param id1Length the length of the first identifier
+     * @param id2 the array with the bytes of the second identifier
+     * @param id2Length the length of the second identifier
+     * @param timeMillis the time of reception in milliseconds, from a monotonic clock
+     * @return true if the packet got queued, false if it was ignored or the queue was full
+     * @see ReplayDriver
+     */
+    public boolean offer(long address, long counter, byte[] id1, int id1Length, byte[] id2, int id2Length, long timeMillis) {
+        if (tagTracker.get(address) == null) {
+            return false;
+        }
+        RawPacket slot = queue.claim();
+        if (slot == null) {
+            return false;
+        }
+        slot.set(address, counter, id1, id1Length, id2, id2Length, timeMillis);
+        queue.publish();
+        wakeWorker();
+        return true;
+    }
+
+    /**
+     * Forgets the state of all tags and the packets that are still queued.
+     * If the tracking thread runs, the reset happens on it, before the next packet.
+     */
+    public void reset() {
+        latest.set(null);
+        if (worker == null) {
+            queue.clear();
+            tagTracker.resetAll();
+            return;
+        }
+        resetRequested.set(true);
+        wakeWorker();
+    }
+
+    /**
+     * Called by the consumer to get the latest published snapshot.
+     * The snapshot has to be given back with {@link #recycle(PositionSnapshot)} once it is consumed.
+     *
+     * @return the latest snapshot, or null if nothing was published since the last call
+     */
+    public PositionSnapshot takeLatest() {
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * Gives a consumed snapshot back to the pipeline, so that it can be reused.
+     *
+     * @param snapshot the snapshot returned by {@link #takeLatest()}
+     */
+    public void recycle(PositionSnapshot snapshot) {
+        spare.set(snapshot);
+    }
+
+    /**
+     * Checks if the tracking thread runs.
+     *
+     * @return true between start() and stop()
+     */
+    public synchronized boolean isStarted() {
+        return worker != null;
+    }
+
+    /**
+     * Checks if every queued packet has been processed.
+     *
+     * @return true if the queue is empty
+     */
+    public boolean isQueueEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * Checks if the next offered packet would be dropped. It must only be called from the thread that offers the packets.
+     *
+     * @return true if the queue is full
+     */
+    public boolean isQueueFull() {
+        return queue.isFull();
+    }
+
+    /**
+     * Getter for the number of packets that were dropped because the queue was full
+     *
+     * @return the requested count
+     */
+    public long getDroppedCount() {
+        return queue.getDroppedCount();
+    }
+
+    /**
+     * Getter for the number of packets that repeated the counter of a packet that was already processed
+     *
+     * @return the requested count
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * Getter for the number of packets that arrived after a packet with a newer counter
+     *
+     * @return the requested count
+     */
+    public long getStaleCount() {
+        return staleCount;
+    }
+
+    /**
+     * Getter for the number of packets whose payload was too short to be decoded
+     *
+     * @return the requested count
+     */
+    public long getIncompleteCount() {
+        return incompleteCount;
+    }
+
+    /**
+     * Getter for the number of packets from which no position could be estimated
+     *
+     * @return the requested count
+     */
+    public long getUnsolvedCount() {
+        return unsolvedCount;
+    }
+
+    /**
+     * Getter for the number of fixes that could not be written to the MeasurementStore
+     *
+     * @return the requested count
+     */
+    public long getStoreErrorCount() {
+        return storeErrorCount;
+    }
+
+    /**
+     * Getter for the number of snapshots that were published, including the ones that got overwritten
+     *
+     * @return the requested count
+     */
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    /**
+     * Processes all queued packets on the caller's thread. It must only be used
+     * while the tracking thread is not started, e.g. in tests.
+     *
+     * @return the number of processed packets
+     */
+    int processPending() {
+        if (resetRequested.getAndSet(false)) {
+            queue.clear();
+            tagTracker.resetAll();
+        }
+        int count = 0;
+        RawPacket raw;
+        while ((raw = queue.peek()) != null) {
+            process(raw);
+            queue.release();
+            count++;
+        }
+        flushStore();
+        return count;
+    }
+
+    private void flushStore() {
+        MeasurementStore store = measurementStore;
+        if (store != null) {
+            store.flush();
+        }
+    }
+
+    private void wakeWorker() {
+        Thread thread = worker;
+        if (thread != null && waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void runWorker() {
+        while (running) {
+            if (resetRequested.getAndSet(false)) {
+                queue.clear();
+                tagTracker.resetAll();
+            }
+            RawPacket raw = queue.peek();
+            if (raw == null) {
+                flushStore();
+                waiting = true;
+                if (running && queue.isEmpty() && !resetRequested.get()) {
+                    LockSupport.park(this);
+                }
+                waiting = false;
+                continue;
+            }
+            process(raw);
+            queue.release();
+        }
+    }
+
+    /**
+     * Processes one packet with the state of the tag that sent it: the repeated and the stale packets
+     * are dropped before they get decoded, then the payload is decoded, the distances are fused with
+     * the RangingModel if there is one, the position gets estimated, from the fingerprints of the RadioMap
+     * if there is one, and smoothed by the Kalman filter of the tag.
+     * Only if the smoothed position has moved noticeably, the fix gets recorded and, for the shown tag,
+     * a snapshot gets published.
+     * It runs on the tracking thread, or on the caller's thread when the pipeline is not started.
+     *
+     * @param raw the raw advertisement
+     * @see CounterWindow
+     * @see WiraPayloadDecoder#decode(byte[], WiraPacket)
+     * @see AnchorRegistry#indexOf(int)
+     * @see RangingModel#fuse(int, int, double, double[], double[], int)
+     * @see DataList#addDataElement(WiraPacket)
+     * @see PositionSolver
+     * @see FingerprintLocalizer
+     * @see ParticleFilterLocalizer
+     * @see KalmanTracker
+     */
+    void process(RawPacket raw) {
+        TagState tag = tagTracker.get(raw.getAddress());
+        if (tag == null) {
+            return;
+        }
+        int verdict = tag.acceptCounter(raw.getCounter(), raw.getTimeMillis());
+        if (verdict == CounterWindow.DUPLICATE) {
+            duplicateCount++;
+            return;
+        }
+        if (verdict == CounterWindow.STALE) {
+            staleCount++;
+            return;
+        }
+        if (!raw.decode(packet)) {
+            incompleteCount++;
+            return;
+        }
+
+        tag.getDataList().addDataElement(packet);
+
+        SurveyCapture capture = surveyCapture;
+        if (capture != null && capture.getAddress() == tag.getAddress()) {
+            capture.add(packet);
+        }
+
+        RangingModel model = rangingModel;
+        int anchorCount = 0;
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            int index = anchorRegistry.indexOf(packet.getPeerId(i));
+            if (index < 0) {
+                continue;
+            }
+            if (model == null) {
+                ranges[anchorCount] = packet.getDistance(i);
+            } else if (!model.fuse(index, packet.getRssi(i), packet.getDistance(i), ranges, weights, anchorCount)) {
+                continue;
+            }
+            anchorX[anchorCount] = anchorRegistry.getX(index);
+            anchorY[anchorCount] = anchorRegistry.getY(index);
+            anchorIndices[anchorCount] = index;
+            anchorCount++;
+        }
+
+        KalmanTracker tracker = tag.getTracker();
+        long now = raw.getTimeMillis();
+        RadioMap map = radioMap;
+        int particles = particleCount;
+        if (map != null) {
+            FingerprintLocalizer localizer = tag.getFingerprintLocalizer();
+            if (localizer == null || localizer.getRadioMap() != map) {
+                localizer = new FingerprintLocalizer(map);
+                tag.setFingerprintLocalizer(localizer);
+            }
+            if (!localizer.update(anchorRegistry, packet, now)) {
+                unsolvedCount++;
+                return;
+            }
+            double spread = localizer.getSpread();
+            tracker.update(localizer.getX(), localizer.getY(), measurementNoise + spread * spread, now);
+        } else if (particles > 0) {
+            ParticleFilterLocalizer particleFilter = tag.getParticleFilter();
+            if (particleFilter == null || particleFilter.getParticleCount() != particles) {
+                particleFilter = new ParticleFilterLocalizer(floorPlan, particles, tag.getAddress());
+                tag.setParticleFilter(particleFilter);
+            }
+            if (!particleFilter.update(anchorX, anchorY, ranges, model == null ? null : weights, anchorCount, now)) {
+                unsolvedCount++;
+                return;
+            }
+            double spread = particleFilter.getSpread();
+            tracker.update(particleFilter.getX(), particleFilter.getY(), measurementNoise + spread * spread, now);
+        } else {
+            if (!positionSolver.solve(anchorX, anchorY, ranges, model == null ? null : weights, anchorCount, fix)) {
+                unsolvedCount++;
+                return;
+            }
+            double residual = fix.getResidual();
+            tracker.update(fix.getX(), fix.getY(), measurementNoise + residual * residual, now);
+        }
+
+        tag.setLatestFix(tracker.getX(), tracker.getY(), now);
+
+        if (!tracker.shouldPublish(minMovement)) {
+            return;
+        }
+        tracker.markPublished();
+
+        MeasurementStore store = measurementStore;
+        if (store != null) {
+            record.set(System.currentTimeMillis(), tag.getAddress(), tracker.getX(), tracker.getY(), packet);
+            try {
+                store.append(record);
+            } catch (IOException | IllegalStateException e) {
+                // A store that gets closed meanwhile must not stop the tracking thread
+                storeErrorCount++;
+            }
+        }
+
+        if (tag.getAddress() != shownAddress) {
+            return;
+        }
+
+        PositionSnapshot snapshot = back;
+        snapshot.address = tag.getAddress();
+        snapshot.timeMillis = now;
+        snapshot.x = tracker.getX();
+        snapshot.y = tracker.getY();
+        snapshot.packet.copyFrom(packet);
+        System.arraycopy(anchorIndices, 0, snapshot.anchorIndices, 0, anchorCount);
+        snapshot.anchorCount = anchorCount;
+        publish();
+    }
+
+    /**
+     * Makes the written snapshot the latest one and takes a free snapshot for the next write:
+     * the one that was not consumed in time, or the one the consumer gave back, or a new one.
+     */
+    private void publish() {
+        PositionSnapshot previous = latest.getAndSet(back);
+        if (previous == null) {
+            previous = spare.getAndSet(null);
+            if (previous == null) {
+                previous = new PositionSnapshot();
+            }
+        }
+        back = previous;
+        publishedCount++;
+
+        PositionListener current = listener;
+        if (current != null) {
+            current.onPositionAvailable();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.beaconoffice;
+
+/**
+ * WiraPacket class holds the decoded content of one WiRa initiator advertisement:
+ * the IDs of the three auxiliary AltBeacons, the RSSI values the initiator measured from them
+ * and the corresponding distances in meters.
+ * The values are kept in primitive arrays so that a single instance can be reused for every
+ * packet, without any allocation on the scanning path.
+ *
+ * @version 1.0
+ * @see WiraPayloadDecoder
+ * @see TrackingPipeline#process(RawPacket)
+ */
+public class WiraPacket {
+
+    /**
+     * The number of auxiliary AltBeacons reported in every advertisement.
+     */
+    public static final int PEER_COUNT = 3;
+
+    final int[] peerIds = new int[PEER_COUNT];
+    final int[] rssi = new int[PEER_COUNT];
+    final float[] distances = new float[PEER_COUNT];
+
+    /**
+     * Default constructor
+     */
+    public WiraPacket() { }
+
+    /**
+     * Getter for the ID of an auxiliary AltBeacon, i.e. the raw peer ID byte (0xF1 for "F1").
+     *
+     * @param i the position of the AltBeacon in the packet, from 0 to 2
+     * @return the unsigned peer ID, from 0 to 255
+     */
+    public int getPeerId(int i) {
+        return peerIds[i];
+    }
+
+    /**
+     * Getter for the RSSI value the initiator received from an auxiliary AltBeacon.
+     *
+     * @param i the position of the AltBeacon in the packet, from 0 to 2
+     * @return the RSSI value in dBm
+     */
+    public int getRssi(int i) {
+        return rssi[i];
+    }
+
+    /**
+     * Getter for the distance between the initiator and an auxiliary AltBeacon.
+     *
+     * @param i the position of the AltBeacon in the packet, from 0 to 2
+     * @return the distance in meters
+     */
+    public float getDistance(int i) {
+        return distances[i];
+    }
+
+    /**
+     * Copies the content of another packet into this one.
+     *
+     * @param other the packet whose values will be copied
+     */
+    public void copyFrom(WiraPacket other) {
+        System.arraycopy(other.peerIds, 0, peerIds, 0, PEER_COUNT);
+        System.arraycopy(other.rssi, 0, rssi, 0, PEER_COUNT);
+        System.arraycopy(other.distances, 0, distances, 0, PEER_COUNT);
+    }
+}
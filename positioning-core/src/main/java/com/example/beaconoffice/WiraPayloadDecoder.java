@@ -0,0 +1,90 @@
+package com.example.beaconoffice;
+
+/**
+ * WiraPayloadDecoder class decodes the advertisement payload of the WiRa initiator straight from
+ * the bytes of the AltBeacon identifiers.
+ * The payload consists of the first (16 bytes) and the second (2 bytes) identifier of the AltBeacon,
+ * read as one continuous block of 18 bytes:
+ * <ul>
+ *     <li>bytes 0 - 2: the peer IDs of the three auxiliary AltBeacons</li>
+ *     <li>bytes 3 - 5: the RSSI values of the three auxiliary AltBeacons, as signed bytes</li>
+ *     <li>bytes 6 - 17: the three distances, as little-endian IEEE-754 floats</li>
+ * </ul>
+ * Decoding does not create any String, boxed number or list, so it can run for every
+ * received packet without producing garbage.
+ *
+ * @version 1.0
+ * @see WiraPacket
+ * @see TrackingPipeline#process(RawPacket)
+ */
+public final class WiraPayloadDecoder {
+
+    /**
+     * The total length of the payload, in bytes.
+     */
+    public static final int PAYLOAD_LENGTH = 18;
+
+    private static final int RSSI_OFFSET = 3;
+    private static final int DISTANCE_OFFSET = 6;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final byte[] EMPTY = new byte[0];
+
+    private WiraPayloadDecoder() { }
+
+    /**
+     * Decodes the payload that is split between the two identifiers of the AltBeacon.
+     *
+     * @param id1 the bytes of the first identifier
+     * @param id2 the bytes of the second identifier
+     * @param packet the reusable packet that will receive the decoded values
+     * @return true if the payload was complete and got decoded,
+     *         otherwise it returns false and the packet is left untouched
+     */
+    public static boolean decode(byte[] id1, byte[] id2, WiraPacket packet) {
+        if (id1.length + id2.length < PAYLOAD_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            packet.peerIds[i] = byteAt(id1, id2, i) & 0xff;
+            packet.rssi[i] = byteAt(id1, id2, RSSI_OFFSET + i);
+
+            int offset = DISTANCE_OFFSET + 4 * i;
+            int bits = (byteAt(id1, id2, offset) & 0xff)
+                    | (byteAt(id1, id2, offset + 1) & 0xff) << 8
+                    | (byteAt(id1, id2, offset + 2) & 0xff) << 16
+                    | (byteAt(id1, id2, offset + 3) & 0xff) << 24;
+            packet.distances[i] = Float.intBitsToFloat(bits);
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a payload that has already been copied in a single array.
+     *
+     * @param payload the 18 bytes of the payload
+     * @param packet the reusable packet that will receive the decoded values
+     * @return true if the payload was complete and got decoded,
+     *         otherwise it returns false and the packet is left untouched
+     */
+    public static boolean decode(byte[] payload, WiraPacket packet) {
+        return decode(payload, EMPTY, packet);
+    }
+
+    /**
+     * Formats a peer ID the way it is shown to the user, as two upper case hexadecimal digits.
+     *
+     * @param peerId the unsigned peer ID
+     * @return the peer ID as text, e.g. "F1"
+     */
+    public static String formatPeerId(int peerId) {
+        return new String(new char[]{HEX_DIGITS[(peerId >>> 4) & 0xf], HEX_DIGITS[peerId & 0xf]});
+    }
+
+    /**
+     * Reads one byte of the payload as if both identifiers were a single array.
+     */
+    private static byte byteAt(byte[] id1, byte[] id2, int index) {
+        return index < id1.length ? id1[index] : id2[index - id1.length];
+    }
+}
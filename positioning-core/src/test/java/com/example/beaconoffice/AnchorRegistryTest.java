@@ -0,0 +1,107 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for AnchorRegistry and AnchorMask.
+ */
+public class AnchorRegistryTest {
+
+    @Test
+    public void fromCsv_indexesAnchorsByPeerId() throws IOException {
+        AnchorRegistry registry = AnchorRegistry.fromCsv(new StringReader(
+                "# peer ID, x, y\n\nF1,0,0\n 0A , 1.5, 2.25\nff,3,4\n"));
+
+        assertEquals(3, registry.size());
+        assertEquals(0, registry.indexOf(0xF1));
+        assertEquals(1, registry.indexOf(0x0A));
+        assertEquals(2, registry.indexOf(0xFF));
+        assertEquals(-1, registry.indexOf(0xF2));
+        assertEquals(0x0A, registry.getPeerId(1));
+        assertEquals(1.5, registry.getX(1), 0);
+        assertEquals(2.25, registry.getY(1), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void fromCsv_rejectsDuplicatePeerIds() throws IOException {
+        AnchorRegistry.fromCsv(new StringReader("F1,0,0\nf1,1,1\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void fromCsv_rejectsMalformedLines() throws IOException {
+        AnchorRegistry.fromCsv(new StringReader("F1,0\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void fromCsv_rejectsPeerIdsLongerThanAByte() throws IOException {
+        AnchorRegistry.fromCsv(new StringReader("1F1,0,0\n"));
+    }
+
+    @Test
+    public void bundledOfficeConfiguration_hasTheTwelveAltBeacons() throws IOException {
+        // The configuration is bundled in the assets of the app, next to this module
+        try (Reader reader = new InputStreamReader(new FileInputStream("../app/src/main/assets/anchors.csv"), StandardCharsets.UTF_8)) {
+            AnchorRegistry registry = AnchorRegistry.fromCsv(reader);
+
+            assertEquals(12, registry.size());
+            assertEquals(0, registry.indexOf(0xF1));
+            assertEquals(11, registry.indexOf(0xFC));
+            assertEquals(17.9, registry.getX(registry.indexOf(0xF5)), 0);
+            assertEquals(32.6, registry.getY(registry.indexOf(0xFC)), 0);
+        }
+    }
+
+    @Test
+    public void anchorMask_setsAndClearsBits() {
+        AnchorMask mask = new AnchorMask();
+        assertTrue(mask.isEmpty());
+
+        mask.set(0);
+        mask.set(63);
+        mask.set(64);
+        mask.set(AnchorRegistry.MAX_ANCHORS - 1);
+
+        assertTrue(mask.get(0));
+        assertFalse(mask.get(1));
+        assertTrue(mask.get(63));
+        assertTrue(mask.get(64));
+        assertTrue(mask.get(AnchorRegistry.MAX_ANCHORS - 1));
+        assertFalse(mask.isEmpty());
+
+        mask.clear();
+        assertTrue(mask.isEmpty());
+        assertFalse(mask.get(64));
+    }
+
+    @Test
+    public void anchorMask_findsOnlyChangedAnchors() {
+        AnchorMask previous = new AnchorMask();
+        previous.set(2);
+        previous.set(5);
+        previous.set(11);
+        AnchorMask current = new AnchorMask();
+        current.set(2);
+        current.set(7);
+        current.set(11);
+        current.set(200);
+
+        StringBuilder changed = new StringBuilder();
+        for (int i = current.nextDifference(previous, 0); i >= 0; i = current.nextDifference(previous, i + 1)) {
+            changed.append(i).append(' ');
+        }
+        assertEquals("5 7 200 ", changed.toString());
+
+        previous.copyFrom(current);
+        assertEquals(-1, current.nextDifference(previous, 0));
+        assertEquals(-1, current.nextDifference(previous, AnchorRegistry.MAX_ANCHORS));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for GeoTrail.
+ */
+public class GeoTrailTest {
+
+    // About one meter, in degrees of latitude
+    private static final double METER = 1 / 111195.0;
+
+    @Test
+    public void trail_keepsTheMostRecentPositions() {
+        GeoTrail trail = new GeoTrail(4);
+        for (int i = 0; i < 10; i++) {
+            trail.add(i, -i);
+        }
+
+        assertEquals(4, trail.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(6 + i, trail.getLatitude(i), 0);
+            assertEquals(-6 - i, trail.getLongitude(i), 0);
+        }
+
+        trail.clear();
+        assertEquals(0, trail.size());
+        trail.add(1, 2);
+        assertEquals(1, trail.getLatitude(0), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void trail_rejectsPositionsOutOfRange() {
+        GeoTrail trail = new GeoTrail(4);
+        trail.add(1, 2);
+        trail.getLatitude(1);
+    }
+
+    @Test
+    public void simplify_keepsOnlyTheCorners() {
+        GeoTrail trail = new GeoTrail(64);
+        // An L-shaped walk: 10 m north then 10 m east, one position per meter, with some jitter
+        for (int i = 0; i <= 10; i++) {
+            trail.add(38.26 + i * METER, 21.74 + (i % 2) * 0.05 * METER);
+        }
+        for (int i = 1; i <= 10; i++) {
+            trail.add(38.26 + 10 * METER, 21.74 + i * METER / Math.cos(Math.toRadians(38.26)));
+        }
+
+        int[] kept = new int[trail.size()];
+        int count = trail.simplify(0.3, kept);
+
+        assertEquals(3, count);
+        assertEquals(0, kept[0]);
+        assertEquals(10, kept[1]);
+        assertEquals(20, kept[2]);
+
+        // With a smaller tolerance, the jitter of the first leg is kept as well
+        assertEquals(12, trail.simplify(0.01, kept));
+    }
+
+    @Test
+    public void simplify_handlesShortTrails() {
+        GeoTrail trail = new GeoTrail(8);
+        int[] kept = new int[8];
+        assertEquals(0, trail.simplify(1, kept));
+
+        trail.add(1, 1);
+        trail.add(1, 1);
+        assertEquals(2, trail.simplify(1, kept));
+
+        trail.add(1, 1);
+        assertEquals(2, trail.simplify(1, kept));
+    }
+}
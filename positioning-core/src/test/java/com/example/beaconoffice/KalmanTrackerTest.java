@@ -0,0 +1,68 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for KalmanTracker.
+ */
+public class KalmanTrackerTest {
+
+    @Test
+    public void stationaryTag_isSmoothedAndStopsPublishing() {
+        Random random = new Random(3);
+        KalmanTracker tracker = new KalmanTracker(0.05, 1.0);
+
+        double rawError = 0, smoothedError = 0;
+        int publications = 0;
+        for (int n = 0; n < 200; n++) {
+            double x = 4 + random.nextGaussian();
+            double y = 12 + random.nextGaussian();
+            tracker.update(x, y, n * 500L);
+            if (tracker.shouldPublish(0.3)) {
+                tracker.markPublished();
+                publications++;
+            }
+            if (n >= 100) {
+                rawError += Math.hypot(x - 4, y - 12);
+                smoothedError += Math.hypot(tracker.getX() - 4, tracker.getY() - 12);
+            }
+        }
+
+        assertTrue(smoothedError < rawError / 1.5);
+        // Without the filter every one of the 200 fixes would be redrawn and logged
+        assertTrue(publications < 30);
+        assertTrue(tracker.getVarianceX() < 1.0);
+    }
+
+    @Test
+    public void movingTag_velocityIsEstimated() {
+        KalmanTracker tracker = new KalmanTracker(0.5, 0.25);
+
+        for (int n = 0; n < 60; n++) {
+            tracker.update(1 + 0.5 * n * 0.5, 2, n * 500L);
+        }
+
+        assertEquals(0.5, tracker.getVelocityX(), 0.05);
+        assertEquals(0, tracker.getVelocityY(), 0.05);
+        assertEquals(1 + 0.5 * 59 * 0.5, tracker.getX(), 0.2);
+    }
+
+    @Test
+    public void reset_forgetsTheHistory() {
+        KalmanTracker tracker = new KalmanTracker(0.5, 1.0);
+        assertFalse(tracker.shouldPublish(0.3));
+
+        tracker.update(1, 1, 0);
+        tracker.markPublished();
+        tracker.reset();
+        assertFalse(tracker.isInitialised());
+
+        tracker.update(10, 10, 1000);
+        assertTrue(tracker.shouldPublish(0.3));
+        assertEquals(10, tracker.getX(), 0);
+    }
+}
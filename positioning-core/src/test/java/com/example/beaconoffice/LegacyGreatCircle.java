@@ -0,0 +1,46 @@
+package com.example.beaconoffice;
+
+/**
+ * Great-circle projection of the floor coordinates, exactly as HomeFragment#calculateGpsCoordinates did it
+ * before LocalTangentPlane was introduced. It is kept only as a reference for tests.
+ */
+class LegacyGreatCircle {
+
+    private static final double[] fixedCoordinates = {38.260258, 21.748722};
+
+    /**
+     * @return the latitude and the longitude of the point, in degrees
+     */
+    static double[] calculateGpsCoordinates(double x, double y) {
+        final double earthRadius = 6371010;
+        final double epsilon = 0.000001;
+
+        double distance = Math.sqrt(Math.pow(x, 2) + Math.pow(y, 2));
+
+        double theta = Math.atan2(y, x);
+        theta = theta + Math.PI/2;
+
+        double radLatitude = degToRad(fixedCoordinates[0]);
+        double radLongitude = degToRad(fixedCoordinates[1]);
+        double radDistance = distance/earthRadius;
+
+        double latitude = Math.asin(Math.sin(radLatitude) * Math.cos(radDistance) + Math.cos(radLatitude) * Math.sin(radDistance) * Math.cos(theta));
+        double longitude;
+
+        if ( Math.cos(radLatitude) == 0 || Math.abs( Math.cos(radLatitude) ) < epsilon ) {
+            longitude = radLongitude;
+        } else {
+            longitude = ( (radLongitude - Math.asin( Math.sin(theta) * Math.sin(radDistance) / Math.cos(latitude)) + Math.PI ) % (2 * Math.PI) - Math.PI );
+        }
+
+        return new double[]{radToDeg(latitude), radToDeg(longitude)};
+    }
+
+    private static double radToDeg(double angle) {
+        return angle * 180 / Math.PI;
+    }
+
+    private static double degToRad(double angle) {
+        return angle * Math.PI / 180;
+    }
+}
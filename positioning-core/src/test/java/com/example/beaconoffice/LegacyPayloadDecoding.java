@@ -0,0 +1,52 @@
+package com.example.beaconoffice;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * String-based decoding of the WiRa payload, exactly as ScanBeacons#addBeaconValues did it
+ * before WiraPayloadDecoder was introduced. It is kept only as a reference for tests and benchmarks.
+ */
+class LegacyPayloadDecoding {
+
+    final ArrayList<String> peerID = new ArrayList<>();
+    final ArrayList<Integer> rssi = new ArrayList<>();
+    final ArrayList<Float> distance = new ArrayList<>();
+
+    static LegacyPayloadDecoding decode(byte[] id1, byte[] id2) {
+        LegacyPayloadDecoding decoded = new LegacyPayloadDecoding();
+        String data = byteArrayToHexString(id1) + byteArrayToHexString(id2);
+
+        for (int i = 0; i < 6; i += 2) {
+            String hexnum = "" + data.charAt(i) + "" + data.charAt(i + 1);
+            decoded.peerID.add(hexnum);
+        }
+
+        for (int i = 6; i < 12; i += 2) {
+            String hexnum = "" + data.charAt(i) + "" + data.charAt(i + 1);
+            String bin = Integer.toString(Integer.parseInt(hexnum, 16), 2);
+            String binCompl = bin.replace('0', 'X').replace('1', '0').replace('X', '1');
+            int result = (Integer.parseInt(binCompl, 2) + 1) * -1;
+            decoded.rssi.add(result);
+        }
+
+        for (int i = 12; i < 35; i += 8) {
+            String hexnum = "";
+            for (int j = 7; j > 0; j -= 2)
+                hexnum = hexnum + "" + data.charAt(i + j - 1) + "" + data.charAt(i + j);
+
+            Long l = Long.parseUnsignedLong(hexnum, 16);
+            Float f = Float.intBitsToFloat(l.intValue());
+            decoded.distance.add(f);
+        }
+        return decoded;
+    }
+
+    static String byteArrayToHexString(final byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff).toUpperCase(Locale.ROOT));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for LocalTangentPlane.
+ */
+public class LocalTangentPlaneTest {
+
+    /**
+     * Computes the distance between two GPS positions in meters, on the plane around the first one.
+     */
+    private static double meters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double north = Math.toRadians(latitude2 - latitude1) * LocalTangentPlane.EARTH_RADIUS;
+        double east = Math.toRadians(longitude2 - longitude1) * Math.cos(Math.toRadians(latitude1)) * LocalTangentPlane.EARTH_RADIUS;
+        return Math.hypot(north, east);
+    }
+
+    @Test
+    public void office_matchesTheGreatCircleFormula() {
+        LocalTangentPlane plane = LocalTangentPlane.office();
+        double worst = 0;
+        for (double x = 0; x <= 21; x += 0.5) {
+            for (double y = 0; y <= 38; y += 0.5) {
+                double[] expected = LegacyGreatCircle.calculateGpsCoordinates(x, y);
+                double error = meters(expected[0], expected[1], plane.getLatitude(x, y), plane.getLongitude(x, y));
+                worst = Math.max(worst, error);
+            }
+        }
+        assertTrue("Worst error " + worst + " m", worst < 0.001);
+    }
+
+    @Test
+    public void rotation_turnsTheAxes() {
+        LocalTangentPlane east = new LocalTangentPlane(38.26, 21.74, 0);
+        assertEquals(38.26, east.getLatitude(10, 0), 1e-12);
+        assertTrue(east.getLongitude(10, 0) > 21.74);
+        assertTrue(east.getLatitude(0, 10) > 38.26);
+        assertEquals(21.74, east.getLongitude(0, 10), 1e-12);
+
+        LocalTangentPlane north = new LocalTangentPlane(38.26, 21.74, 90);
+        assertEquals(east.getLatitude(0, 10), north.getLatitude(10, 0), 1e-12);
+        assertEquals(21.74, north.getLongitude(10, 0), 1e-12);
+
+        // One meter is the same distance whatever the rotation
+        LocalTangentPlane rotated = new LocalTangentPlane(38.26, 21.74, 33);
+        assertEquals(1, meters(38.26, 21.74, rotated.getLatitude(1, 0), rotated.getLongitude(1, 0)), 1e-6);
+        assertEquals(1, meters(38.26, 21.74, rotated.getLatitude(0, 1), rotated.getLongitude(0, 1)), 1e-6);
+    }
+
+    @Test
+    public void toGeodetic_convertsLikeSinglePoints() {
+        LocalTangentPlane plane = new LocalTangentPlane(38.26, 21.74, 12.5);
+        double[] x = {0, 1.5, 20, -3, 99};
+        double[] y = {0, 2.5, 37, 4, 99};
+        double[] latitudes = new double[5];
+        double[] longitudes = new double[5];
+
+        plane.toGeodetic(x, y, 4, latitudes, longitudes);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(plane.getLatitude(x[i], y[i]), latitudes[i], 0);
+            assertEquals(plane.getLongitude(x[i], y[i]), longitudes[i], 0);
+        }
+        assertEquals(0, latitudes[4], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsThePoles() {
+        new LocalTangentPlane(90, 0, 0);
+    }
+}
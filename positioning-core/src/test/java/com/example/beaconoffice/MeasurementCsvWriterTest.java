@@ -0,0 +1,141 @@
+package com.example.beaconoffice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MeasurementCsvWriter.
+ */
+public class MeasurementCsvWriterTest {
+
+    private File directory;
+    private MeasurementStore store;
+
+    @Before
+    public void openStore() throws IOException {
+        directory = Files.createTempDirectory("history").toFile();
+        store = new MeasurementStore(directory, 500, 4);
+        MeasurementRecord record = new MeasurementRecord();
+        WiraPacket packet = new WiraPacket();
+        packet.peerIds[0] = 0xF1;
+        packet.peerIds[1] = 0xF5;
+        packet.peerIds[2] = 0xFC;
+        packet.rssi[0] = -61;
+        packet.rssi[1] = -70;
+        packet.rssi[2] = -82;
+        for (int i = 0; i < 1200; i++) {
+            packet.distances[0] = 1.25f;
+            packet.distances[1] = i * 0.5f;
+            packet.distances[2] = 7.5f;
+            record.set(1_660_000_000_000L + i, 0x4823350000AAL, i * 0.01, 2.5, packet);
+            store.append(record);
+        }
+        store.flush();
+    }
+
+    @After
+    public void deleteStore() {
+        store.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static BufferedReader gunzip(InputStream in) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(in), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeGzip_writesOneLinePerFix() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = new MeasurementCsvWriter().writeGzip(store, 100, 1100, out);
+        assertEquals(1000, count);
+
+        BufferedReader reader = gunzip(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(MeasurementCsvWriter.HEADER, reader.readLine());
+        String[] first = reader.readLine().split(",");
+        assertEquals(13, first.length);
+        assertEquals("48:23:35:00:00:AA", first[1]);
+        assertEquals("1", first[2]);
+        assertEquals("2.5", first[3]);
+        assertEquals("F1", first[4]);
+        assertEquals("-61", first[5]);
+        assertEquals("1.25", first[6]);
+        assertEquals("50", first[9]);
+        assertEquals("FC", first[10]);
+
+        int lines = 1;
+        while (reader.readLine() != null) {
+            lines++;
+        }
+        assertEquals(1000, lines);
+    }
+
+    @Test
+    public void writeGzip_addsGpsCoordinatesInBlocks() throws IOException {
+        LocalTangentPlane plane = LocalTangentPlane.office();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // 130 fixes are two full blocks and part of a third one
+        long count = new MeasurementCsvWriter(plane).writeGzip(store, 100, 230, out);
+        assertEquals(130, count);
+
+        BufferedReader reader = gunzip(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(MeasurementCsvWriter.GPS_HEADER, reader.readLine());
+        int lines = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            String[] columns = text.split(",");
+            assertEquals(15, columns.length);
+            double x = (100 + lines) * 0.01;
+            assertEquals(plane.getLatitude(x, 2.5), Double.parseDouble(columns[13]), 1e-8);
+            assertEquals(plane.getLongitude(x, 2.5), Double.parseDouble(columns[14]), 1e-8);
+            lines++;
+        }
+        assertEquals(130, lines);
+    }
+
+    @Test
+    public void writeGzip_leavesTheStreamOfTheCallerOpen() throws IOException {
+        final boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void write(byte[] b, int off, int len) {
+                assertFalse("Written after close", closed[0]);
+                super.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        assertEquals(10, new MeasurementCsvWriter().writeGzip(store, 100, 110, out));
+        assertFalse(closed[0]);
+
+        // The caller goes on after the compressed data, like the end of a MIME part
+        int length = out.size();
+        out.write("--boundary--".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(length + 12, out.size());
+
+        BufferedReader reader = gunzip(new ByteArrayInputStream(out.toByteArray(), 0, length));
+        assertEquals(MeasurementCsvWriter.HEADER, reader.readLine());
+    }
+}
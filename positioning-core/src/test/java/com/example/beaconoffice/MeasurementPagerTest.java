@@ -0,0 +1,112 @@
+package com.example.beaconoffice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MeasurementPager.
+ */
+public class MeasurementPagerTest {
+
+    private File directory;
+    private MeasurementStore store;
+
+    @Before
+    public void openStore() throws IOException {
+        directory = Files.createTempDirectory("history").toFile();
+        store = new MeasurementStore(directory, 1000, 3);
+    }
+
+    @After
+    public void deleteStore() {
+        store.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private void append(int from, int to) throws IOException {
+        MeasurementRecord record = new MeasurementRecord();
+        WiraPacket packet = new WiraPacket();
+        for (int i = from; i < to; i++) {
+            record.set(i, 0x4823350000AAL, i, 0, packet);
+            store.append(record);
+        }
+        store.flush();
+    }
+
+    @Test
+    public void positions_areNewestFirstAndStableUntilRefresh() throws IOException {
+        append(0, 200);
+        MeasurementPager pager = new MeasurementPager(store, 2);
+
+        assertEquals(200, pager.size());
+        assertEquals(199, pager.get(0).getTimeMillis());
+        assertEquals(0, pager.get(199).getTimeMillis());
+
+        append(200, 210);
+        assertEquals(199, pager.get(0).getTimeMillis());
+
+        pager.refresh();
+        assertEquals(10, pager.getInsertedCount());
+        assertEquals(0, pager.getRemovedCount());
+        assertEquals(210, pager.size());
+        assertEquals(209, pager.get(0).getTimeMillis());
+        assertEquals(199, pager.get(10).getTimeMillis());
+    }
+
+    @Test
+    public void memory_isBoundedByThePageCache() throws IOException {
+        append(0, 2000);
+        MeasurementPager pager = new MeasurementPager(store, 4);
+
+        for (int position = 0; position < pager.size(); position++) {
+            assertEquals(1999 - position, pager.get(position).getTimeMillis());
+            assertTrue(pager.getCachedPageCount() <= 4);
+        }
+        assertEquals(4, pager.getCachedPageCount());
+    }
+
+    @Test
+    public void retention_removesRowsFromTheBottom() throws IOException {
+        append(0, 2500);
+        MeasurementPager pager = new MeasurementPager(store, 4);
+        assertEquals(2500, pager.size());
+
+        append(2500, 3100);
+        pager.refresh();
+
+        assertEquals(600, pager.getInsertedCount());
+        assertEquals(1000, pager.getRemovedCount());
+        assertEquals(2100, pager.size());
+        assertEquals(1000, pager.get(pager.size() - 1).getTimeMillis());
+    }
+
+    @Test
+    public void clear_hidesTheHistoryUntilNewFixes() throws IOException {
+        append(0, 100);
+        MeasurementPager pager = new MeasurementPager(store, 2);
+        pager.clear();
+
+        assertEquals(0, pager.size());
+        assertEquals(100, pager.getRemovedCount());
+
+        append(100, 105);
+        pager.refresh();
+        assertEquals(5, pager.size());
+        assertEquals(5, pager.getInsertedCount());
+        assertEquals(104, pager.get(0).getTimeMillis());
+        assertEquals(105, store.size());
+    }
+}
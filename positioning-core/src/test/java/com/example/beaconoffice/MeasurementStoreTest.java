@@ -0,0 +1,155 @@
+package com.example.beaconoffice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MeasurementStore.
+ */
+public class MeasurementStoreTest {
+
+    private static final long TAG = 0x4823350000AAL;
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("history").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static MeasurementRecord fix(long i) {
+        WiraPacket packet = new WiraPacket();
+        packet.peerIds[0] = 0xF1;
+        packet.peerIds[1] = 0xF2;
+        packet.peerIds[2] = (int) (0xF3 + i % 8);
+        packet.rssi[0] = -40;
+        packet.rssi[1] = -128;
+        packet.rssi[2] = (int) -(i % 100);
+        packet.distances[0] = 1.5f;
+        packet.distances[1] = i * 0.25f;
+        packet.distances[2] = 12.75f;
+        MeasurementRecord record = new MeasurementRecord();
+        record.set(1_660_000_000_000L + 1000 * i, TAG + (i & 1), i * 0.1, 38 - i * 0.1, packet);
+        return record;
+    }
+
+    private static void assertFix(long i, MeasurementRecord actual) {
+        MeasurementRecord expected = fix(i);
+        assertEquals(expected.getTimeMillis(), actual.getTimeMillis());
+        assertEquals(expected.getAddress(), actual.getAddress());
+        assertEquals(expected.getX(), actual.getX(), 0);
+        assertEquals(expected.getY(), actual.getY(), 0);
+        for (int p = 0; p < WiraPacket.PEER_COUNT; p++) {
+            assertEquals(expected.getPacket().getPeerId(p), actual.getPacket().getPeerId(p));
+            assertEquals(expected.getPacket().getRssi(p), actual.getPacket().getRssi(p));
+            assertEquals(expected.getPacket().getDistance(p), actual.getPacket().getDistance(p), 0);
+        }
+    }
+
+    @Test
+    public void records_areVisibleOnlyAfterFlush() throws IOException {
+        MeasurementStore store = new MeasurementStore(directory, 100, 4);
+        store.append(fix(0));
+        assertEquals(0, store.size());
+        assertFalse(store.read(0, new MeasurementRecord()));
+
+        store.flush();
+        MeasurementRecord record = new MeasurementRecord();
+        assertEquals(1, store.size());
+        assertTrue(store.read(0, record));
+        assertFix(0, record);
+        store.close();
+    }
+
+    @Test
+    public void records_survivePartialBatchesAndReopening() throws IOException {
+        MeasurementStore store = new MeasurementStore(directory, 50, 10);
+        for (long i = 0; i < 120; i++) {
+            store.append(fix(i));
+        }
+        // Full segments are committed when the next one begins, the rest waits for a flush
+        assertEquals(100, store.getEndIndex());
+        store.close();
+
+        store = new MeasurementStore(directory, 50, 10);
+        assertEquals(120, store.getEndIndex());
+        for (long i = 120; i < 130; i++) {
+            store.append(fix(i));
+        }
+        store.flush();
+
+        MeasurementStore.Cursor cursor = store.cursor(0, store.getEndIndex());
+        MeasurementRecord record = new MeasurementRecord();
+        long expected = 0;
+        while (cursor.next(record)) {
+            assertEquals(expected, cursor.getIndex());
+            assertFix(expected++, record);
+        }
+        assertEquals(130, expected);
+        assertEquals(3, directory.listFiles().length);
+        store.close();
+    }
+
+    @Test
+    public void rollover_deletesTheOldestSegments() throws IOException {
+        MeasurementStore store = new MeasurementStore(directory, 10, 3);
+        for (long i = 0; i < 55; i++) {
+            store.append(fix(i));
+        }
+        store.flush();
+
+        assertEquals(3, directory.listFiles().length);
+        assertEquals(30, store.getFirstIndex());
+        assertEquals(25, store.size());
+        assertFalse(store.read(29, new MeasurementRecord()));
+
+        MeasurementStore.Cursor cursor = store.cursor(0, 40);
+        MeasurementRecord record = new MeasurementRecord();
+        assertTrue(cursor.next(record));
+        assertEquals(30, cursor.getIndex());
+        assertFix(30, record);
+        store.close();
+    }
+
+    @Test
+    public void indexOfTime_findsTheFirstRecordOfARange() throws IOException {
+        MeasurementStore store = new MeasurementStore(directory, 16, 8);
+        for (long i = 0; i < 100; i++) {
+            store.append(fix(i));
+        }
+        store.flush();
+
+        assertEquals(0, store.indexOfTime(0));
+        assertEquals(42, store.indexOfTime(fix(42).getTimeMillis()));
+        assertEquals(43, store.indexOfTime(fix(42).getTimeMillis() + 1));
+        assertEquals(100, store.indexOfTime(Long.MAX_VALUE));
+        store.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsForeignSegments() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "segment-00000000.bin"), "rw")) {
+            file.setLength(MeasurementStore.HEADER_SIZE + 10 * MeasurementStore.RECORD_SIZE);
+        }
+        new MeasurementStore(directory, 10, 3);
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for PacketRecorder, PacketReader, PacketFrameDecoder and ReplayDriver.
+ */
+public class PacketReplayTest {
+
+    private static final long TAG = 0x4823350000AAL;
+    private static final long UNKNOWN_TAG = 0x4823350000ACL;
+    private static final int[] PEERS = {0xF1, 0xF2, 0xF3};
+    private static final int[] RSSI = {-60, -65, -70};
+    private static final int PACKETS = 600;
+
+    private static TrackingPipeline pipeline(int queueCapacity) throws IOException {
+        AnchorRegistry registry = AnchorRegistry.fromCsv(new StringReader("F1,0,0\nF2,20,0\nF3,0,20\n"));
+        TagTracker tracker = new TagTracker(0.5, 1.0);
+        tracker.allow(TAG);
+        return new TrackingPipeline(registry, tracker, FloorPlan.office(), queueCapacity, 1.0, 0.3);
+    }
+
+    /**
+     * Records a walk of the tag along the left wall at 10 packets per second, with a packet of an unknown
+     * tag and a packet without data fields every ten packets, as the scanner would report them.
+     */
+    private static byte[] recordWalk() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PacketRecorder recorder = new PacketRecorder(out)) {
+            for (int i = 0; i < PACKETS; i++) {
+                double x = 2 + 0.01 * i;
+                double y = 1 + 0.05 * i;
+                float[] distances = {
+                        (float) Math.hypot(x, y),
+                        (float) Math.hypot(x - 20, y),
+                        (float) Math.hypot(x, y - 20)};
+                byte[][] ids = WiraPayloadDecoderTest.payload(PEERS, RSSI, distances);
+                long time = 5_000 + 100L * i;
+                recorder.record(time, TAG, ids[0], ids[1], Arrays.asList((long) (i & 0xff), 7L));
+                if (i % 10 == 0) {
+                    recorder.record(time, UNKNOWN_TAG, ids[0], ids[1], Collections.singletonList((long) i));
+                    recorder.record(time, TAG, ids[0], ids[1], Collections.<Long>emptyList());
+                }
+            }
+            assertEquals(PACKETS + 2 * PACKETS / 10, recorder.getRecordedCount());
+        }
+        return out.toByteArray();
+    }
+
+    private static PacketReader reader(byte[] recording) throws IOException {
+        return new PacketReader(new ByteArrayInputStream(recording));
+    }
+
+    @Test
+    public void reader_readsWhatWasRecorded() throws IOException {
+        byte[][] ids = WiraPayloadDecoderTest.payload(PEERS, RSSI, new float[]{1, 2, 3});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PacketRecorder recorder = new PacketRecorder(out)) {
+            recorder.record(1234, TAG, ids[0], ids[1], Arrays.asList(42L, -1L, 7L, 8L, 9L));
+            recorder.record(1300, UNKNOWN_TAG, new byte[0], new byte[2], Collections.<Long>emptyList());
+        }
+
+        CapturedPacket packet = new CapturedPacket();
+        try (PacketReader reader = reader(out.toByteArray())) {
+            assertTrue(reader.next(packet));
+            assertEquals(1234, packet.getTimeMillis());
+            assertEquals(TAG, packet.getAddress());
+            assertArrayEquals(ids[0], packet.copyId1());
+            assertArrayEquals(ids[1], packet.copyId2());
+            assertEquals(5, packet.getDataFieldCount());
+            assertEquals(42, packet.getDataField(0));
+            assertEquals(-1, packet.getDataField(1));
+            assertEquals(9, packet.getDataField(4));
+
+            assertTrue(reader.next(packet));
+            assertEquals(UNKNOWN_TAG, packet.getAddress());
+            assertEquals(0, packet.getId1Length());
+            assertEquals(2, packet.getId2Length());
+            assertEquals(0, packet.getDataFieldCount());
+
+            assertFalse(reader.next(packet));
+            assertFalse(reader.isTruncated());
+        }
+    }
+
+    @Test
+    public void reader_stopsAtACutRecord() throws IOException {
+        byte[] recording = recordWalk();
+        CapturedPacket packet = new CapturedPacket();
+        try (PacketReader reader = reader(Arrays.copyOf(recording, recording.length - 5))) {
+            int count = 0;
+            while (reader.next(packet)) {
+                count++;
+            }
+            assertEquals(PACKETS + 2 * PACKETS / 10 - 1, count);
+            assertTrue(reader.isTruncated());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void reader_rejectsOtherFiles() throws IOException {
+        reader("time,tag,x_m,y_m\n".getBytes());
+    }
+
+    @Test
+    public void frameDecoder_readsRecordsSplitAnywhere() throws IOException {
+        byte[] recording = recordWalk();
+        CapturedPacket expected = new CapturedPacket();
+        CapturedPacket packet = new CapturedPacket();
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        boolean headerRead = false;
+        int count = 0;
+
+        try (PacketReader reader = reader(recording)) {
+            // Feed the recording in pieces of 1 to 37 bytes, like the reads of a slow socket
+            for (int offset = 0, piece = 1; offset < recording.length; offset += piece, piece = piece % 37 + 1) {
+                buffer.put(recording, offset, Math.min(piece, recording.length - offset));
+                buffer.flip();
+                if (!headerRead) {
+                    headerRead = PacketFrameDecoder.readHeader(buffer);
+                }
+                while (headerRead && PacketFrameDecoder.readRecord(buffer, packet)) {
+                    assertTrue(reader.next(expected));
+                    assertEquals(expected.getTimeMillis(), packet.getTimeMillis());
+                    assertEquals(expected.getAddress(), packet.getAddress());
+                    assertArrayEquals(expected.copyId1(), packet.copyId1());
+                    assertArrayEquals(expected.copyId2(), packet.copyId2());
+                    assertEquals(expected.getDataFieldCount(), packet.getDataFieldCount());
+                    for (int i = 0; i < packet.getDataFieldCount(); i++) {
+                        assertEquals(expected.getDataField(i), packet.getDataField(i));
+                    }
+                    count++;
+                }
+                buffer.compact();
+            }
+            assertFalse(reader.next(expected));
+        }
+        assertEquals(PACKETS + 2 * PACKETS / 10, count);
+        assertEquals(0, buffer.position());
+    }
+
+    @Test(expected = IOException.class)
+    public void frameDecoder_rejectsOtherStreams() throws IOException {
+        PacketFrameDecoder.readHeader(ByteBuffer.wrap("GET / HTTP/1.1\r\n".getBytes()));
+    }
+
+    @Test
+    public void replay_onTheCallersThreadIsDeterministic() throws IOException {
+        byte[] recording = recordWalk();
+        TrackingPipeline first = pipeline(16);
+        TrackingPipeline second = pipeline(16);
+        ReplayDriver driver = new ReplayDriver(first);
+        driver.setSpeed(ReplayDriver.AS_FAST_AS_POSSIBLE);
+
+        try (PacketReader reader = reader(recording)) {
+            driver.replay(reader);
+        }
+        assertEquals(PACKETS, driver.getOfferedCount());
+        assertEquals(2 * PACKETS / 10, driver.getIgnoredCount());
+        assertEquals(0, driver.getDroppedCount());
+
+        ReplayDriver again = new ReplayDriver(second);
+        again.setSpeed(ReplayDriver.AS_FAST_AS_POSSIBLE);
+        try (PacketReader reader = reader(recording)) {
+            again.replay(reader);
+        }
+        TagState tag = first.getTagTracker().get(TAG);
+        assertEquals(5_000 + 100L * (PACKETS - 1), tag.getLatestTimeMillis());
+        assertEquals(2 + 0.01 * (PACKETS - 1), tag.getLatestX(), 0.5);
+        assertEquals(1 + 0.05 * (PACKETS - 1), tag.getLatestY(), 0.5);
+        assertEquals(tag.getLatestX(), second.getTagTracker().get(TAG).getLatestX(), 0);
+        assertEquals(tag.getLatestY(), second.getTagTracker().get(TAG).getLatestY(), 0);
+        assertEquals(first.getPublishedCount(), second.getPublishedCount());
+    }
+
+    @Test
+    public void replay_throughTheTrackingThreadLosesNothing() throws IOException {
+        byte[] recording = recordWalk();
+        TrackingPipeline reference = pipeline(16);
+        ReplayDriver referenceDriver = new ReplayDriver(reference);
+        referenceDriver.setSpeed(ReplayDriver.AS_FAST_AS_POSSIBLE);
+        try (PacketReader reader = reader(recording)) {
+            referenceDriver.replay(reader);
+        }
+
+        // A tiny queue, so that the driver has to wait for the tracking thread
+        TrackingPipeline threaded = pipeline(2);
+        ReplayDriver driver = new ReplayDriver(threaded);
+        driver.setSpeed(ReplayDriver.AS_FAST_AS_POSSIBLE);
+        threaded.start();
+        try (PacketReader reader = reader(recording)) {
+            long nanos = driver.replay(reader);
+            assertTrue(nanos > 0);
+        } finally {
+            threaded.stop();
+        }
+
+        assertEquals(PACKETS, driver.getOfferedCount());
+        assertEquals(0, driver.getDroppedCount());
+        assertEquals(0, threaded.getDroppedCount());
+        assertEquals(reference.getPublishedCount(), threaded.getPublishedCount());
+        assertEquals(reference.getTagTracker().get(TAG).getLatestX(), threaded.getTagTracker().get(TAG).getLatestX(), 0);
+    }
+
+    @Test
+    public void replay_keepsThePaceOfTheRecording() throws IOException {
+        // 600 packets, 100 ms apart, are a minute of scanning: 60 ms at a thousand times real time
+        TrackingPipeline pipeline = pipeline(16);
+        ReplayDriver driver = new ReplayDriver(pipeline);
+        driver.setSpeed(1000);
+        try (PacketReader reader = reader(recordWalk())) {
+            long nanos = driver.replay(reader);
+            assertTrue(nanos >= 59_000_000L);
+        }
+        assertEquals(PACKETS, driver.getOfferedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setSpeed_rejectsZero() throws IOException {
+        new ReplayDriver(pipeline(16)).setSpeed(0);
+    }
+}
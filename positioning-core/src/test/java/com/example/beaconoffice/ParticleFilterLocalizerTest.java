@@ -0,0 +1,136 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for FloorPlan and ParticleFilterLocalizer.
+ */
+public class ParticleFilterLocalizerTest {
+
+    private static final double[] ANCHOR_X = {0, 6, 5, 13.8, 17.9, 5, 5, 0.6, 11, 0, 5, 10.6};
+    private static final double[] ANCHOR_Y = {0, 0, 4, 0, 4.3, 10.8, 19, 14.5, 19.8, 21.9, 26.9, 32.6};
+
+    private static void ranges(double x, double y, double[] ranges, Random random, double noise) {
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = Math.hypot(x - ANCHOR_X[i], y - ANCHOR_Y[i]) + random.nextGaussian() * noise;
+        }
+    }
+
+    @Test
+    public void officeFloorPlan_matchesTheClosedAreas() {
+        FloorPlan floorPlan = FloorPlan.office();
+
+        assertTrue(floorPlan.isWalkable(3, 3));
+        assertTrue(floorPlan.isWalkable(11, 20));
+        assertFalse(floorPlan.isWalkable(-0.1, 3));
+        assertFalse(floorPlan.isWalkable(3, 38.1));
+        assertFalse(floorPlan.isWalkable(15, 10));  // Meeting rooms
+        assertFalse(floorPlan.isWalkable(15, 25));  // Kitchen
+        assertFalse(floorPlan.isWalkable(3, 35));   // Hardware Lab
+        assertFalse(floorPlan.isWalkable(10, 4.3)); // Borders are closed
+    }
+
+    private static void assertPoint(double x, double y, double[] point) {
+        assertEquals(x, point[0], 1e-9);
+        assertEquals(y, point[1], 1e-9);
+    }
+
+    @Test
+    public void moveToWalls_leavesTheClosedAreasThroughTheirOpenWalls() {
+        FloorPlan floorPlan = FloorPlan.office();
+        double[] point = new double[2];
+
+        floorPlan.moveToWalls(3, 3, point);
+        assertPoint(3, 3, point);
+        floorPlan.moveToWalls(-2, 20, point);
+        assertPoint(0, 20, point);
+        floorPlan.moveToWalls(10, 40, point);
+        assertPoint(10, 38, point);
+        floorPlan.moveToWalls(15, 25, point);       // Kitchen, not into the meeting rooms below it
+        assertPoint(12.35, 25, point);
+        floorPlan.moveToWalls(15, 14.5, point);     // Meeting rooms, not into the kitchen above them
+        assertPoint(10, 14.5, point);
+        floorPlan.moveToWalls(18, 6, point);        // Meeting rooms, next to the corridor
+        assertPoint(18, 4.3, point);
+        floorPlan.moveToWalls(3, 35, point);        // Hardware Lab
+        assertPoint(7.6, 35, point);
+        floorPlan.moveToWalls(25, 20, point);       // Right of the kitchen, outside the floor
+        assertPoint(12.35, 20, point);
+    }
+
+    @Test
+    public void stationaryTag_converges() {
+        Random random = new Random(11);
+        ParticleFilterLocalizer localizer = new ParticleFilterLocalizer(FloorPlan.office(), 2000, 5);
+        double[] r = new double[ANCHOR_X.length];
+
+        for (int n = 0; n < 30; n++) {
+            ranges(4, 12, r, random, 0.5);
+            assertTrue(localizer.update(ANCHOR_X, ANCHOR_Y, r, r.length, n * 500L));
+        }
+
+        assertEquals(4, localizer.getX(), 0.5);
+        assertEquals(12, localizer.getY(), 0.5);
+        assertTrue(localizer.getSpread() < 1);
+    }
+
+    @Test
+    public void estimate_staysOutOfTheMeetingRooms() {
+        Random random = new Random(13);
+        ParticleFilterLocalizer localizer = new ParticleFilterLocalizer(FloorPlan.office(), 2000, 9);
+        double[] r = new double[ANCHOR_X.length];
+
+        // Distances that point half a meter inside the meeting rooms, next to the corridor
+        for (int n = 0; n < 30; n++) {
+            ranges(10.5, 10, r, random, 0.3);
+            localizer.update(ANCHOR_X, ANCHOR_Y, r, r.length, n * 500L);
+        }
+
+        assertTrue(localizer.getX() < 10);
+        assertEquals(10, localizer.getY(), 1);
+    }
+
+    @Test
+    public void anchorWeights_discountAnUnreliableDistance() {
+        Random random = new Random(19);
+        ParticleFilterLocalizer equal = new ParticleFilterLocalizer(FloorPlan.office(), 2000, 5);
+        ParticleFilterLocalizer weighted = new ParticleFilterLocalizer(FloorPlan.office(), 2000, 5);
+        double[] r = new double[ANCHOR_X.length];
+        // The distance of the fourth anchor is 3 m too long, and the ranging model says it is noisy
+        double[] anchorWeights = {10, 10, 10, 0.1};
+
+        for (int n = 0; n < 30; n++) {
+            ranges(4, 6, r, random, 0.2);
+            r[3] += 3;
+            equal.update(ANCHOR_X, ANCHOR_Y, r, 4, n * 500L);
+            assertTrue(weighted.update(ANCHOR_X, ANCHOR_Y, r, anchorWeights, 4, n * 500L));
+        }
+
+        double equalError = Math.hypot(equal.getX() - 4, equal.getY() - 6);
+        double weightedError = Math.hypot(weighted.getX() - 4, weighted.getY() - 6);
+        assertTrue(weightedError < 0.5);
+        assertTrue(weightedError < equalError);
+    }
+
+    @Test
+    public void parallelWeighting_matchesSequentialWeighting() {
+        ParticleFilterLocalizer sequential = new ParticleFilterLocalizer(FloorPlan.office(), 10000, 21);
+        ParticleFilterLocalizer parallel = new ParticleFilterLocalizer(FloorPlan.office(), 10000, 21);
+        sequential.setParallelThreshold(Integer.MAX_VALUE);
+        parallel.setParallelThreshold(1);
+        Random random = new Random(17);
+        double[] r = new double[ANCHOR_X.length];
+
+        for (int n = 0; n < 10; n++) {
+            ranges(6, 20, r, random, 0.5);
+            sequential.update(ANCHOR_X, ANCHOR_Y, r, 3, n * 500L);
+            parallel.update(ANCHOR_X, ANCHOR_Y, r, 3, n * 500L);
+            assertEquals(sequential.getX(), parallel.getX(), 1e-9);
+            assertEquals(sequential.getY(), parallel.getY(), 1e-9);
+        }
+    }
+}
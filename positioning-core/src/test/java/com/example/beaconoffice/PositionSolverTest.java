@@ -0,0 +1,114 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the PositionSolver implementations.
+ */
+public class PositionSolverTest {
+
+    private static final double[][] ALTBEACONS = {
+            {0, 0}, {6, 0}, {5, 4}, {13.8, 0}, {17.9, 4.3}, {5, 10.8}, {5, 19}, {0.6, 14.5}, {11, 19.8}, {0, 21.9}, {5, 26.9}, {10.6, 32.6}
+    };
+
+    private final PositionFix fix = new PositionFix();
+
+    private static void ranges(double x, double y, double[] anchorX, double[] anchorY, double[] ranges, int count) {
+        for (int i = 0; i < count; i++) {
+            ranges[i] = Math.hypot(x - anchorX[i], y - anchorY[i]);
+        }
+    }
+
+    @Test
+    public void exactRanges_bothSolversFindThePoint() {
+        double[] anchorX = {ALTBEACONS[0][0], ALTBEACONS[2][0], ALTBEACONS[5][0]};
+        double[] anchorY = {ALTBEACONS[0][1], ALTBEACONS[2][1], ALTBEACONS[5][1]};
+        double[] r = new double[3];
+        ranges(3.2, 6.7, anchorX, anchorY, r, 3);
+
+        assertTrue(new ThreeCircleSolver().solve(anchorX, anchorY, r, null, 3, fix));
+        assertEquals(3.2, fix.getX(), 1e-9);
+        assertEquals(6.7, fix.getY(), 1e-9);
+
+        assertTrue(new LeastSquaresSolver().solve(anchorX, anchorY, r, null, 3, fix));
+        assertEquals(3.2, fix.getX(), 1e-9);
+        assertEquals(6.7, fix.getY(), 1e-9);
+        assertEquals(0, fix.getResidual(), 1e-9);
+        assertEquals(3, fix.getAnchorCount());
+    }
+
+    @Test
+    public void threeCircleSolver_keepsLegacyClamping() {
+        double[] anchorX = {0, 6, 5};
+        double[] anchorY = {0, 0, 4};
+        double[] r = new double[3];
+        ranges(-2, 3, anchorX, anchorY, r, 3);
+
+        assertTrue(new ThreeCircleSolver().solve(anchorX, anchorY, r, null, 3, fix));
+        assertEquals(0, fix.getX(), 0);
+        assertEquals(3, fix.getY(), 1e-9);
+
+        assertTrue(new LeastSquaresSolver().solve(anchorX, anchorY, r, null, 3, fix));
+        assertEquals(-2, fix.getX(), 1e-9);
+    }
+
+    @Test
+    public void collinearAnchors_areRejected() {
+        double[] anchorX = {0, 6, 13.8};
+        double[] anchorY = {0, 0, 0};
+        double[] r = {5, 5, 10};
+
+        assertFalse(new ThreeCircleSolver().solve(anchorX, anchorY, r, null, 3, fix));
+        assertFalse(new LeastSquaresSolver().solve(anchorX, anchorY, r, null, 3, fix));
+        assertFalse(new LeastSquaresSolver().solve(anchorX, anchorY, r, null, 2, fix));
+    }
+
+    @Test
+    public void moreAnchors_reduceTheErrorOfNoisyRanges() {
+        Random random = new Random(7);
+        double[] anchorX = new double[ALTBEACONS.length];
+        double[] anchorY = new double[ALTBEACONS.length];
+        double[] r = new double[ALTBEACONS.length];
+        for (int i = 0; i < ALTBEACONS.length; i++) {
+            anchorX[i] = ALTBEACONS[i][0];
+            anchorY[i] = ALTBEACONS[i][1];
+        }
+
+        double errorThree = 0, errorAll = 0;
+        for (int n = 0; n < 500; n++) {
+            double x = 1 + random.nextDouble() * 8;
+            double y = 1 + random.nextDouble() * 25;
+            ranges(x, y, anchorX, anchorY, r, r.length);
+            for (int i = 0; i < r.length; i++) {
+                r[i] += random.nextGaussian() * 0.3;
+            }
+
+            assertTrue(new ThreeCircleSolver().solve(anchorX, anchorY, r, null, 3, fix));
+            errorThree += Math.hypot(fix.getX() - x, fix.getY() - y);
+            assertTrue(new LeastSquaresSolver().solve(anchorX, anchorY, r, null, r.length, fix));
+            errorAll += Math.hypot(fix.getX() - x, fix.getY() - y);
+        }
+        assertTrue(errorAll < errorThree);
+    }
+
+    @Test
+    public void weights_pullTheFixTowardsTrustedAnchors() {
+        double[] anchorX = {0, 6, 5, 0};
+        double[] anchorY = {0, 0, 4, 6};
+        double[] r = new double[4];
+        ranges(2, 2, anchorX, anchorY, r, 4);
+        r[3] += 2;
+
+        assertTrue(new LeastSquaresSolver().solve(anchorX, anchorY, r, null, 4, fix));
+        double unweightedError = Math.hypot(fix.getX() - 2, fix.getY() - 2);
+        assertTrue(new LeastSquaresSolver().solve(anchorX, anchorY, r, new double[]{1, 1, 1, 0.01}, 4, fix));
+        double weightedError = Math.hypot(fix.getX() - 2, fix.getY() - 2);
+
+        assertTrue(weightedError < unweightedError);
+        assertTrue(fix.getResidual() > 0);
+    }
+}
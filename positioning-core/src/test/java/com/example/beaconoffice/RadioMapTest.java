@@ -0,0 +1,276 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for RadioMap, NeighborSet, SurveyCapture and FingerprintLocalizer,
+ * on the 12 anchors of the office floor.
+ */
+public class RadioMapTest {
+
+    private static final long TAG = 0x4823350000AAL;
+
+    private static AnchorRegistry office() throws IOException {
+        return AnchorRegistry.fromCsv(new StringReader("F1,0,0\nF2,6,0\nF3,5,4\nF4,13.8,0\nF5,17.9,4.3\nF6,5,10.8\n"
+                + "F7,5,19\nF8,0.6,14.5\nF9,11,19.8\nFA,0,21.9\nFB,5,26.9\nFC,10.6,32.6\n"));
+    }
+
+    /**
+     * The RSSI of an anchor at a point of the office: free-space path loss, plus the walls of the meeting
+     * rooms and the kitchen, which make the distances from the RSSI useless there.
+     */
+    private static double rssiAt(AnchorRegistry registry, int anchor, double x, double y) {
+        double distance = Math.max(Math.hypot(x - registry.getX(anchor), y - registry.getY(anchor)), 0.5);
+        double rssi = -59 - 20 * Math.log10(distance);
+        if (isClosed(x, y) != isClosed(registry.getX(anchor), registry.getY(anchor))) {
+            rssi -= 12;
+        }
+        return rssi;
+    }
+
+    private static boolean isClosed(double x, double y) {
+        return (x > 10 && y > 4.3 && y < 15.1) || (x > 12.35 && y >= 15.1);
+    }
+
+    /**
+     * Builds the packets of an initiator at a point, which reports three anchors per packet, in turn.
+     */
+    private static void packetAt(AnchorRegistry registry, double x, double y, int sequence, Random random,
+                                 double noise, WiraPacket packet) {
+        for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+            int anchor = (WiraPacket.PEER_COUNT * sequence + i) % registry.size();
+            packet.peerIds[i] = registry.getPeerId(anchor);
+            packet.rssi[i] = (int) Math.round(rssiAt(registry, anchor, x, y) + noise * random.nextGaussian());
+            packet.distances[i] = (float) Math.hypot(x - registry.getX(anchor), y - registry.getY(anchor));
+        }
+    }
+
+    /**
+     * Surveys the office every meter, with SurveyCapture like the app does.
+     */
+    private static RadioMap survey(AnchorRegistry registry, Random random) {
+        RadioMap map = new RadioMap(registry);
+        WiraPacket packet = new WiraPacket();
+        for (int x = 0; x <= 21; x++) {
+            for (int y = 0; y <= 38; y++) {
+                SurveyCapture capture = new SurveyCapture(registry, TAG);
+                for (int sequence = 0; sequence < 12; sequence++) {
+                    packetAt(registry, x, y, sequence, random, 2, packet);
+                    capture.add(packet);
+                }
+                map = capture.addTo(map, x, y);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * A map of random fingerprints, read from its file format.
+     */
+    private static RadioMap randomMap(AnchorRegistry registry, int pointCount, Random random) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(RadioMap.MAGIC);
+        out.writeShort(RadioMap.VERSION);
+        out.writeShort(registry.size());
+        for (int i = 0; i < registry.size(); i++) {
+            out.writeByte(registry.getPeerId(i));
+        }
+        out.writeInt(pointCount);
+        for (int point = 0; point < pointCount; point++) {
+            out.writeFloat(21 * random.nextFloat());
+            out.writeFloat(38 * random.nextFloat());
+            for (int i = 0; i < registry.size(); i++) {
+                // Whole dBm values, so that many distances are equal
+                out.writeFloat(random.nextInt(8) == 0 ? RadioMap.MISSING_RSSI : -40 - random.nextInt(50));
+            }
+        }
+        return RadioMap.read(new ByteArrayInputStream(bytes.toByteArray()), registry);
+    }
+
+    private static double distance(RadioMap map, int point, float[] fingerprint) {
+        double sum = 0;
+        for (int i = 0; i < fingerprint.length; i++) {
+            double d = fingerprint[i] - map.getRssi(point, i);
+            sum += d * d;
+        }
+        return Math.sqrt(sum);
+    }
+
+    @Test
+    public void findNearest_agreesWithAFullScan() throws IOException {
+        AnchorRegistry registry = office();
+        Random random = new Random(25);
+        RadioMap map = randomMap(registry, 3000, random);
+        NeighborSet neighbors = new NeighborSet(5);
+        float[] query = new float[registry.size()];
+        double[] all = new double[map.size()];
+
+        for (int trial = 0; trial < 200; trial++) {
+            for (int i = 0; i < query.length; i++) {
+                query[i] = -40 - 50 * random.nextFloat();
+            }
+            map.findNearest(query, neighbors);
+            for (int point = 0; point < map.size(); point++) {
+                all[point] = distance(map, point, query);
+            }
+            Arrays.sort(all);
+
+            assertEquals(5, neighbors.size());
+            double[] found = new double[5];
+            for (int i = 0; i < 5; i++) {
+                found[i] = neighbors.getDistance(i);
+                assertEquals(distance(map, neighbors.getPoint(i), query), found[i], 1e-9);
+            }
+            Arrays.sort(found);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(all[i], found[i], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void findNearest_returnsTheWholeOfASmallMap() throws IOException {
+        AnchorRegistry registry = office();
+        RadioMap map = new RadioMap(registry);
+        NeighborSet neighbors = new NeighborSet(4);
+        float[] fingerprint = new float[registry.size()];
+        Arrays.fill(fingerprint, -70);
+
+        map.findNearest(fingerprint, neighbors);
+        assertEquals(0, neighbors.size());
+
+        map = map.plus(1, 2, fingerprint);
+        fingerprint[0] = -60;
+        map = map.plus(3, 4, fingerprint);
+        map.findNearest(fingerprint, neighbors);
+        assertEquals(2, neighbors.size());
+    }
+
+    @Test
+    public void file_roundTripsAndChecksTheAnchors() throws IOException {
+        AnchorRegistry registry = office();
+        RadioMap map = randomMap(registry, 50, new Random(3));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        map.write(out);
+        byte[] bytes = out.toByteArray();
+        assertEquals(4 + 2 + 2 + 12 + 4 + 50 * 14 * 4, bytes.length);
+
+        RadioMap copy = RadioMap.read(new ByteArrayInputStream(bytes), registry);
+        assertEquals(50, copy.size());
+        for (int point = 0; point < 50; point++) {
+            assertEquals(map.getX(point), copy.getX(point), 0);
+            assertEquals(map.getY(point), copy.getY(point), 0);
+            for (int i = 0; i < registry.size(); i++) {
+                assertEquals(map.getRssi(point, i), copy.getRssi(point, i), 0);
+            }
+        }
+
+        try {
+            RadioMap.read(new ByteArrayInputStream(bytes),
+                    AnchorRegistry.fromCsv(new StringReader("F1,0,0\nF2,20,0\nF3,0,20\n")));
+            fail("The anchors of another floor were accepted");
+        } catch (IOException expected) {
+            // expected
+        }
+        try {
+            RadioMap.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)), registry);
+            fail("A truncated map was accepted");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void surveyCapture_averagesTheRssiOfEveryAnchor() throws IOException {
+        AnchorRegistry registry = office();
+        SurveyCapture capture = new SurveyCapture(registry, TAG);
+        WiraPacket packet = new WiraPacket();
+        packet.peerIds[0] = 0xF1;
+        packet.peerIds[1] = 0xF2;
+        packet.peerIds[2] = 0xEE;
+        for (int i = 0; i < SurveyCapture.MIN_PACKETS - 1; i++) {
+            packet.rssi[0] = i % 2 == 0 ? -60 : -64;
+            packet.rssi[1] = i == 0 ? 0 : -70;
+            capture.add(packet);
+        }
+        try {
+            capture.addTo(new RadioMap(registry), 1, 1);
+            fail("A point with too few packets was saved");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+        capture.add(packet);
+
+        float[] fingerprint = capture.getFingerprint();
+        assertEquals(-61.6, fingerprint[0], 1e-4);
+        assertEquals(-70, fingerprint[1], 0);
+        assertEquals(RadioMap.MISSING_RSSI, fingerprint[2], 0);
+        assertEquals(1, capture.addTo(new RadioMap(registry), 1, 1).size());
+    }
+
+    @Test
+    public void fingerprints_findTheInitiatorBehindTheWalls() throws IOException {
+        AnchorRegistry registry = office();
+        Random random = new Random(27);
+        RadioMap map = survey(registry, random);
+        FingerprintLocalizer localizer = new FingerprintLocalizer(map);
+        WiraPacket packet = new WiraPacket();
+
+        // In the kitchen, in a meeting room and in the open space
+        double[][] spots = {{16.3, 25.6}, {14.5, 9.2}, {3.4, 7.7}};
+        for (double[] spot : spots) {
+            localizer.reset();
+            assertFalse(localizer.update(registry, new WiraPacket(), 0));
+            double error = 0;
+            int fixes = 0;
+            for (int sequence = 0; sequence < 40; sequence++) {
+                packetAt(registry, spot[0], spot[1], sequence, random, 3, packet);
+                // The first second only fills the RSSI of every anchor in
+                if (localizer.update(registry, packet, 250L * sequence) && sequence >= 4) {
+                    error += Math.hypot(localizer.getX() - spot[0], localizer.getY() - spot[1]);
+                    fixes++;
+                }
+            }
+            assertEquals(36, fixes);
+            assertTrue("Mean error " + error / fixes + " m at " + Arrays.toString(spot), error / fixes < 2);
+        }
+    }
+
+    @Test
+    public void pipeline_switchesToTheRadioMapAndCapturesSurveys() throws IOException {
+        AnchorRegistry registry = office();
+        Random random = new Random(28);
+        RadioMap map = survey(registry, random);
+        TagTracker tags = new TagTracker(0.5, 1.0);
+        tags.allow(TAG);
+        TrackingPipeline pipeline = new TrackingPipeline(registry, tags, FloorPlan.office(), 64, 1.0, 0.3);
+        pipeline.setRadioMap(map);
+        SurveyCapture capture = new SurveyCapture(registry, TAG);
+        pipeline.setSurveyCapture(capture);
+
+        WiraPacket packet = new WiraPacket();
+        for (int sequence = 0; sequence < 40; sequence++) {
+            packetAt(registry, 16.3, 25.6, sequence, random, 3, packet);
+            byte[][] ids = WiraPayloadDecoderTest.payload(packet.peerIds, packet.rssi, packet.distances);
+            assertTrue(pipeline.offer(TAG, sequence & 0xff, ids[0], ids[1], 250L * sequence));
+            pipeline.processPending();
+        }
+
+        TagState tag = tags.get(TAG);
+        assertNotNull(tag.getFingerprintLocalizer());
+        assertEquals(16.3, tag.getLatestX(), 1.5);
+        assertEquals(25.6, tag.getLatestY(), 1.5);
+        assertEquals(40, capture.getPacketCount());
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for RangingModel and RangingCalibrator.
+ */
+public class RangingModelTest {
+
+    private static final int[] PEERS = {0xF1, 0xF2, 0xF3};
+
+    private static AnchorRegistry registry() throws IOException {
+        return AnchorRegistry.fromCsv(new StringReader("F1,0,0\nF2,20,0\nF3,0,20\n"));
+    }
+
+    /**
+     * The RSSI of a distance, with the path-loss model of a room, rounded like the one the initiator reports.
+     */
+    private static int rssiAt(double distance, double rssiAtOneMeter, double exponent, double noise) {
+        return (int) Math.round(rssiAtOneMeter - 10 * exponent * Math.log10(distance) + noise);
+    }
+
+    @Test
+    public void rssiDistance_followsThePathLossOfTheAnchor() throws IOException {
+        RangingModel model = new RangingModel(registry());
+        model.setCalibration(1, -65, 2.5, 3, 0.09);
+
+        assertEquals(1, model.getRssiDistance(0, -59), 1e-9);
+        assertEquals(10, model.getRssiDistance(0, -79), 1e-9);
+        assertEquals(10, model.getRssiDistance(1, -90), 1e-9);
+        assertTrue(Double.isNaN(model.getRssiDistance(0, 0)));
+        assertTrue(Double.isNaN(model.getRssiDistance(0, -128)));
+        // The farther the anchor, the noisier the distance from the RSSI
+        assertTrue(model.getRssiDistanceVariance(0, 8) > 4 * model.getRssiDistanceVariance(0, 4) - 1e-9);
+    }
+
+    @Test
+    public void fuse_weightsBothDistancesByTheirVariance() throws IOException {
+        RangingModel model = new RangingModel(registry());
+        model.setCalibration(0, -59, 2, 3, 1.0);
+        double[] ranges = new double[3];
+        double[] weights = new double[3];
+
+        // The RSSI says 2 m, with a variance of about 0.48 m^2, the initiator 3 m with a variance of 1 m^2
+        assertTrue(model.fuse(0, -65, 3.0, ranges, weights, 1));
+        double rssiDistance = model.getRssiDistance(0, -65);
+        double rssiWeight = 1 / model.getRssiDistanceVariance(0, rssiDistance);
+        assertEquals(1 + rssiWeight, weights[1], 1e-9);
+        assertEquals((3.0 + rssiWeight * rssiDistance) / (1 + rssiWeight), ranges[1], 1e-9);
+        assertTrue(ranges[1] > rssiDistance && ranges[1] < 2.5);
+    }
+
+    @Test
+    public void fuse_fallsBackToTheValidDistance() throws IOException {
+        RangingModel model = new RangingModel(registry());
+        double[] ranges = new double[1];
+        double[] weights = new double[1];
+
+        assertTrue(model.fuse(0, -79, Double.NaN, ranges, weights, 0));
+        assertEquals(10, ranges[0], 1e-9);
+        assertEquals(1 / model.getRssiDistanceVariance(0, 10), weights[0], 1e-9);
+
+        assertTrue(model.fuse(0, -79, 0, ranges, weights, 0));
+        assertEquals(10, ranges[0], 1e-9);
+
+        assertTrue(model.fuse(0, 0, 4.0, ranges, weights, 0));
+        assertEquals(4, ranges[0], 1e-9);
+        assertEquals(1 / RangingModel.DEFAULT_DISTANCE_VARIANCE, weights[0], 1e-9);
+
+        assertFalse(model.fuse(0, 0, Double.POSITIVE_INFINITY, ranges, weights, 0));
+    }
+
+    @Test
+    public void fusedRanges_giveSteadierFixesThanANoisyReportedDistance() throws IOException {
+        AnchorRegistry registry = registry();
+        RangingModel model = new RangingModel(registry);
+        // The distances to F1 are noisy, e.g. because of a glass wall, but its RSSI is clean
+        model.setCalibration(0, -59, 2, 2, 2.25);
+        model.setCalibration(1, -59, 2, 6, 0.01);
+        model.setCalibration(2, -59, 2, 6, 0.01);
+
+        double tagX = 3, tagY = 4;
+        double[] anchorX = {0, 20, 0};
+        double[] anchorY = {0, 0, 20};
+        double[] reported = new double[3];
+        double[] ranges = new double[3];
+        double[] weights = new double[3];
+        PositionSolver solver = new LeastSquaresSolver();
+        PositionFix fix = new PositionFix();
+        Random random = new Random(24);
+
+        double reportedError = 0, fusedError = 0;
+        int trials = 2000;
+        for (int trial = 0; trial < trials; trial++) {
+            for (int i = 0; i < 3; i++) {
+                double distance = Math.hypot(tagX - anchorX[i], tagY - anchorY[i]);
+                double deviation = Math.sqrt(model.getDistanceVariance(i));
+                reported[i] = distance + deviation * random.nextGaussian();
+                int rssi = rssiAt(distance, -59, 2, model.getRssiDeviation(i) * random.nextGaussian());
+                assertTrue(model.fuse(i, rssi, reported[i], ranges, weights, i));
+            }
+            assertTrue(solver.solve(anchorX, anchorY, reported, null, 3, fix));
+            reportedError += Math.hypot(fix.getX() - tagX, fix.getY() - tagY);
+            assertTrue(solver.solve(anchorX, anchorY, ranges, weights, 3, fix));
+            fusedError += Math.hypot(fix.getX() - tagX, fix.getY() - tagY);
+        }
+
+        assertTrue(fusedError < 0.75 * reportedError);
+    }
+
+    @Test
+    public void csv_roundTripsAndSkipsUnknownAnchors() throws IOException {
+        AnchorRegistry registry = registry();
+        RangingModel model = RangingModel.fromCsv(new StringReader(
+                "# peer ID, RSSI at 1 m, exponent, deviation, variance\n\nF2,-62.5,2.4,3.5,0.04\nAA,-50,2,2,1\n"),
+                registry);
+
+        assertEquals(RangingModel.DEFAULT_RSSI_AT_ONE_METER, model.getRssiAtOneMeter(0), 0);
+        assertEquals(-62.5, model.getRssiAtOneMeter(1), 0);
+        assertEquals(2.4, model.getPathLossExponent(1), 0);
+        assertEquals(3.5, model.getRssiDeviation(1), 0);
+        assertEquals(0.04, model.getDistanceVariance(1), 0);
+
+        StringWriter out = new StringWriter();
+        model.writeCsv(out);
+        RangingModel copy = RangingModel.fromCsv(new StringReader(out.toString()), registry);
+        for (int i = 0; i < registry.size(); i++) {
+            assertEquals(model.getRssiAtOneMeter(i), copy.getRssiAtOneMeter(i), 0.01);
+            assertEquals(model.getPathLossExponent(i), copy.getPathLossExponent(i), 0.001);
+            assertEquals(model.getRssiDeviation(i), copy.getRssiDeviation(i), 0.01);
+            assertEquals(model.getDistanceVariance(i), copy.getDistanceVariance(i), 0.0001);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void csv_rejectsANegativeExponent() throws IOException {
+        RangingModel.fromCsv(new StringReader("F1,-59,-2,3,0.09\n"), registry());
+    }
+
+    @Test
+    public void calibrator_fitsThePathLossOfEveryAnchor() throws IOException {
+        RangingCalibrator calibrator = new RangingCalibrator(registry());
+        Random random = new Random(7);
+        for (int sample = 0; sample < 500; sample++) {
+            double distance = 0.5 + 15 * random.nextDouble();
+            calibrator.add(0, rssiAt(distance, -62, 2.4, 3 * random.nextGaussian()), distance);
+            calibrator.add(1, rssiAt(distance, -55, 1.8, 3 * random.nextGaussian()), distance);
+        }
+        // F3 was only heard from one spot, so its exponent cannot be told
+        for (int sample = 0; sample < 50; sample++) {
+            calibrator.add(2, rssiAt(4, -70, 3.0, random.nextGaussian()), 4);
+        }
+        assertFalse(calibrator.add(0, 0, 3));
+        assertFalse(calibrator.add(0, -60, 0));
+
+        RangingModel model = calibrator.fit();
+
+        assertEquals(-62, model.getRssiAtOneMeter(0), 1.0);
+        assertEquals(2.4, model.getPathLossExponent(0), 0.1);
+        assertEquals(3, model.getRssiDeviation(0), 0.4);
+        assertEquals(-55, model.getRssiAtOneMeter(1), 1.0);
+        assertEquals(1.8, model.getPathLossExponent(1), 0.1);
+        assertEquals(RangingModel.DEFAULT_PATH_LOSS_EXPONENT, model.getPathLossExponent(2), 0);
+        // The default exponent still has to explain the RSSI that was measured at 4 m
+        assertEquals(4, model.getRssiDistance(2, rssiAt(4, -70, 3.0, 0)), 0.2);
+        assertEquals(RangingModel.DEFAULT_DISTANCE_VARIANCE, model.getDistanceVariance(0), 0);
+    }
+
+    @Test
+    public void calibrator_readsRecordedSessions() throws IOException {
+        AnchorRegistry registry = registry();
+        Random random = new Random(5);
+        ByteArrayOutputStream walk = new ByteArrayOutputStream();
+        ByteArrayOutputStream desk = new ByteArrayOutputStream();
+        try (PacketRecorder walkRecorder = new PacketRecorder(walk);
+             PacketRecorder deskRecorder = new PacketRecorder(desk)) {
+            for (int i = 0; i < 400; i++) {
+                // While walking, the reported distances are precise
+                double x = 1 + 18 * random.nextDouble(), y = 1 + 18 * random.nextDouble();
+                record(walkRecorder, registry, x, y, 0.05, random, i);
+                // At the desk (5, 5), the reported distances of this initiator have a deviation of 0.4 m
+                record(deskRecorder, registry, 5, 5, 0.4, random, i);
+            }
+        }
+
+        RangingCalibrator calibrator = new RangingCalibrator(registry);
+        try (PacketReader reader = new PacketReader(new ByteArrayInputStream(walk.toByteArray()))) {
+            assertEquals(1200, calibrator.addRecording(reader));
+        }
+        try (PacketReader reader = new PacketReader(new ByteArrayInputStream(desk.toByteArray()))) {
+            assertEquals(1200, calibrator.addRecording(reader, 5, 5));
+        }
+        assertEquals(800, calibrator.getSampleCount(0));
+        RangingModel model = calibrator.fit();
+
+        for (int i = 0; i < registry.size(); i++) {
+            assertEquals(-60, model.getRssiAtOneMeter(i), 1.5);
+            assertEquals(2.2, model.getPathLossExponent(i), 0.15);
+            assertEquals(0.16, model.getDistanceVariance(i), 0.04);
+        }
+    }
+
+    private static void record(PacketRecorder recorder, AnchorRegistry registry, double x, double y,
+                               double distanceDeviation, Random random, long counter) throws IOException {
+        int[] rssi = new int[3];
+        float[] distances = new float[3];
+        for (int i = 0; i < 3; i++) {
+            double distance = Math.hypot(x - registry.getX(i), y - registry.getY(i));
+            rssi[i] = rssiAt(distance, -60, 2.2, 2 * random.nextGaussian());
+            distances[i] = (float) (distance + distanceDeviation * random.nextGaussian());
+        }
+        byte[][] ids = WiraPayloadDecoderTest.payload(PEERS, rssi, distances);
+        recorder.record(counter * 100, 0x4823350000AAL, ids[0], ids[1], Collections.singletonList(counter));
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for ScanScheduler and the scan policies, that replay a recorded day of a tag
+ * through a simulated scanner, which only hears the packets that arrive while its radio is on.
+ */
+public class ScanPolicySimulationTest {
+
+    private static final long TAG = 0x4823350000AAL;
+    private static final int[] PEERS = {0xF1, 0xF2, 0xF3};
+    private static final int[] RSSI = {-60, -65, -70};
+
+    // The phases of the trace: at the desk, walking to another desk, at that desk, gone
+    private static final long WALK_START = 300_000;
+    private static final long WALK_END = 330_000;
+    private static final long GONE_START = 450_000;
+    private static final long END = 600_000;
+    private static final long[] PHASE_STARTS = {0, WALK_START, WALK_END, GONE_START, END};
+    private static final int DESK = 0, WALK = 1, OTHER_DESK = 2, GONE = 3;
+
+    /**
+     * Records the trace: the tag rests at (5, 5) advertising once per second, walks to (15, 5) advertising
+     * ten times per second, as WiRa tags range faster while they move, rests there and then leaves the floor.
+     * The measured distances are noisy, like the ones of a real tag.
+     */
+    private static byte[] recordTrace() throws IOException {
+        Random random = new Random(21);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PacketRecorder recorder = new PacketRecorder(out)) {
+            long counter = 0;
+            long time = 0;
+            while (time < GONE_START) {
+                double x = 5;
+                if (time >= WALK_START) {
+                    x = time >= WALK_END ? 15 : 5 + 10.0 * (time - WALK_START) / (WALK_END - WALK_START);
+                }
+                double y = 5;
+                float[] distances = {
+                        (float) (Math.hypot(x, y) + 0.15 * random.nextGaussian()),
+                        (float) (Math.hypot(x - 20, y) + 0.15 * random.nextGaussian()),
+                        (float) (Math.hypot(x, y - 20) + 0.15 * random.nextGaussian())};
+                byte[][] ids = WiraPayloadDecoderTest.payload(PEERS, RSSI, distances);
+                counter = (counter + 1) & 0xff;
+                // Every ranging result is advertised a few times, with the same counter
+                for (int repeat = 0; repeat < 3; repeat++) {
+                    recorder.record(time + 10 * repeat, TAG, ids[0], ids[1], Collections.singletonList(counter));
+                }
+                time += time >= WALK_START && time < WALK_END ? 100 : 1000;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static final byte[] TRACE;
+
+    static {
+        try {
+            TRACE = recordTrace();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * The outcome of a simulation.
+     */
+    private static class Run {
+        final long[] radioMillis = new long[PHASE_STARTS.length - 1];
+        long movementSeenMillis = -1;
+        long heardCount;
+        int reconfigurationCount;
+        final double[] finalXy = new double[2];
+
+        double dutyCycle(int phase) {
+            return (double) radioMillis[phase] / (PHASE_STARTS[phase + 1] - PHASE_STARTS[phase]);
+        }
+
+        long totalRadioMillis() {
+            long total = 0;
+            for (long millis : radioMillis) {
+                total += millis;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Replays the trace through a scanner whose cycles follow the schedule of the policy,
+     * and the packets it hears through a tracking pipeline, cycle by cycle.
+     */
+    private static Run simulate(ScanPolicy policy, boolean batteryLow) throws IOException {
+        AnchorRegistry registry = AnchorRegistry.fromCsv(new StringReader("F1,0,0\nF2,20,0\nF3,0,20\n"));
+        TagTracker tracker = new TagTracker(0.5, 1.0);
+        TagState tag = tracker.allow(TAG);
+        TrackingPipeline pipeline = new TrackingPipeline(registry, tracker, FloorPlan.office(), 1024, 1.0, 0.3);
+        ScanScheduler scheduler = new ScanScheduler(policy);
+        Run run = new Run();
+
+        CapturedPacket packet = new CapturedPacket();
+        try (PacketReader reader = new PacketReader(new ByteArrayInputStream(TRACE))) {
+            boolean hasPacket = reader.next(packet);
+            long time = 0;
+            while (time < END) {
+                ScanSchedule schedule = scheduler.getSchedule();
+                long scanEnd = time + schedule.getScanPeriodMillis();
+                // The packets sent while the radio was off are never heard
+                while (hasPacket && packet.getTimeMillis() < scanEnd) {
+                    if (packet.getTimeMillis() >= time) {
+                        pipeline.offer(packet.getAddress(), packet.getDataField(0), packet.copyId1(),
+                                packet.copyId2(), packet.getTimeMillis());
+                        scheduler.onPacket(packet.getDataField(0), packet.getTimeMillis());
+                        run.heardCount++;
+                    }
+                    hasPacket = reader.next(packet);
+                }
+                pipeline.processPending();
+                run.radioMillis[phaseOf(time)] += Math.min(scanEnd, END) - time;
+
+                if (run.movementSeenMillis < 0 && time >= WALK_START && tag.copyLatestFix(run.finalXy) >= 0
+                        && run.finalXy[0] > 6.5) {
+                    run.movementSeenMillis = scanEnd - WALK_START;
+                }
+                if (scheduler.onCycle(scanEnd, tag, batteryLow)) {
+                    run.reconfigurationCount++;
+                }
+                time = scanEnd + scheduler.getSchedule().getBetweenScanPeriodMillis();
+            }
+        }
+        tag.copyLatestFix(run.finalXy);
+        return run;
+    }
+
+    private static int phaseOf(long time) {
+        int phase = 0;
+        while (time >= PHASE_STARTS[phase + 1]) {
+            phase++;
+        }
+        return phase;
+    }
+
+    @Test
+    public void fixed_legacyKeepsTheRadioOnWhateverTheTagDoes() throws IOException {
+        Run run = simulate(FixedScanPolicy.legacy(), false);
+
+        for (int phase = DESK; phase <= GONE; phase++) {
+            assertEquals(1100.0 / 1600, run.dutyCycle(phase), 0.03);
+        }
+        assertEquals(0, run.reconfigurationCount);
+        assertTrue(run.movementSeenMillis > 0 && run.movementSeenMillis < 7_000);
+        assertEquals(15, run.finalXy[0], 0.5);
+        assertEquals(5, run.finalXy[1], 0.5);
+    }
+
+    @Test
+    public void adaptive_backsOffWhileTheTagSitsAtADesk() throws IOException {
+        Run legacy = simulate(FixedScanPolicy.legacy(), false);
+        Run run = simulate(new AdaptiveScanPolicy(), false);
+
+        assertTrue(run.dutyCycle(DESK) < 0.2);
+        assertTrue(run.dutyCycle(OTHER_DESK) < 0.25);
+        // The radio is on for less than a third of the time of the fixed schedule over the whole trace
+        assertTrue(run.totalRadioMillis() < legacy.totalRadioMillis() / 3);
+        // and the tag ends up at the same desk
+        assertEquals(15, run.finalXy[0], 0.5);
+        assertEquals(5, run.finalXy[1], 0.5);
+    }
+
+    @Test
+    public void adaptive_speedsUpAsSoonAsTheTagWalks() throws IOException {
+        Run run = simulate(new AdaptiveScanPolicy(), false);
+
+        // At worst one pause of the back-off is added to the delay of the fixed schedule
+        assertTrue(run.movementSeenMillis > 0);
+        assertTrue(run.movementSeenMillis < 7_000 + AdaptiveScanPolicy.MAX_BACKOFF);
+        assertTrue(run.dutyCycle(WALK) > 0.6);
+    }
+
+    @Test
+    public void adaptive_almostStopsWhenTheTagIsGone() throws IOException {
+        Run run = simulate(new AdaptiveScanPolicy(), false);
+
+        assertTrue(run.dutyCycle(GONE) < 0.1);
+    }
+
+    @Test
+    public void adaptive_savesMoreOnALowBattery() throws IOException {
+        Run normal = simulate(new AdaptiveScanPolicy(), false);
+        Run run = simulate(new AdaptiveScanPolicy(), true);
+
+        assertTrue(run.totalRadioMillis() < normal.totalRadioMillis());
+        // Even a walking tag gets a pause between the cycles
+        assertTrue(run.dutyCycle(WALK) <= 1100.0 / 2100 + 0.05);
+        assertTrue(run.movementSeenMillis > 0);
+        assertEquals(15, run.finalXy[0], 0.5);
+    }
+
+    @Test
+    public void scheduler_countsOnlyFreshCountersAndSwapsPolicies() {
+        ScanScheduler scheduler = new ScanScheduler(new AdaptiveScanPolicy());
+        assertEquals(0, scheduler.getSchedule().getBetweenScanPeriodMillis());
+
+        scheduler.onPacket(7, 100);
+        scheduler.onPacket(7, 110);
+        scheduler.onPacket(8, 120);
+        scheduler.onCycle(1100, null, false);
+
+        assertTrue(scheduler.setPolicy(FixedScanPolicy.legacy()));
+        assertEquals(1100, scheduler.getSchedule().getScanPeriodMillis());
+        assertEquals(500, scheduler.getSchedule().getBetweenScanPeriodMillis());
+        assertFalse(scheduler.onCycle(2700, null, false));
+    }
+
+    @Test
+    public void observation_measuresTheCounterRateWhileTheRadioIsOn() {
+        final ScanObservation[] seen = new ScanObservation[1];
+        ScanScheduler scheduler = new ScanScheduler(new ScanPolicy() {
+            @Override
+            public void reset(ScanSchedule schedule) {
+                schedule.set(1000, 4000);
+            }
+
+            @Override
+            public void schedule(ScanObservation observation, ScanSchedule schedule) {
+                seen[0] = observation;
+            }
+        });
+        for (int counter = 0; counter < 5; counter++) {
+            scheduler.onPacket(counter, 100 * counter);
+            scheduler.onPacket(counter, 100 * counter + 10);
+        }
+        scheduler.onCycle(1000, null, false);
+
+        assertEquals(5, seen[0].getFreshPacketCount());
+        assertEquals(5.0, seen[0].getCounterRate(), 1e-9);
+        assertEquals(400, seen[0].getLastFreshPacketMillis());
+        assertFalse(seen[0].hasFix());
+    }
+}
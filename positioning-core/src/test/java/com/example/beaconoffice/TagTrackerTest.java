@@ -0,0 +1,141 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for MacAddress, TagTracker, TagState and CounterWindow.
+ */
+public class TagTrackerTest {
+
+    @Test
+    public void macAddress_packsAndFormats() {
+        long address = MacAddress.parse("48:23:35:00:00:AA");
+
+        assertEquals(0x4823350000AAL, address);
+        assertEquals(address, MacAddress.parse("48:23:35:00:00:aa"));
+        assertEquals("48:23:35:00:00:AA", MacAddress.format(address));
+        assertEquals(-1, MacAddress.parse("48:23:35:00:00"));
+        assertEquals(-1, MacAddress.parse("48-23-35-00-00-AA"));
+        assertEquals(-1, MacAddress.parse("48:23:35:00:00:AG"));
+        assertEquals(-1, MacAddress.parse(null));
+    }
+
+    @Test
+    public void tracker_findsOnlyAllowedTags() {
+        TagTracker tracker = new TagTracker(0.5, 1.0);
+        for (long i = 0; i < 200; i++) {
+            tracker.allow(0x482335000000L + i);
+        }
+
+        assertEquals(200, tracker.size());
+        for (long i = 0; i < 200; i++) {
+            TagState tag = tracker.get(0x482335000000L + i);
+            assertNotNull(tag);
+            assertEquals(0x482335000000L + i, tag.getAddress());
+            assertSame(tag, tracker.getTag((int) i));
+        }
+        assertNull(tracker.get(0x482335000000L + 200));
+        assertNull(tracker.get(-1));
+        assertSame(tracker.getTag(3), tracker.allow(0x482335000003L));
+        assertEquals(200, tracker.size());
+    }
+
+    @Test
+    public void allowFromCsv_readsTheAllowList() throws IOException {
+        TagTracker tracker = new TagTracker(0.5, 1.0);
+        tracker.allowFromCsv(new StringReader("# tags\n48:23:35:00:00:AA\n\n48:23:35:00:00:AB\n"));
+
+        assertEquals(2, tracker.size());
+        assertEquals(0x4823350000AAL, tracker.getTag(0).getAddress());
+        assertNotNull(tracker.get(0x4823350000ABL));
+    }
+
+    @Test(expected = IOException.class)
+    public void allowFromCsv_rejectsInvalidAddresses() throws IOException {
+        new TagTracker(0.5, 1.0).allowFromCsv(new StringReader("48:23:35:00:00\n"));
+    }
+
+    @Test
+    public void tags_keepTheirCountersIndependently() {
+        TagTracker tracker = new TagTracker(0.5, 1.0);
+        TagState first = tracker.allow(1);
+        TagState second = tracker.allow(2);
+
+        assertEquals(CounterWindow.FRESH, first.acceptCounter(7, 0));
+        assertEquals(CounterWindow.DUPLICATE, first.acceptCounter(7, 10));
+        assertEquals(CounterWindow.FRESH, second.acceptCounter(7, 20));
+        assertEquals(CounterWindow.FRESH, first.acceptCounter(8, 30));
+
+        tracker.resetAll();
+        assertEquals(CounterWindow.FRESH, first.acceptCounter(8, 40));
+    }
+
+    @Test
+    public void counterWindow_dropsRepeatedAndReorderedPackets() {
+        CounterWindow window = new CounterWindow();
+
+        assertEquals(CounterWindow.FRESH, window.accept(10, 0));
+        assertEquals(CounterWindow.FRESH, window.accept(13, 100));
+        assertEquals(CounterWindow.DUPLICATE, window.accept(13, 110));
+        // 12 arrives after 13: its content is older than the one already processed
+        assertEquals(CounterWindow.STALE, window.accept(12, 120));
+        assertEquals(CounterWindow.DUPLICATE, window.accept(12, 130));
+        assertEquals(CounterWindow.DUPLICATE, window.accept(10, 140));
+        assertEquals(CounterWindow.FRESH, window.accept(14, 150));
+    }
+
+    @Test
+    public void counterWindow_followsTheCounterAcrossTheWrapAround() {
+        CounterWindow window = new CounterWindow();
+
+        assertEquals(CounterWindow.FRESH, window.accept(254, 0));
+        assertEquals(CounterWindow.FRESH, window.accept(255, 100));
+        assertEquals(CounterWindow.FRESH, window.accept(0, 200));
+        assertEquals(CounterWindow.FRESH, window.accept(257, 300)); // only the lowest 8 bits count
+        assertEquals(CounterWindow.DUPLICATE, window.accept(255, 310));
+        assertEquals(CounterWindow.STALE, window.accept(253, 320));
+        assertEquals(CounterWindow.DUPLICATE, window.accept(1, 330));
+    }
+
+    @Test
+    public void counterWindow_startsOverWhenTheTagRestartsOrReturns() {
+        CounterWindow window = new CounterWindow();
+
+        assertEquals(CounterWindow.FRESH, window.accept(100, 0));
+        // Far behind the window: the tag restarted its counter
+        assertEquals(CounterWindow.FRESH, window.accept(3, 100));
+        assertEquals(CounterWindow.FRESH, window.accept(4, 200));
+        assertEquals(CounterWindow.STALE, window.accept(2, 300));
+        // Inside the window, but after a long silence
+        assertEquals(CounterWindow.FRESH, window.accept(2, 300 + CounterWindow.RESYNC_AFTER));
+        assertEquals(CounterWindow.DUPLICATE, window.accept(2, 310 + CounterWindow.RESYNC_AFTER));
+
+        window.reset();
+        assertEquals(CounterWindow.FRESH, window.accept(2, 320 + CounterWindow.RESYNC_AFTER));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void counterWindow_needsAWindowSmallerThanHalfTheCounters() {
+        new CounterWindow(6, 32, 1000);
+    }
+
+    @Test
+    public void copyLatestFix_returnsTheWholeFix() {
+        TagState tag = new TagTracker(0.5, 1.0).allow(1);
+        double[] xy = new double[2];
+        assertEquals(-1, tag.copyLatestFix(xy));
+
+        tag.setLatestFix(1.5, 2.5, 1000);
+        assertEquals(1000, tag.copyLatestFix(xy));
+        assertEquals(1.5, xy[0], 0);
+        assertEquals(2.5, xy[1], 0);
+
+        tag.reset();
+        assertEquals(-1, tag.copyLatestFix(xy));
+    }
+}
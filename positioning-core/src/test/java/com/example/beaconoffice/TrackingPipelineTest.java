@@ -0,0 +1,242 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for PacketQueue and TrackingPipeline.
+ */
+public class TrackingPipelineTest {
+
+    private static final long TAG = 0x4823350000AAL;
+    private static final long OTHER_TAG = 0x4823350000ABL;
+    private static final int[] PEERS = {0xF1, 0xF2, 0xF3};
+    private static final int[] RSSI = {-60, -65, -70};
+
+    private static AnchorRegistry registry() throws IOException {
+        return AnchorRegistry.fromCsv(new StringReader("F1,0,0\nF2,20,0\nF3,0,20\n"));
+    }
+
+    private static TagTracker tags() {
+        TagTracker tracker = new TagTracker(0.5, 1.0);
+        tracker.allow(TAG);
+        tracker.allow(OTHER_TAG);
+        return tracker;
+    }
+
+    /**
+     * Exact distances of a point from the three anchors of the test registry.
+     */
+    private static byte[][] payloadAt(double x, double y) {
+        float[] distances = {
+                (float) Math.hypot(x, y),
+                (float) Math.hypot(x - 20, y),
+                (float) Math.hypot(x, y - 20)};
+        return WiraPayloadDecoderTest.payload(PEERS, RSSI, distances);
+    }
+
+    private static void offerAt(TrackingPipeline pipeline, long address, long counter, double x, double y, long time) {
+        byte[][] ids = payloadAt(x, y);
+        assertTrue(pipeline.offer(address, counter, ids[0], ids[1], time));
+    }
+
+    @Test
+    public void queue_keepsOrderAcrossTheWrap() {
+        PacketQueue queue = new PacketQueue(5);
+        assertEquals(8, queue.capacity());
+
+        byte[] id = new byte[16];
+        byte[] id2 = new byte[2];
+        for (int i = 0; i < 20; i++) {
+            RawPacket slot = queue.claim();
+            assertNotNull(slot);
+            slot.set(TAG, i, id, id2, i);
+            queue.publish();
+            RawPacket read = queue.peek();
+            assertEquals(i, read.getCounter());
+            queue.release();
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+    }
+
+    @Test
+    public void queue_dropsWhenFull() {
+        PacketQueue queue = new PacketQueue(4);
+        byte[] id = new byte[16];
+        byte[] id2 = new byte[2];
+        for (int i = 0; i < 4; i++) {
+            queue.claim().set(TAG, i, id, id2, i);
+            queue.publish();
+        }
+
+        assertNull(queue.claim());
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(0, queue.peek().getCounter());
+        queue.release();
+        assertNotNull(queue.claim());
+    }
+
+    @Test
+    public void rawPacket_rejectsShortPayloads() {
+        RawPacket raw = new RawPacket();
+        raw.set(TAG, 0, new byte[16], new byte[1], 0);
+        assertFalse(raw.decode(new WiraPacket()));
+    }
+
+    @Test
+    public void pipeline_coalescesSnapshotsOfTheShownTag() throws IOException {
+        TrackingPipeline pipeline = new TrackingPipeline(registry(), tags(), FloorPlan.office(), 64, 1.0, 0.3);
+        assertEquals(TAG, pipeline.getShownAddress());
+
+        // Not started, so the packets wait in the queue until they are processed here
+        for (int i = 0; i < 10; i++) {
+            offerAt(pipeline, TAG, i, 1 + 2 * i, 3, 1000L * i);
+            offerAt(pipeline, OTHER_TAG, i, 15, 10, 1000L * i);
+        }
+        drain(pipeline);
+
+        PositionSnapshot snapshot = pipeline.takeLatest();
+        assertNotNull(snapshot);
+        assertEquals(TAG, snapshot.getAddress());
+        assertEquals(9000, snapshot.getTimeMillis());
+        assertEquals(3, snapshot.getAnchorCount());
+        assertEquals(0xF3, snapshot.getPacket().getPeerId(2));
+        assertEquals(19, snapshot.getX(), 1.5);
+        assertEquals(3, snapshot.getY(), 1.0);
+        assertTrue(pipeline.getPublishedCount() > 1);
+        assertNull(pipeline.takeLatest());
+        pipeline.recycle(snapshot);
+
+        // The other tag was tracked, but never published
+        assertEquals(15, tags(pipeline).get(OTHER_TAG).getLatestX(), 0.5);
+    }
+
+    @Test
+    public void pipeline_ignoresUnknownTagsAndRepeatedCounters() throws IOException {
+        TrackingPipeline pipeline = new TrackingPipeline(registry(), tags(), FloorPlan.office(), 64, 1.0, 0.3);
+        byte[][] ids = payloadAt(5, 5);
+
+        assertFalse(pipeline.offer(0x4823350000ACL, 0, ids[0], ids[1], 0));
+        assertTrue(pipeline.offer(TAG, 7, ids[0], ids[1], 0));
+        assertTrue(pipeline.offer(TAG, 7, ids[0], ids[1], 500));
+        drain(pipeline);
+
+        assertEquals(1, pipeline.getPublishedCount());
+        assertEquals(1, pipeline.getDuplicateCount());
+        assertEquals(0, pipeline.getUnsolvedCount());
+    }
+
+    @Test
+    public void pipeline_dropsStalePacketsBeforeDecodingThem() throws IOException {
+        TrackingPipeline pipeline = new TrackingPipeline(registry(), tags(), FloorPlan.office(), 64, 1.0, 0.3);
+        byte[] incomplete = new byte[1];
+
+        offerAt(pipeline, TAG, 255, 5, 5, 0);
+        offerAt(pipeline, TAG, 1, 15, 5, 100);
+        // Reordered and repeated packets never reach the decoder, so their payload does not matter
+        assertTrue(pipeline.offer(TAG, 0, incomplete, incomplete, 110));
+        assertTrue(pipeline.offer(TAG, 255, incomplete, incomplete, 120));
+        assertTrue(pipeline.offer(TAG, 1, incomplete, incomplete, 130));
+        drain(pipeline);
+
+        assertEquals(1, pipeline.getStaleCount());
+        assertEquals(2, pipeline.getDuplicateCount());
+        assertEquals(0, pipeline.getIncompleteCount());
+        assertEquals(2, pipeline.getPublishedCount());
+    }
+
+    @Test
+    public void pipeline_solvesFromTheRssiWhenADistanceIsMissing() throws IOException {
+        AnchorRegistry registry = registry();
+        TrackingPipeline pipeline = new TrackingPipeline(registry, tags(), FloorPlan.office(), 64, 1.0, 0.3);
+        // At (5, 5) the anchors are 7.07, 15.81 and 15.81 m away, which is -76, -83 and -83 dBm in free space
+        int[] rssi = {-76, -83, -83};
+        byte[][] ids = WiraPayloadDecoderTest.payload(PEERS, rssi,
+                new float[]{Float.NaN, (float) Math.hypot(15, 5), (float) Math.hypot(5, 15)});
+
+        pipeline.setRangingModel(new RangingModel(registry));
+        assertTrue(pipeline.offer(TAG, 1, ids[0], ids[1], 0));
+        drain(pipeline);
+
+        PositionSnapshot snapshot = pipeline.takeLatest();
+        assertNotNull(snapshot);
+        assertEquals(5, snapshot.getX(), 0.5);
+        assertEquals(5, snapshot.getY(), 0.5);
+        assertEquals(3, snapshot.getAnchorCount());
+    }
+
+    @Test
+    public void pipeline_deliversTheLatestPositionFromItsOwnThread() throws Exception {
+        final TrackingPipeline pipeline = new TrackingPipeline(registry(), tags(), FloorPlan.office(), 16, 1.0, 0.3);
+        final CountDownLatch published = new CountDownLatch(1);
+        pipeline.setListener(new PositionListener() {
+            @Override
+            public void onPositionAvailable() {
+                published.countDown();
+            }
+        });
+        pipeline.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                byte[][] ids = payloadAt(8, 16);
+                while (!pipeline.offer(TAG, i & 0xff, ids[0], ids[1], 100L * i)) {
+                    Thread.yield();
+                }
+            }
+            assertTrue(published.await(5, TimeUnit.SECONDS));
+            PositionSnapshot snapshot = null;
+            long deadline = System.currentTimeMillis() + 5000;
+            while (System.currentTimeMillis() < deadline) {
+                PositionSnapshot latest = pipeline.takeLatest();
+                if (latest != null) {
+                    if (snapshot != null) {
+                        pipeline.recycle(snapshot);
+                    }
+                    snapshot = latest;
+                }
+                if (tags(pipeline).get(TAG).getLatestTimeMillis() == 19900) {
+                    break;
+                }
+                Thread.sleep(1);
+            }
+            assertNotNull(snapshot);
+            assertEquals(8, snapshot.getX(), 0.5);
+            assertEquals(16, snapshot.getY(), 0.5);
+        } finally {
+            pipeline.stop();
+        }
+        assertEquals(19900, tags(pipeline).get(TAG).getLatestTimeMillis());
+    }
+
+    @Test
+    public void reset_forgetsQueuedPacketsAndTags() throws IOException {
+        TrackingPipeline pipeline = new TrackingPipeline(registry(), tags(), FloorPlan.office(), 64, 1.0, 0.3);
+        offerAt(pipeline, TAG, 1, 5, 5, 0);
+        drain(pipeline);
+        offerAt(pipeline, TAG, 2, 6, 5, 1000);
+
+        pipeline.reset();
+        drain(pipeline);
+
+        assertNull(pipeline.takeLatest());
+        assertFalse(tags(pipeline).get(TAG).hasFix());
+    }
+
+    /**
+     * Processes the queued packets on the test thread, as the tracking thread would.
+     */
+    private static void drain(TrackingPipeline pipeline) {
+        pipeline.processPending();
+    }
+
+    private static TagTracker tags(TrackingPipeline pipeline) {
+        return pipeline.getTagTracker();
+    }
+}
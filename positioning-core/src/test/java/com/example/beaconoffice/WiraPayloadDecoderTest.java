@@ -0,0 +1,83 @@
+package com.example.beaconoffice;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for WiraPayloadDecoder, which run on the development machine.
+ */
+public class WiraPayloadDecoderTest {
+
+    /**
+     * Builds the two AltBeacon identifiers of a WiRa advertisement.
+     */
+    static byte[][] payload(int[] peerIds, int[] rssi, float[] distances) {
+        ByteBuffer buffer = ByteBuffer.allocate(WiraPayloadDecoder.PAYLOAD_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        for (int peerId : peerIds)
+            buffer.put((byte) peerId);
+        for (int value : rssi)
+            buffer.put((byte) value);
+        for (float distance : distances)
+            buffer.putFloat(distance);
+
+        byte[] id1 = new byte[16];
+        byte[] id2 = new byte[2];
+        buffer.flip();
+        buffer.get(id1);
+        buffer.get(id2);
+        return new byte[][]{id1, id2};
+    }
+
+    @Test
+    public void decode_readsPeersRssiAndDistances() {
+        byte[][] ids = payload(new int[]{0xF1, 0xF5, 0xFC}, new int[]{-60, -75, -128}, new float[]{1.25f, 7.5f, 12.875f});
+        WiraPacket packet = new WiraPacket();
+
+        assertTrue(WiraPayloadDecoder.decode(ids[0], ids[1], packet));
+
+        assertEquals(0xF1, packet.getPeerId(0));
+        assertEquals(0xF5, packet.getPeerId(1));
+        assertEquals(0xFC, packet.getPeerId(2));
+        assertEquals(-60, packet.getRssi(0));
+        assertEquals(-75, packet.getRssi(1));
+        assertEquals(-128, packet.getRssi(2));
+        assertEquals(1.25f, packet.getDistance(0), 0f);
+        assertEquals(7.5f, packet.getDistance(1), 0f);
+        // The last distance spans the boundary between the first and the second identifier.
+        assertEquals(12.875f, packet.getDistance(2), 0f);
+    }
+
+    @Test
+    public void decode_rejectsShortPayload() {
+        WiraPacket packet = new WiraPacket();
+        assertFalse(WiraPayloadDecoder.decode(new byte[16], new byte[1], packet));
+    }
+
+    @Test
+    public void decode_matchesLegacyStringDecoding() {
+        Random random = new Random(42);
+        WiraPacket packet = new WiraPacket();
+
+        for (int n = 0; n < 1000; n++) {
+            int[] peerIds = {0xF1 + random.nextInt(12), 0xF1 + random.nextInt(12), 0xF1 + random.nextInt(12)};
+            // RSSI values are always negative, which is the range the legacy decoding handled.
+            int[] rssi = {-1 - random.nextInt(128), -1 - random.nextInt(128), -1 - random.nextInt(128)};
+            float[] distances = {random.nextFloat() * 40, random.nextFloat() * 40, random.nextFloat() * 40};
+            byte[][] ids = payload(peerIds, rssi, distances);
+
+            LegacyPayloadDecoding legacy = LegacyPayloadDecoding.decode(ids[0], ids[1]);
+            assertTrue(WiraPayloadDecoder.decode(ids[0], ids[1], packet));
+
+            for (int i = 0; i < WiraPacket.PEER_COUNT; i++) {
+                assertEquals(legacy.peerID.get(i), WiraPayloadDecoder.formatPeerId(packet.getPeerId(i)));
+                assertEquals(legacy.rssi.get(i).intValue(), packet.getRssi(i));
+                assertEquals(legacy.distance.get(i), packet.getDistance(i), 0f);
+            }
+        }
+    }
+}